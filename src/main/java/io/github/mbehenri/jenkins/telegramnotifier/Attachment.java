@@ -0,0 +1,50 @@
+package io.github.mbehenri.jenkins.telegramnotifier;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fichier joint à une notification (ex: log console du build), envoyé via {@code sendDocument}.
+ * <p>
+ * Le contenu n'est jamais chargé en mémoire : la source est ouverte à chaque tentative d'envoi
+ * et lue en flux, compressée à la volée.
+ */
+public final class Attachment {
+
+    /**
+     * Ouvre le contenu du fichier joint.
+     */
+    @FunctionalInterface
+    public interface Source {
+
+        /**
+         * Ouvre un nouveau flux sur le contenu. L'appelant le ferme après lecture.
+         *
+         * @return le flux du contenu
+         * @throws IOException si le contenu ne peut pas être ouvert
+         */
+        InputStream open() throws IOException;
+    }
+
+    private final String fileName;
+    private final Source source;
+
+    /**
+     * Crée un fichier joint.
+     *
+     * @param fileName le nom du fichier non compressé (ex: console-42.log)
+     * @param source   la source du contenu
+     */
+    public Attachment(String fileName, Source source) {
+        this.fileName = fileName;
+        this.source = source;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+}
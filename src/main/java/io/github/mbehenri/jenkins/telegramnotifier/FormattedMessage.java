@@ -0,0 +1,192 @@
+package io.github.mbehenri.jenkins.telegramnotifier;
+
+/**
+ * Message mis en forme : son texte et, en mode {@link ParseMode#ENTITIES}, ses entités.
+ * <p>
+ * Dans les autres modes la mise en forme est écrite dans le texte (ex: {@code *gras*}) et il n'y a pas d'entité.
+ * Les instances sont immuables.
+ */
+public final class FormattedMessage {
+
+    private final String text;
+    private final MessageEntities entities;
+
+    private FormattedMessage(String text, MessageEntities entities) {
+        this.text = text;
+        this.entities = entities;
+    }
+
+    /**
+     * Crée un message dont la mise en forme, s'il y en a, est écrite dans le texte.
+     *
+     * @param text le texte du message
+     * @return le message
+     */
+    public static FormattedMessage of(String text) {
+        return new FormattedMessage(text != null ? text : "", MessageEntities.NONE);
+    }
+
+    /**
+     * Crée un message en texte brut accompagné de ses entités.
+     *
+     * @param text     le texte du message
+     * @param entities les entités, positionnées dans ce texte
+     * @return le message
+     */
+    public static FormattedMessage of(String text, MessageEntities entities) {
+        return new FormattedMessage(text != null ? text : "", entities != null ? entities : MessageEntities.NONE);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public MessageEntities getEntities() {
+        return entities;
+    }
+
+    public int length() {
+        return text.length();
+    }
+
+    /**
+     * Extrait une plage du message, entités comprises.
+     *
+     * @param start le début de la plage
+     * @param end   la fin de la plage (exclue)
+     * @return le message extrait, ou ce message si la plage le couvre entièrement
+     */
+    public FormattedMessage substring(int start, int end) {
+        if (start == 0 && end == text.length()) {
+            return this;
+        }
+        return new FormattedMessage(text.substring(start, end),
+                entities.isEmpty() ? MessageEntities.NONE : entities.slice(start, end));
+    }
+
+    /**
+     * Tronque le message à une longueur donnée ({@link ParseMode#truncate}). Les entités sont coupées
+     * avant l'indicateur de troncature.
+     *
+     * @param parseMode le mode de mise en forme du message
+     * @param maxLength la longueur maximale, indicateur de troncature compris
+     * @return le message tronqué, ou ce message s'il tient dans la longueur
+     */
+    public FormattedMessage truncate(ParseMode parseMode, int maxLength) {
+        if (text.length() <= maxLength) {
+            return this;
+        }
+        String truncated = parseMode.truncate(text, maxLength);
+        MessageEntities kept = entities.isEmpty()
+                ? MessageEntities.NONE
+                : entities.slice(0, truncated.length() - parseMode.getTruncationSuffix().length());
+        return new FormattedMessage(truncated, kept);
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * Construit un message en une seule passe, dans un mode de mise en forme donné.
+     * <p>
+     * En mode {@link ParseMode#ENTITIES}, les positions des entités sont relevées au fil de l'écriture :
+     * ce sont les longueurs du texte déjà écrit, en unités UTF-16. Dans les autres modes, la mise en forme
+     * est écrite dans le texte par {@link ParseMode}, qui échappe le texte libre.
+     */
+    public static final class Builder {
+
+        private final ParseMode parseMode;
+        private final StringBuilder text = new StringBuilder(256);
+        private final MessageEntities.Builder entities;
+
+        public Builder(ParseMode parseMode) {
+            this.parseMode = parseMode;
+            this.entities = parseMode == ParseMode.ENTITIES ? new MessageEntities.Builder() : null;
+        }
+
+        /**
+         * Ajoute un texte déjà mis en forme dans le mode (séparateurs, emoji, message écrit par l'utilisateur).
+         */
+        public Builder append(String markup) {
+            text.append(markup);
+            return this;
+        }
+
+        public Builder append(char c) {
+            text.append(c);
+            return this;
+        }
+
+        public Builder append(int value) {
+            text.append(value);
+            return this;
+        }
+
+        /**
+         * Ajoute un texte libre, échappé pour le mode.
+         */
+        public Builder appendText(String value) {
+            parseMode.appendEscaped(text, value);
+            return this;
+        }
+
+        /**
+         * Ajoute un texte libre en gras.
+         */
+        public Builder appendBold(String value) {
+            int offset = text.length();
+            parseMode.appendBold(text, value);
+            return entity(MessageEntities.Type.BOLD, offset, null);
+        }
+
+        /**
+         * Ajoute un lien.
+         */
+        public Builder appendLink(String label, String url) {
+            int offset = text.length();
+            parseMode.appendLink(text, label, url);
+            return entity(MessageEntities.Type.TEXT_LINK, offset, url);
+        }
+
+        /**
+         * Ajoute un texte en police à chasse fixe.
+         */
+        public Builder appendCode(String value) {
+            int offset = text.length();
+            parseMode.appendCode(text, value);
+            return entity(MessageEntities.Type.CODE, offset, null);
+        }
+
+        /**
+         * Ajoute un message mis en forme dans le même mode, ses entités décalées à leur nouvelle position.
+         */
+        public Builder append(FormattedMessage message) {
+            int base = text.length();
+            text.append(message.text);
+            if (entities != null) {
+                MessageEntities added = message.entities;
+                for (int i = 0; i < added.size(); i++) {
+                    entities.add(added.getType(i), base + added.getOffset(i), added.getLength(i), added.getUrl(i));
+                }
+            }
+            return this;
+        }
+
+        public int length() {
+            return text.length();
+        }
+
+        public FormattedMessage build() {
+            return new FormattedMessage(text.toString(), entities != null ? entities.build() : MessageEntities.NONE);
+        }
+
+        private Builder entity(MessageEntities.Type type, int offset, String url) {
+            if (entities != null) {
+                entities.add(type, offset, text.length() - offset, url);
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package io.github.mbehenri.jenkins.telegramnotifier;
+
+import java.util.Arrays;
+
+/**
+ * Entités de mise en forme d'un message en texte brut ({@code entities} de l'API Bot).
+ * <p>
+ * Chaque entité couvre une plage du texte, en unités UTF-16 comme l'exige Telegram : ce sont directement
+ * les positions d'une {@link String} Java, calculées pendant la construction du message, sans recodage.
+ * Les entités sont stockées à plat (type, position, longueur) dans un seul tableau d'entiers; le tableau
+ * des URLs n'est alloué qu'au premier lien. Les instances sont immuables.
+ */
+public final class MessageEntities {
+
+    /**
+     * Types d'entités produits par le plugin.
+     */
+    public enum Type {
+        BOLD("bold"),
+        TEXT_LINK("text_link"),
+        CODE("code");
+
+        private final String apiValue;
+
+        Type(String apiValue) {
+            this.apiValue = apiValue;
+        }
+
+        /**
+         * Obtient la valeur du champ {@code type} de l'API.
+         *
+         * @return le type envoyé à Telegram (ex: text_link)
+         */
+        public String getApiValue() {
+            return apiValue;
+        }
+    }
+
+    /**
+     * Aucune entité.
+     */
+    public static final MessageEntities NONE = new MessageEntities(new int[0], null, 0);
+
+    private static final int FIELDS = 3;
+    private static final Type[] TYPES = Type.values();
+
+    private final int[] entities;
+    private final String[] urls;
+    private final int size;
+
+    private MessageEntities(int[] entities, String[] urls, int size) {
+        this.entities = entities;
+        this.urls = urls;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public Type getType(int index) {
+        return TYPES[entities[index * FIELDS]];
+    }
+
+    /**
+     * Obtient la position d'une entité.
+     *
+     * @param index le rang de l'entité
+     * @return la position du début de l'entité, en unités UTF-16
+     */
+    public int getOffset(int index) {
+        return entities[index * FIELDS + 1];
+    }
+
+    /**
+     * Obtient la longueur d'une entité.
+     *
+     * @param index le rang de l'entité
+     * @return la longueur de l'entité, en unités UTF-16
+     */
+    public int getLength(int index) {
+        return entities[index * FIELDS + 2];
+    }
+
+    /**
+     * Obtient l'URL d'un lien.
+     *
+     * @param index le rang de l'entité
+     * @return l'URL d'une entité {@link Type#TEXT_LINK}, null pour les autres
+     */
+    public String getUrl(int index) {
+        return urls != null ? urls[index] : null;
+    }
+
+    /**
+     * Extrait les entités d'une plage du texte (ex: une partie d'un message découpé), tronquées à la plage
+     * et repositionnées par rapport à son début.
+     *
+     * @param start le début de la plage
+     * @param end   la fin de la plage (exclue)
+     * @return les entités de la plage
+     */
+    public MessageEntities slice(int start, int end) {
+        Builder slice = new Builder();
+        for (int i = 0; i < size; i++) {
+            int from = Math.max(getOffset(i), start);
+            int to = Math.min(getOffset(i) + getLength(i), end);
+            if (from < to) {
+                slice.add(getType(i), from - start, to - from, getUrl(i));
+            }
+        }
+        return slice.build();
+    }
+
+    /**
+     * Construit une liste d'entités. Un constructeur ne doit plus être utilisé après {@link #build()}.
+     */
+    public static final class Builder {
+
+        private int[] entities = new int[8 * FIELDS];
+        private String[] urls;
+        private int size;
+
+        /**
+         * Ajoute une entité.
+         *
+         * @param type   le type de l'entité
+         * @param offset la position du début de l'entité, en unités UTF-16
+         * @param length la longueur de l'entité, en unités UTF-16 (une entité vide est ignorée)
+         * @param url    l'URL d'un lien, ou null
+         * @return ce constructeur
+         */
+        public Builder add(Type type, int offset, int length, String url) {
+            if (length <= 0) {
+                return this;
+            }
+            if ((size + 1) * FIELDS > entities.length) {
+                entities = Arrays.copyOf(entities, entities.length * 2);
+                // Les URLs suivent la capacité des entités dès le premier lien
+                if (urls != null) {
+                    urls = Arrays.copyOf(urls, entities.length / FIELDS);
+                }
+            }
+            if (url != null) {
+                if (urls == null) {
+                    urls = new String[entities.length / FIELDS];
+                }
+                urls[size] = url;
+            }
+            int base = size * FIELDS;
+            entities[base] = type.ordinal();
+            entities[base + 1] = offset;
+            entities[base + 2] = length;
+            size++;
+            return this;
+        }
+
+        public MessageEntities build() {
+            return size == 0 ? NONE : new MessageEntities(entities, urls, size);
+        }
+    }
+}
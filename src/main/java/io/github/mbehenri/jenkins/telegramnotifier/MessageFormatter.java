@@ -4,9 +4,17 @@ import hudson.model.AbstractBuild;
 import hudson.model.Cause;
 import hudson.model.Result;
 import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramConfig;
+import io.github.mbehenri.jenkins.telegramnotifier.template.MessageTemplate;
+import io.github.mbehenri.jenkins.telegramnotifier.template.TelegramVariable;
+import io.github.mbehenri.jenkins.telegramnotifier.template.VariableRegistry;
+import io.github.mbehenri.jenkins.telegramnotifier.template.VariableResolver;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * Formate les messages de notification Telegram avec les informations de build et le contenu personnalisé.
@@ -19,6 +27,7 @@ public class MessageFormatter {
     private static final String EMOJI_ABORTED = "\uD83D\uDED1"; // 🛑
     private static final String EMOJI_NOT_BUILT = "\u23F8\uFE0F"; // ⏸️
     private static final String EMOJI_UNKNOWN = "\u2753"; // ❓
+    private static final String EMOJI_STARTED = "\uD83D\uDD04"; // 🔄
 
     /**
      * Formate le message de notification avec les informations du build.
@@ -28,66 +37,237 @@ public class MessageFormatter {
      * @return le message formaté
      */
     public static String formatMessage(AbstractBuild<?, ?> build, String customMessage) {
+        return formatCompiledMessage(build, MessageTemplate.compile(customMessage));
+    }
+
+    /**
+     * Formate le message de notification avec un message personnalisé déjà compilé.
+     *
+     * @param build         le build Jenkins
+     * @param customMessage template compilé du message personnalisé
+     * @return le message formaté
+     */
+    public static String formatCompiledMessage(AbstractBuild<?, ?> build, MessageTemplate customMessage) {
+        return formatMessage(build, customMessage, ParseMode.MARKDOWN).getText();
+    }
+
+    /**
+     * Formate le message de notification dans un mode de mise en forme donné.
+     * <p>
+     * Le texte du message personnalisé est écrit par l'utilisateur dans la syntaxe du mode et envoyé tel quel;
+     * seules les valeurs de ses variables sont échappées ({@link ParseMode#escapesVariables()}).
+     * En mode {@link ParseMode#ENTITIES}, le message est du texte brut et sa mise en forme des entités.
+     *
+     * @param build         le build Jenkins
+     * @param customMessage template compilé du message personnalisé
+     * @param parseMode     le mode de mise en forme
+     * @return le message formaté
+     */
+    public static FormattedMessage formatMessage(AbstractBuild<?, ?> build, MessageTemplate customMessage,
+                                                 ParseMode parseMode) {
         if (build == null) {
-            return "Invalid build information";
+            return FormattedMessage.of("Invalid build information");
         }
 
-        StringBuilder message = new StringBuilder();
+        FormattedMessage.Builder message = new FormattedMessage.Builder(parseMode);
+
+        // L'en-tête et le message personnalisé partagent les valeurs calculées (URL, cause, ...)
+        // Les variables coûteuses du message personnalisé sont calculées en parallèle pendant l'en-tête
+        VariableRegistry registry = VariableRegistry.get();
+        VariableResolver variables = new VariableResolver(registry, build);
+        if (customMessage != null) {
+            variables.prefetch(customMessage.getVariables());
+        }
 
         // Ligne de statut avec emoji pour identification visuelle rapide
-        Result result = build.getResult();
-        String emoji = getEmojiForResult(result);
-        String status = result != null ? result.toString() : "UNKNOWN";
-        message.append(emoji).append(" Build *").append(status).append("*\n\n");
+        String emoji = getEmojiForResult(build.getResult());
+        message.append(emoji).append(" Build ").appendBold(variables.apply("BUILD_STATUS")).append("\n\n");
 
         // Informations principales du job
-        message.append("*Job:* ").append(escapeMarkdown(build.getProject().getFullDisplayName())).append("\n");
-        message.append("*Build:* #").append(build.getNumber()).append("\n");
-        message.append("*Duration:* ").append(formatDuration(build.getDuration())).append("\n");
+        appendField(message, "Job:", variables.apply("JOB_NAME"));
+        appendField(message, "Build:", "#" + variables.apply("BUILD_NUMBER"));
+        appendField(message, "Duration:", variables.apply("BUILD_DURATION"));
 
         // Cause du déclenchement (utilisateur, SCM, timer, etc.)
-        String cause = formatCause(build);
+        String cause = variables.apply("CAUSE");
         if (cause != null && !cause.isEmpty()) {
-            message.append("*Started by:* ").append(escapeMarkdown(cause)).append("\n");
+            appendField(message, "Started by:", cause);
         }
 
         // Message personnalisé de l'utilisateur (si fourni)
         // Les variables ${BUILD_STATUS}, ${JOB_NAME}, etc. sont remplacées
-        if (customMessage != null && !customMessage.trim().isEmpty()) {
-            String formattedCustomMessage = formatCustomMessage(customMessage, build);
+        if (customMessage != null && !customMessage.isBlank()) {
+            String formattedCustomMessage = customMessage.render(parseMode.escapesVariables()
+                    ? escaping(variables, registry, parseMode)
+                    : variables);
             message.append("\n").append(formattedCustomMessage).append("\n");
         }
 
         // Lien vers le build pour accès direct depuis Telegram
-        String buildUrl = build.getAbsoluteUrl();
-        message.append("\n[View build](").append(buildUrl).append(")");
+        message.append("\n").appendLink("View build", variables.apply("BUILD_URL"));
 
-        return TelegramConfig.truncateMessage(message.toString());
+        // Les messages longs sont découpés en plusieurs parties à la livraison;
+        // seuls les messages dépassant le nombre maximal de parties sont tronqués
+        return message.build().truncate(parseMode,
+                TelegramConfig.MAX_MESSAGE_LENGTH * TelegramConfig.MAX_MESSAGE_PARTS);
     }
 
     /**
-     * Formate un message personnalisé en remplaçant les variables par les informations du build.
+     * Formate le message de statut posté au démarrage d'un build, modifié ensuite avec son résultat.
      *
-     * @param customMessage le template du message personnalisé
-     * @param build         le build Jenkins
-     * @return le message personnalisé formaté
+     * @param build le build Jenkins
+     * @return le message formaté
      */
-    private static String formatCustomMessage(String customMessage, AbstractBuild<?, ?> build) {
-        String formatted = customMessage;
+    public static String formatStartMessage(AbstractBuild<?, ?> build) {
+        return formatStartMessage(build, ParseMode.MARKDOWN).getText();
+    }
 
-        Result result = build.getResult();
-        String status = result != null ? result.toString() : "UNKNOWN";
+    /**
+     * Formate le message de statut posté au démarrage d'un build dans un mode de mise en forme donné.
+     *
+     * @param build     le build Jenkins
+     * @param parseMode le mode de mise en forme
+     * @return le message formaté
+     */
+    public static FormattedMessage formatStartMessage(AbstractBuild<?, ?> build, ParseMode parseMode) {
+        if (build == null) {
+            return FormattedMessage.of("Invalid build information");
+        }
 
-        formatted = formatted.replace("${BUILD_STATUS}", status);
-        formatted = formatted.replace("${JOB_NAME}", build.getProject().getFullDisplayName());
-        formatted = formatted.replace("${BUILD_NUMBER}", String.valueOf(build.getNumber()));
-        formatted = formatted.replace("${BUILD_DURATION}", formatDuration(build.getDuration()));
-        formatted = formatted.replace("${BUILD_URL}", build.getAbsoluteUrl());
+        FormattedMessage.Builder message = new FormattedMessage.Builder(parseMode);
+        message.append(EMOJI_STARTED).append(" Build ").appendBold("STARTED").append("\n\n");
+        appendField(message, "Job:", build.getProject().getFullDisplayName());
+        appendField(message, "Build:", "#" + build.getNumber());
 
         String cause = formatCause(build);
-        formatted = formatted.replace("${CAUSE}", cause != null ? cause : "Unknown");
+        if (cause != null && !cause.isEmpty()) {
+            appendField(message, "Started by:", cause);
+        }
+
+        return message.append("\n").appendLink("View build", build.getAbsoluteUrl()).build();
+    }
+
+    /**
+     * Formate la ligne résumant un build dans un récapitulatif.
+     * <p>
+     * Ex: "❌ MyJob [#42](http://jenkins/job/MyJob/42/) (1m 5s)"
+     *
+     * @param build le build Jenkins
+     * @return la ligne de résumé
+     */
+    public static String formatSummaryLine(AbstractBuild<?, ?> build) {
+        return formatSummaryLine(build, ParseMode.MARKDOWN).getText();
+    }
+
+    /**
+     * Formate la ligne résumant un build dans un récapitulatif, dans un mode de mise en forme donné.
+     *
+     * @param build     le build Jenkins
+     * @param parseMode le mode de mise en forme
+     * @return la ligne de résumé
+     */
+    public static FormattedMessage formatSummaryLine(AbstractBuild<?, ?> build, ParseMode parseMode) {
+        if (build == null) {
+            return FormattedMessage.of("Invalid build information");
+        }
+
+        return new FormattedMessage.Builder(parseMode)
+                .append(getEmojiForResult(build.getResult())).append(' ')
+                .appendText(build.getProject().getFullDisplayName()).append(' ')
+                .appendLink("#" + build.getNumber(), build.getAbsoluteUrl()).append(' ')
+                .appendText("(" + formatDuration(build.getDuration()) + ")")
+                .build();
+    }
+
+    /**
+     * Formate un récapitulatif regroupant plusieurs notifications d'un même chat.
+     * <p>
+     * L'en-tête compte les builds par résultat (ex: "*12 jobs FAILURE*"), suivi d'une ligne par build.
+     * Les lignes qui dépasseraient la limite de Telegram sont remplacées par "... and N more".
+     *
+     * @param statuses les résultats des builds regroupés (null pour un résultat inconnu)
+     * @param lines    les lignes de résumé, dans le même ordre
+     * @return le récapitulatif formaté
+     */
+    public static String formatDigest(List<String> statuses, List<String> lines) {
+        List<FormattedMessage> formatted = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            formatted.add(FormattedMessage.of(line));
+        }
+        return formatDigest(statuses, formatted, ParseMode.MARKDOWN).getText();
+    }
+
+    /**
+     * Formate un récapitulatif dans un mode de mise en forme donné.
+     *
+     * @param statuses  les résultats des builds regroupés (null pour un résultat inconnu)
+     * @param lines     les lignes de résumé, déjà mises en forme dans ce mode
+     * @param parseMode le mode de mise en forme
+     * @return le récapitulatif formaté
+     */
+    public static FormattedMessage formatDigest(List<String> statuses, List<FormattedMessage> lines,
+                                                ParseMode parseMode) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String status : statuses) {
+            counts.merge(status != null ? status : "UNKNOWN", 1, Integer::sum);
+        }
+
+        FormattedMessage.Builder message = new FormattedMessage.Builder(parseMode);
+        if (counts.size() == 1) {
+            message.appendBold(lines.size() + " jobs " + counts.keySet().iterator().next());
+        } else {
+            message.appendBold(lines.size() + " jobs").append(":");
+            String separator = " ";
+            for (Map.Entry<String, Integer> count : counts.entrySet()) {
+                message.append(separator).append(count.getValue()).append(" ").appendText(count.getKey());
+                separator = ", ";
+            }
+        }
+        message.append("\n\n");
+
+        // Réserve la place de la ligne "... and N more" pour rester sous la limite de Telegram
+        int limit = TelegramConfig.MAX_MESSAGE_LENGTH - 32;
+        for (int i = 0; i < lines.size(); i++) {
+            FormattedMessage line = lines.get(i);
+            if (message.length() + line.length() + 1 > limit) {
+                return message.appendText("... and " + (lines.size() - i) + " more").build();
+            }
+            message.append(line);
+            if (i < lines.size() - 1) {
+                message.append("\n");
+            }
+        }
+
+        return message.build();
+    }
+
+    /**
+     * Ajoute une ligne "*Libellé:* valeur", la valeur étant échappée.
+     */
+    private static void appendField(FormattedMessage.Builder message, String label, String value) {
+        message.appendBold(label).append(' ').appendText(value).append("\n");
+    }
 
-        return formatted;
+    /**
+     * Échappe les valeurs des variables d'un message personnalisé. Une variable inconnue, laissée telle quelle,
+     * est elle aussi échappée : {@code { }} sont réservés en MarkdownV2. Les URL ne sont échappées que si le mode
+     * le demande ({@link ParseMode#escapesUrls()}).
+     */
+    private static Function<String, String> escaping(VariableResolver variables, VariableRegistry registry,
+                                                     ParseMode parseMode) {
+        return reference -> {
+            String value = variables.apply(reference);
+            if (value == null) {
+                return parseMode.escape("${" + reference + "}");
+            }
+            if (!parseMode.escapesUrls()) {
+                TelegramVariable variable = registry.find(reference);
+                if (variable != null && variable.isUrl()) {
+                    return value;
+                }
+            }
+            return parseMode.escape(value);
+        };
     }
 
     /**
@@ -146,7 +326,7 @@ public class MessageFormatter {
      * @param build le build Jenkins
      * @return la cause formatée
      */
-    private static String formatCause(AbstractBuild<?, ?> build) {
+    public static String formatCause(AbstractBuild<?, ?> build) {
         List<Cause> causes = build.getCauses();
         if (causes.isEmpty()) {
             return "Inconnu";
@@ -157,26 +337,4 @@ public class MessageFormatter {
         Cause firstCause = causes.get(0);
         return firstCause.getShortDescription();
     }
-
-    /**
-     * Échappe les caractères spéciaux dans le texte Markdown.
-     * <p>
-     * Le parser Markdown de Telegram nécessite l'échappement de certains caractères.
-     * Cependant, il faut faire attention à ne pas casser le formatage intentionnel.
-     *
-     * @param text le texte à échapper
-     * @return le texte échappé
-     */
-    private static String escapeMarkdown(String text) {
-        if (text == null) {
-            return "";
-        }
-
-        // Échappement minimal pour préserver la lisibilité
-        // Les underscores (_) sont utilisés pour l'italique en Markdown,
-        // donc ils doivent être échappés dans les noms de projets/jobs
-        // Ex: "My_Project_Name" devient "My\_Project\_Name"
-        // Le Markdown de Telegram est assez tolérant avec les autres caractères
-        return text.replace("_", "\\_");
-    }
 }
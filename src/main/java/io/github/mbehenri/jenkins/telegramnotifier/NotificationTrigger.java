@@ -10,32 +10,39 @@ public enum NotificationTrigger {
     /**
      * Déclenche une notification quand le build réussit.
      */
-    SUCCESS("Success"),
+    SUCCESS("Success", 3),
 
     /**
      * Déclenche une notification quand le build échoue.
      */
-    FAILURE("Failure"),
+    FAILURE("Failure", 0),
 
     /**
      * Déclenche une notification quand le build est instable (ex: tests échouent mais build réussit).
      */
-    UNSTABLE("Unstable"),
+    UNSTABLE("Unstable", 1),
 
     /**
      * Déclenche une notification quand le build est interrompu.
      */
-    ABORTED("Aborted"),
+    ABORTED("Aborted", 2),
 
     /**
      * Déclenche une notification quand le build n'est pas exécuté (ex: sauté).
      */
-    NOT_BUILT("Not Built");
+    NOT_BUILT("Not Built", 3);
+
+    /**
+     * Priorité d'une notification sans résultat connu (ex: écrite dans l'outbox par une version précédente).
+     */
+    public static final int LOWEST_PRIORITY = 3;
 
     private final String displayName;
+    private final int priority;
 
-    NotificationTrigger(String displayName) {
+    NotificationTrigger(String displayName, int priority) {
         this.displayName = displayName;
+        this.priority = priority;
     }
 
     /**
@@ -47,6 +54,33 @@ public enum NotificationTrigger {
         return displayName;
     }
 
+    /**
+     * Obtient la priorité de livraison des notifications de ce déclencheur.
+     * Quand la livraison est saturée, les plus petites valeurs passent en premier (FAILURE = 0).
+     *
+     * @return le rang de priorité
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Obtient la priorité de livraison d'une notification selon le résultat de son build.
+     *
+     * @param status le résultat du build (ex: FAILURE), ou null
+     * @return le rang de priorité, {@link #LOWEST_PRIORITY} si le résultat est inconnu
+     */
+    public static int priorityOf(String status) {
+        if (status != null) {
+            for (NotificationTrigger trigger : values()) {
+                if (trigger.name().equals(status)) {
+                    return trigger.priority;
+                }
+            }
+        }
+        return LOWEST_PRIORITY;
+    }
+
     /**
      * Vérifie si ce déclencheur correspond au résultat du build donné.
      *
@@ -0,0 +1,256 @@
+package io.github.mbehenri.jenkins.telegramnotifier;
+
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramConfig;
+import io.github.mbehenri.jenkins.telegramnotifier.delivery.MessageSplitter;
+
+/**
+ * Mode de mise en forme des messages envoyés à Telegram ({@code parse_mode}).
+ * <p>
+ * Chaque mode échappe le texte libre (nom du job, cause, valeurs des variables) avec une table précalculée
+ * de 128 entrées, une par caractère ASCII : le texte est parcouru une seule fois, et renvoyé tel quel, sans
+ * allocation, quand il n'y a rien à échapper. Les caractères hors ASCII ne sont jamais échappés.
+ * <p>
+ * Le mode {@link #ENTITIES} n'utilise pas {@code parse_mode} : le message est du texte brut, sa mise en forme
+ * est envoyée à part sous forme d'entités ({@link FormattedMessage}). Il n'y a alors rien à échapper.
+ */
+public enum ParseMode {
+    /**
+     * Markdown historique de Telegram, mode par défaut : {@code _ * ` [} sont échappés hors des URLs.
+     */
+    MARKDOWN("Markdown", "Markdown (legacy)", prefixed("_*`["), prefixed(""), prefixed("")),
+
+    /**
+     * MarkdownV2 : tous les caractères réservés sont échappés, y compris dans les valeurs des variables.
+     */
+    MARKDOWN_V2("MarkdownV2", "MarkdownV2", prefixed("_*[]()~`>#+-=|{}.!\\"), prefixed(")\\"), prefixed("`\\")),
+
+    /**
+     * HTML : {@code & < > "} sont remplacés par leurs entités, y compris dans les valeurs des variables.
+     */
+    HTML("HTML", "HTML", entities(), entities(), entities()),
+
+    /**
+     * Texte brut et entités (gras, liens, code) aux positions précalculées : aucun échappement,
+     * aucune analyse du message par Telegram.
+     */
+    ENTITIES(null, "Plain text with entities", prefixed(""), prefixed(""), prefixed(""));
+
+    private static final int TABLE_SIZE = 128;
+
+    private final String apiValue;
+    private final String displayName;
+    private final String[] escapes;
+    private final String[] urlEscapes;
+    private final String[] codeEscapes;
+    private final String truncationSuffix;
+
+    ParseMode(String apiValue, String displayName, String[] escapes, String[] urlEscapes, String[] codeEscapes) {
+        this.apiValue = apiValue;
+        this.displayName = displayName;
+        this.escapes = escapes;
+        this.urlEscapes = urlEscapes;
+        this.codeEscapes = codeEscapes;
+        this.truncationSuffix = escape(escapes, TelegramConfig.TRUNCATION_SUFFIX);
+    }
+
+    /**
+     * Obtient la valeur du paramètre {@code parse_mode} de l'API.
+     *
+     * @return la valeur envoyée à Telegram (ex: MarkdownV2), ou null pour {@link #ENTITIES}
+     */
+    public String getApiValue() {
+        return apiValue;
+    }
+
+    /**
+     * Obtient le nom d'affichage du mode.
+     *
+     * @return le nom d'affichage
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Indique si les valeurs des variables d'un message personnalisé sont échappées. Le texte brut n'a rien
+     * à échapper.
+     *
+     * @return true si les valeurs des variables sont échappées
+     */
+    public boolean escapesVariables() {
+        return this != ENTITIES;
+    }
+
+    /**
+     * Indique si les valeurs des variables de type URL sont échappées. Le Markdown historique les laisse telles
+     * quelles : elles y sont souvent placées dans un lien écrit par l'utilisateur ({@code [build](${BUILD_URL})}),
+     * où un échappement casserait l'URL.
+     *
+     * @return true si les URL sont échappées comme les autres valeurs
+     */
+    public boolean escapesUrls() {
+        return this == MARKDOWN_V2 || this == HTML;
+    }
+
+    /**
+     * Échappe un texte libre.
+     *
+     * @param text le texte à échapper
+     * @return le texte échappé, la même instance s'il n'y avait rien à échapper ("" pour null)
+     */
+    public String escape(String text) {
+        return escape(escapes, text);
+    }
+
+    /**
+     * Ajoute un texte libre échappé, sans chaîne intermédiaire.
+     *
+     * @param out  la destination
+     * @param text le texte à échapper
+     * @return la destination
+     */
+    public StringBuilder appendEscaped(StringBuilder out, String text) {
+        return append(escapes, out, text, 0);
+    }
+
+    /**
+     * Ajoute un texte libre échappé, en gras.
+     *
+     * @param out  la destination
+     * @param text le texte
+     * @return la destination
+     */
+    public StringBuilder appendBold(StringBuilder out, String text) {
+        if (this == ENTITIES) {
+            return appendEscaped(out, text);
+        }
+        if (this == HTML) {
+            return appendEscaped(out.append("<b>"), text).append("</b>");
+        }
+        return appendEscaped(out.append('*'), text).append('*');
+    }
+
+    /**
+     * Ajoute un lien.
+     *
+     * @param out   la destination
+     * @param label le texte du lien, échappé
+     * @param url   l'URL, échappée selon les règles propres aux URLs du mode
+     * @return la destination
+     */
+    public StringBuilder appendLink(StringBuilder out, String label, String url) {
+        if (this == ENTITIES) {
+            return appendEscaped(out, label);
+        }
+        if (this == HTML) {
+            append(urlEscapes, out.append("<a href=\""), url, 0).append("\">");
+            return appendEscaped(out, label).append("</a>");
+        }
+        appendEscaped(out.append('['), label).append("](");
+        return append(urlEscapes, out, url, 0).append(')');
+    }
+
+    /**
+     * Ajoute un texte en police à chasse fixe. Le Markdown historique ne permet pas d'échapper un accent
+     * grave dans du code : le texte y est ajouté tel quel.
+     *
+     * @param out  la destination
+     * @param text le texte
+     * @return la destination
+     */
+    public StringBuilder appendCode(StringBuilder out, String text) {
+        if (this == ENTITIES) {
+            return appendEscaped(out, text);
+        }
+        if (this == HTML) {
+            return append(codeEscapes, out.append("<code>"), text, 0).append("</code>");
+        }
+        return append(codeEscapes, out.append('`'), text, 0).append('`');
+    }
+
+    /**
+     * Obtient l'indicateur ajouté à la fin d'un message tronqué, échappé pour le mode.
+     *
+     * @return l'indicateur de troncature
+     */
+    public String getTruncationSuffix() {
+        return truncationSuffix;
+    }
+
+    /**
+     * Tronque un message à une longueur donnée, sans couper une séquence d'échappement, une balise
+     * ou une entité HTML, ni une paire de substitution. L'entité ouverte à la coupure (gras, code,
+     * bloc, élément HTML) est refermée avant l'indicateur de troncature ({@link MessageSplitter#truncate}).
+     *
+     * @param message   le message à tronquer
+     * @param maxLength la longueur maximale, indicateur de troncature compris
+     * @return le message tronqué
+     */
+    public String truncate(String message, int maxLength) {
+        if (message == null) {
+            return "";
+        }
+        return MessageSplitter.truncate(message, maxLength, this);
+    }
+
+    private static String escape(String[] table, String text) {
+        if (text == null) {
+            return "";
+        }
+
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < TABLE_SIZE && table[c] != null) {
+                // Premier caractère à échapper : le début du texte est recopié tel quel
+                StringBuilder out = new StringBuilder(length + 16);
+                out.append(text, 0, i);
+                return append(table, out, text, i).toString();
+            }
+        }
+        return text;
+    }
+
+    private static StringBuilder append(String[] table, StringBuilder out, String text, int from) {
+        if (text == null) {
+            return out;
+        }
+
+        // Les portions sans caractère à échapper sont copiées d'un bloc
+        int length = text.length();
+        int run = from;
+        for (int i = from; i < length; i++) {
+            char c = text.charAt(i);
+            String replacement = c < TABLE_SIZE ? table[c] : null;
+            if (replacement != null) {
+                out.append(text, run, i).append(replacement);
+                run = i + 1;
+            }
+        }
+        return out.append(text, run, length);
+    }
+
+    /**
+     * @return la table préfixant chacun des caractères donnés d'une barre oblique inverse
+     */
+    private static String[] prefixed(String characters) {
+        String[] table = new String[TABLE_SIZE];
+        for (int i = 0; i < characters.length(); i++) {
+            char c = characters.charAt(i);
+            table[c] = "\\" + c;
+        }
+        return table;
+    }
+
+    /**
+     * @return la table remplaçant les caractères réservés du HTML par leurs entités
+     */
+    private static String[] entities() {
+        String[] table = new String[TABLE_SIZE];
+        table['&'] = "&amp;";
+        table['<'] = "&lt;";
+        table['>'] = "&gt;";
+        table['"'] = "&quot;";
+        return table;
+    }
+}
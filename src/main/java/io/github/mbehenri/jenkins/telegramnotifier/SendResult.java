@@ -0,0 +1,186 @@
+package io.github.mbehenri.jenkins.telegramnotifier;
+
+import io.github.mbehenri.jenkins.telegramnotifier.transport.TelegramResponseParser;
+
+import java.io.IOException;
+
+/**
+ * Résultat détaillé d'un envoi à l'API Telegram.
+ * <p>
+ * Permet de distinguer les échecs définitifs (token invalide, chat inconnu) des échecs transitoires
+ * (limite de débit, erreur serveur, erreur réseau) qui justifient une nouvelle tentative.
+ */
+public final class SendResult {
+
+    /**
+     * Code HTTP renvoyé par Telegram quand la limite de débit est dépassée.
+     */
+    public static final int TOO_MANY_REQUESTS = 429;
+
+    private static final SendResult REJECTED = new SendResult(false, 0, -1, false);
+    private static final SendResult UNAVAILABLE = new SendResult(false, 0, -1, true);
+
+    private final boolean success;
+    private final int statusCode;
+    private final long retryAfterSeconds;
+    private final boolean transientError;
+    private final String description;
+    private final long migrateToChatId;
+    private final long messageId;
+
+    private SendResult(boolean success, int statusCode, long retryAfterSeconds, boolean transientError) {
+        this(success, statusCode, retryAfterSeconds, transientError, null, 0, -1);
+    }
+
+    private SendResult(boolean success, int statusCode, long retryAfterSeconds, boolean transientError,
+                       String description, long migrateToChatId, long messageId) {
+        this.success = success;
+        this.statusCode = statusCode;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.transientError = transientError;
+        this.description = description;
+        this.migrateToChatId = migrateToChatId;
+        this.messageId = messageId;
+    }
+
+    /**
+     * Crée le résultat d'une réponse HTTP de l'API Telegram.
+     *
+     * @param statusCode le code de statut HTTP
+     * @param body       le corps de la réponse
+     * @return le résultat correspondant
+     */
+    public static SendResult fromResponse(int statusCode, String body) {
+        return fromParsedResponse(statusCode, TelegramResponseParser.parse(body));
+    }
+
+    /**
+     * Crée le résultat d'une réponse HTTP analysée en flux.
+     *
+     * @param statusCode le code de statut HTTP
+     * @param response   les champs extraits du corps de la réponse
+     * @return le résultat correspondant
+     */
+    public static SendResult fromParsedResponse(int statusCode, TelegramResponseParser response) {
+        boolean success = statusCode >= 200 && statusCode < 300;
+        if (success) {
+            return new SendResult(true, statusCode, -1, false, null, 0, response.getMessageId());
+        }
+        return new SendResult(false, statusCode, response.getRetryAfter(), false,
+                response.getDescription(), response.getMigrateToChatId(), -1);
+    }
+
+    /**
+     * Crée le résultat d'un envoi interrompu par une exception.
+     * Les erreurs d'entrée/sortie (timeout, connexion refusée, DNS) sont considérées comme transitoires.
+     *
+     * @param error l'erreur rencontrée
+     * @return le résultat correspondant
+     */
+    public static SendResult fromException(Throwable error) {
+        return new SendResult(false, 0, -1, error instanceof IOException);
+    }
+
+    /**
+     * Résultat d'une modification de message refusée par Telegram car le texte est inchangé :
+     * le message affiche déjà le contenu voulu, la modification est donc considérée comme réussie.
+     *
+     * @param messageId l'identifiant du message modifié
+     * @return le résultat correspondant
+     */
+    public static SendResult unchanged(long messageId) {
+        return new SendResult(true, 200, -1, false, null, 0, messageId);
+    }
+
+    /**
+     * Résultat d'un envoi refusé avant toute requête (paramètres invalides).
+     *
+     * @return le résultat correspondant
+     */
+    public static SendResult rejected() {
+        return REJECTED;
+    }
+
+    /**
+     * Résultat d'un envoi non tenté car l'API Telegram est considérée indisponible (circuit ouvert).
+     * L'échec est transitoire : la notification reste à livrer.
+     *
+     * @return le résultat correspondant
+     */
+    public static SendResult unavailable() {
+        return UNAVAILABLE;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * Obtient le code de statut HTTP.
+     *
+     * @return le code de statut, ou 0 si aucune réponse n'a été reçue
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Obtient le délai imposé par Telegram ({@code parameters.retry_after}).
+     *
+     * @return le délai en secondes, ou -1 s'il n'est pas renseigné
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * Obtient la description de l'erreur renvoyée par Telegram.
+     *
+     * @return la description (ex: "Bad Request: chat not found"), ou null
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Obtient le nouvel ID du chat quand un groupe est devenu un supergroupe
+     * ({@code parameters.migrate_to_chat_id}).
+     *
+     * @return le nouvel ID du chat, ou 0 s'il n'y a pas eu de migration
+     */
+    public long getMigrateToChatId() {
+        return migrateToChatId;
+    }
+
+    /**
+     * Obtient l'ID du message envoyé ({@code result.message_id}).
+     *
+     * @return l'ID du message, ou -1 s'il n'est pas connu
+     */
+    public long getMessageId() {
+        return messageId;
+    }
+
+    /**
+     * Indique si l'échec est transitoire et justifie une nouvelle tentative :
+     * limite de débit (429), erreur serveur (5xx) ou erreur réseau.
+     *
+     * @return true si l'envoi peut être retenté
+     */
+    public boolean isRetryable() {
+        return !success && (transientError || statusCode == TOO_MANY_REQUESTS || statusCode >= 500);
+    }
+
+    /**
+     * Extrait {@code parameters.retry_after} d'une réponse d'erreur Telegram.
+     * <p>
+     * Ex: {@code {"ok":false,"error_code":429,"description":"Too Many Requests: retry after 5",
+     * "parameters":{"retry_after":5}}}
+     *
+     * @param body le corps de la réponse
+     * @return le délai en secondes, ou -1 s'il est absent
+     */
+    static long parseRetryAfter(String body) {
+        return TelegramResponseParser.parse(body).getRetryAfter();
+    }
+}
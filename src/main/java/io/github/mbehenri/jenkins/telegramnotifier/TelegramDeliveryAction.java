@@ -0,0 +1,61 @@
+package io.github.mbehenri.jenkins.telegramnotifier;
+
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Action attachée au build qui conserve le résultat d'une livraison asynchrone.
+ * <p>
+ * Le log du build peut être fermé quand la livraison se termine : le résultat est donc
+ * enregistré sur le build lui-même et persisté avec lui.
+ */
+public class TelegramDeliveryAction extends InvisibleAction {
+
+    private static final Logger LOGGER = Logger.getLogger(TelegramDeliveryAction.class.getName());
+
+    /**
+     * États possibles d'une livraison.
+     */
+    public enum Status {
+        PENDING,
+        SENT,
+        FAILED
+    }
+
+    private volatile Status status = Status.PENDING;
+    private volatile long completedAt;
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Obtient la date de fin de livraison.
+     *
+     * @return le timestamp en millisecondes, ou 0 si la livraison est en cours
+     */
+    public long getCompletedAt() {
+        return completedAt;
+    }
+
+    /**
+     * Enregistre le résultat de la livraison et sauvegarde le build.
+     *
+     * @param run     le build notifié
+     * @param success true si la notification a été livrée
+     */
+    public void complete(Run<?, ?> run, boolean success) {
+        status = success ? Status.SENT : Status.FAILED;
+        completedAt = System.currentTimeMillis();
+
+        try {
+            run.save();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Impossible d'enregistrer le résultat de la livraison sur le build", e);
+        }
+    }
+}
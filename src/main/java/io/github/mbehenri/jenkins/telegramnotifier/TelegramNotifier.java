@@ -18,6 +18,14 @@ import hudson.tasks.Notifier;
 import hudson.tasks.Publisher;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramConfig;
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramGlobalConfiguration;
+import io.github.mbehenri.jenkins.telegramnotifier.delivery.Notification;
+import io.github.mbehenri.jenkins.telegramnotifier.delivery.NotificationCoalescer;
+import io.github.mbehenri.jenkins.telegramnotifier.delivery.NotificationDispatcher;
+import io.github.mbehenri.jenkins.telegramnotifier.delivery.StatusMessageTracker;
+import io.github.mbehenri.jenkins.telegramnotifier.template.MessageTemplate;
+import io.github.mbehenri.jenkins.telegramnotifier.template.VariableRegistry;
 import jenkins.model.Jenkins;
 import org.jenkinsci.plugins.plaincredentials.StringCredentials;
 import org.kohsuke.stapler.AncestorInPath;
@@ -32,6 +40,10 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -56,6 +68,21 @@ public class TelegramNotifier extends Notifier {
 
     private String customMessage = "";
 
+    /**
+     * Message personnalisé compilé à l'enregistrement de la configuration, ou au premier build après un chargement.
+     */
+    private transient volatile MessageTemplate compiledMessage;
+
+    private boolean asyncDelivery = false;
+
+    private int coalesceWindowSeconds = 0;
+
+    private boolean attachLogOnFailure = false;
+
+    private boolean updateInPlace = false;
+
+    private ParseMode parseMode = ParseMode.MARKDOWN;
+
     /**
      * Constructeur pour TelegramNotifier.
      *
@@ -128,6 +155,114 @@ public class TelegramNotifier extends Notifier {
     @DataBoundSetter
     public void setCustomMessage(String customMessage) {
         this.customMessage = customMessage;
+        this.compiledMessage = MessageTemplate.compile(customMessage);
+    }
+
+    /**
+     * Obtient le message personnalisé compilé, compilé une seule fois pour tous les builds.
+     *
+     * @return le template compilé
+     */
+    MessageTemplate getCompiledMessage() {
+        MessageTemplate compiled = compiledMessage;
+        if (compiled == null) {
+            // Champ transient : absent après le chargement de la configuration depuis le disque
+            compiled = MessageTemplate.compile(customMessage);
+            compiledMessage = compiled;
+        }
+        return compiled;
+    }
+
+    public boolean isAsyncDelivery() {
+        return asyncDelivery;
+    }
+
+    @DataBoundSetter
+    public void setAsyncDelivery(boolean asyncDelivery) {
+        this.asyncDelivery = asyncDelivery;
+    }
+
+    public int getCoalesceWindowSeconds() {
+        return coalesceWindowSeconds;
+    }
+
+    /**
+     * Définit la fenêtre de regroupement des notifications du chat (0 pour désactiver le regroupement).
+     *
+     * @param coalesceWindowSeconds la fenêtre en secondes, bornée à {@link TelegramConfig#MAX_COALESCE_WINDOW_SECONDS}
+     */
+    @DataBoundSetter
+    public void setCoalesceWindowSeconds(int coalesceWindowSeconds) {
+        this.coalesceWindowSeconds = Math.max(0, Math.min(coalesceWindowSeconds, TelegramConfig.MAX_COALESCE_WINDOW_SECONDS));
+    }
+
+    public boolean isAttachLogOnFailure() {
+        return attachLogOnFailure;
+    }
+
+    @DataBoundSetter
+    public void setAttachLogOnFailure(boolean attachLogOnFailure) {
+        this.attachLogOnFailure = attachLogOnFailure;
+    }
+
+    public boolean isUpdateInPlace() {
+        return updateInPlace;
+    }
+
+    /**
+     * Active le message de statut unique : posté au démarrage du build puis modifié avec son résultat
+     * ({@code editMessageText}), au lieu d'un nouveau message par notification.
+     *
+     * @param updateInPlace true pour modifier le message de statut du build
+     */
+    @DataBoundSetter
+    public void setUpdateInPlace(boolean updateInPlace) {
+        this.updateInPlace = updateInPlace;
+    }
+
+    /**
+     * Obtient le mode de mise en forme des messages.
+     *
+     * @return le mode de mise en forme, Markdown historique pour une configuration antérieure à ce réglage
+     */
+    public ParseMode getParseMode() {
+        return parseMode != null ? parseMode : ParseMode.MARKDOWN;
+    }
+
+    /**
+     * Définit le mode de mise en forme des messages ({@code parse_mode}), dans lequel le message personnalisé
+     * est écrit.
+     *
+     * @param parseMode le mode de mise en forme
+     */
+    @DataBoundSetter
+    public void setParseMode(ParseMode parseMode) {
+        this.parseMode = parseMode;
+    }
+
+    /**
+     * Poste le message de statut au démarrage du build, si la mise à jour sur place est activée.
+     * Le build n'attend pas la livraison et n'échoue jamais à cause d'elle.
+     */
+    @Override
+    public boolean prebuild(AbstractBuild<?, ?> build, BuildListener listener) {
+        if (!updateInPlace) {
+            return true;
+        }
+
+        String botToken = retrieveCredential(telegramTokenCredentialId, build.getProject());
+        String chatId = retrieveCredential(telegramChatIdCredentialId, build.getProject());
+        if (botToken == null || botToken.trim().isEmpty() || chatId == null || chatId.trim().isEmpty()) {
+            // Signalé à la fin du build par perform()
+            return true;
+        }
+
+        StatusMessageTracker.get().open(build.getExternalizableId(),
+                new Notification(botToken, chatId, null)
+                        .withParseMode(getParseMode())
+                        .withMessage(MessageFormatter.formatStartMessage(build, getParseMode())));
+        listener.getLogger().println("Telegram Notifier: Build status message posted");
+        return true;
     }
 
     @Override
@@ -138,8 +273,12 @@ public class TelegramNotifier extends Notifier {
 
         // Vérifie si une notification doit être envoyée pour ce résultat de build
         // selon les triggers configurés par l'utilisateur (Success, Failure, etc.)
+        // Le message de statut déjà posté n'est alors pas modifié : il reste le message de démarrage
         Set<NotificationTrigger> triggers = getConfiguredTriggers();
         if (!NotificationTrigger.shouldNotify(triggers, result)) {
+            if (updateInPlace) {
+                StatusMessageTracker.get().close(build.getExternalizableId());
+            }
             listener.getLogger().println("Telegram Notifier: No notification needed for build result: " + result);
             return true;
         }
@@ -164,12 +303,75 @@ public class TelegramNotifier extends Notifier {
         }
 
         // Formate le message avec les informations du build et le message personnalisé
-        String message = MessageFormatter.formatMessage(build, customMessage);
+        ParseMode mode = getParseMode();
+        FormattedMessage message = MessageFormatter.formatMessage(build, getCompiledMessage(), mode);
+
+        Notification notification = new Notification(botToken, chatId, null, result != null ? result.toString() : null,
+                null)
+                .withParseMode(mode)
+                .withMessage(message)
+                .withSummary(MessageFormatter.formatSummaryLine(build, mode))
+                // Un même résultat du même build n'est annoncé qu'une fois à un chat (relance, rejeu de l'outbox)
+                .withIdempotencyKey(Notification.idempotencyKey(build.getParent().getFullName(),
+                        build.getNumber(), String.valueOf(result), chatId));
+
+        // Le log console est joint en flux (compressé à la volée), jamais chargé en mémoire
+        if (attachLogOnFailure && result == Result.FAILURE) {
+            notification = notification.withAttachment(
+                    new Attachment("console-" + build.getNumber() + ".log", build::getLogInputStream));
+        }
 
-        // Envoie la notification via l'API Telegram
+        // Le message de statut posté au démarrage est modifié avec le résultat, sans attendre
+        if (updateInPlace) {
+            TelegramDeliveryAction action = new TelegramDeliveryAction();
+            build.addAction(action);
+            StatusMessageTracker.get().update(build.getExternalizableId(), notification, true)
+                    .thenAccept(success -> action.complete(build, success));
+            listener.getLogger().println("Telegram Notifier: Build status message update queued");
+            return true;
+        }
+
+        // En mode asynchrone, la notification est confiée au dispatcher et le build continue
+        // immédiatement; le résultat est enregistré sur le build via TelegramDeliveryAction.
+        // Pendant une panne de l'API (circuit ouvert), le mode synchrone se comporte de même
+        // pour que le build n'attende pas les timeouts réseau; de même pour une notification
+        // regroupée, qui ne part qu'à la fermeture de la fenêtre de son chat
+        NotificationDispatcher dispatcher = NotificationDispatcher.get();
+        if (asyncDelivery || coalesceWindowSeconds > 0 || dispatcher.isUnavailable(notification)) {
+            TelegramDeliveryAction action = new TelegramDeliveryAction();
+            build.addAction(action);
+            // Seul le thread du build peut attendre une place dans la file (politique BLOCK) : pas le planificateur
+            // qui ferme les fenêtres de regroupement
+            CompletableFuture<Boolean> delivery = coalesceWindowSeconds > 0
+                    ? NotificationCoalescer.get().submit(notification, coalesceWindowSeconds)
+                    : dispatcher.dispatch(notification, true);
+            delivery.thenAccept(success -> action.complete(build, success));
+            if (coalesceWindowSeconds > 0) {
+                listener.getLogger().println("Telegram Notifier: Notification queued for grouped delivery within "
+                        + coalesceWindowSeconds + "s");
+            } else if (asyncDelivery) {
+                listener.getLogger().println("Telegram Notifier: Notification queued for asynchronous delivery");
+            } else {
+                listener.getLogger().println("Telegram Notifier: Telegram API unavailable, notification deferred");
+            }
+            return true;
+        }
+
+        // Envoie la notification via l'API Telegram et attend le résultat
+        // Le dispatcher applique les limites de débit de Telegram avant l'envoi et retente les
+        // échecs transitoires; l'attente est bornée, les tentatives restantes continuent en arrière-plan
         listener.getLogger().println("Telegram Notifier: Sending notification...");
-        TelegramSender sender = new TelegramSender();
-        boolean success = sender.sendMessage(botToken, chatId, message);
+        boolean success;
+        try {
+            success = dispatcher.dispatch(notification, true)
+                    .get(TelegramGlobalConfiguration.get().getMessageTimeoutSeconds(), TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            listener.getLogger().println("Telegram Notifier: Notification still pending, delivery continues in background");
+            return true;
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.SEVERE, "Erreur inattendue lors de la livraison de la notification", e);
+            success = false;
+        }
 
         if (success) {
             listener.getLogger().println("Telegram Notifier: Notification sent successfully");
@@ -330,5 +532,26 @@ public class TelegramNotifier extends Notifier {
 
             return FormValidation.ok();
         }
+
+        /**
+         * Valide le message personnalisé : les variables inconnues seraient envoyées telles quelles.
+         */
+        @POST
+        public FormValidation doCheckCustomMessage(
+                @AncestorInPath Item context,
+                @QueryParameter String value) {
+
+            if (context == null || !context.hasPermission(Item.CONFIGURE)) {
+                return FormValidation.ok();
+            }
+
+            Set<String> unknown = MessageTemplate.compile(value).getUnknownVariables(VariableRegistry.get()::isKnown);
+            if (!unknown.isEmpty()) {
+                return FormValidation.warning("Variables inconnues, envoyées telles quelles : ${"
+                        + String.join("}, ${", unknown) + "}");
+            }
+
+            return FormValidation.ok();
+        }
     }
 }
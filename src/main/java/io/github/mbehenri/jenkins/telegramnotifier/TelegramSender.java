@@ -1,15 +1,24 @@
 package io.github.mbehenri.jenkins.telegramnotifier;
 
 import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramConfig;
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramGlobalConfiguration;
+import io.github.mbehenri.jenkins.telegramnotifier.transport.JsonRequestEncoder;
+import io.github.mbehenri.jenkins.telegramnotifier.transport.MultipartBody;
+import io.github.mbehenri.jenkins.telegramnotifier.transport.TelegramHttpEngine;
+import io.github.mbehenri.jenkins.telegramnotifier.transport.TelegramResponseParser;
 
 import java.io.IOException;
 import java.net.URI;
-import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
+import java.net.http.HttpTimeoutException;
 import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -17,11 +26,70 @@ import java.util.logging.Logger;
  * Classe de service pour l'envoi de messages à Telegram via l'API Bot.
  * <p>
  * Cette classe est sans état et thread-safe, adaptée à l'exécution parallèle de builds.
+ * Les requêtes passent par le client HTTP partagé de {@link TelegramHttpEngine}. L'URL de base de l'API et
+ * les timeouts proviennent de {@link TelegramGlobalConfiguration}, relue à chaque envoi.
+ * <p>
+ * Le timeout configuré d'un message n'est qu'un plafond : le timeout effectif est dérivé du p99 des latences
+ * observées vers l'hôte ({@link io.github.mbehenri.jenkins.telegramnotifier.transport.LatencyTracker}), et
+ * borné par le budget restant de la notification.
  */
 public class TelegramSender {
 
     private static final Logger LOGGER = Logger.getLogger(TelegramSender.class.getName());
 
+    // Fragments JSON constants, encodés une seule fois
+    private static final byte[] CHAT_ID = JsonRequestEncoder.key("chat_id");
+    private static final byte[] TEXT = JsonRequestEncoder.key("text");
+    private static final byte[] MESSAGE_ID = JsonRequestEncoder.key("message_id");
+    private static final byte[] ENTITIES = JsonRequestEncoder.key("entities");
+    private static final byte[] OFFSET = JsonRequestEncoder.key("offset");
+    private static final byte[] LENGTH = JsonRequestEncoder.key("length");
+    private static final byte[] URL = JsonRequestEncoder.key("url");
+    private static final Map<ParseMode, byte[]> PARSE_MODES = new EnumMap<>(ParseMode.class);
+    private static final Map<MessageEntities.Type, byte[]> ENTITY_TYPES = new EnumMap<>(MessageEntities.Type.class);
+
+    static {
+        for (ParseMode mode : ParseMode.values()) {
+            // Le texte brut n'a pas de parse_mode : sa mise en forme est dans ses entités
+            if (mode.getApiValue() != null) {
+                PARSE_MODES.put(mode, JsonRequestEncoder.constant("parse_mode", mode.getApiValue()));
+            }
+        }
+        for (MessageEntities.Type type : MessageEntities.Type.values()) {
+            ENTITY_TYPES.put(type, JsonRequestEncoder.constant("type", type.getApiValue()));
+        }
+    }
+
+    private final HttpClient client;
+    private final String apiBaseUrl;
+
+    /**
+     * Crée un sender utilisant le client HTTP partagé du moteur de transport.
+     */
+    public TelegramSender() {
+        this(null);
+    }
+
+    /**
+     * Crée un sender utilisant un client HTTP spécifique (ex: tests).
+     *
+     * @param client le client HTTP à utiliser, ou null pour le client partagé
+     */
+    public TelegramSender(HttpClient client) {
+        this(client, null);
+    }
+
+    /**
+     * Crée un sender adressant un serveur Bot API spécifique (ex: serveur local, tests).
+     *
+     * @param client     le client HTTP à utiliser, ou null pour le client partagé
+     * @param apiBaseUrl l'URL de base de l'API (ex: http://localhost:8081), ou null pour la configuration globale
+     */
+    public TelegramSender(HttpClient client, String apiBaseUrl) {
+        this.client = client;
+        this.apiBaseUrl = apiBaseUrl != null ? TelegramGlobalConfiguration.normalizeApiBaseUrl(apiBaseUrl) : null;
+    }
+
     /**
      * Envoie un message à Telegram.
      *
@@ -31,99 +99,415 @@ public class TelegramSender {
      * @return true si le message a été envoyé avec succès, false sinon
      */
     public boolean sendMessage(String botToken, String chatId, String message) {
-        if (botToken == null || botToken.trim().isEmpty()) {
-            LOGGER.log(Level.WARNING, "Le token du bot est vide, impossible d'envoyer le message");
+        if (!isValid(botToken, chatId, message)) {
             return false;
         }
 
-        if (chatId == null || chatId.trim().isEmpty()) {
-            LOGGER.log(Level.WARNING, "L'ID du chat est vide, impossible d'envoyer le message");
+        try {
+            HttpRequest request = buildRequest(botToken, "sendMessage", buildRequestBody(chatId, FormattedMessage.of(message), ParseMode.MARKDOWN), null);
+
+            LOGGER.log(Level.FINE, "Envoi du message à l'API Telegram");
+
+            HttpResponse<TelegramResponseParser> response = client().send(request, TelegramResponseParser.bodyHandler());
+            return handleResponse(response).isSuccess();
+
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Erreur IO lors de l'envoi du message à Telegram", e);
+            return false;
+        } catch (InterruptedException e) {
+            LOGGER.log(Level.SEVERE, "La requête à Telegram a été interrompue", e);
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Erreur inattendue lors de l'envoi du message à Telegram", e);
             return false;
         }
+    }
 
-        if (message == null || message.trim().isEmpty()) {
-            LOGGER.log(Level.WARNING, "Le message est vide, rien à envoyer");
-            return false;
+    /**
+     * Envoie un message à Telegram sans bloquer le thread appelant.
+     * <p>
+     * L'échange HTTP et le traitement de la réponse s'exécutent sur le pool de livraison du client.
+     * Le future n'échoue jamais : les erreurs sont loggées et se traduisent par {@code false},
+     * comme pour {@link #sendMessage(String, String, String)}.
+     *
+     * @param botToken le token du bot Telegram
+     * @param chatId   l'ID du chat cible
+     * @param message  le message à envoyer
+     * @return un future complété avec true si le message a été envoyé avec succès, false sinon
+     */
+    public CompletableFuture<Boolean> sendMessageAsync(String botToken, String chatId, String message) {
+        return sendAsync(botToken, chatId, message).thenApply(SendResult::isSuccess);
+    }
+
+    /**
+     * Envoie un message à Telegram sans bloquer le thread appelant et retourne le résultat détaillé.
+     * <p>
+     * Le résultat permet de décider d'une nouvelle tentative : code HTTP, délai {@code retry_after}
+     * imposé par Telegram, erreur réseau transitoire. Le future n'échoue jamais.
+     *
+     * @param botToken le token du bot Telegram
+     * @param chatId   l'ID du chat cible
+     * @param message  le message à envoyer
+     * @return un future complété avec le résultat de l'envoi
+     */
+    public CompletableFuture<SendResult> sendAsync(String botToken, String chatId, String message) {
+        return sendAsync(botToken, chatId, message, null);
+    }
+
+    /**
+     * Envoie un message à Telegram sans bloquer le thread appelant, dans la limite d'un budget de temps.
+     * <p>
+     * Le timeout de la requête est le plus court du timeout adaptatif de l'hôte et du budget restant :
+     * une notification qui a déjà consommé son budget en nouvelles tentatives n'attend pas un timeout complet.
+     *
+     * @param botToken le token du bot Telegram
+     * @param chatId   l'ID du chat cible
+     * @param message  le message à envoyer
+     * @param budget   le temps restant à la notification, ou null pour le seul timeout adaptatif
+     * @return un future complété avec le résultat de l'envoi
+     */
+    public CompletableFuture<SendResult> sendAsync(String botToken, String chatId, String message, Duration budget) {
+        return sendAsync(botToken, chatId, FormattedMessage.of(message), ParseMode.MARKDOWN, budget);
+    }
+
+    /**
+     * Envoie un message mis en forme dans un mode donné ({@code parse_mode}), dans la limite d'un budget de temps.
+     * En mode {@link ParseMode#ENTITIES}, le texte est envoyé sans {@code parse_mode}, avec ses entités.
+     *
+     * @param botToken  le token du bot Telegram
+     * @param chatId    l'ID du chat cible
+     * @param message   le message à envoyer
+     * @param parseMode le mode de mise en forme du message
+     * @param budget    le temps restant à la notification, ou null pour le seul timeout adaptatif
+     * @return un future complété avec le résultat de l'envoi
+     */
+    public CompletableFuture<SendResult> sendAsync(String botToken, String chatId, FormattedMessage message,
+                                                   ParseMode parseMode, Duration budget) {
+        if (!isValid(botToken, chatId, message.getText())) {
+            return CompletableFuture.completedFuture(SendResult.rejected());
         }
 
         try {
-            String apiUrl = buildApiUrl(botToken);
-            String requestBody = buildRequestBody(chatId, message);
+            HttpRequest request = buildRequest(botToken, "sendMessage",
+                    buildRequestBody(chatId, message, parseMode), budget);
 
-            HttpClient client = HttpClient.newBuilder()
-                    .connectTimeout(Duration.ofSeconds(TelegramConfig.REQUEST_TIMEOUT_SECONDS))
-                    .build();
+            LOGGER.log(Level.FINE, "Envoi asynchrone du message à l''API Telegram (timeout {0} ms)",
+                    request.timeout().map(Duration::toMillis).orElse(-1L));
+
+            return execute(request, true);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Erreur inattendue lors de l'envoi du message à Telegram", e);
+            return CompletableFuture.completedFuture(SendResult.fromException(e));
+        }
+    }
+
+    /**
+     * Remplace le texte d'un message déjà envoyé ({@code editMessageText}) sans bloquer le thread appelant.
+     * <p>
+     * Mêmes timeout et budget que {@link #sendAsync(String, String, String, Duration)}. Un texte identique
+     * à celui du message est refusé par Telegram ("message is not modified") : il n'y a alors rien à modifier,
+     * et l'édition est considérée comme réussie. Le future n'échoue jamais.
+     *
+     * @param botToken  le token du bot Telegram
+     * @param chatId    l'ID du chat du message
+     * @param messageId l'identifiant du message à modifier
+     * @param message   le nouveau texte
+     * @param budget    le temps restant à la notification, ou null pour le seul timeout adaptatif
+     * @return un future complété avec le résultat de la modification
+     */
+    public CompletableFuture<SendResult> editMessageTextAsync(String botToken, String chatId, long messageId,
+                                                              String message, Duration budget) {
+        return editMessageTextAsync(botToken, chatId, messageId, FormattedMessage.of(message), ParseMode.MARKDOWN,
+                budget);
+    }
+
+    /**
+     * Remplace le texte d'un message déjà envoyé par un texte mis en forme dans un mode donné.
+     *
+     * @param botToken  le token du bot Telegram
+     * @param chatId    l'ID du chat du message
+     * @param messageId l'identifiant du message à modifier
+     * @param message   le nouveau texte, entités comprises
+     * @param parseMode le mode de mise en forme du texte
+     * @param budget    le temps restant à la notification, ou null pour le seul timeout adaptatif
+     * @return un future complété avec le résultat de la modification
+     */
+    public CompletableFuture<SendResult> editMessageTextAsync(String botToken, String chatId, long messageId,
+                                                              FormattedMessage message, ParseMode parseMode,
+                                                              Duration budget) {
+        if (!isValid(botToken, chatId, message.getText())) {
+            return CompletableFuture.completedFuture(SendResult.rejected());
+        }
+
+        try {
+            JsonRequestEncoder body = JsonRequestEncoder.get()
+                    .field(CHAT_ID, chatId)
+                    .field(MESSAGE_ID, messageId)
+                    .field(TEXT, message.getText());
+            HttpRequest request = buildRequest(botToken, "editMessageText",
+                    formatting(body, message, parseMode).toByteArray(), budget);
+
+            LOGGER.log(Level.FINE, "Modification asynchrone du message {0} du chat {1}",
+                    new Object[]{messageId, chatId});
+
+            return execute(request, true).thenApply(result -> isNotModified(result)
+                    ? SendResult.unchanged(messageId)
+                    : result);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Erreur inattendue lors de la modification du message Telegram", e);
+            return CompletableFuture.completedFuture(SendResult.fromException(e));
+        }
+    }
+
+    /**
+     * Envoie un fichier joint à Telegram ({@code sendDocument}) sans bloquer le thread appelant.
+     * <p>
+     * Le contenu est lu en flux depuis sa source et compressé en gzip à la volée dans le corps
+     * {@code multipart/form-data} de la requête : un log de plusieurs centaines de Mo n'est jamais
+     * chargé en mémoire. Le future n'échoue jamais.
+     *
+     * @param botToken   le token du bot Telegram
+     * @param chatId     l'ID du chat cible
+     * @param attachment le fichier joint
+     * @param caption    la légende du fichier, ou null
+     * @return un future complété avec le résultat de l'envoi
+     */
+    public CompletableFuture<SendResult> sendDocumentAsync(String botToken, String chatId,
+                                                           Attachment attachment, String caption) {
+        if (!isValid(botToken, chatId, attachment != null ? attachment.getFileName() : null)) {
+            return CompletableFuture.completedFuture(SendResult.rejected());
+        }
+
+        try {
+            MultipartBody body = new MultipartBody().field("chat_id", chatId);
+            if (caption != null && !caption.trim().isEmpty()) {
+                body.field("caption", caption).field("parse_mode", TelegramConfig.PARSE_MODE);
+            }
+            body.gzipFile("document", attachment);
 
             HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(apiUrl))
-                    .timeout(Duration.ofSeconds(TelegramConfig.REQUEST_TIMEOUT_SECONDS))
-                    .header("Content-Type", "application/x-www-form-urlencoded")
-                    .POST(HttpRequest.BodyPublishers.ofString(requestBody))
+                    .uri(URI.create(buildApiUrl(botToken, "sendDocument")))
+                    .timeout(Duration.ofSeconds(TelegramGlobalConfiguration.get().getDocumentTimeoutSeconds()))
+                    .header("Content-Type", body.contentType())
+                    .POST(body.publisher())
                     .build();
 
-            LOGGER.log(Level.FINE, "Envoi du message à l'API Telegram");
+            LOGGER.log(Level.FINE, "Envoi asynchrone du fichier {0} à l''API Telegram", attachment.getFileName());
 
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            return execute(request, false);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Erreur inattendue lors de l'envoi du fichier à Telegram", e);
+            return CompletableFuture.completedFuture(SendResult.fromException(e));
+        }
+    }
 
-            if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                LOGGER.log(Level.INFO, "Message envoyé avec succès à Telegram");
-                return true;
-            } else {
-                LOGGER.log(Level.WARNING, "Échec de l'envoi du message à Telegram. Code statut: {0}, Réponse: {1}",
-                        new Object[]{response.statusCode(), response.body()});
-                return false;
-            }
+    /**
+     * Appelle {@code getMe} pour vérifier le token et la disponibilité du serveur (test de connexion).
+     *
+     * @param botToken le token du bot Telegram
+     * @return la réponse HTTP brute
+     * @throws IOException          si le serveur est injoignable
+     * @throws InterruptedException si l'appel est interrompu
+     */
+    public HttpResponse<String> getMe(String botToken) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(buildApiUrl(botToken, "getMe")))
+                .timeout(Duration.ofSeconds(TelegramGlobalConfiguration.get().getProbeTimeoutSeconds()))
+                .GET()
+                .build();
 
-        } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "Erreur IO lors de l'envoi du message à Telegram", e);
+        return client().send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Exécute une requête de manière asynchrone et interprète la réponse.
+     * <p>
+     * La requête attend qu'un flux HTTP/2 (ou une connexion HTTP/1.1) soit disponible vers l'hôte de l'API :
+     * un afflux d'envois est multiplexé sur peu de connexions au lieu d'en ouvrir une par envoi.
+     * La durée d'un échange mesuré est comptée à partir de son départ effectif, hors attente d'un flux.
+     *
+     * @param request la requête HTTP
+     * @param timed   true pour alimenter le suivi des latences (messages), false si la durée dépend
+     *                de la taille du contenu (fichiers joints)
+     * @return un future complété avec le résultat, jamais en erreur
+     */
+    private CompletableFuture<SendResult> execute(HttpRequest request, boolean timed) {
+        HttpClient httpClient = client();
+        return TelegramHttpEngine.get().getConcurrencyLimiter()
+                .submit(request.uri(), () -> {
+                    long start = System.nanoTime();
+                    CompletableFuture<HttpResponse<TelegramResponseParser>> exchange =
+                            httpClient.sendAsync(request, TelegramResponseParser.bodyHandler());
+                    return timed ? exchange.whenComplete((response, error) -> recordLatency(request, start, error))
+                            : exchange;
+                })
+                .thenApply(this::handleResponse)
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    LOGGER.log(Level.WARNING, "Erreur lors de l'envoi asynchrone à Telegram", cause);
+                    return SendResult.fromException(cause);
+                });
+    }
+
+    /**
+     * Enregistre la durée d'un échange. Un échange coupé par son timeout compte pour la durée du timeout,
+     * pour que le timeout adaptatif remonte quand l'API ralentit; une erreur de connexion n'est pas comptée.
+     */
+    private static void recordLatency(HttpRequest request, long start, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause != null && !(cause instanceof HttpTimeoutException)) {
+            return;
+        }
+        TelegramHttpEngine.get().getLatencyTracker().record(request.uri(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Vérifie que les paramètres d'envoi sont renseignés.
+     *
+     * @param botToken le token du bot
+     * @param chatId   l'ID du chat
+     * @param message  le message
+     * @return true si l'envoi peut être tenté, false sinon
+     */
+    private boolean isValid(String botToken, String chatId, String message) {
+        if (botToken == null || botToken.trim().isEmpty()) {
+            LOGGER.log(Level.WARNING, "Le token du bot est vide, impossible d'envoyer le message");
             return false;
-        } catch (InterruptedException e) {
-            LOGGER.log(Level.SEVERE, "La requête à Telegram a été interrompue", e);
-            Thread.currentThread().interrupt();
+        }
+
+        if (chatId == null || chatId.trim().isEmpty()) {
+            LOGGER.log(Level.WARNING, "L'ID du chat est vide, impossible d'envoyer le message");
             return false;
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Erreur inattendue lors de l'envoi du message à Telegram", e);
+        }
+
+        if (message == null || message.trim().isEmpty()) {
+            LOGGER.log(Level.WARNING, "Le message est vide, rien à envoyer");
             return false;
         }
+
+        return true;
     }
 
     /**
-     * Construit l'URL de l'API Telegram pour l'envoi de messages.
+     * Indique si Telegram a refusé une modification parce que le texte est inchangé.
+     */
+    private static boolean isNotModified(SendResult result) {
+        return result.getStatusCode() == 400 && result.getDescription() != null
+                && result.getDescription().contains("message is not modified");
+    }
+
+    /**
+     * Construit la requête HTTP JSON d'une méthode d'envoi de message.
      *
      * @param botToken le token du bot
-     * @return l'URL de l'API
+     * @param method   la méthode de l'API (sendMessage, editMessageText)
+     * @param body     le corps JSON de la requête
+     * @param budget   le temps restant à la notification, ou null
+     * @return la requête HTTP
      */
-    private String buildApiUrl(String botToken) {
-        return TelegramConfig.TELEGRAM_API_URL + botToken + "/sendMessage";
+    private HttpRequest buildRequest(String botToken, String method, byte[] body, Duration budget) {
+        URI uri = URI.create(buildApiUrl(botToken, method));
+        long timeout = TelegramHttpEngine.get().getLatencyTracker().timeoutMillis(uri,
+                TimeUnit.SECONDS.toMillis(TelegramGlobalConfiguration.get().getMessageTimeoutSeconds()));
+        if (budget != null) {
+            timeout = Math.max(1, Math.min(timeout, budget.toMillis()));
+        }
+        return HttpRequest.newBuilder()
+                .uri(uri)
+                .timeout(Duration.ofMillis(timeout))
+                .header("Content-Type", JsonRequestEncoder.CONTENT_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
     }
 
     /**
-     * Construit le corps de la requête pour l'API Telegram.
+     * Interprète la réponse de l'API Telegram, analysée en flux à sa réception.
      *
-     * @param chatId  l'ID du chat
-     * @param message le message
-     * @return le corps de la requête encodé en URL
+     * @param response la réponse HTTP
+     * @return le résultat de l'envoi
      */
-    private String buildRequestBody(String chatId, String message) {
-        StringBuilder body = new StringBuilder();
-        body.append("chat_id=").append(urlEncode(chatId));
-        body.append("&text=").append(urlEncode(message));
-        body.append("&parse_mode=").append(urlEncode(TelegramConfig.PARSE_MODE));
-        return body.toString();
+    private SendResult handleResponse(HttpResponse<TelegramResponseParser> response) {
+        SendResult result = SendResult.fromParsedResponse(response.statusCode(), response.body());
+        if (result.isSuccess()) {
+            LOGGER.log(Level.INFO, "Message envoyé avec succès à Telegram");
+        } else {
+            LOGGER.log(Level.WARNING, "Échec de l''envoi du message à Telegram. Code statut: {0}, Description: {1}",
+                    new Object[]{response.statusCode(), result.getDescription()});
+        }
+        return result;
     }
 
     /**
-     * Encode une valeur en URL.
+     * Obtient le client HTTP à utiliser : celui fourni au constructeur, sinon le client partagé.
+     * Le client partagé est résolu à chaque envoi pour suivre un redémarrage du moteur.
      *
-     * @param value la valeur à encoder
-     * @return la valeur encodée en URL
+     * @return le client HTTP
      */
-    private String urlEncode(String value) {
-        try {
-            return URLEncoder.encode(value, StandardCharsets.UTF_8.toString());
-        } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Échec de l'encodage URL, utilisation de la valeur originale", e);
-            return value;
+    private HttpClient client() {
+        return client != null ? client : TelegramHttpEngine.get().getClient();
+    }
+
+    /**
+     * Obtient l'URL de base de l'API : celle fournie au constructeur, sinon celle de la configuration globale.
+     *
+     * @return l'URL de base
+     */
+    private String apiBaseUrl() {
+        return apiBaseUrl != null ? apiBaseUrl : TelegramGlobalConfiguration.get().getApiBaseUrl();
+    }
+
+    /**
+     * Construit l'URL d'une méthode de l'API Telegram.
+     *
+     * @param botToken le token du bot
+     * @param method   la méthode de l'API (ex: sendMessage)
+     * @return l'URL de l'API
+     */
+    private String buildApiUrl(String botToken, String method) {
+        return apiBaseUrl() + "/bot" + botToken + "/" + method;
+    }
+
+    /**
+     * Construit le corps JSON de la requête {@code sendMessage}.
+     *
+     * @param chatId    l'ID du chat
+     * @param message   le message
+     * @param parseMode le mode de mise en forme du message
+     * @return le corps de la requête encodé en UTF-8
+     */
+    private byte[] buildRequestBody(String chatId, FormattedMessage message, ParseMode parseMode) {
+        JsonRequestEncoder body = JsonRequestEncoder.get()
+                .field(CHAT_ID, chatId)
+                .field(TEXT, message.getText());
+        return formatting(body, message, parseMode).toByteArray();
+    }
+
+    /**
+     * Ajoute la mise en forme d'un message : son {@code parse_mode}, ou ses entités en mode
+     * {@link ParseMode#ENTITIES} (positions et longueurs en unités UTF-16, sans recodage).
+     */
+    private static JsonRequestEncoder formatting(JsonRequestEncoder body, FormattedMessage message,
+                                                 ParseMode parseMode) {
+        byte[] field = PARSE_MODES.get(parseMode);
+        if (field != null) {
+            return body.raw(field);
+        }
+
+        MessageEntities entities = message.getEntities();
+        if (entities.isEmpty()) {
+            return body;
+        }
+        body.beginArray(ENTITIES);
+        for (int i = 0; i < entities.size(); i++) {
+            body.beginObject()
+                    .raw(ENTITY_TYPES.get(entities.getType(i)))
+                    .field(OFFSET, entities.getOffset(i))
+                    .field(LENGTH, entities.getLength(i))
+                    .field(URL, entities.getUrl(i))
+                    .endObject();
         }
+        return body.endArray();
     }
 }
@@ -6,25 +6,250 @@ package io.github.mbehenri.jenkins.telegramnotifier.config;
 public final class TelegramConfig {
 
     /**
-     * URL de base de l'API Telegram Bot.
+     * URL de base par défaut de l'API Telegram Bot, remplaçable dans la configuration globale
+     * (ex: serveur Bot API local).
      */
-    public static final String TELEGRAM_API_URL = "https://api.telegram.org/bot";
+    public static final String DEFAULT_API_BASE_URL = "https://api.telegram.org";
 
     /**
-     * Timeout des requêtes HTTP en secondes.
+     * Timeout par défaut des requêtes HTTP en secondes : plafond du timeout adaptatif d'un envoi de message.
      */
     public static final int REQUEST_TIMEOUT_SECONDS = 30;
 
     /**
-     * Mode de parsing pour le formatage des messages.
+     * Timeout d'établissement d'une connexion (DNS, TCP, TLS) en secondes.
+     */
+    public static final int CONNECT_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Nombre de latences récentes conservées par hôte pour estimer le p99.
+     */
+    public static final int LATENCY_WINDOW_SAMPLES = 128;
+
+    /**
+     * Nombre de latences mesurées vers un hôte en dessous duquel le timeout configuré s'applique tel quel.
+     */
+    public static final int LATENCY_MIN_SAMPLES = 20;
+
+    /**
+     * Marge appliquée au p99 des latences observées pour obtenir le timeout adaptatif d'un envoi.
+     */
+    public static final int ADAPTIVE_TIMEOUT_P99_FACTOR = 3;
+
+    /**
+     * Timeout adaptatif minimal d'un envoi, pour ne pas couper un envoi à peine plus lent que d'habitude.
+     */
+    public static final long ADAPTIVE_TIMEOUT_MIN_MILLIS = 2_000;
+
+    /**
+     * Timeout par défaut d'envoi d'un fichier joint (ex: log console), plus long que celui d'un message.
+     */
+    public static final int DOCUMENT_TIMEOUT_SECONDS = 300;
+
+    /**
+     * Timeout par défaut de la sonde {@code getMe} utilisée pour tester la connexion.
+     */
+    public static final int PROBE_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Timeout maximal configurable pour un appel à l'API.
+     */
+    public static final int MAX_TIMEOUT_SECONDS = 3600;
+
+    /**
+     * Mode de parsing par défaut pour le formatage des messages
+     * ({@link io.github.mbehenri.jenkins.telegramnotifier.ParseMode#MARKDOWN}).
      */
     public static final String PARSE_MODE = "Markdown";
 
+    /**
+     * Indicateur ajouté à la fin d'un message tronqué.
+     */
+    public static final String TRUNCATION_SUFFIX = "\n\n... (message truncated)";
+
+    /**
+     * Nombre de threads du pool dédié à la livraison asynchrone des notifications.
+     */
+    public static final int DELIVERY_THREADS = 4;
+
+    /**
+     * Nombre maximal de tâches de livraison exécutées simultanément sur threads virtuels (Java 21+).
+     */
+    public static final int DELIVERY_MAX_CONCURRENCY = 64;
+
+    /**
+     * Nombre maximal par défaut de requêtes simultanées multiplexées sur la connexion HTTP/2 d'un hôte.
+     */
+    public static final int HTTP2_MAX_CONCURRENT_STREAMS = 100;
+
+    /**
+     * Nombre maximal par défaut de connexions keep-alive vers un hôte ne parlant que HTTP/1.1.
+     */
+    public static final int HTTP1_MAX_CONNECTIONS = 8;
+
+    /**
+     * Borne supérieure configurable des deux limites de concurrence par hôte.
+     */
+    public static final int MAX_HOST_CONCURRENCY = 1000;
+
+    /**
+     * Nombre maximal par défaut de notifications en cours de livraison (file bornée du dispatcher).
+     */
+    public static final int DISPATCH_QUEUE_CAPACITY = 1000;
+
+    /**
+     * Borne supérieure configurable de la capacité de la file de livraison.
+     */
+    public static final int MAX_DISPATCH_QUEUE_CAPACITY = 100_000;
+
+    /**
+     * Attente maximale par défaut d'une place dans la file pleine, avec la politique BLOCK.
+     */
+    public static final int DISPATCH_BLOCK_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Nombre maximal de notifications d'un même bot en cours de livraison : au-delà, elles attendent dans la
+     * file par ordre de priorité au lieu de s'accumuler dans le limiteur de débit.
+     */
+    public static final int DISPATCH_MAX_RUNNING_PER_BOT = 30;
+
+    /**
+     * Attente équivalente à un rang de priorité : un SUCCESS (rang 3) en attente depuis 30 s passe devant
+     * un FAILURE (rang 0) qui vient d'arriver.
+     */
+    public static final long PRIORITY_AGING_MILLIS = 10_000;
+
+    /**
+     * Nombre maximal de clés d'idempotence conservées : au-delà, les livraisons les plus anciennes sont oubliées.
+     */
+    public static final int DEDUP_MAX_ENTRIES = 10_000;
+
+    /**
+     * Durée pendant laquelle une notification livrée n'est pas renvoyée (24 heures).
+     */
+    public static final long DEDUP_TTL_MILLIS = 24L * 60 * 60 * 1000;
+
+    /**
+     * Débit maximal d'un bot tous chats confondus (limite documentée par Telegram).
+     */
+    public static final int BOT_MESSAGES_PER_SECOND = 30;
+
+    /**
+     * Débit maximal vers un même chat privé.
+     */
+    public static final int PRIVATE_CHAT_MESSAGES_PER_SECOND = 1;
+
+    /**
+     * Débit maximal vers un même groupe ou canal.
+     */
+    public static final int GROUP_CHAT_MESSAGES_PER_MINUTE = 20;
+
+    /**
+     * Nombre maximal de tentatives de livraison d'une notification (première tentative incluse).
+     */
+    public static final int MAX_DELIVERY_ATTEMPTS = 5;
+
+    /**
+     * Délai de base avant la première nouvelle tentative, doublé à chaque échec.
+     */
+    public static final long RETRY_INITIAL_BACKOFF_MILLIS = 1000;
+
+    /**
+     * Délai maximal entre deux tentatives.
+     */
+    public static final long RETRY_MAX_BACKOFF_MILLIS = 60_000;
+
+    /**
+     * Âge maximal d'une notification au-delà duquel les nouvelles tentatives sont abandonnées.
+     */
+    public static final long RETRY_MAX_AGE_MILLIS = 10 * 60_000;
+
+    /**
+     * Fenêtre de regroupement maximale des notifications d'un même chat.
+     */
+    public static final int MAX_COALESCE_WINDOW_SECONDS = 300;
+
+    /**
+     * Nombre de derniers envois observés par le circuit breaker de chaque bot.
+     */
+    public static final int CIRCUIT_WINDOW_SIZE = 20;
+
+    /**
+     * Nombre minimal d'envois observés avant que le circuit breaker puisse s'ouvrir.
+     */
+    public static final int CIRCUIT_MINIMUM_CALLS = 5;
+
+    /**
+     * Pourcentage d'échecs (ou d'envois lents) de la fenêtre au-delà duquel le circuit s'ouvre.
+     */
+    public static final int CIRCUIT_FAILURE_RATE_THRESHOLD = 50;
+
+    /**
+     * Durée au-delà de laquelle un envoi est considéré lent par le circuit breaker.
+     */
+    public static final long CIRCUIT_SLOW_CALL_MILLIS = 10_000;
+
+    /**
+     * Durée pendant laquelle un circuit ouvert refuse les envois avant d'autoriser une sonde.
+     */
+    public static final long CIRCUIT_OPEN_MILLIS = 30_000;
+
+    /**
+     * Répertoire de l'outbox des notifications, relatif à JENKINS_HOME.
+     */
+    public static final String OUTBOX_DIRECTORY = "telegram-notifier/outbox";
+
+    /**
+     * Taille d'un segment de l'outbox au-delà de laquelle un nouveau segment est ouvert.
+     */
+    public static final long OUTBOX_SEGMENT_MAX_BYTES = 4L * 1024 * 1024;
+
+    /**
+     * Intervalle de regroupement des fsync de l'outbox.
+     */
+    public static final long OUTBOX_FSYNC_INTERVAL_MILLIS = 200;
+
+    /**
+     * Âge au-delà duquel une notification en attente n'est plus rejouée (au démarrage ou après une panne).
+     */
+    public static final long OUTBOX_MAX_REPLAY_AGE_MILLIS = 24 * 60 * 60_000L;
+
+    /**
+     * Délai avant une nouvelle livraison des notifications abandonnées pendant une panne de l'API,
+     * sans attendre un redémarrage.
+     */
+    public static final long OUTBOX_RETRY_INTERVAL_MILLIS = 5 * 60_000L;
+
+    /**
+     * Temps accordé au calcul d'une variable de message avec entrées/sorties (ex: environnement du build).
+     */
+    public static final long VARIABLE_IO_TIMEOUT_MILLIS = 2_000;
+
+    /**
+     * Temps accordé au calcul d'une variable de message coûteuse (ex: liste des changements).
+     */
+    public static final long VARIABLE_EXPENSIVE_TIMEOUT_MILLIS = 5_000;
+
+    /**
+     * Nombre maximal de variables de message coûteuses calculées simultanément.
+     */
+    public static final int VARIABLE_RESOLUTION_THREADS = 4;
+
+    /**
+     * Nombre maximal de changements listés par la variable ${CHANGES}.
+     */
+    public static final int MAX_CHANGES_LISTED = 10;
+
     /**
      * Longueur maximale de message autorisée par l'API Telegram.
      */
     public static final int MAX_MESSAGE_LENGTH = 4096;
 
+    /**
+     * Nombre maximal de parties d'un message long découpé en plusieurs messages.
+     */
+    public static final int MAX_MESSAGE_PARTS = 10;
+
     private TelegramConfig() {
         // Empêche l'instanciation
     }
@@ -36,16 +261,25 @@ public final class TelegramConfig {
      * @return le message tronqué
      */
     public static String truncateMessage(String message) {
+        return truncateMessage(message, MAX_MESSAGE_LENGTH);
+    }
+
+    /**
+     * Tronque un message à une longueur donnée.
+     *
+     * @param message   le message à tronquer
+     * @param maxLength la longueur maximale, indicateur de troncature compris
+     * @return le message tronqué
+     */
+    public static String truncateMessage(String message, int maxLength) {
         if (message == null) {
             return "";
         }
 
-        if (message.length() <= MAX_MESSAGE_LENGTH) {
+        if (message.length() <= maxLength) {
             return message;
         }
 
-        String truncationSuffix = "\n\n... (message truncated)";
-        int maxLength = MAX_MESSAGE_LENGTH - truncationSuffix.length();
-        return message.substring(0, maxLength) + truncationSuffix;
+        return message.substring(0, maxLength - TRUNCATION_SUFFIX.length()) + TRUNCATION_SUFFIX;
     }
 }
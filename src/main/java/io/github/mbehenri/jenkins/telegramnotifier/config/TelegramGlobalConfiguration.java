@@ -0,0 +1,369 @@
+package io.github.mbehenri.jenkins.telegramnotifier.config;
+
+import com.cloudbees.plugins.credentials.CredentialsMatchers;
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
+import com.cloudbees.plugins.credentials.domains.DomainRequirement;
+import hudson.Extension;
+import hudson.security.ACL;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import io.github.mbehenri.jenkins.telegramnotifier.TelegramSender;
+import io.github.mbehenri.jenkins.telegramnotifier.delivery.DispatchQueue;
+import io.github.mbehenri.jenkins.telegramnotifier.transport.TelegramHttpEngine;
+import jenkins.model.GlobalConfiguration;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+import org.jenkinsci.Symbol;
+import org.jenkinsci.plugins.plaincredentials.StringCredentials;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.verb.POST;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpResponse;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Configuration globale du plugin (Administrer Jenkins > System > Telegram Notifier).
+ * <p>
+ * Permet de pointer le plugin vers un serveur Bot API auto-hébergé (ex: {@code http://telegram-bot-api:8081})
+ * au lieu de {@code api.telegram.org}, d'ajuster les timeouts de chaque type d'appel et de borner la file
+ * des notifications en cours de livraison.
+ * Hors d'une instance Jenkins (ex: tests unitaires), {@link #get()} retourne les valeurs par défaut.
+ */
+@Extension
+@Symbol("telegramNotifier")
+public class TelegramGlobalConfiguration extends GlobalConfiguration {
+
+    private static final Logger LOGGER = Logger.getLogger(TelegramGlobalConfiguration.class.getName());
+
+    private static final TelegramGlobalConfiguration DEFAULTS = new TelegramGlobalConfiguration(false);
+
+    private String apiBaseUrl = TelegramConfig.DEFAULT_API_BASE_URL;
+    private int messageTimeoutSeconds = TelegramConfig.REQUEST_TIMEOUT_SECONDS;
+    private int documentTimeoutSeconds = TelegramConfig.DOCUMENT_TIMEOUT_SECONDS;
+    private int probeTimeoutSeconds = TelegramConfig.PROBE_TIMEOUT_SECONDS;
+    private int maxConcurrentStreams = TelegramConfig.HTTP2_MAX_CONCURRENT_STREAMS;
+    private int maxHttp1Connections = TelegramConfig.HTTP1_MAX_CONNECTIONS;
+    private int queueCapacity = TelegramConfig.DISPATCH_QUEUE_CAPACITY;
+    private DispatchQueue.OverflowPolicy overflowPolicy = DispatchQueue.OverflowPolicy.SPILL_TO_DISK;
+    private int queueBlockTimeoutSeconds = TelegramConfig.DISPATCH_BLOCK_TIMEOUT_SECONDS;
+
+    /**
+     * Crée la configuration et charge les valeurs enregistrées.
+     */
+    public TelegramGlobalConfiguration() {
+        this(true);
+    }
+
+    private TelegramGlobalConfiguration(boolean load) {
+        if (load) {
+            load();
+        }
+    }
+
+    /**
+     * Obtient la configuration globale.
+     *
+     * @return la configuration enregistrée, ou les valeurs par défaut hors d'une instance Jenkins
+     */
+    @Nonnull
+    public static TelegramGlobalConfiguration get() {
+        if (Jenkins.getInstanceOrNull() == null) {
+            return DEFAULTS;
+        }
+        TelegramGlobalConfiguration configuration = GlobalConfiguration.all().get(TelegramGlobalConfiguration.class);
+        return configuration != null ? configuration : DEFAULTS;
+    }
+
+    @Nonnull
+    @Override
+    public String getDisplayName() {
+        return "Telegram Notifier";
+    }
+
+    @Override
+    public boolean configure(StaplerRequest req, JSONObject json) throws FormException {
+        req.bindJSON(this, json);
+        save();
+        // L'URL de l'API a pu changer : la connexion est (re)préchauffée en arrière-plan
+        TelegramHttpEngine.get().warmUp(apiBaseUrl);
+        return true;
+    }
+
+    /**
+     * Obtient l'URL de base de l'API, sans {@code /bot} ni slash final.
+     *
+     * @return l'URL de base (ex: https://api.telegram.org)
+     */
+    public String getApiBaseUrl() {
+        return apiBaseUrl;
+    }
+
+    @DataBoundSetter
+    public void setApiBaseUrl(String apiBaseUrl) {
+        this.apiBaseUrl = normalizeApiBaseUrl(apiBaseUrl);
+    }
+
+    public int getMessageTimeoutSeconds() {
+        return messageTimeoutSeconds;
+    }
+
+    @DataBoundSetter
+    public void setMessageTimeoutSeconds(int messageTimeoutSeconds) {
+        this.messageTimeoutSeconds = clampTimeout(messageTimeoutSeconds);
+    }
+
+    public int getDocumentTimeoutSeconds() {
+        return documentTimeoutSeconds;
+    }
+
+    @DataBoundSetter
+    public void setDocumentTimeoutSeconds(int documentTimeoutSeconds) {
+        this.documentTimeoutSeconds = clampTimeout(documentTimeoutSeconds);
+    }
+
+    public int getProbeTimeoutSeconds() {
+        return probeTimeoutSeconds;
+    }
+
+    @DataBoundSetter
+    public void setProbeTimeoutSeconds(int probeTimeoutSeconds) {
+        this.probeTimeoutSeconds = clampTimeout(probeTimeoutSeconds);
+    }
+
+    /**
+     * Obtient le nombre maximal de requêtes simultanées multiplexées sur la connexion HTTP/2 d'un hôte.
+     *
+     * @return le nombre maximal de flux simultanés
+     */
+    public int getMaxConcurrentStreams() {
+        return maxConcurrentStreams;
+    }
+
+    @DataBoundSetter
+    public void setMaxConcurrentStreams(int maxConcurrentStreams) {
+        this.maxConcurrentStreams = clampConcurrency(maxConcurrentStreams);
+    }
+
+    /**
+     * Obtient la taille du pool de connexions keep-alive vers un hôte ne parlant que HTTP/1.1.
+     *
+     * @return le nombre maximal de connexions
+     */
+    public int getMaxHttp1Connections() {
+        return maxHttp1Connections;
+    }
+
+    @DataBoundSetter
+    public void setMaxHttp1Connections(int maxHttp1Connections) {
+        this.maxHttp1Connections = clampConcurrency(maxHttp1Connections);
+    }
+
+    /**
+     * Obtient le nombre maximal de notifications en cours de livraison.
+     *
+     * @return la capacité de la file de livraison
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    @DataBoundSetter
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = Math.max(1, Math.min(TelegramConfig.MAX_DISPATCH_QUEUE_CAPACITY, queueCapacity));
+    }
+
+    /**
+     * Obtient le comportement quand la file de livraison est pleine.
+     *
+     * @return la politique de débordement
+     */
+    @Nonnull
+    public DispatchQueue.OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy != null ? overflowPolicy : DispatchQueue.OverflowPolicy.SPILL_TO_DISK;
+    }
+
+    @DataBoundSetter
+    public void setOverflowPolicy(DispatchQueue.OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Obtient l'attente maximale d'une place dans la file pleine, avec la politique BLOCK.
+     *
+     * @return l'attente maximale en secondes
+     */
+    public int getQueueBlockTimeoutSeconds() {
+        return queueBlockTimeoutSeconds;
+    }
+
+    @DataBoundSetter
+    public void setQueueBlockTimeoutSeconds(int queueBlockTimeoutSeconds) {
+        this.queueBlockTimeoutSeconds = clampTimeout(queueBlockTimeoutSeconds);
+    }
+
+    /**
+     * Remplit le menu déroulant du credential utilisé pour tester la connexion.
+     */
+    @POST
+    public ListBoxModel doFillTestTokenCredentialIdItems(@QueryParameter String testTokenCredentialId) {
+        if (!Jenkins.get().hasPermission(Jenkins.ADMINISTER)) {
+            return new StandardListBoxModel().includeCurrentValue(testTokenCredentialId);
+        }
+
+        return new StandardListBoxModel()
+                .includeEmptyValue()
+                .includeAs(ACL.SYSTEM, Jenkins.get(), StringCredentials.class)
+                .includeCurrentValue(testTokenCredentialId);
+    }
+
+    /**
+     * Valide l'URL de base de l'API.
+     */
+    @POST
+    public FormValidation doCheckApiBaseUrl(@QueryParameter String value) {
+        if (!Jenkins.get().hasPermission(Jenkins.ADMINISTER)) {
+            return FormValidation.ok();
+        }
+
+        if (value == null || value.trim().isEmpty()) {
+            return FormValidation.ok("URL par défaut : " + TelegramConfig.DEFAULT_API_BASE_URL);
+        }
+
+        URI uri;
+        try {
+            uri = new URI(normalizeApiBaseUrl(value));
+        } catch (URISyntaxException e) {
+            return FormValidation.error("URL invalide : " + e.getMessage());
+        }
+
+        String scheme = uri.getScheme();
+        if (uri.getHost() == null || !("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) {
+            return FormValidation.error("L'URL doit commencer par http:// ou https:// et contenir un hôte");
+        }
+
+        if ("http".equalsIgnoreCase(scheme) && !isLocalHost(uri.getHost())) {
+            return FormValidation.warning("Le token du bot transitera en clair : réservez http:// à un serveur du réseau local");
+        }
+
+        return FormValidation.ok();
+    }
+
+    /**
+     * Teste la connexion à l'API en appelant {@code getMe} et mesure sa latence.
+     */
+    @POST
+    public FormValidation doTestConnection(@QueryParameter String apiBaseUrl,
+                                           @QueryParameter String testTokenCredentialId) {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+
+        if (testTokenCredentialId == null || testTokenCredentialId.trim().isEmpty()) {
+            return FormValidation.error("Veuillez sélectionner un credential de token du bot");
+        }
+
+        StringCredentials credential = CredentialsMatchers.firstOrNull(
+                CredentialsProvider.lookupCredentials(
+                        StringCredentials.class,
+                        Jenkins.get(),
+                        ACL.SYSTEM,
+                        Collections.<DomainRequirement>emptyList()),
+                CredentialsMatchers.withId(testTokenCredentialId));
+        if (credential == null) {
+            return FormValidation.error("Credential du token du bot introuvable");
+        }
+
+        String baseUrl = normalizeApiBaseUrl(apiBaseUrl);
+        TelegramSender sender = new TelegramSender(null, baseUrl);
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> response = sender.getMe(credential.getSecret().getPlainText());
+            long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            if (response.statusCode() != 200) {
+                return FormValidation.error("Réponse HTTP %d de %s en %d ms",
+                        response.statusCode(), baseUrl, latencyMillis);
+            }
+
+            String username = parseUsername(response.body());
+            return FormValidation.ok("Connecté à @%s via %s en %d ms",
+                    username != null ? username : "?", baseUrl, latencyMillis);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Échec du test de connexion à l'API Telegram", e);
+            return FormValidation.error("Impossible de joindre %s : %s", baseUrl, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return FormValidation.error("Test de connexion interrompu");
+        }
+    }
+
+    /**
+     * Normalise une URL de base : espaces, slash final et suffixe {@code /bot} sont retirés.
+     * Une valeur vide désigne l'API publique de Telegram.
+     *
+     * @param url l'URL saisie
+     * @return l'URL de base normalisée
+     */
+    public static String normalizeApiBaseUrl(String url) {
+        if (url == null || url.trim().isEmpty()) {
+            return TelegramConfig.DEFAULT_API_BASE_URL;
+        }
+
+        String normalized = url.trim();
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        if (normalized.endsWith("/bot")) {
+            normalized = normalized.substring(0, normalized.length() - "/bot".length());
+        }
+        return normalized;
+    }
+
+    /**
+     * Extrait {@code result.username} d'une réponse {@code getMe}.
+     * <p>
+     * Ex: {@code {"ok":true,"result":{"id":42,"is_bot":true,"username":"jenkins_bot"}}}
+     *
+     * @param body le corps de la réponse
+     * @return le nom du bot, ou null s'il est absent
+     */
+    static String parseUsername(String body) {
+        if (body == null) {
+            return null;
+        }
+
+        int key = body.indexOf("\"username\"");
+        if (key < 0) {
+            return null;
+        }
+
+        int open = body.indexOf('"', body.indexOf(':', key) + 1);
+        int close = open >= 0 ? body.indexOf('"', open + 1) : -1;
+        return close > open ? body.substring(open + 1, close) : null;
+    }
+
+    private static int clampTimeout(int seconds) {
+        return Math.max(1, Math.min(TelegramConfig.MAX_TIMEOUT_SECONDS, seconds));
+    }
+
+    private static int clampConcurrency(int value) {
+        return Math.max(1, Math.min(TelegramConfig.MAX_HOST_CONCURRENCY, value));
+    }
+
+    private static boolean isLocalHost(String host) {
+        return "localhost".equalsIgnoreCase(host)
+                || host.startsWith("127.")
+                || host.startsWith("10.")
+                || host.startsWith("192.168.")
+                || host.matches("172\\.(1[6-9]|2\\d|3[01])\\..*")
+                || !host.contains(".");
+    }
+}
@@ -0,0 +1,495 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+import hudson.model.Result;
+import io.github.mbehenri.jenkins.telegramnotifier.NotificationTrigger;
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramConfig;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * File bornée entre {@link io.github.mbehenri.jenkins.telegramnotifier.TelegramNotifier#perform} et la livraison.
+ * <p>
+ * Chaque notification confiée au {@link NotificationDispatcher} occupe une place de la file depuis son admission
+ * jusqu'à la fin de sa livraison (nouvelles tentatives comprises). Sans cette borne, une panne de l'API pendant
+ * un afflux de builds accumulerait les notifications dans le tas du contrôleur.
+ * <p>
+ * Quand la file est pleine, la {@link OverflowPolicy} choisie s'applique :
+ * <ul>
+ *     <li>{@link OverflowPolicy#BLOCK} : l'appelant attend une place, au plus le délai configuré, puis la
+ *     notification est abandonnée. Seul le thread d'un build attend ({@link #offer(Notification, long)}); le
+ *     planificateur et les fins de livraison ne sont jamais bloqués ({@link #offerWithoutBlocking})</li>
+ *     <li>{@link OverflowPolicy#DROP_OLDEST_SUCCESS} : la plus ancienne notification en attente moins prioritaire
+ *     que la nouvelle est abandonnée, en commençant par les builds SUCCESS; à défaut, la nouvelle est abandonnée</li>
+ *     <li>{@link OverflowPolicy#SPILL_TO_DISK} : la notification reste dans l'outbox sans être gardée en mémoire,
+ *     et est relue dès qu'une place se libère</li>
+ * </ul>
+ * <p>
+ * La file ordonnance aussi les livraisons : au plus {@link TelegramConfig#DISPATCH_MAX_RUNNING_PER_BOT} notifications
+ * d'un même bot sont en cours à la fois, et une seule par chat. Les autres attendent par ordre de priorité
+ * ({@link NotificationTrigger#getPriority()} : FAILURE, puis UNSTABLE, ABORTED et SUCCESS) : une alerte d'échec
+ * ne patiente pas derrière des centaines de SUCCESS. Chaque rang de priorité vaut
+ * {@link TelegramConfig#PRIORITY_AGING_MILLIS} ms d'attente, si bien qu'une notification moins prioritaire finit
+ * toujours par passer (vieillissement). À priorité égale, l'ordre d'arrivée est conservé, dans un chat comme entre chats.
+ * <p>
+ * La profondeur, la latence d'admission et les compteurs d'abandon sont exposés pour la supervision.
+ */
+public class DispatchQueue {
+
+    private static final String SUCCESS = Result.SUCCESS.toString();
+
+    /**
+     * Ordre de départ des notifications en attente : date d'arrivée retardée de leur rang de priorité.
+     */
+    private static final Comparator<Ticket> SCHEDULING_ORDER =
+            Comparator.<Ticket>comparingLong(ticket -> ticket.startOrder).thenComparingLong(ticket -> ticket.sequence);
+
+    /**
+     * Comportement quand la file est pleine.
+     */
+    public enum OverflowPolicy {
+        BLOCK,
+        DROP_OLDEST_SUCCESS,
+        SPILL_TO_DISK
+    }
+
+    /**
+     * États d'une notification vis-à-vis de la file.
+     */
+    public enum State {
+        /** Admise, en attente de son tour. */
+        QUEUED,
+        /** En cours de livraison. */
+        RUNNING,
+        /** Conservée dans l'outbox seulement, en attente d'une place. */
+        SPILLED,
+        /** Abandonnée faute de place. */
+        DROPPED,
+        /** Livrée ou définitivement échouée, place libérée. */
+        DONE
+    }
+
+    /**
+     * Place d'une notification dans la file.
+     */
+    public static final class Ticket {
+
+        private final long outboxId;
+        private final String status;
+        private final String botKey;
+        private final String chatKey;
+        private final long sequence;
+        private final long startOrder;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        private Notification notification;
+        private State state;
+        private Ticket displaced;
+        private volatile long messageId = -1;
+
+        Ticket(Notification notification, long outboxId, long sequence, long startOrder) {
+            this.notification = notification;
+            this.outboxId = outboxId;
+            this.status = notification.getStatus();
+            this.botKey = TelegramRateLimiter.botKey(notification.getBotToken());
+            this.chatKey = TelegramRateLimiter.chatKey(botKey, notification.getChatId());
+            this.sequence = sequence;
+            this.startOrder = startOrder;
+        }
+
+        /**
+         * Obtient la notification.
+         *
+         * @return la notification, ou null si elle a été déchargée sur disque
+         */
+        public synchronized Notification getNotification() {
+            return notification;
+        }
+
+        synchronized void setNotification(Notification notification) {
+            this.notification = notification;
+        }
+
+        public long getOutboxId() {
+            return outboxId;
+        }
+
+        public synchronized State getState() {
+            return state;
+        }
+
+        /**
+         * Obtient la notification abandonnée pour faire place à celle-ci ({@link OverflowPolicy#DROP_OLDEST_SUCCESS}).
+         *
+         * @return la notification évincée, ou null
+         */
+        public Ticket getDisplaced() {
+            return displaced;
+        }
+
+        /**
+         * Obtient le résultat de la livraison, complété par le dispatcher.
+         *
+         * @return un future complété avec true si la notification a été livrée
+         */
+        public CompletableFuture<Boolean> getResult() {
+            return result;
+        }
+
+        /**
+         * Obtient l'identifiant Telegram du message livré, renseigné avant que le résultat ne soit complété.
+         *
+         * @return l'identifiant du message, ou -1 si la notification n'a pas été livrée
+         */
+        public long getMessageId() {
+            return messageId;
+        }
+
+        void setMessageId(long messageId) {
+            this.messageId = messageId;
+        }
+    }
+
+    private final IntSupplier capacity;
+    private final Supplier<OverflowPolicy> policy;
+    private final IntSupplier blockTimeoutSeconds;
+    private final int maxRunningPerBot;
+    private final long agingNanos;
+
+    private final NavigableSet<Ticket> queued = new TreeSet<>(SCHEDULING_ORDER);
+    private final Deque<Ticket> spilled = new ArrayDeque<>();
+    private final Map<String, Integer> runningPerBot = new HashMap<>();
+    private final Map<String, Ticket> runningPerChat = new HashMap<>();
+    private int running;
+    private long nextSequence;
+
+    private long admitted;
+    private long dropped;
+    private long totalSpilled;
+    private long admissionNanos;
+    private long maxAdmissionNanos;
+
+    /**
+     * Crée une file à capacité et politique fixes (ex: tests).
+     *
+     * @param capacity            le nombre maximal de notifications admises
+     * @param policy              la politique quand la file est pleine
+     * @param blockTimeoutSeconds l'attente maximale d'une place avec {@link OverflowPolicy#BLOCK}
+     */
+    public DispatchQueue(int capacity, OverflowPolicy policy, int blockTimeoutSeconds) {
+        this(() -> capacity, () -> policy, () -> blockTimeoutSeconds);
+    }
+
+    /**
+     * Crée une file dont les réglages sont relus à chaque admission (ex: configuration globale).
+     *
+     * @param capacity            le nombre maximal de notifications admises
+     * @param policy              la politique quand la file est pleine
+     * @param blockTimeoutSeconds l'attente maximale d'une place avec {@link OverflowPolicy#BLOCK}
+     */
+    public DispatchQueue(IntSupplier capacity, Supplier<OverflowPolicy> policy, IntSupplier blockTimeoutSeconds) {
+        this(capacity, policy, blockTimeoutSeconds,
+                TelegramConfig.DISPATCH_MAX_RUNNING_PER_BOT, TelegramConfig.PRIORITY_AGING_MILLIS);
+    }
+
+    /**
+     * Crée une file avec un ordonnancement spécifique (ex: tests).
+     *
+     * @param capacity            le nombre maximal de notifications admises
+     * @param policy              la politique quand la file est pleine
+     * @param blockTimeoutSeconds l'attente maximale d'une place avec {@link OverflowPolicy#BLOCK}
+     * @param maxRunningPerBot    le nombre maximal de notifications d'un bot en cours de livraison
+     * @param agingMillis         l'attente équivalente à un rang de priorité
+     */
+    public DispatchQueue(IntSupplier capacity, Supplier<OverflowPolicy> policy, IntSupplier blockTimeoutSeconds,
+                         int maxRunningPerBot, long agingMillis) {
+        this.capacity = capacity;
+        this.policy = policy;
+        this.blockTimeoutSeconds = blockTimeoutSeconds;
+        this.maxRunningPerBot = Math.max(1, maxRunningPerBot);
+        this.agingNanos = TimeUnit.MILLISECONDS.toNanos(agingMillis);
+    }
+
+    /**
+     * Admet une notification selon la politique configurée.
+     *
+     * @param notification la notification à livrer
+     * @param outboxId     son identifiant dans l'outbox, ou -1 si elle n'y a pas été écrite
+     * @return sa place : {@link State#QUEUED}, {@link State#SPILLED} ou {@link State#DROPPED}
+     */
+    public Ticket offer(Notification notification, long outboxId) {
+        return offer(notification, outboxId, policy.get());
+    }
+
+    /**
+     * Admet une notification selon la politique configurée, sans jamais attendre une place : appel depuis le
+     * planificateur (fermeture d'une fenêtre de regroupement) ou la fin d'une livraison (message de statut),
+     * dont le blocage retarderait toutes les autres tâches. {@link OverflowPolicy#BLOCK} s'y replie sur
+     * {@link OverflowPolicy#SPILL_TO_DISK}, elle-même repliée sur {@link OverflowPolicy#DROP_OLDEST_SUCCESS} sans outbox.
+     *
+     * @param notification la notification à livrer
+     * @param outboxId     son identifiant dans l'outbox, ou -1 si elle n'y a pas été écrite
+     * @return sa place : {@link State#QUEUED}, {@link State#SPILLED} ou {@link State#DROPPED}
+     */
+    public Ticket offerWithoutBlocking(Notification notification, long outboxId) {
+        OverflowPolicy overflowPolicy = policy.get();
+        return offer(notification, outboxId,
+                overflowPolicy == OverflowPolicy.BLOCK ? OverflowPolicy.SPILL_TO_DISK : overflowPolicy);
+    }
+
+    /**
+     * Admet une notification selon une politique donnée (ex: {@link OverflowPolicy#SPILL_TO_DISK} pour
+     * les notifications rejouées depuis l'outbox au démarrage).
+     * Sans outbox, {@link OverflowPolicy#SPILL_TO_DISK} se replie sur {@link OverflowPolicy#DROP_OLDEST_SUCCESS}.
+     *
+     * @param notification   la notification à livrer
+     * @param outboxId       son identifiant dans l'outbox, ou -1 si elle n'y a pas été écrite
+     * @param overflowPolicy la politique quand la file est pleine
+     * @return sa place : {@link State#QUEUED}, {@link State#SPILLED} ou {@link State#DROPPED}
+     */
+    public synchronized Ticket offer(Notification notification, long outboxId, OverflowPolicy overflowPolicy) {
+        long start = System.nanoTime();
+        long startOrder = start + NotificationTrigger.priorityOf(notification.getStatus()) * agingNanos;
+        Ticket ticket = new Ticket(notification, outboxId, nextSequence++, startOrder);
+
+        if (overflowPolicy == OverflowPolicy.SPILL_TO_DISK && outboxId < 0) {
+            overflowPolicy = OverflowPolicy.DROP_OLDEST_SUCCESS;
+        }
+
+        if (!isFull()) {
+            admit(ticket);
+        } else if (overflowPolicy == OverflowPolicy.SPILL_TO_DISK) {
+            spill(ticket);
+        } else if (overflowPolicy == OverflowPolicy.BLOCK) {
+            if (awaitSlot(start)) {
+                admit(ticket);
+            } else {
+                drop(ticket);
+            }
+        } else {
+            Ticket victim = oldestQueued(ticket.status);
+            if (victim != null) {
+                queued.remove(victim);
+                drop(victim);
+                ticket.displaced = victim;
+                admit(ticket);
+            } else {
+                drop(ticket);
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        admissionNanos += elapsed;
+        maxAdmissionNanos = Math.max(maxAdmissionNanos, elapsed);
+        return ticket;
+    }
+
+    /**
+     * Retire la prochaine notification à livrer : la plus prioritaire (vieillissement compris) dont le bot
+     * n'a pas atteint sa limite de livraisons simultanées et dont le chat n'a aucune livraison en cours.
+     *
+     * @return la notification passée en {@link State#RUNNING}, ou null si aucune ne peut partir maintenant.
+     * Sa notification est null si elle a été déchargée : elle est alors à relire depuis l'outbox.
+     */
+    public synchronized Ticket poll() {
+        for (Ticket ticket : queued) {
+            if (runningPerChat.containsKey(ticket.chatKey)
+                    || runningPerBot.getOrDefault(ticket.botKey, 0) >= maxRunningPerBot) {
+                continue;
+            }
+            queued.remove(ticket);
+            ticket.state = State.RUNNING;
+            running++;
+            runningPerBot.merge(ticket.botKey, 1, Integer::sum);
+            runningPerChat.put(ticket.chatKey, ticket);
+            return ticket;
+        }
+        return null;
+    }
+
+    /**
+     * Libère la place d'une notification livrée (ou définitivement échouée). La plus ancienne notification
+     * déchargée, s'il y en a, rejoint alors les notifications en attente.
+     *
+     * @param ticket la place de la notification
+     */
+    public synchronized void release(Ticket ticket) {
+        if (ticket.state == State.RUNNING) {
+            running--;
+            runningPerBot.computeIfPresent(ticket.botKey, (bot, count) -> count > 1 ? count - 1 : null);
+            runningPerChat.remove(ticket.chatKey, ticket);
+        } else if (ticket.state == State.QUEUED) {
+            queued.remove(ticket);
+        } else {
+            return;
+        }
+        ticket.state = State.DONE;
+        ticket.setNotification(null);
+        notifyAll();
+
+        if (!spilled.isEmpty() && !isFull()) {
+            admit(spilled.poll());
+        }
+    }
+
+    /**
+     * Obtient le nombre de notifications admises (en attente ou en cours de livraison).
+     *
+     * @return la profondeur de la file
+     */
+    public synchronized int getDepth() {
+        return queued.size() + running;
+    }
+
+    /**
+     * Obtient le nombre de notifications en cours de livraison.
+     *
+     * @return le nombre de notifications en cours
+     */
+    public synchronized int getRunningCount() {
+        return running;
+    }
+
+    /**
+     * Obtient le nombre de notifications déchargées dans l'outbox, en attente d'une place.
+     *
+     * @return le nombre de notifications déchargées
+     */
+    public synchronized int getSpilledCount() {
+        return spilled.size();
+    }
+
+    /**
+     * Obtient le nombre de notifications abandonnées faute de place depuis le démarrage.
+     *
+     * @return le nombre de notifications abandonnées
+     */
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    /**
+     * Obtient le nombre total de notifications déchargées sur disque depuis le démarrage.
+     *
+     * @return le nombre de déchargements
+     */
+    public synchronized long getTotalSpilledCount() {
+        return totalSpilled;
+    }
+
+    /**
+     * Obtient la latence moyenne d'admission (attente d'une place comprise).
+     *
+     * @return la latence moyenne en microsecondes
+     */
+    public synchronized long getAverageAdmissionMicros() {
+        long offers = admitted + dropped + totalSpilled;
+        return offers == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(admissionNanos / offers);
+    }
+
+    /**
+     * Obtient la latence maximale d'admission observée.
+     *
+     * @return la latence maximale en microsecondes
+     */
+    public synchronized long getMaxAdmissionMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxAdmissionNanos);
+    }
+
+    /**
+     * Obtient la capacité courante de la file.
+     *
+     * @return le nombre maximal de notifications admises
+     */
+    public int getCapacity() {
+        return Math.max(1, capacity.getAsInt());
+    }
+
+    private boolean isFull() {
+        return queued.size() + running >= getCapacity();
+    }
+
+    private void admit(Ticket ticket) {
+        ticket.state = State.QUEUED;
+        queued.add(ticket);
+        admitted++;
+    }
+
+    private void spill(Ticket ticket) {
+        ticket.state = State.SPILLED;
+        ticket.setNotification(null);
+        spilled.add(ticket);
+        totalSpilled++;
+    }
+
+    private void drop(Ticket ticket) {
+        ticket.state = State.DROPPED;
+        dropped++;
+    }
+
+    /**
+     * Attend une place libre sans dépasser le délai configuré.
+     *
+     * @return true si une place s'est libérée à temps
+     */
+    private boolean awaitSlot(long start) {
+        long deadline = start + TimeUnit.SECONDS.toNanos(Math.max(0, blockTimeoutSeconds.getAsInt()));
+        try {
+            while (isFull()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Choisit la notification à évincer parmi celles en attente de priorité strictement inférieure à la nouvelle
+     * ({@link NotificationTrigger#priorityOf}) : la moins prioritaire, un SUCCESS d'abord à rang égal, puis la plus
+     * ancienne. Une notification n'évince jamais une notification aussi ou plus prioritaire qu'elle.
+     *
+     * @return la notification à évincer, ou null si la nouvelle doit être abandonnée
+     */
+    private Ticket oldestQueued(String incomingStatus) {
+        int incomingPriority = NotificationTrigger.priorityOf(incomingStatus);
+        Ticket victim = null;
+        int victimPriority = incomingPriority;
+        for (Ticket candidate : queued) {
+            int priority = NotificationTrigger.priorityOf(candidate.status);
+            if (priority <= incomingPriority) {
+                continue;
+            }
+            if (victim == null || priority > victimPriority
+                    || (priority == victimPriority && evictsBefore(candidate, victim))) {
+                victim = candidate;
+                victimPriority = priority;
+            }
+        }
+        return victim;
+    }
+
+    /**
+     * @return true si {@code candidate}, de même rang de priorité que {@code victim}, doit être évincée avant elle
+     */
+    private static boolean evictsBefore(Ticket candidate, Ticket victim) {
+        boolean candidateSuccess = SUCCESS.equals(candidate.status);
+        if (candidateSuccess != SUCCESS.equals(victim.status)) {
+            return candidateSuccess;
+        }
+        return candidate.sequence < victim.sequence;
+    }
+}
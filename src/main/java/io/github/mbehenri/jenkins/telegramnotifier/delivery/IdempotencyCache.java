@@ -0,0 +1,127 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramConfig;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache borné des clés d'idempotence des notifications déjà livrées.
+ * <p>
+ * Une nouvelle tentative, le rejeu de l'outbox après un redémarrage ou deux publishers identiques sur un même job
+ * peuvent présenter deux fois la même notification : sa clé ({@link Notification#idempotencyKey}) suffit à
+ * reconnaître le doublon, en O(1), sans parcourir d'historique.
+ * <p>
+ * Les clés sont gardées dans leur ordre d'insertion : les plus anciennes sont en tête, si bien que l'expiration
+ * ({@link TelegramConfig#DEDUP_TTL_MILLIS}) et la borne ({@link TelegramConfig#DEDUP_MAX_ENTRIES}) ne retirent
+ * jamais que des entrées de tête (coût amorti O(1)).
+ */
+public class IdempotencyCache {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+
+    /**
+     * Clé -> date de livraison (ms), de la plus ancienne à la plus récente.
+     */
+    private final LinkedHashMap<String, Long> delivered = new LinkedHashMap<>();
+
+    /**
+     * Crée un cache avec les limites par défaut, basé sur l'horloge système.
+     */
+    public IdempotencyCache() {
+        this(TelegramConfig.DEDUP_MAX_ENTRIES, TelegramConfig.DEDUP_TTL_MILLIS, System::currentTimeMillis);
+    }
+
+    /**
+     * Crée un cache avec des limites et une horloge spécifiques (ex: tests).
+     *
+     * @param maxEntries le nombre maximal de clés conservées
+     * @param ttlMillis  la durée de conservation d'une clé
+     * @param clock      horloge en millisecondes depuis l'epoch
+     */
+    public IdempotencyCache(int maxEntries, long ttlMillis, LongSupplier clock) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Indique si une notification de même clé a déjà été livrée.
+     *
+     * @param key la clé d'idempotence
+     * @return true si la clé est connue et non expirée
+     */
+    public synchronized boolean contains(String key) {
+        expire();
+        return key != null && delivered.containsKey(key);
+    }
+
+    /**
+     * Enregistre la livraison d'une notification.
+     *
+     * @param key la clé d'idempotence
+     * @return true si la clé n'était pas encore connue
+     */
+    public boolean add(String key) {
+        return add(key, clock.getAsLong());
+    }
+
+    /**
+     * Enregistre une livraison à une date donnée (ex: relecture de l'outbox).
+     * Une livraison déjà expirée est ignorée.
+     *
+     * @param key         la clé d'idempotence
+     * @param deliveredAt la date de livraison en millisecondes depuis l'epoch
+     * @return true si la clé a été ajoutée
+     */
+    public synchronized boolean add(String key, long deliveredAt) {
+        if (key == null || deliveredAt <= clock.getAsLong() - ttlMillis) {
+            return false;
+        }
+
+        // Retirer puis remettre la clé la replace en queue, l'ordre restant celui des dates de livraison
+        boolean added = delivered.remove(key) == null;
+        delivered.put(key, deliveredAt);
+        expire();
+        return added;
+    }
+
+    /**
+     * Obtient une copie des clés encore valides, de la plus ancienne à la plus récente.
+     *
+     * @return clé -> date de livraison
+     */
+    public synchronized Map<String, Long> snapshot() {
+        expire();
+        return new LinkedHashMap<>(delivered);
+    }
+
+    /**
+     * Obtient le nombre de clés conservées.
+     *
+     * @return le nombre de clés
+     */
+    public synchronized int size() {
+        expire();
+        return delivered.size();
+    }
+
+    /**
+     * Retire les clés expirées et celles qui dépassent la borne, toujours en tête.
+     */
+    private void expire() {
+        long oldest = clock.getAsLong() - ttlMillis;
+        Iterator<Map.Entry<String, Long>> it = delivered.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            if (delivered.size() <= maxEntries && entry.getValue() > oldest) {
+                return;
+            }
+            it.remove();
+        }
+    }
+}
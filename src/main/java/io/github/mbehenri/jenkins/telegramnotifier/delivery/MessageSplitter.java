@@ -0,0 +1,424 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+import io.github.mbehenri.jenkins.telegramnotifier.FormattedMessage;
+import io.github.mbehenri.jenkins.telegramnotifier.ParseMode;
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramConfig;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Découpe un message trop long pour Telegram en plusieurs parties ordonnées.
+ * <p>
+ * Les coupures se font de préférence en fin de ligne, sinon sur un espace, et jamais à l'intérieur d'une
+ * entité Markdown ({@code *gras*}, {@code _italique_}, {@code `code`}, bloc {@code ```pre```} ou lien
+ * {@code [texte](url)}). Une entité plus longue qu'une partie (ex: un long extrait de log dans un bloc
+ * {@code ```}) est coupée en dur : elle est refermée en fin de partie et rouverte au début de la suivante.
+ * <p>
+ * En MarkdownV2, les échappements ({@code \x}) sont reconnus aussi dans les entités. En HTML, les coupures
+ * se font hors des éléments, jamais dans une balise ou une entité ({@code &amp;}); un élément coupé en dur est
+ * refermé ({@code </b>}) puis rouvert avec sa balise d'origine.
+ * <p>
+ * En texte brut ({@link ParseMode#ENTITIES}), il n'y a rien à refermer : une entité coupée est répartie
+ * entre les parties ({@link FormattedMessage#substring}).
+ */
+public final class MessageSplitter {
+
+    private static final byte NONE = 0;
+    private static final byte BOLD = 1;
+    private static final byte ITALIC = 2;
+    private static final byte CODE = 3;
+    private static final byte PRE = 4;
+    private static final byte LINK = 5;
+    private static final byte ESCAPED = 6;
+    private static final byte ELEMENT = 7;
+
+    /**
+     * Longueur maximale d'une entité HTML ({@code &quot;}, {@code &#128512;}).
+     */
+    private static final int MAX_HTML_ENTITY_LENGTH = 10;
+
+    private static final String FENCE = "```";
+
+    private MessageSplitter() {
+    }
+
+    /**
+     * Découpe un message selon la limite de Telegram ({@link TelegramConfig#MAX_MESSAGE_LENGTH}).
+     *
+     * @param text le message à découper
+     * @return les parties, dans l'ordre d'envoi (une seule si le message tient dans la limite)
+     */
+    public static List<String> split(String text) {
+        return split(text, TelegramConfig.MAX_MESSAGE_LENGTH);
+    }
+
+    /**
+     * Découpe un message en parties d'au plus {@code maxLength} caractères.
+     *
+     * @param text      le message à découper
+     * @param maxLength la longueur maximale d'une partie
+     * @return les parties, dans l'ordre d'envoi
+     */
+    public static List<String> split(String text, int maxLength) {
+        return split(text, maxLength, ParseMode.MARKDOWN);
+    }
+
+    /**
+     * Découpe un message mis en forme dans un mode donné en parties d'au plus {@code maxLength} caractères.
+     *
+     * @param text      le message à découper
+     * @param maxLength la longueur maximale d'une partie
+     * @param parseMode le mode de mise en forme du message
+     * @return les parties, dans l'ordre d'envoi
+     */
+    public static List<String> split(String text, int maxLength, ParseMode parseMode) {
+        List<String> parts = new ArrayList<>();
+        if (text == null || text.length() <= maxLength) {
+            parts.add(text != null ? text : "");
+            return parts;
+        }
+        if (parseMode == ParseMode.ENTITIES) {
+            for (int[] range : plainParts(text, maxLength)) {
+                parts.add(text.substring(range[0], range[1]));
+            }
+            return parts;
+        }
+
+        boolean html = parseMode == ParseMode.HTML;
+        byte[] states = html ? scanElements(text) : scanEntities(text, parseMode == ParseMode.MARKDOWN_V2);
+        String reopen = "";
+        int start = 0;
+
+        while (start < text.length()) {
+            int budget = maxLength - reopen.length();
+            if (text.length() - start <= budget) {
+                parts.add(reopen + text.substring(start));
+                break;
+            }
+
+            int limit = start + budget;
+            int cut = lastBreak(text, states, start, limit, '\n');
+            if (cut < 0) {
+                cut = lastBreak(text, states, start, limit, ' ');
+            }
+
+            if (cut >= 0) {
+                // Le séparateur (saut de ligne ou espace) est consommé par la coupure
+                parts.add(reopen + text.substring(start, cut));
+                start = cut + 1;
+                reopen = "";
+                continue;
+            }
+
+            // Aucune coupure propre : coupe en dur en refermant l'entité ouverte,
+            // sans séparer une paire de substitution ni un caractère de son échappement
+            int hardCut = limit - (html ? openElements(text, limit)[1].length() : FENCE.length());
+            if (Character.isHighSurrogate(text.charAt(hardCut - 1))) {
+                hardCut--;
+            }
+            while (states[hardCut] == ESCAPED) {
+                hardCut--;
+            }
+            if (html) {
+                String[] markers = openElements(text, hardCut);
+                parts.add(reopen + text.substring(start, hardCut) + markers[1]);
+                reopen = markers[0];
+            } else {
+                parts.add(reopen + text.substring(start, hardCut) + closingMarker(states[hardCut]));
+                reopen = openingMarker(states[hardCut]);
+            }
+            start = hardCut;
+        }
+
+        return parts;
+    }
+
+    /**
+     * Découpe un message mis en forme, entités comprises. Chaque partie garde les entités de sa plage,
+     * repositionnées par rapport à son début.
+     *
+     * @param message   le message à découper
+     * @param maxLength la longueur maximale d'une partie
+     * @param parseMode le mode de mise en forme du message
+     * @return les parties, dans l'ordre d'envoi (le message lui-même s'il tient dans la limite)
+     */
+    public static List<FormattedMessage> split(FormattedMessage message, int maxLength, ParseMode parseMode) {
+        if (message.length() <= maxLength) {
+            return Collections.singletonList(message);
+        }
+
+        List<FormattedMessage> parts = new ArrayList<>();
+        if (parseMode == ParseMode.ENTITIES) {
+            for (int[] range : plainParts(message.getText(), maxLength)) {
+                parts.add(message.substring(range[0], range[1]));
+            }
+        } else {
+            for (String part : split(message.getText(), maxLength, parseMode)) {
+                parts.add(FormattedMessage.of(part));
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Tronque un message mis en forme dans un mode donné, indicateur de troncature compris
+     * ({@link ParseMode#getTruncationSuffix()}).
+     * <p>
+     * Comme pour une coupure en dur, le message n'est coupé ni dans un échappement, une balise ou une entité
+     * HTML, ni dans une paire de substitution, et l'entité ouverte à la coupure est refermée avant l'indicateur
+     * ({@code *}, {@code </b>}). Un lien Markdown, qui ne peut pas être refermé, est retiré en entier,
+     * de même qu'une entité qui ne garderait aucun caractère.
+     *
+     * @param text      le message à tronquer
+     * @param maxLength la longueur maximale, indicateur de troncature compris
+     * @param parseMode le mode de mise en forme du message
+     * @return le message tronqué, ou le message lui-même s'il tient dans la longueur
+     */
+    public static String truncate(String text, int maxLength, ParseMode parseMode) {
+        if (text.length() <= maxLength) {
+            return text;
+        }
+
+        String suffix = parseMode.getTruncationSuffix();
+        int cut = maxLength - suffix.length();
+        if (parseMode == ParseMode.ENTITIES) {
+            return text.substring(0, Character.isHighSurrogate(text.charAt(cut - 1)) ? cut - 1 : cut) + suffix;
+        }
+
+        boolean html = parseMode == ParseMode.HTML;
+        byte[] states = html ? scanElements(text) : scanEntities(text, parseMode == ParseMode.MARKDOWN_V2);
+        while (true) {
+            if (Character.isHighSurrogate(text.charAt(cut - 1))) {
+                cut--;
+            }
+            while (states[cut] == ESCAPED || states[cut] == LINK) {
+                cut--;
+            }
+
+            String closing = html ? openElements(text, cut)[1] : closingMarker(states[cut]);
+            int overflow = cut + closing.length() + suffix.length() - maxLength;
+            if (overflow > 0) {
+                // La marque de fermeture ne tient pas : la coupure recule d'autant, puis est vérifiée à nouveau
+                cut -= overflow;
+                continue;
+            }
+            if (!html && !closing.isEmpty() && text.charAt(cut - 1) == closing.charAt(0)) {
+                // La coupure suit la marque d'ouverture (l'entité resterait vide) ou un accent grave d'un bloc
+                // (la marque de fermeture s'y mêlerait)
+                cut--;
+                continue;
+            }
+            return text.substring(0, cut) + closing + suffix;
+        }
+    }
+
+    /**
+     * Découpe un texte brut : en fin de ligne, sinon sur un espace, sinon en dur sans séparer
+     * une paire de substitution.
+     *
+     * @return les plages [début, fin) des parties
+     */
+    private static List<int[]> plainParts(String text, int maxLength) {
+        List<int[]> parts = new ArrayList<>();
+        int start = 0;
+        while (text.length() - start > maxLength) {
+            int limit = start + maxLength;
+            int cut = text.lastIndexOf('\n', limit);
+            if (cut <= start) {
+                cut = text.lastIndexOf(' ', limit);
+            }
+            if (cut > start) {
+                // Le séparateur est consommé par la coupure
+                parts.add(new int[]{start, cut});
+                start = cut + 1;
+                continue;
+            }
+
+            cut = Character.isHighSurrogate(text.charAt(limit - 1)) ? limit - 1 : limit;
+            parts.add(new int[]{start, cut});
+            start = cut;
+        }
+        if (start < text.length()) {
+            parts.add(new int[]{start, text.length()});
+        }
+        return parts;
+    }
+
+    /**
+     * Cherche la dernière position de {@code separator} hors entité dans [start, limit].
+     *
+     * @return la position du séparateur, ou -1
+     */
+    private static int lastBreak(String text, byte[] states, int start, int limit, char separator) {
+        for (int i = Math.min(limit, text.length() - 1); i > start; i--) {
+            if (text.charAt(i) == separator && states[i] == NONE) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Calcule, pour chaque position, l'entité Markdown ouverte juste avant ce caractère.
+     *
+     * @param escapesInEntities true si les échappements sont reconnus aussi dans les entités (MarkdownV2)
+     */
+    private static byte[] scanEntities(String text, boolean escapesInEntities) {
+        int length = text.length();
+        byte[] states = new byte[length + 1];
+        byte state = NONE;
+        int i = 0;
+
+        while (i < length) {
+            states[i] = state;
+            char c = text.charAt(i);
+
+            if (c == '\\' && i + 1 < length && (state == NONE || escapesInEntities)) {
+                states[i + 1] = ESCAPED;
+                i += 2;
+                continue;
+            }
+
+            if (state == NONE) {
+                if (text.startsWith(FENCE, i)) {
+                    states[i + 1] = PRE;
+                    states[i + 2] = PRE;
+                    state = PRE;
+                    i += FENCE.length();
+                    continue;
+                }
+                if (c == '`') {
+                    state = CODE;
+                } else if (c == '*') {
+                    state = BOLD;
+                } else if (c == '_') {
+                    state = ITALIC;
+                } else if (c == '[') {
+                    state = LINK;
+                }
+            } else if (state == PRE) {
+                if (text.startsWith(FENCE, i)) {
+                    states[i + 1] = PRE;
+                    states[i + 2] = PRE;
+                    state = NONE;
+                    i += FENCE.length();
+                    continue;
+                }
+            } else if (state == LINK) {
+                // Le lien se termine à la parenthèse fermante de l'URL, ou au crochet s'il n'a pas d'URL
+                if (c == ')' || (c == ']' && (i + 1 >= length || text.charAt(i + 1) != '('))) {
+                    state = NONE;
+                }
+            } else if ((state == CODE && c == '`') || (state == BOLD && c == '*') || (state == ITALIC && c == '_')) {
+                state = NONE;
+            }
+            i++;
+        }
+
+        states[length] = state;
+        return states;
+    }
+
+    /**
+     * Calcule, pour chaque position, si elle est dans un élément HTML ouvert ou à l'intérieur d'une balise
+     * ou d'une entité (où le message ne peut pas être coupé).
+     */
+    private static byte[] scanElements(String text) {
+        int length = text.length();
+        byte[] states = new byte[length + 1];
+        int depth = 0;
+        int i = 0;
+
+        while (i < length) {
+            states[i] = depth > 0 ? ELEMENT : NONE;
+            char c = text.charAt(i);
+
+            int end = -1;
+            if (c == '<') {
+                end = text.indexOf('>', i);
+            } else if (c == '&') {
+                end = text.indexOf(';', i);
+                if (end - i > MAX_HTML_ENTITY_LENGTH) {
+                    end = -1;
+                }
+            }
+            if (end < 0) {
+                i++;
+                continue;
+            }
+
+            if (c == '<') {
+                depth = text.charAt(i + 1) == '/' ? Math.max(0, depth - 1) : depth + 1;
+            }
+            for (int j = i + 1; j <= end; j++) {
+                states[j] = ESCAPED;
+            }
+            i = end + 1;
+        }
+
+        states[length] = depth > 0 ? ELEMENT : NONE;
+        return states;
+    }
+
+    /**
+     * Obtient les éléments HTML ouverts avant une position.
+     *
+     * @return les balises ouvrantes à répéter au début de la partie suivante, et les balises fermantes
+     */
+    private static String[] openElements(String text, int end) {
+        Deque<String> open = new ArrayDeque<>();
+        int i = text.indexOf('<');
+        while (i >= 0 && i < end) {
+            int close = text.indexOf('>', i);
+            if (close < 0 || close >= end) {
+                break;
+            }
+            if (text.charAt(i + 1) == '/') {
+                open.pollLast();
+            } else {
+                open.addLast(text.substring(i, close + 1));
+            }
+            i = text.indexOf('<', close);
+        }
+
+        StringBuilder opening = new StringBuilder();
+        for (String tag : open) {
+            opening.append(tag);
+        }
+        StringBuilder closing = new StringBuilder();
+        for (Iterator<String> tags = open.descendingIterator(); tags.hasNext(); ) {
+            String tag = tags.next();
+            int nameEnd = 1;
+            while (nameEnd < tag.length() - 1 && !Character.isWhitespace(tag.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            closing.append("</").append(tag, 1, nameEnd).append('>');
+        }
+        return new String[]{opening.toString(), closing.toString()};
+    }
+
+    private static String openingMarker(byte state) {
+        // Un bloc rouvert commence par un saut de ligne pour que la suite ne soit pas prise pour un langage
+        return state == PRE ? FENCE + "\n" : closingMarker(state);
+    }
+
+    private static String closingMarker(byte state) {
+        switch (state) {
+            case BOLD:
+                return "*";
+            case ITALIC:
+                return "_";
+            case CODE:
+                return "`";
+            case PRE:
+                return FENCE;
+            default:
+                return "";
+        }
+    }
+}
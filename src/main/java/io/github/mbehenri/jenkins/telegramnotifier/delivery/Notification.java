@@ -0,0 +1,269 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+import io.github.mbehenri.jenkins.telegramnotifier.Attachment;
+import io.github.mbehenri.jenkins.telegramnotifier.FormattedMessage;
+import io.github.mbehenri.jenkins.telegramnotifier.MessageEntities;
+import io.github.mbehenri.jenkins.telegramnotifier.ParseMode;
+
+/**
+ * Notification Telegram prête à être livrée : destinataire et message déjà formaté.
+ * <p>
+ * Les instances sont immuables et peuvent circuler librement entre le thread du build
+ * et les threads de livraison.
+ */
+public final class Notification {
+
+    private final String botToken;
+    private final String chatId;
+    private final String text;
+    private final String status;
+    private final String summary;
+    private final Attachment attachment;
+    private final String idempotencyKey;
+    private final long editMessageId;
+    private final ParseMode parseMode;
+    private final MessageEntities entities;
+    private final MessageEntities summaryEntities;
+
+    /**
+     * Crée une notification.
+     *
+     * @param botToken le token du bot Telegram
+     * @param chatId   l'ID du chat cible
+     * @param text     le message formaté
+     */
+    public Notification(String botToken, String chatId, String text) {
+        this(botToken, chatId, text, null, null);
+    }
+
+    /**
+     * Crée une notification pouvant être regroupée avec d'autres dans un récapitulatif.
+     *
+     * @param botToken le token du bot Telegram
+     * @param chatId   l'ID du chat cible
+     * @param text     le message formaté
+     * @param status   le résultat du build (ex: FAILURE), ou null
+     * @param summary  la ligne résumant la notification dans un récapitulatif, ou null
+     */
+    public Notification(String botToken, String chatId, String text, String status, String summary) {
+        this(botToken, chatId, text, status, summary, null, null, 0, ParseMode.MARKDOWN,
+                MessageEntities.NONE, MessageEntities.NONE);
+    }
+
+    private Notification(String botToken, String chatId, String text, String status, String summary,
+                         Attachment attachment, String idempotencyKey, long editMessageId, ParseMode parseMode,
+                         MessageEntities entities, MessageEntities summaryEntities) {
+        this.botToken = botToken;
+        this.chatId = chatId;
+        this.text = text;
+        this.status = status;
+        this.summary = summary;
+        this.attachment = attachment;
+        this.idempotencyKey = idempotencyKey;
+        this.editMessageId = editMessageId;
+        this.parseMode = parseMode;
+        this.entities = entities;
+        this.summaryEntities = summaryEntities;
+    }
+
+    /**
+     * Construit la clé d'idempotence d'une notification de build : deux notifications de même clé
+     * annoncent le même résultat du même build au même chat, la seconde n'est pas livrée.
+     *
+     * @param jobFullName le nom complet du job (ex: folder/job)
+     * @param buildNumber le numéro du build
+     * @param status      le résultat du build (ex: FAILURE)
+     * @param chatId      l'ID du chat cible
+     * @return la clé d'idempotence
+     */
+    public static String idempotencyKey(String jobFullName, int buildNumber, String status, String chatId) {
+        return jobFullName + "#" + buildNumber + "#" + status + "#" + chatId;
+    }
+
+    /**
+     * Crée une copie de la notification accompagnée d'un fichier joint, envoyé après le message.
+     * Le fichier joint n'est pas conservé dans l'outbox : une notification rejouée n'envoie que le message.
+     *
+     * @param attachment le fichier joint
+     * @return la nouvelle notification
+     */
+    public Notification withAttachment(Attachment attachment) {
+        return new Notification(botToken, chatId, text, status, summary, attachment, idempotencyKey, editMessageId,
+                parseMode, entities, summaryEntities);
+    }
+
+    /**
+     * Crée une copie de la notification portant une clé d'idempotence ({@link #idempotencyKey}).
+     *
+     * @param idempotencyKey la clé d'idempotence, ou null pour ne pas dédupliquer
+     * @return la nouvelle notification
+     */
+    public Notification withIdempotencyKey(String idempotencyKey) {
+        return new Notification(botToken, chatId, text, status, summary, attachment, idempotencyKey, editMessageId,
+                parseMode, entities, summaryEntities);
+    }
+
+    /**
+     * Crée une copie de la notification qui modifie un message déjà envoyé ({@code editMessageText})
+     * au lieu d'en envoyer un nouveau.
+     *
+     * @param editMessageId l'identifiant Telegram du message à modifier, ou 0 pour un nouveau message
+     * @return la nouvelle notification
+     */
+    public Notification withEditMessageId(long editMessageId) {
+        return new Notification(botToken, chatId, text, status, summary, attachment, idempotencyKey, editMessageId,
+                parseMode, entities, summaryEntities);
+    }
+
+    /**
+     * Crée une copie de la notification dont le message est mis en forme dans un autre mode.
+     *
+     * @param parseMode le mode de mise en forme du message, ou null pour le mode par défaut
+     * @return la nouvelle notification
+     */
+    public Notification withParseMode(ParseMode parseMode) {
+        return new Notification(botToken, chatId, text, status, summary, attachment, idempotencyKey, editMessageId,
+                parseMode != null ? parseMode : ParseMode.MARKDOWN, entities, summaryEntities);
+    }
+
+    /**
+     * Crée une copie de la notification adressée à un autre chat (ex: groupe devenu supergroupe).
+     *
+     * @param chatId le nouvel ID du chat
+     * @return la nouvelle notification
+     */
+    public Notification withChatId(String chatId) {
+        return new Notification(botToken, chatId, text, status, summary, attachment, idempotencyKey, editMessageId,
+                parseMode, entities, summaryEntities);
+    }
+
+    /**
+     * Crée une copie de la notification avec un autre message (ex: une partie d'un message découpé).
+     *
+     * @param text le nouveau message
+     * @return la nouvelle notification
+     */
+    public Notification withText(String text) {
+        return new Notification(botToken, chatId, text, status, summary, attachment, idempotencyKey, editMessageId,
+                parseMode, MessageEntities.NONE, summaryEntities);
+    }
+
+    /**
+     * Crée une copie de la notification avec un autre message mis en forme, entités comprises.
+     *
+     * @param message le nouveau message
+     * @return la nouvelle notification
+     */
+    public Notification withMessage(FormattedMessage message) {
+        return new Notification(botToken, chatId, message.getText(), status, summary, attachment, idempotencyKey,
+                editMessageId, parseMode, message.getEntities(), summaryEntities);
+    }
+
+    /**
+     * Crée une copie de la notification avec une autre ligne de résumé, entités comprises.
+     *
+     * @param summary la ligne résumant la notification dans un récapitulatif, ou null
+     * @return la nouvelle notification
+     */
+    public Notification withSummary(FormattedMessage summary) {
+        return new Notification(botToken, chatId, text, status, summary != null ? summary.getText() : null,
+                attachment, idempotencyKey, editMessageId, parseMode, entities,
+                summary != null ? summary.getEntities() : MessageEntities.NONE);
+    }
+
+    public String getBotToken() {
+        return botToken;
+    }
+
+    public String getChatId() {
+        return chatId;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Obtient les entités du message, en mode {@link ParseMode#ENTITIES}.
+     *
+     * @return les entités, vides dans les autres modes
+     */
+    public MessageEntities getEntities() {
+        return entities;
+    }
+
+    /**
+     * Obtient le message, entités comprises.
+     *
+     * @return le message mis en forme
+     */
+    public FormattedMessage getMessage() {
+        return FormattedMessage.of(text, entities);
+    }
+
+    /**
+     * Obtient le fichier joint.
+     *
+     * @return le fichier joint, ou null
+     */
+    public Attachment getAttachment() {
+        return attachment;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * Obtient l'identifiant du message modifié par cette notification.
+     *
+     * @return l'identifiant Telegram du message, ou 0 pour un nouveau message
+     */
+    public long getEditMessageId() {
+        return editMessageId;
+    }
+
+    /**
+     * Obtient le mode de mise en forme du message.
+     *
+     * @return le mode de mise en forme
+     */
+    public ParseMode getParseMode() {
+        return parseMode;
+    }
+
+    /**
+     * Obtient la clé d'idempotence.
+     *
+     * @return la clé, ou null si la notification n'est pas dédupliquée
+     */
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    /**
+     * Obtient la ligne résumant la notification. À défaut, la première ligne du message est utilisée.
+     *
+     * @return la ligne de résumé
+     */
+    public String getSummary() {
+        if (summary != null) {
+            return summary;
+        }
+        int newline = text.indexOf('\n');
+        return newline >= 0 ? text.substring(0, newline) : text;
+    }
+
+    /**
+     * Obtient la ligne résumant la notification, entités comprises ({@link #getSummary()}).
+     *
+     * @return la ligne de résumé mise en forme
+     */
+    public FormattedMessage getSummaryMessage() {
+        if (summary != null) {
+            return FormattedMessage.of(summary, summaryEntities);
+        }
+        int newline = text.indexOf('\n');
+        return getMessage().substring(0, newline >= 0 ? newline : text.length());
+    }
+}
@@ -0,0 +1,231 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+import io.github.mbehenri.jenkins.telegramnotifier.FormattedMessage;
+import io.github.mbehenri.jenkins.telegramnotifier.MessageFormatter;
+import io.github.mbehenri.jenkins.telegramnotifier.NotificationTrigger;
+import jenkins.util.Timer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Regroupe les notifications d'un même chat arrivant dans une fenêtre de temps.
+ * <p>
+ * La première notification d'un chat ouvre une fenêtre; celles qui arrivent avant sa fermeture la rejoignent.
+ * À la fermeture, une notification seule est livrée telle quelle, plusieurs notifications sont fusionnées en
+ * un récapitulatif ({@link MessageFormatter#formatDigest}) : un seul appel à l'API au lieu d'un par build.
+ * <p>
+ * Les notifications en attente dans une fenêtre ne sont écrites dans l'outbox qu'à sa fermeture.
+ * Une notification dont la clé d'idempotence est déjà livrée, ou déjà dans la fenêtre, n'y est pas ajoutée;
+ * les clés des notifications fusionnées sont enregistrées comme livrées une fois le récapitulatif livré.
+ * Une notification accompagnée d'une pièce jointe (ex: log d'un échec) n'est pas regroupée : un récapitulatif
+ * n'en transporte pas.
+ * Les notifications mises en forme dans des modes différents ({@link Notification#getParseMode()}) ne sont
+ * pas regroupées ensemble : un récapitulatif n'a qu'un mode.
+ */
+public class NotificationCoalescer {
+
+    private static final Logger LOGGER = Logger.getLogger(NotificationCoalescer.class.getName());
+
+    private static final NotificationCoalescer INSTANCE = new NotificationCoalescer(
+            NotificationDispatcher.get()::dispatch, Timer.get(),
+            NotificationDispatcher.get()::isDelivered, NotificationDispatcher.get()::markDelivered);
+
+    private final Function<Notification, CompletableFuture<Boolean>> delivery;
+    private final ScheduledExecutorService scheduler;
+    private final Predicate<String> isDelivered;
+    private final Consumer<String> markDelivered;
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+
+    /**
+     * Crée un regroupeur (ex: tests).
+     *
+     * @param delivery  la livraison des notifications regroupées (ex: {@link NotificationDispatcher#dispatch})
+     * @param scheduler le planificateur des fermetures de fenêtres
+     */
+    public NotificationCoalescer(Function<Notification, CompletableFuture<Boolean>> delivery,
+                                 ScheduledExecutorService scheduler) {
+        this(delivery, scheduler, new IdempotencyCache());
+    }
+
+    /**
+     * Crée un regroupeur partageant l'enregistrement des livraisons de son dispatcher.
+     *
+     * @param delivery      la livraison des notifications regroupées (ex: {@link NotificationDispatcher#dispatch})
+     * @param scheduler     le planificateur des fermetures de fenêtres
+     * @param isDelivered   indique si une clé d'idempotence a déjà été livrée
+     *                      (ex: {@link NotificationDispatcher#isDelivered})
+     * @param markDelivered enregistre la livraison d'une clé fusionnée dans un récapitulatif
+     *                      (ex: {@link NotificationDispatcher#markDelivered})
+     */
+    public NotificationCoalescer(Function<Notification, CompletableFuture<Boolean>> delivery,
+                                 ScheduledExecutorService scheduler,
+                                 Predicate<String> isDelivered, Consumer<String> markDelivered) {
+        this.delivery = delivery;
+        this.scheduler = scheduler;
+        this.isDelivered = isDelivered;
+        this.markDelivered = markDelivered;
+    }
+
+    private NotificationCoalescer(Function<Notification, CompletableFuture<Boolean>> delivery,
+                                  ScheduledExecutorService scheduler, IdempotencyCache delivered) {
+        this(delivery, scheduler, delivered::contains, delivered::add);
+    }
+
+    /**
+     * Obtient le regroupeur partagé, adossé au dispatcher partagé.
+     *
+     * @return le regroupeur partagé
+     */
+    public static NotificationCoalescer get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Ajoute une notification à la fenêtre de son chat, en ouvrant une fenêtre si nécessaire.
+     *
+     * @param notification  la notification à livrer
+     * @param windowSeconds la durée de la fenêtre ouverte par cette notification
+     * @return un future complété avec le résultat de la livraison du message (ou du récapitulatif)
+     */
+    public CompletableFuture<Boolean> submit(Notification notification, int windowSeconds) {
+        if (windowSeconds <= 0 || isBlank(notification.getBotToken()) || isBlank(notification.getChatId())
+                || notification.getAttachment() != null) {
+            return delivery.apply(notification);
+        }
+        String idempotencyKey = notification.getIdempotencyKey();
+        if (idempotencyKey != null && isDelivered.test(idempotencyKey)) {
+            LOGGER.log(Level.FINE, "Notification {0} déjà livrée, non regroupée", idempotencyKey);
+            return CompletableFuture.completedFuture(true);
+        }
+
+        String key = TelegramRateLimiter.chatKey(
+                TelegramRateLimiter.botKey(notification.getBotToken()), notification.getChatId())
+                + "#" + notification.getParseMode();
+        while (true) {
+            Batch batch = batches.computeIfAbsent(key, k -> open(k, windowSeconds));
+            CompletableFuture<Boolean> result = batch.add(notification);
+            if (result != null) {
+                return result;
+            }
+            // Fenêtre fermée entre-temps : une nouvelle fenêtre est ouverte au prochain tour
+            batches.remove(key, batch);
+            if (batch.rejected) {
+                return delivery.apply(notification);
+            }
+        }
+    }
+
+    /**
+     * Obtient le nombre de fenêtres ouvertes.
+     *
+     * @return le nombre de chats ayant des notifications en attente de regroupement
+     */
+    public int getOpenWindows() {
+        return batches.size();
+    }
+
+    private Batch open(String key, int windowSeconds) {
+        Batch batch = new Batch();
+        try {
+            scheduler.schedule(() -> flush(key, batch), windowSeconds, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.WARNING, "Planificateur indisponible, notification livrée sans regroupement", e);
+            batch.rejected = true;
+            batch.close();
+        }
+        return batch;
+    }
+
+    private void flush(String key, Batch batch) {
+        batches.remove(key, batch);
+        List<Notification> notifications = batch.close();
+        if (notifications.isEmpty()) {
+            return;
+        }
+
+        Notification first = notifications.get(0);
+        Notification merged = first;
+        if (notifications.size() > 1) {
+            List<String> statuses = new ArrayList<>();
+            List<FormattedMessage> lines = new ArrayList<>();
+            String mostUrgent = null;
+            for (Notification notification : notifications) {
+                statuses.add(notification.getStatus());
+                lines.add(notification.getSummaryMessage());
+                if (mostUrgent == null || NotificationTrigger.priorityOf(notification.getStatus())
+                        < NotificationTrigger.priorityOf(mostUrgent)) {
+                    mostUrgent = notification.getStatus();
+                }
+            }
+            // Le récapitulatif est livré avec la priorité de son résultat le plus urgent (ex: un échec parmi des SUCCESS)
+            merged = new Notification(first.getBotToken(), first.getChatId(), null, mostUrgent, null)
+                    .withParseMode(first.getParseMode())
+                    .withMessage(MessageFormatter.formatDigest(statuses, lines, first.getParseMode()));
+            LOGGER.log(Level.FINE, "{0} notifications regroupées pour le chat {1}",
+                    new Object[]{notifications.size(), first.getChatId()});
+        }
+
+        boolean digest = merged != first;
+        delivery.apply(merged).whenComplete((success, error) -> {
+            boolean delivered = error == null && Boolean.TRUE.equals(success);
+            if (delivered && digest) {
+                // Le récapitulatif a sa propre clé : celles des notifications fusionnées sont enregistrées ici
+                for (Notification notification : notifications) {
+                    if (notification.getIdempotencyKey() != null) {
+                        markDelivered.accept(notification.getIdempotencyKey());
+                    }
+                }
+            }
+            batch.result.complete(delivered);
+        });
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    /**
+     * Notifications d'un chat en attente dans une fenêtre ouverte.
+     */
+    private static final class Batch {
+
+        private final List<Notification> notifications = new ArrayList<>();
+        private final Set<String> idempotencyKeys = new HashSet<>();
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        private boolean closed;
+        private volatile boolean rejected;
+
+        /**
+         * @return le future du récapitulatif, ou null si la fenêtre est déjà fermée
+         */
+        synchronized CompletableFuture<Boolean> add(Notification notification) {
+            if (closed) {
+                return null;
+            }
+            String key = notification.getIdempotencyKey();
+            if (key == null || idempotencyKeys.add(key)) {
+                notifications.add(notification);
+            }
+            return result;
+        }
+
+        synchronized List<Notification> close() {
+            closed = true;
+            return notifications;
+        }
+    }
+}
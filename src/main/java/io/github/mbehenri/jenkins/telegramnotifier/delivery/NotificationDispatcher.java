@@ -0,0 +1,813 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+import io.github.mbehenri.jenkins.telegramnotifier.FormattedMessage;
+import io.github.mbehenri.jenkins.telegramnotifier.SendResult;
+import io.github.mbehenri.jenkins.telegramnotifier.TelegramSender;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramConfig;
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramGlobalConfiguration;
+import jenkins.util.Timer;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Point d'entrée de la livraison asynchrone des notifications.
+ * <p>
+ * {@link io.github.mbehenri.jenkins.telegramnotifier.TelegramNotifier#perform} confie la notification
+ * au dispatcher et rend immédiatement la main : l'exécuteur du build n'attend jamais l'API Telegram.
+ * La livraison s'exécute sur le pool borné du moteur de transport.
+ * <p>
+ * Chaque envoi passe d'abord par le {@link TelegramRateLimiter} : un envoi qui dépasserait les limites
+ * de Telegram est différé sur le planificateur, jamais abandonné ni exécuté en bloquant un thread.
+ * Un échec transitoire (429, 5xx, erreur réseau) est retenté selon la {@link RetryPolicy},
+ * là encore par planification et jamais par {@code Thread.sleep}. L'âge maximal de la politique est le budget
+ * total de la notification : le timeout de chaque envoi est borné par le temps qu'il lui reste.
+ * <p>
+ * Chaque notification est d'abord écrite dans la {@link NotificationOutbox}, puis acquittée une fois
+ * livrée ou définitivement refusée : une notification en cours de livraison lors d'un redémarrage du contrôleur
+ * est rejouée au démarrage suivant. Une notification abandonnée faute de réseau (ex: panne de l'API plus longue
+ * que l'âge maximal des nouvelles tentatives) est mise de côté dans l'outbox et livrée à nouveau dès la fermeture
+ * du circuit du bot, et au plus tard toutes les {@link TelegramConfig#OUTBOX_RETRY_INTERVAL_MILLIS} ms, sans
+ * attendre un redémarrage.
+ * <p>
+ * Pendant une panne de l'API, le {@link TelegramCircuitBreaker} du bot s'ouvre : les notifications ne
+ * tentent plus d'envoi et sont différées jusqu'à la réouverture, sans attendre les timeouts réseau.
+ * <p>
+ * Les notifications d'un même chat sont livrées l'une après l'autre : un message trop long est découpé par le
+ * {@link MessageSplitter} et ses parties partent dans l'ordre, sans s'entremêler avec les autres notifications
+ * du chat. Les chats différents restent livrés en parallèle.
+ * Un éventuel fichier joint (ex: log console) est envoyé après la dernière partie, dans la même file.
+ * <p>
+ * Le nombre de notifications en cours est borné par la {@link DispatchQueue} : quand elle est pleine, sa politique
+ * décide d'attendre, d'abandonner les plus anciens SUCCESS ou de décharger les notifications dans l'outbox.
+ * La file décide aussi de l'ordre de départ : quand la livraison est saturée, les échecs passent avant les SUCCESS
+ * en attente, l'ordre d'arrivée étant conservé à priorité égale.
+ * <p>
+ * Une notification portant une clé d'idempotence ({@link Notification#getIdempotencyKey()}) n'est livrée qu'une
+ * fois : une clé déjà livrée (cache journalisé dans l'outbox) est ignorée, une clé en cours de livraison partage
+ * le résultat de la livraison en cours.
+ */
+public class NotificationDispatcher {
+
+    private static final Logger LOGGER = Logger.getLogger(NotificationDispatcher.class.getName());
+
+    private static final NotificationDispatcher INSTANCE = new NotificationDispatcher(
+            new TelegramSender(), new TelegramRateLimiter(), new RetryPolicy(), Timer.get(),
+            NotificationOutbox.createDefault());
+
+    private final TelegramSender sender;
+    private final TelegramRateLimiter rateLimiter;
+    private final RetryPolicy retryPolicy;
+    private final ScheduledExecutorService scheduler;
+    private final NotificationOutbox outbox;
+    private final TelegramCircuitBreaker circuitBreaker;
+    private final DispatchQueue queue;
+
+    /**
+     * Clés d'idempotence livrées, quand il n'y a pas d'outbox pour les journaliser.
+     */
+    private final IdempotencyCache delivered = new IdempotencyCache();
+
+    /**
+     * Clé d'idempotence -> résultat des livraisons en cours.
+     */
+    private final Map<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Demandes de drainage de la file : un seul thread démarre les livraisons à la fois.
+     */
+    private final AtomicInteger drainRequests = new AtomicInteger();
+
+    /**
+     * Indique si une nouvelle livraison des notifications mises de côté est planifiée.
+     */
+    private final AtomicBoolean parkedReplayScheduled = new AtomicBoolean();
+
+    /**
+     * Crée un dispatcher sans outbox (ex: tests).
+     *
+     * @param sender      le sender à utiliser pour la livraison
+     * @param rateLimiter le limiteur de débit appliqué avant chaque envoi
+     * @param retryPolicy la politique de nouvelles tentatives
+     * @param scheduler   le planificateur des envois différés et des nouvelles tentatives
+     */
+    public NotificationDispatcher(TelegramSender sender, TelegramRateLimiter rateLimiter,
+                                  RetryPolicy retryPolicy, ScheduledExecutorService scheduler) {
+        this(sender, rateLimiter, retryPolicy, scheduler, null);
+    }
+
+    /**
+     * Crée un dispatcher adossé à une outbox durable.
+     *
+     * @param sender      le sender à utiliser pour la livraison
+     * @param rateLimiter le limiteur de débit appliqué avant chaque envoi
+     * @param retryPolicy la politique de nouvelles tentatives
+     * @param scheduler   le planificateur des envois différés et des nouvelles tentatives
+     * @param outbox      l'outbox des notifications en attente, ou null pour une livraison en mémoire seule
+     */
+    public NotificationDispatcher(TelegramSender sender, TelegramRateLimiter rateLimiter,
+                                  RetryPolicy retryPolicy, ScheduledExecutorService scheduler,
+                                  NotificationOutbox outbox) {
+        this(sender, rateLimiter, retryPolicy, scheduler, outbox, new TelegramCircuitBreaker());
+    }
+
+    /**
+     * Crée un dispatcher avec un circuit breaker spécifique (ex: tests).
+     *
+     * @param sender         le sender à utiliser pour la livraison
+     * @param rateLimiter    le limiteur de débit appliqué avant chaque envoi
+     * @param retryPolicy    la politique de nouvelles tentatives
+     * @param scheduler      le planificateur des envois différés et des nouvelles tentatives
+     * @param outbox         l'outbox des notifications en attente, ou null pour une livraison en mémoire seule
+     * @param circuitBreaker le circuit breaker des bots
+     */
+    public NotificationDispatcher(TelegramSender sender, TelegramRateLimiter rateLimiter,
+                                  RetryPolicy retryPolicy, ScheduledExecutorService scheduler,
+                                  NotificationOutbox outbox, TelegramCircuitBreaker circuitBreaker) {
+        this(sender, rateLimiter, retryPolicy, scheduler, outbox, circuitBreaker, new DispatchQueue(
+                () -> TelegramGlobalConfiguration.get().getQueueCapacity(),
+                () -> TelegramGlobalConfiguration.get().getOverflowPolicy(),
+                () -> TelegramGlobalConfiguration.get().getQueueBlockTimeoutSeconds()));
+    }
+
+    /**
+     * Crée un dispatcher avec une file bornée spécifique (ex: tests).
+     *
+     * @param sender         le sender à utiliser pour la livraison
+     * @param rateLimiter    le limiteur de débit appliqué avant chaque envoi
+     * @param retryPolicy    la politique de nouvelles tentatives
+     * @param scheduler      le planificateur des envois différés et des nouvelles tentatives
+     * @param outbox         l'outbox des notifications en attente, ou null pour une livraison en mémoire seule
+     * @param circuitBreaker le circuit breaker des bots
+     * @param queue          la file bornée des notifications en cours
+     */
+    public NotificationDispatcher(TelegramSender sender, TelegramRateLimiter rateLimiter,
+                                  RetryPolicy retryPolicy, ScheduledExecutorService scheduler,
+                                  NotificationOutbox outbox, TelegramCircuitBreaker circuitBreaker,
+                                  DispatchQueue queue) {
+        this.circuitBreaker = circuitBreaker;
+        this.queue = queue;
+        this.sender = sender;
+        this.rateLimiter = rateLimiter;
+        this.retryPolicy = retryPolicy;
+        this.scheduler = scheduler;
+        this.outbox = outbox;
+        // Les notifications mises de côté pendant une panne partent dès que l'API est de nouveau disponible
+        circuitBreaker.addRecoveryListener(botToken -> replayParked());
+    }
+
+    /**
+     * Rejoue les notifications restées dans l'outbox lors du précédent arrêt.
+     * Appelé une fois les jobs chargés, pour que la livraison ne retarde pas le démarrage.
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void replayPendingNotifications() {
+        INSTANCE.replayOutbox();
+    }
+
+    /**
+     * Ferme l'outbox à l'arrêt de Jenkins, après un dernier fsync.
+     */
+    @Terminator
+    public static void closeOutbox() {
+        if (INSTANCE.outbox != null) {
+            INSTANCE.outbox.close();
+        }
+    }
+
+    /**
+     * Obtient le dispatcher partagé par toutes les instances du notifier.
+     *
+     * @return le dispatcher partagé
+     */
+    public static NotificationDispatcher get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Obtient le limiteur de débit, pour la supervision des jetons disponibles.
+     *
+     * @return le limiteur de débit
+     */
+    public TelegramRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Obtient le circuit breaker, pour la supervision de l'état des bots.
+     *
+     * @return le circuit breaker
+     */
+    public TelegramCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Obtient la file bornée, pour la supervision de sa profondeur et des abandons.
+     *
+     * @return la file des notifications en cours
+     */
+    public DispatchQueue getQueue() {
+        return queue;
+    }
+
+    /**
+     * Indique si l'API Telegram est considérée indisponible pour le bot de la notification.
+     * L'appelant ne doit alors pas attendre la livraison, qui est différée à la fin de la panne.
+     *
+     * @param notification la notification à livrer
+     * @return true si le circuit du bot est ouvert
+     */
+    public boolean isUnavailable(Notification notification) {
+        return !isBlank(notification.getBotToken())
+                && circuitBreaker.getState(notification.getBotToken()) == TelegramCircuitBreaker.State.OPEN;
+    }
+
+    /**
+     * Planifie la livraison d'une notification et retourne immédiatement, sans jamais attendre une place
+     * dans la file (ex: fermeture d'une fenêtre de regroupement par le planificateur).
+     *
+     * @param notification la notification à livrer
+     * @return un future complété avec true si la notification a été livrée (éventuellement après
+     * plusieurs tentatives), false si elle a été abandonnée
+     */
+    public CompletableFuture<Boolean> dispatch(Notification notification) {
+        return dispatch(notification, false);
+    }
+
+    /**
+     * Planifie la livraison d'une notification.
+     * Avec la politique {@link DispatchQueue.OverflowPolicy#BLOCK}, un appel depuis le thread d'un build
+     * ({@code mayBlock}) attend une place si la file est pleine; les autres appels ne sont jamais bloqués.
+     *
+     * @param notification la notification à livrer
+     * @param mayBlock     true si l'appelant est le thread d'un build, qui peut attendre une place
+     * @return un future complété avec true si la notification a été livrée (éventuellement après
+     * plusieurs tentatives), false si elle a été abandonnée
+     */
+    public CompletableFuture<Boolean> dispatch(Notification notification, boolean mayBlock) {
+        if (isBlank(notification.getBotToken()) || isBlank(notification.getChatId())) {
+            // Le sender rejette et logge les paramètres invalides sans consommer de jeton
+            return send(notification, System.currentTimeMillis() + retryPolicy.getMaxAgeMillis())
+                    .thenApply(SendResult::isSuccess);
+        }
+
+        return deduplicated(notification, -1, () -> enqueue(mayBlock
+                ? queue.offer(notification, journal(notification))
+                : queue.offerWithoutBlocking(notification, journal(notification))));
+    }
+
+    /**
+     * Planifie la livraison d'un message dont l'identifiant Telegram servira à le modifier ensuite
+     * (ex: message de statut d'un build, {@link StatusMessageTracker}). Le message n'est pas dédupliqué.
+     * Les modifications partent de la fin de la livraison précédente : l'appel n'attend jamais une place dans la file.
+     *
+     * @param notification la notification à livrer, ou à appliquer au message qu'elle modifie
+     * @return un future complété avec l'identifiant du message, ou -1 si la notification a été abandonnée
+     */
+    public CompletableFuture<Long> post(Notification notification) {
+        if (isBlank(notification.getBotToken()) || isBlank(notification.getChatId())) {
+            return send(notification, System.currentTimeMillis() + retryPolicy.getMaxAgeMillis())
+                    .thenApply(result -> result.isSuccess() ? result.getMessageId() : -1L);
+        }
+
+        DispatchQueue.Ticket ticket = queue.offerWithoutBlocking(notification, journal(notification));
+        return enqueue(ticket).thenApply(success -> success ? ticket.getMessageId() : -1L);
+    }
+
+    /**
+     * Rejoue les notifications en attente dans l'outbox, sous le limiteur de débit.
+     *
+     * @return le nombre de notifications rejouées
+     */
+    public int replayOutbox() {
+        if (outbox == null) {
+            return 0;
+        }
+
+        List<NotificationOutbox.Entry> entries;
+        try {
+            entries = outbox.open();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Impossible d'ouvrir l'outbox Telegram", e);
+            return 0;
+        }
+
+        int replayed = replay(entries);
+        if (replayed > 0) {
+            LOGGER.log(Level.INFO, "{0} notification(s) en attente rejouée(s) depuis l''outbox", replayed);
+        }
+        return replayed;
+    }
+
+    /**
+     * Livre à nouveau les notifications abandonnées sur un échec transitoire et mises de côté dans l'outbox
+     * (ex: panne de l'API plus longue que l'âge maximal des nouvelles tentatives). Appelé à la fermeture d'un
+     * circuit, et périodiquement tant qu'il en reste : une notification encore bloquée par le circuit de son bot
+     * attend sa réouverture, ou est de nouveau mise de côté.
+     *
+     * @return le nombre de notifications livrées à nouveau
+     */
+    public int replayParked() {
+        if (outbox == null) {
+            return 0;
+        }
+
+        int replayed = replay(outbox.takeParked());
+        if (replayed > 0) {
+            LOGGER.log(Level.INFO, "{0} notification(s) abandonnée(s) pendant une panne livrée(s) à nouveau", replayed);
+        }
+        return replayed;
+    }
+
+    /**
+     * Confie à la file des notifications en attente dans l'outbox, sauf celles trop anciennes, acquittées sans envoi.
+     * Au-delà de la capacité de la file, elles restent sur disque.
+     *
+     * @return le nombre de notifications confiées à la file
+     */
+    private int replay(List<NotificationOutbox.Entry> entries) {
+        long oldest = System.currentTimeMillis() - TelegramConfig.OUTBOX_MAX_REPLAY_AGE_MILLIS;
+        int replayed = 0;
+        for (NotificationOutbox.Entry entry : entries) {
+            Notification notification = entry.getNotification() != null
+                    ? entry.getNotification()
+                    : reload(entry.getId());
+            if (notification == null) {
+                continue;
+            }
+            if (entry.getCreatedAt() < oldest) {
+                LOGGER.log(Level.INFO, "Notification trop ancienne pour le chat {0}, non rejouée",
+                        notification.getChatId());
+                acknowledge(entry.getId());
+                continue;
+            }
+            deduplicated(notification, entry.getId(), () -> enqueue(queue.offer(
+                    notification, entry.getId(), DispatchQueue.OverflowPolicy.SPILL_TO_DISK)));
+            replayed++;
+        }
+        return replayed;
+    }
+
+    /**
+     * Livre une notification sauf si sa clé d'idempotence a déjà été livrée ou est en cours de livraison.
+     * Un doublon écarté est acquitté dans l'outbox.
+     *
+     * @param notification la notification à livrer
+     * @param outboxId     l'identifiant du doublon dans l'outbox, ou -1
+     * @param delivery     la livraison, exécutée seulement pour la première notification d'une clé
+     * @return un future complété avec true si la notification (ou la notification de même clé) a été livrée
+     */
+    private CompletableFuture<Boolean> deduplicated(Notification notification, long outboxId,
+                                                    Supplier<CompletableFuture<Boolean>> delivery) {
+        String key = notification.getIdempotencyKey();
+        if (key == null) {
+            return delivery.get();
+        }
+
+        if (isDelivered(key)) {
+            LOGGER.log(Level.FINE, "Notification {0} déjà livrée, doublon ignoré", key);
+            acknowledge(outboxId);
+            return CompletableFuture.completedFuture(true);
+        }
+
+        CompletableFuture<Boolean> claim = new CompletableFuture<>();
+        CompletableFuture<Boolean> current = inFlight.putIfAbsent(key, claim);
+        if (current != null) {
+            LOGGER.log(Level.FINE, "Notification {0} en cours de livraison, doublon ignoré", key);
+            acknowledge(outboxId);
+            return current;
+        }
+
+        CompletableFuture<Boolean> result;
+        try {
+            result = delivery.get();
+        } catch (RuntimeException e) {
+            inFlight.remove(key, claim);
+            claim.completeExceptionally(e);
+            throw e;
+        }
+        // La clé est déjà enregistrée comme livrée (remember) quand elle quitte les livraisons en cours
+        result.whenComplete((success, error) -> {
+            inFlight.remove(key, claim);
+            claim.complete(error == null && Boolean.TRUE.equals(success));
+        });
+        return claim;
+    }
+
+    /**
+     * Indique si une notification de même clé d'idempotence a déjà été livrée.
+     *
+     * @param idempotencyKey la clé d'idempotence
+     * @return true si la clé est enregistrée comme livrée (outbox ou cache)
+     */
+    public boolean isDelivered(String idempotencyKey) {
+        return outbox != null ? outbox.isDelivered(idempotencyKey) : delivered.contains(idempotencyKey);
+    }
+
+    /**
+     * Enregistre la livraison d'une notification qui n'est pas passée par ce dispatcher sous sa propre clé
+     * (ex: notification fusionnée dans un récapitulatif par {@link NotificationCoalescer}).
+     *
+     * @param idempotencyKey la clé d'idempotence, ou null
+     */
+    public void markDelivered(String idempotencyKey) {
+        remember(idempotencyKey);
+    }
+
+    /**
+     * Enregistre la livraison d'une notification, dans l'outbox si elle existe.
+     */
+    private void remember(String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return;
+        }
+        if (outbox == null) {
+            delivered.add(idempotencyKey);
+            return;
+        }
+        try {
+            outbox.markDelivered(idempotencyKey);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Impossible d'enregistrer la livraison dans l'outbox", e);
+        }
+    }
+
+    /**
+     * Donne suite à l'admission d'une notification dans la file : livraison, déchargement ou abandon.
+     *
+     * @param ticket la place attribuée par la file
+     * @return un future complété avec true si la notification a été livrée
+     */
+    private CompletableFuture<Boolean> enqueue(DispatchQueue.Ticket ticket) {
+        if (ticket.getDisplaced() != null) {
+            discard(ticket.getDisplaced());
+        }
+
+        if (ticket.getState() == DispatchQueue.State.DROPPED) {
+            discard(ticket);
+        } else if (ticket.getState() == DispatchQueue.State.SPILLED) {
+            outbox.spill(ticket.getOutboxId());
+            LOGGER.log(Level.FINE, "File de livraison pleine, notification {0} conservée dans l''outbox",
+                    ticket.getOutboxId());
+        }
+        drain();
+        return ticket.getResult();
+    }
+
+    /**
+     * Démarre les notifications que la file laisse partir, par ordre de priorité.
+     * Une livraison terminée pendant le drainage (ex: réponse immédiate) relance une passe au lieu de récurser.
+     */
+    private void drain() {
+        if (drainRequests.getAndIncrement() > 0) {
+            return;
+        }
+
+        int missed = 1;
+        do {
+            DispatchQueue.Ticket ticket;
+            while ((ticket = queue.poll()) != null) {
+                start(ticket);
+            }
+            missed = drainRequests.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Livre une notification retirée de la file, puis libère sa place et relance le drainage.
+     * Une notification déchargée est d'abord relue depuis l'outbox.
+     */
+    private void start(DispatchQueue.Ticket ticket) {
+        Notification notification = ticket.getNotification();
+        if (notification == null) {
+            notification = reload(ticket.getOutboxId());
+            if (notification == null) {
+                queue.release(ticket);
+                ticket.getResult().complete(false);
+                return;
+            }
+            ticket.setNotification(notification);
+        }
+
+        CompletableFuture<SendResult> delivery;
+        try {
+            delivery = deliver(notification, ticket.getOutboxId());
+        } catch (RuntimeException e) {
+            delivery = CompletableFuture.failedFuture(e);
+        }
+        delivery.exceptionally(e -> {
+            LOGGER.log(Level.WARNING, "Livraison de la notification interrompue", e);
+            return SendResult.fromException(e);
+        }).thenAccept(result -> {
+            queue.release(ticket);
+            if (result.isSuccess()) {
+                ticket.setMessageId(result.getMessageId());
+            }
+            ticket.getResult().complete(result.isSuccess());
+            drain();
+        });
+    }
+
+    /**
+     * Relit depuis l'outbox une notification déchargée.
+     *
+     * @return la notification, ou null si elle a été acquittée entre-temps ou est illisible
+     */
+    private Notification reload(long outboxId) {
+        try {
+            return outbox.load(outboxId);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Impossible de relire la notification dans l'outbox", e);
+            return null;
+        }
+    }
+
+    /**
+     * Abandonne une notification faute de place dans la file.
+     */
+    private void discard(DispatchQueue.Ticket ticket) {
+        if (!ticket.getResult().complete(false)) {
+            return;
+        }
+
+        Notification notification = ticket.getNotification();
+        if (notification != null) {
+            LOGGER.log(Level.WARNING, "File de livraison pleine, notification {0} pour le chat {1} abandonnée",
+                    new Object[]{notification.getStatus(), notification.getChatId()});
+        }
+        acknowledge(ticket.getOutboxId());
+        ticket.setNotification(null);
+    }
+
+    /**
+     * Livre une notification et l'acquitte dans l'outbox si elle a été livrée ou définitivement refusée.
+     * Une notification abandonnée sur un échec transitoire est mise de côté dans l'outbox ({@link #park}).
+     *
+     * @param notification la notification à livrer
+     * @param outboxId     l'identifiant dans l'outbox, ou -1 si elle n'y a pas été écrite
+     * @return un future complété avec le résultat du dernier message livré
+     */
+    private CompletableFuture<SendResult> deliver(Notification notification, long outboxId) {
+        // Un message modifié reste un seul message : son texte est tronqué au lieu d'être découpé
+        FormattedMessage message = notification.getMessage();
+        List<FormattedMessage> parts = notification.getEditMessageId() > 0
+                ? Collections.singletonList(message.truncate(notification.getParseMode(),
+                        TelegramConfig.MAX_MESSAGE_LENGTH))
+                : MessageSplitter.split(message, TelegramConfig.MAX_MESSAGE_LENGTH, notification.getParseMode());
+        if (parts.size() > 1) {
+            LOGGER.log(Level.FINE, "Message pour le chat {0} découpé en {1} parties",
+                    new Object[]{notification.getChatId(), parts.size()});
+        }
+
+        return deliverParts(notification.withAttachment(null), parts, 0)
+                .thenCompose(result -> result.isSuccess() && notification.getAttachment() != null
+                        ? deliverAttachment(notification).thenApply(ignored -> result)
+                        : CompletableFuture.completedFuture(result))
+                .thenApply(result -> {
+                    if (result.isSuccess()) {
+                        remember(notification.getIdempotencyKey());
+                    }
+                    if (result.isSuccess() || !result.isRetryable()) {
+                        acknowledge(outboxId);
+                    } else {
+                        park(outboxId);
+                    }
+                    return result;
+                });
+    }
+
+    /**
+     * Livre le fichier joint d'une notification, avec les mêmes limites de débit et nouvelles tentatives
+     * qu'un message. Un échec est loggé mais n'affecte pas le résultat de la notification, déjà livrée.
+     */
+    private CompletableFuture<SendResult> deliverAttachment(Notification notification) {
+        return attempt(notification, 1, System.currentTimeMillis()).thenApply(result -> {
+            if (!result.isSuccess()) {
+                LOGGER.log(Level.WARNING, "Échec de l''envoi du fichier {0} au chat {1}",
+                        new Object[]{notification.getAttachment().getFileName(), notification.getChatId()});
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Livre les parties d'un message dans l'ordre, chacune après le succès de la précédente.
+     *
+     * @return un future complété avec le résultat de la dernière partie tentée
+     */
+    private CompletableFuture<SendResult> deliverParts(Notification notification, List<FormattedMessage> parts,
+                                                       int index) {
+        FormattedMessage message = parts.get(index);
+        Notification part = message.getText().equals(notification.getText())
+                ? notification
+                : notification.withMessage(message);
+        return attempt(part, 1, System.currentTimeMillis()).thenCompose(result -> {
+            if (!result.isSuccess() || index + 1 >= parts.size()) {
+                return CompletableFuture.completedFuture(result);
+            }
+            return deliverParts(notification, parts, index + 1);
+        });
+    }
+
+    /**
+     * Écrit la notification dans l'outbox. Un échec d'écriture n'empêche pas la livraison.
+     *
+     * @return l'identifiant dans l'outbox, ou -1
+     */
+    private long journal(Notification notification) {
+        if (outbox == null) {
+            return -1;
+        }
+        try {
+            return outbox.append(notification);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Impossible d'écrire la notification dans l'outbox, livraison sans persistance", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Met de côté une notification abandonnée sur un échec transitoire, et planifie sa nouvelle livraison.
+     */
+    private void park(long outboxId) {
+        if (outbox == null || outboxId < 0) {
+            return;
+        }
+        outbox.park(outboxId);
+        scheduleParkedReplay();
+    }
+
+    /**
+     * Planifie une nouvelle livraison des notifications mises de côté, si aucune n'est déjà planifiée.
+     */
+    private void scheduleParkedReplay() {
+        if (!parkedReplayScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            scheduler.schedule(() -> {
+                parkedReplayScheduled.set(false);
+                replayParked();
+            }, TelegramConfig.OUTBOX_RETRY_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Arrêt en cours : les notifications restent dans l'outbox pour le prochain démarrage
+            parkedReplayScheduled.set(false);
+        }
+    }
+
+    private void acknowledge(long outboxId) {
+        if (outbox == null || outboxId < 0) {
+            return;
+        }
+        try {
+            outbox.ack(outboxId);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Impossible d'acquitter la notification dans l'outbox", e);
+        }
+    }
+
+    /**
+     * Exécute une tentative de livraison, puis planifie la suivante si l'échec est transitoire.
+     *
+     * @param notification la notification à livrer
+     * @param attempt      numéro de la tentative (1 pour la première)
+     * @param firstAttemptAt date de la première tentative, pour l'âge maximal
+     * @return un future complété avec le résultat de la dernière tentative
+     */
+    private CompletableFuture<SendResult> attempt(Notification notification, int attempt, long firstAttemptAt) {
+        long blocked = circuitBreaker.blockedMillis(notification.getBotToken());
+        if (blocked > 0) {
+            if (System.currentTimeMillis() - firstAttemptAt + blocked > retryPolicy.getMaxAgeMillis()) {
+                LOGGER.log(Level.WARNING, "API Telegram indisponible, notification pour le chat {0} conservée dans l''outbox jusqu''à son rétablissement",
+                        notification.getChatId());
+                return CompletableFuture.completedFuture(SendResult.unavailable());
+            }
+            LOGGER.log(Level.FINE, "Circuit ouvert, notification pour le chat {0} différée de {1} ms",
+                    new Object[]{notification.getChatId(), blocked});
+            return schedule(() -> attempt(notification, attempt, firstAttemptAt), TimeUnit.MILLISECONDS.toNanos(blocked));
+        }
+
+        return rateLimited(notification, firstAttemptAt + retryPolicy.getMaxAgeMillis()).thenCompose(result -> {
+            if (result.isSuccess()) {
+                return CompletableFuture.completedFuture(result);
+            }
+
+            // Un groupe devenu supergroupe change d'ID : Telegram indique le nouveau, renvoyé immédiatement
+            String migratedChatId = result.getMigrateToChatId() != 0 ? Long.toString(result.getMigrateToChatId()) : null;
+            if (migratedChatId != null && !migratedChatId.equals(notification.getChatId())
+                    && attempt < TelegramConfig.MAX_DELIVERY_ATTEMPTS) {
+                LOGGER.log(Level.WARNING, "Le chat {0} a migré vers le supergroupe {1} : mettez à jour le credential de l''ID du chat",
+                        new Object[]{notification.getChatId(), migratedChatId});
+                return attempt(notification.withChatId(migratedChatId), attempt + 1, firstAttemptAt);
+            }
+
+            long delay = retryPolicy.nextDelayMillis(attempt, result, System.currentTimeMillis() - firstAttemptAt);
+            if (delay < 0) {
+                if (result.isRetryable()) {
+                    LOGGER.log(Level.WARNING, "Notification pour le chat {0} abandonnée après {1} tentative(s)",
+                            new Object[]{notification.getChatId(), attempt});
+                }
+                return CompletableFuture.completedFuture(result);
+            }
+
+            LOGGER.log(Level.FINE, "Nouvelle tentative pour le chat {0} dans {1} ms (tentative {2})",
+                    new Object[]{notification.getChatId(), delay, attempt + 1});
+            return schedule(() -> attempt(notification, attempt + 1, firstAttemptAt),
+                    TimeUnit.MILLISECONDS.toNanos(delay));
+        });
+    }
+
+    /**
+     * Envoie la notification dès que le limiteur de débit le permet.
+     *
+     * @param deadline l'échéance de la notification (ms depuis l'epoch), qui borne le timeout de l'envoi
+     */
+    private CompletableFuture<SendResult> rateLimited(Notification notification, long deadline) {
+        long delayNanos = rateLimiter.reserve(notification.getBotToken(), notification.getChatId());
+        if (delayNanos <= 0) {
+            LOGGER.log(Level.FINE, "Notification planifiée pour le chat {0}", notification.getChatId());
+            return monitored(notification, deadline);
+        }
+
+        LOGGER.log(Level.FINE, "Limite de débit atteinte pour le chat {0}, envoi différé de {1} ms",
+                new Object[]{notification.getChatId(), TimeUnit.NANOSECONDS.toMillis(delayNanos)});
+        return schedule(() -> monitored(notification, deadline), delayNanos);
+    }
+
+    /**
+     * Envoie la notification et transmet le résultat et la latence au circuit breaker.
+     * La durée d'envoi d'un fichier joint dépend de sa taille et n'est pas comptée comme une lenteur.
+     */
+    private CompletableFuture<SendResult> monitored(Notification notification, long deadline) {
+        long start = System.nanoTime();
+        return send(notification, deadline).thenApply(result -> {
+            long latency = notification.getAttachment() != null ? 0 : System.nanoTime() - start;
+            circuitBreaker.record(notification.getBotToken(), result, TimeUnit.NANOSECONDS.toMillis(latency));
+            return result;
+        });
+    }
+
+    /**
+     * Envoie la notification. Un message dispose du temps restant avant l'échéance de la notification,
+     * un fichier joint du timeout configuré pour les documents (sa durée dépend de sa taille).
+     */
+    private CompletableFuture<SendResult> send(Notification notification, long deadline) {
+        if (notification.getAttachment() != null) {
+            return sender.sendDocumentAsync(notification.getBotToken(), notification.getChatId(),
+                    notification.getAttachment(), null);
+        }
+        Duration budget = Duration.ofMillis(Math.max(1, deadline - System.currentTimeMillis()));
+        if (notification.getEditMessageId() > 0) {
+            return sender.editMessageTextAsync(notification.getBotToken(), notification.getChatId(),
+                    notification.getEditMessageId(), notification.getMessage(), notification.getParseMode(), budget);
+        }
+        return sender.sendAsync(notification.getBotToken(), notification.getChatId(), notification.getMessage(),
+                notification.getParseMode(), budget);
+    }
+
+    /**
+     * Planifie une étape asynchrone sans bloquer de thread pendant le délai.
+     *
+     * @param step       l'étape à exécuter
+     * @param delayNanos le délai en nanosecondes
+     * @param <T>        le type du résultat
+     * @return un future complété avec le résultat de l'étape
+     */
+    private <T> CompletableFuture<T> schedule(Supplier<CompletableFuture<T>> step, long delayNanos) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            scheduler.schedule(() -> step.get().whenComplete((value, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            }), delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.WARNING, "Planificateur indisponible, notification abandonnée", e);
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
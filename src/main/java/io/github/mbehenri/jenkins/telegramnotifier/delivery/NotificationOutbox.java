@@ -0,0 +1,730 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+import hudson.util.Secret;
+import io.github.mbehenri.jenkins.telegramnotifier.FormattedMessage;
+import io.github.mbehenri.jenkins.telegramnotifier.MessageEntities;
+import io.github.mbehenri.jenkins.telegramnotifier.ParseMode;
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramConfig;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Journal durable des notifications en attente de livraison, sous {@code JENKINS_HOME/telegram-notifier/outbox}.
+ * <p>
+ * Chaque notification est ajoutée au segment actif avant d'être livrée, puis acquittée une fois livrée.
+ * Les enregistrements sont préfixés par leur longueur et un CRC32 : un enregistrement tronqué par un arrêt
+ * brutal est ignoré à la relecture. Les écritures sont en ajout seul (coût O(1)) et les fsync sont regroupés
+ * toutes les {@link TelegramConfig#OUTBOX_FSYNC_INTERVAL_MILLIS} ms.
+ * <p>
+ * Quand le segment actif dépasse {@link TelegramConfig#OUTBOX_SEGMENT_MAX_BYTES}, un nouveau segment est ouvert,
+ * les notifications encore en attente y sont recopiées et les anciens segments sont supprimés : l'outbox ne
+ * conserve jamais les notifications déjà livrées au-delà d'une rotation.
+ * <p>
+ * Les tokens de bot sont chiffrés avec {@link Secret} avant d'être écrits sur disque.
+ * <p>
+ * L'outbox journalise aussi les clés d'idempotence des notifications livrées ({@link #markDelivered(String)}) :
+ * le {@link IdempotencyCache} est reconstruit à l'ouverture et recopié à chaque rotation, si bien qu'un rejeu
+ * après redémarrage ne renvoie pas une notification déjà livrée.
+ * <p>
+ * Les pièces jointes ({@link Notification#getAttachment()}) ne sont pas journalisées : une notification d'échec
+ * rejouée après redémarrage est livrée sans son log.
+ */
+public class NotificationOutbox {
+
+    private static final Logger LOGGER = Logger.getLogger(NotificationOutbox.class.getName());
+
+    private static final byte RECORD_APPEND = 1;
+    private static final byte RECORD_ACK = 2;
+    private static final byte RECORD_DELIVERED = 3;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * Taille de l'en-tête d'un enregistrement : longueur (int) + CRC32 (int).
+     */
+    private static final int HEADER_BYTES = 8;
+
+    /**
+     * Notification en attente dans l'outbox.
+     */
+    public static final class Entry {
+
+        private final long id;
+        private final long createdAt;
+        private Notification notification;
+        private long segment;
+        private long offset;
+        private boolean parked;
+
+        Entry(long id, long createdAt, Notification notification, long segment, long offset) {
+            this.id = id;
+            this.createdAt = createdAt;
+            this.notification = notification;
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        /**
+         * Obtient la notification.
+         *
+         * @return la notification, ou null si elle a été déchargée sur disque ({@link #spill(long)})
+         */
+        public Notification getNotification() {
+            return notification;
+        }
+    }
+
+    private final File directory;
+    private final ScheduledExecutorService scheduler;
+    private final UnaryOperator<String> tokenEncoder;
+    private final UnaryOperator<String> tokenDecoder;
+
+    private final Map<Long, Entry> pending = new LinkedHashMap<>();
+    private final List<Long> recovered = new ArrayList<>();
+    private final IdempotencyCache delivered = new IdempotencyCache();
+
+    private FileChannel active;
+    private long activeSegment;
+    private long activeSize;
+    private long bytesSinceRotation;
+    private long nextId = 1;
+    private boolean dirty;
+    private boolean flushScheduled;
+
+    /**
+     * Crée une outbox dont les tokens sont chiffrés avec {@link Secret}.
+     *
+     * @param directory le répertoire des segments
+     * @param scheduler le planificateur des fsync regroupés
+     */
+    public NotificationOutbox(File directory, ScheduledExecutorService scheduler) {
+        this(directory, scheduler,
+                token -> Secret.fromString(token).getEncryptedValue(),
+                encrypted -> {
+                    Secret secret = Secret.decrypt(encrypted);
+                    return secret != null ? secret.getPlainText() : null;
+                });
+    }
+
+    /**
+     * Crée une outbox avec un encodage de token spécifique (ex: tests hors Jenkins).
+     *
+     * @param directory    le répertoire des segments
+     * @param scheduler    le planificateur des fsync regroupés
+     * @param tokenEncoder transforme le token avant écriture
+     * @param tokenDecoder restaure le token à la relecture (null si illisible)
+     */
+    public NotificationOutbox(File directory, ScheduledExecutorService scheduler,
+                              UnaryOperator<String> tokenEncoder, UnaryOperator<String> tokenDecoder) {
+        this.directory = directory;
+        this.scheduler = scheduler;
+        this.tokenEncoder = tokenEncoder;
+        this.tokenDecoder = tokenDecoder;
+    }
+
+    /**
+     * Crée l'outbox de l'instance Jenkins courante.
+     *
+     * @return l'outbox, ou null hors d'une instance Jenkins (ex: tests unitaires)
+     */
+    static NotificationOutbox createDefault() {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return null;
+        }
+        return new NotificationOutbox(new File(jenkins.getRootDir(), TelegramConfig.OUTBOX_DIRECTORY), Timer.get());
+    }
+
+    /**
+     * Ouvre l'outbox si nécessaire et retourne les notifications relues sur disque encore en attente.
+     * <p>
+     * Les notifications relues ne sont retournées qu'une fois, au premier appel, même si l'outbox a déjà été
+     * ouverte par un ajout ({@link #append}) : les appels suivants retournent une liste vide, et les notifications
+     * ajoutées depuis l'ouverture, déjà confiées à la livraison, ne sont jamais retournées.
+     * Les notifications rejouées n'ont pas de pièce jointe.
+     *
+     * @return les notifications à rejouer, dans leur ordre d'arrivée
+     * @throws IOException si le répertoire ou un segment ne peut pas être lu
+     */
+    public synchronized List<Entry> open() throws IOException {
+        openSegments();
+
+        // Les entrées acquittées entre l'ouverture et le rejeu (ex: doublon déjà livré) ne sont pas rejouées
+        List<Entry> entries = new ArrayList<>(recovered.size());
+        for (Long id : recovered) {
+            Entry entry = pending.get(id);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        recovered.clear();
+        return entries;
+    }
+
+    /**
+     * Relit les segments existants et ouvre un nouveau segment actif, si l'outbox n'est pas déjà ouverte.
+     * Les notifications relues sont conservées pour le rejeu ({@link #open()}).
+     */
+    private void openSegments() throws IOException {
+        if (active != null) {
+            return;
+        }
+
+        Files.createDirectories(directory.toPath());
+
+        long lastSegment = 0;
+        for (File segment : listSegments()) {
+            long sequence = segmentSequence(segment);
+            readSegment(segment, sequence);
+            lastSegment = Math.max(lastSegment, sequence);
+        }
+
+        activeSegment = lastSegment;
+        rotate();
+
+        recovered.addAll(pending.keySet());
+        LOGGER.log(Level.FINE, "Outbox ouverte, {0} notification(s) en attente", pending.size());
+    }
+
+    /**
+     * Ajoute une notification au journal. Sa pièce jointe éventuelle n'est pas journalisée.
+     *
+     * @param notification la notification à conserver jusqu'à sa livraison
+     * @return l'identifiant de l'entrée, à passer à {@link #ack(long)}
+     * @throws IOException si l'écriture échoue
+     */
+    public synchronized long append(Notification notification) throws IOException {
+        openSegments();
+
+        Entry entry = new Entry(nextId++, System.currentTimeMillis(), notification, activeSegment, activeSize);
+        bytesSinceRotation += write(encodeAppend(entry));
+        pending.put(entry.id, entry);
+
+        if (bytesSinceRotation > TelegramConfig.OUTBOX_SEGMENT_MAX_BYTES) {
+            rotate();
+        }
+        return entry.id;
+    }
+
+    /**
+     * Acquitte une notification livrée (ou définitivement abandonnée).
+     *
+     * @param id l'identifiant retourné par {@link #append(Notification)}
+     * @throws IOException si l'écriture échoue
+     */
+    public synchronized void ack(long id) throws IOException {
+        if (active == null || pending.remove(id) == null) {
+            return;
+        }
+        bytesSinceRotation += write(encodeAck(id));
+    }
+
+    /**
+     * Décharge une notification en attente de la mémoire : seul son emplacement sur disque est conservé,
+     * jusqu'à ce que {@link #load(long)} la relise.
+     *
+     * @param id l'identifiant retourné par {@link #append(Notification)}
+     */
+    public synchronized void spill(long id) {
+        Entry entry = pending.get(id);
+        if (entry != null) {
+            entry.notification = null;
+        }
+    }
+
+    /**
+     * Met de côté une notification abandonnée sur un échec transitoire (ex: panne de l'API plus longue que
+     * l'âge maximal des nouvelles tentatives) : elle est déchargée de la mémoire et reste en attente jusqu'à ce
+     * que {@link #takeParked()} la rende pour une nouvelle livraison.
+     *
+     * @param id l'identifiant retourné par {@link #append(Notification)}
+     */
+    public synchronized void park(long id) {
+        Entry entry = pending.get(id);
+        if (entry != null) {
+            entry.parked = true;
+            entry.notification = null;
+        }
+    }
+
+    /**
+     * Retire les notifications mises de côté ({@link #park(long)}), pour les livrer à nouveau.
+     * Chacune n'est rendue qu'une fois, jusqu'à ce qu'elle soit de nouveau mise de côté.
+     *
+     * @return les notifications mises de côté, dans leur ordre d'arrivée; leur contenu est relu par {@link #load(long)}
+     */
+    public synchronized List<Entry> takeParked() {
+        List<Entry> entries = new ArrayList<>();
+        for (Entry entry : pending.values()) {
+            if (entry.parked) {
+                entry.parked = false;
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Obtient le nombre de notifications mises de côté en attente d'une nouvelle livraison.
+     *
+     * @return le nombre d'entrées mises de côté
+     */
+    public synchronized int getParkedCount() {
+        int parked = 0;
+        for (Entry entry : pending.values()) {
+            if (entry.parked) {
+                parked++;
+            }
+        }
+        return parked;
+    }
+
+    /**
+     * Obtient une notification en attente, en la relisant sur disque si elle a été déchargée.
+     *
+     * @param id l'identifiant retourné par {@link #append(Notification)}
+     * @return la notification, ou null si elle a été acquittée entre-temps
+     * @throws IOException si l'enregistrement ne peut pas être relu
+     */
+    public synchronized Notification load(long id) throws IOException {
+        Entry entry = pending.get(id);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.notification == null) {
+            Entry stored = decodeAppend(readPayload(entry), entry.segment, entry.offset);
+            if (stored == null) {
+                throw new IOException("Notification " + id + " illisible dans l'outbox");
+            }
+            entry.notification = stored.notification;
+        }
+        return entry.notification;
+    }
+
+    /**
+     * Enregistre la livraison d'une notification, pour ne pas la renvoyer (ex: rejeu après redémarrage).
+     * Hors d'une outbox ouverte, la clé n'est conservée qu'en mémoire.
+     *
+     * @param idempotencyKey la clé d'idempotence de la notification livrée
+     * @throws IOException si l'écriture échoue
+     */
+    public synchronized void markDelivered(String idempotencyKey) throws IOException {
+        long deliveredAt = System.currentTimeMillis();
+        if (!delivered.add(idempotencyKey, deliveredAt) || active == null) {
+            return;
+        }
+        bytesSinceRotation += write(encodeDelivered(idempotencyKey, deliveredAt));
+        if (bytesSinceRotation > TelegramConfig.OUTBOX_SEGMENT_MAX_BYTES) {
+            rotate();
+        }
+    }
+
+    /**
+     * Indique si une notification de même clé d'idempotence a déjà été livrée.
+     *
+     * @param idempotencyKey la clé d'idempotence, ou null
+     * @return true si la notification ne doit pas être renvoyée
+     */
+    public boolean isDelivered(String idempotencyKey) {
+        return delivered.contains(idempotencyKey);
+    }
+
+    /**
+     * Obtient le nombre de notifications en attente de livraison.
+     *
+     * @return le nombre d'entrées non acquittées
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Force l'écriture sur disque des enregistrements en attente de fsync.
+     */
+    public synchronized void flush() {
+        flushScheduled = false;
+        if (active == null || !dirty) {
+            return;
+        }
+        try {
+            active.force(false);
+            dirty = false;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Échec du fsync de l'outbox Telegram", e);
+        }
+    }
+
+    /**
+     * Ferme l'outbox après un dernier fsync. Les entrées en attente seront rejouées à la prochaine ouverture.
+     */
+    public synchronized void close() {
+        if (active == null) {
+            return;
+        }
+        flush();
+        try {
+            active.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Échec de la fermeture de l'outbox Telegram", e);
+        }
+        active = null;
+        pending.clear();
+        recovered.clear();
+    }
+
+    /**
+     * Ouvre un nouveau segment, y recopie les entrées en attente puis supprime les segments précédents.
+     */
+    private void rotate() throws IOException {
+        FileChannel previous = active;
+        if (previous != null) {
+            previous.force(false);
+            previous.close();
+        }
+
+        activeSegment++;
+        active = FileChannel.open(segmentFile(activeSegment).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        activeSize = 0;
+        bytesSinceRotation = 0;
+
+        // Une entrée déchargée est recopiée telle quelle depuis son segment, encore présent à ce stade
+        for (Entry entry : pending.values()) {
+            byte[] payload = entry.notification != null ? encodeAppend(entry) : readPayload(entry);
+            long offset = activeSize;
+            write(payload);
+            entry.segment = activeSegment;
+            entry.offset = offset;
+        }
+
+        // Les clés encore valides sont recopiées, de la plus ancienne à la plus récente
+        for (Map.Entry<String, Long> key : delivered.snapshot().entrySet()) {
+            write(encodeDelivered(key.getKey(), key.getValue()));
+        }
+
+        // Le nouveau segment doit être durable avant de supprimer les anciens
+        active.force(false);
+        dirty = false;
+
+        for (File segment : listSegments()) {
+            if (segmentSequence(segment) < activeSegment) {
+                Files.deleteIfExists(segment.toPath());
+            }
+        }
+    }
+
+    /**
+     * Écrit un enregistrement encadré (longueur, CRC32, contenu) et planifie le fsync regroupé.
+     *
+     * @return le nombre d'octets écrits
+     */
+    private int write(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        while (buffer.hasRemaining()) {
+            active.write(buffer);
+        }
+
+        dirty = true;
+        scheduleFlush();
+        activeSize += HEADER_BYTES + payload.length;
+        return HEADER_BYTES + payload.length;
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled) {
+            return;
+        }
+        try {
+            scheduler.schedule(this::flush, TelegramConfig.OUTBOX_FSYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            flushScheduled = true;
+        } catch (RejectedExecutionException e) {
+            flush();
+        }
+    }
+
+    /**
+     * Relit un segment, en s'arrêtant au premier enregistrement incomplet ou corrompu.
+     */
+    private void readSegment(File segment, long sequence) throws IOException {
+        byte[] content = Files.readAllBytes(segment.toPath());
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+
+        while (buffer.remaining() >= HEADER_BYTES) {
+            long offset = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                LOGGER.log(Level.WARNING, "Enregistrement tronqué ignoré dans {0}", segment.getName());
+                return;
+            }
+
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                LOGGER.log(Level.WARNING, "Enregistrement corrompu ignoré dans {0}", segment.getName());
+                return;
+            }
+
+            applyRecord(payload, sequence, offset);
+        }
+    }
+
+    /**
+     * Relit le contenu de l'enregistrement d'une entrée dans son segment.
+     */
+    private byte[] readPayload(Entry entry) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentFile(entry.segment).toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(channel, header, entry.offset);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(channel, payload, entry.offset + HEADER_BYTES);
+            CRC32 crc = new CRC32();
+            crc.update(payload.array());
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("Enregistrement corrompu dans " + segmentFile(entry.segment).getName());
+            }
+            return payload.array();
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Enregistrement tronqué dans l'outbox");
+            }
+        }
+    }
+
+    private void applyRecord(byte[] payload, long sequence, long offset) throws IOException {
+        if (payload.length < 9) {
+            LOGGER.log(Level.WARNING, "Enregistrement incomplet ignoré dans l'outbox");
+            return;
+        }
+        if (payload[0] == RECORD_DELIVERED) {
+            applyDelivered(payload);
+            return;
+        }
+
+        long id = ByteBuffer.wrap(payload, 1, 8).getLong();
+        nextId = Math.max(nextId, id + 1);
+
+        if (payload[0] == RECORD_ACK) {
+            pending.remove(id);
+            return;
+        }
+
+        Entry entry = decodeAppend(payload, sequence, offset);
+        if (entry != null) {
+            pending.put(id, entry);
+        }
+    }
+
+    private void applyDelivered(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(payload))) {
+            in.readByte();
+            long deliveredAt = in.readLong();
+            delivered.add(readString(in), deliveredAt);
+        } catch (EOFException e) {
+            LOGGER.log(Level.WARNING, "Enregistrement incomplet ignoré dans l'outbox", e);
+        }
+    }
+
+    /**
+     * Décode un enregistrement d'ajout.
+     * Le statut, la clé d'idempotence, le message modifié, le mode de mise en forme et les entités, absents des
+     * enregistrements des versions précédentes, sont optionnels.
+     *
+     * @return l'entrée, ou null si l'enregistrement est incomplet ou son token illisible
+     */
+    private Entry decodeAppend(byte[] payload, long sequence, long offset) throws IOException {
+        try (DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(payload))) {
+            in.readByte();
+            long id = in.readLong();
+            long createdAt = in.readLong();
+            String token = tokenDecoder.apply(readString(in));
+            String chatId = readString(in);
+            String text = readString(in);
+            String status = in.available() > 0 ? readOptionalString(in) : null;
+            String idempotencyKey = in.available() > 0 ? readOptionalString(in) : null;
+            long editMessageId = in.available() > 0 ? in.readLong() : 0;
+            String parseMode = in.available() > 0 ? readOptionalString(in) : null;
+            MessageEntities entities = in.available() > 0 ? readEntities(in) : MessageEntities.NONE;
+            if (token == null) {
+                LOGGER.log(Level.WARNING, "Token illisible, notification {0} de l''outbox ignorée", id);
+                return null;
+            }
+            Notification notification = new Notification(token, chatId, text, status, null)
+                    .withIdempotencyKey(idempotencyKey)
+                    .withEditMessageId(editMessageId)
+                    .withParseMode(parseMode(parseMode))
+                    .withMessage(FormattedMessage.of(text, entities));
+            return new Entry(id, createdAt, notification, sequence, offset);
+        } catch (EOFException e) {
+            LOGGER.log(Level.WARNING, "Enregistrement incomplet ignoré dans l'outbox", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return le mode enregistré, ou le mode par défaut s'il est absent ou inconnu de cette version
+     */
+    private static ParseMode parseMode(String name) {
+        if (name != null) {
+            for (ParseMode mode : ParseMode.values()) {
+                if (mode.name().equals(name)) {
+                    return mode;
+                }
+            }
+        }
+        return ParseMode.MARKDOWN;
+    }
+
+    private byte[] encodeAppend(Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(RECORD_APPEND);
+            out.writeLong(entry.id);
+            out.writeLong(entry.createdAt);
+            writeString(out, tokenEncoder.apply(entry.notification.getBotToken()));
+            writeString(out, entry.notification.getChatId());
+            writeString(out, entry.notification.getText());
+            writeOptionalString(out, entry.notification.getStatus());
+            writeOptionalString(out, entry.notification.getIdempotencyKey());
+            out.writeLong(entry.notification.getEditMessageId());
+            writeOptionalString(out, entry.notification.getParseMode().name());
+            writeEntities(out, entry.notification.getEntities());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeEntities(DataOutputStream out, MessageEntities entities) throws IOException {
+        out.writeInt(entities.size());
+        for (int i = 0; i < entities.size(); i++) {
+            out.writeByte(entities.getType(i).ordinal());
+            out.writeInt(entities.getOffset(i));
+            out.writeInt(entities.getLength(i));
+            writeOptionalString(out, entities.getUrl(i));
+        }
+    }
+
+    /**
+     * @return les entités enregistrées; une entité d'un type inconnu de cette version est ignorée
+     */
+    private static MessageEntities readEntities(DataInputStream in) throws IOException {
+        MessageEntities.Type[] types = MessageEntities.Type.values();
+        MessageEntities.Builder entities = new MessageEntities.Builder();
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            int type = in.readUnsignedByte();
+            int offset = in.readInt();
+            int length = in.readInt();
+            String url = readOptionalString(in);
+            if (type < types.length) {
+                entities.add(types[type], offset, length, url);
+            }
+        }
+        return entities.build();
+    }
+
+    private static byte[] encodeDelivered(String idempotencyKey, long deliveredAt) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(RECORD_DELIVERED);
+            out.writeLong(deliveredAt);
+            writeString(out, idempotencyKey);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeAck(long id) {
+        return ByteBuffer.allocate(9).put(RECORD_ACK).putLong(id).array();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeOptionalString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeString(out, value);
+        }
+    }
+
+    private static String readOptionalString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? readString(in) : null;
+    }
+
+    private List<File> listSegments() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(segmentSequence(a), segmentSequence(b)));
+        return Arrays.asList(files);
+    }
+
+    private File segmentFile(long sequence) {
+        return new File(directory, String.format("%s%016d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+    private static long segmentSequence(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
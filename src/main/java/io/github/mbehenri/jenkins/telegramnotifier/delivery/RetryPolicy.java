@@ -0,0 +1,84 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+import io.github.mbehenri.jenkins.telegramnotifier.SendResult;
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramConfig;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Politique de nouvelles tentatives après un échec transitoire.
+ * <p>
+ * Le délai respecte en priorité le {@code retry_after} imposé par Telegram (réponse 429).
+ * À défaut, il suit un backoff exponentiel avec gigue, pour que les builds échoués en même temps
+ * ne retentent pas tous au même instant. Une notification trop ancienne n'est plus retentée.
+ */
+public class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long maxAgeMillis;
+
+    /**
+     * Crée la politique par défaut, basée sur {@link TelegramConfig}.
+     */
+    public RetryPolicy() {
+        this(TelegramConfig.MAX_DELIVERY_ATTEMPTS, TelegramConfig.RETRY_INITIAL_BACKOFF_MILLIS,
+                TelegramConfig.RETRY_MAX_BACKOFF_MILLIS, TelegramConfig.RETRY_MAX_AGE_MILLIS);
+    }
+
+    /**
+     * Crée une politique personnalisée.
+     *
+     * @param maxAttempts          nombre maximal de tentatives, première incluse
+     * @param initialBackoffMillis délai de base avant la première nouvelle tentative
+     * @param maxBackoffMillis     délai maximal entre deux tentatives
+     * @param maxAgeMillis         âge maximal d'une notification encore retentée
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis, long maxAgeMillis) {
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Obtient l'âge maximal d'une notification encore retentée.
+     *
+     * @return l'âge maximal en millisecondes
+     */
+    public long getMaxAgeMillis() {
+        return maxAgeMillis;
+    }
+
+    /**
+     * Calcule le délai avant la prochaine tentative.
+     *
+     * @param attempt       numéro de la tentative qui vient d'échouer (1 pour la première)
+     * @param result        le résultat de cette tentative
+     * @param elapsedMillis temps écoulé depuis la première tentative
+     * @return le délai en millisecondes, ou -1 si la notification ne doit plus être retentée
+     */
+    public long nextDelayMillis(int attempt, SendResult result, long elapsedMillis) {
+        if (!result.isRetryable() || attempt >= maxAttempts) {
+            return -1;
+        }
+
+        long delay;
+        if (result.getRetryAfterSeconds() > 0) {
+            // Telegram impose un délai minimal: on l'ajoute à une gigue de 10% au plus
+            long retryAfter = TimeUnit.SECONDS.toMillis(result.getRetryAfterSeconds());
+            delay = retryAfter + ThreadLocalRandom.current().nextLong(retryAfter / 10 + 1);
+        } else {
+            // Backoff exponentiel borné, avec gigue sur la moitié supérieure de l'intervalle
+            long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 30));
+            delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        }
+
+        if (elapsedMillis + delay > maxAgeMillis) {
+            return -1;
+        }
+        return delay;
+    }
+}
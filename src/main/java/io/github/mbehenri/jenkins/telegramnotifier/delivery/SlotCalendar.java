@@ -0,0 +1,91 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/**
+ * Calendrier de créneaux d'envoi espacés d'un intervalle minimal.
+ * <p>
+ * Contrairement à un {@link TokenBucket}, un créneau peut être réservé pour un instant futur (ex: un envoi
+ * déjà différé par la limite de son chat) sans retarder les réservations plus proches : chaque réservation
+ * obtient le premier instant libre à partir de celui demandé, à au moins un intervalle de toutes les autres.
+ * Avec un intervalle de 1/n seconde, aucune seconde glissante ne compte plus de n envois.
+ */
+final class SlotCalendar {
+
+    private final long intervalNanos;
+    private final TreeSet<Long> slots = new TreeSet<>();
+
+    private long lastUsedNanos;
+
+    /**
+     * Crée un calendrier vide.
+     *
+     * @param slotsPerSecond nombre maximal de créneaux par seconde
+     * @param nowNanos       instant courant
+     */
+    SlotCalendar(int slotsPerSecond, long nowNanos) {
+        // Arrondi supérieur : n intervalles couvrent au moins une seconde entière
+        this.intervalNanos = (1_000_000_000L + slotsPerSecond - 1) / slotsPerSecond;
+        this.lastUsedNanos = nowNanos;
+    }
+
+    /**
+     * Réserve le premier créneau libre à partir d'un instant donné.
+     *
+     * @param nowNanos instant courant
+     * @param atNanos  instant souhaité (l'instant courant, ou un instant futur si l'envoi est déjà différé)
+     * @return le délai en nanosecondes, à partir de {@code atNanos}, avant le créneau réservé (0 si immédiat)
+     */
+    synchronized long reserve(long nowNanos, long atNanos) {
+        forgetPast(nowNanos);
+        lastUsedNanos = Math.max(lastUsedNanos, atNanos);
+
+        // Les créneaux sont espacés d'au moins un intervalle : seuls ceux qui suivent le premier voisin
+        // possible sont examinés, jusqu'au premier trou assez large
+        long slot = atNanos;
+        Long neighbour = slots.ceiling(slot - intervalNanos + 1);
+        while (neighbour != null && neighbour < slot + intervalNanos) {
+            slot = neighbour + intervalNanos;
+            neighbour = slots.higher(neighbour);
+        }
+        slots.add(slot);
+        return slot - atNanos;
+    }
+
+    /**
+     * Obtient le nombre de créneaux disponibles, négatif si des envois sont déjà en attente.
+     *
+     * @param nowNanos instant courant
+     * @return 1 si aucun créneau n'est occupé dans l'intervalle courant, moins le nombre de créneaux
+     * réservés ou en cours sinon
+     */
+    synchronized double availablePermits(long nowNanos) {
+        forgetPast(nowNanos);
+        return 1 - slots.size();
+    }
+
+    /**
+     * Indique si le calendrier est vide et inutilisé depuis la durée donnée (il peut alors être oublié).
+     *
+     * @param nowNanos  instant courant
+     * @param idleNanos durée d'inactivité
+     * @return true si le calendrier peut être évincé
+     */
+    synchronized boolean isIdle(long nowNanos, long idleNanos) {
+        forgetPast(nowNanos);
+        return slots.isEmpty() && nowNanos - lastUsedNanos >= idleNanos;
+    }
+
+    /**
+     * Oublie les créneaux qui ne peuvent plus gêner une réservation (plus d'un intervalle dans le passé).
+     */
+    private void forgetPast(long nowNanos) {
+        for (Iterator<Long> past = slots.iterator(); past.hasNext(); ) {
+            if (past.next() > nowNanos - intervalNanos) {
+                break;
+            }
+            past.remove();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Suit le message de statut unique de chaque build, modifié sur place au lieu d'envoyer un message par étape.
+ * <p>
+ * Le message est posté au démarrage du build ({@link #open}); son {@code message_id} est conservé par build et
+ * par chat, et chaque mise à jour ({@link #update}) remplace son texte via {@code editMessageText} : un seul
+ * appel par étape dans le chat, sans nouveau message.
+ * <p>
+ * Une seule modification d'un même message est en cours à la fois. Les mises à jour arrivant pendant ce temps
+ * sont regroupées : seule la plus récente est appliquée, et les appelants qu'elle remplace reçoivent son résultat.
+ * Si le message n'a pas pu être posté ou modifié (ex: supprimé du chat), la mise à jour est postée en nouveau message.
+ * Un build dont le résultat n'est pas annoncé est fermé sans mise à jour ({@link #close}) : son message de démarrage
+ * reste tel quel.
+ */
+public class StatusMessageTracker {
+
+    private static final Logger LOGGER = Logger.getLogger(StatusMessageTracker.class.getName());
+
+    private static final StatusMessageTracker INSTANCE = new StatusMessageTracker(NotificationDispatcher.get()::post);
+
+    private final Function<Notification, CompletableFuture<Long>> delivery;
+    private final Map<String, StatusMessage> messages = new ConcurrentHashMap<>();
+
+    /**
+     * Crée un suivi des messages de statut (ex: tests).
+     *
+     * @param delivery la livraison d'un message, qui retourne son identifiant ou -1
+     *                 (ex: {@link NotificationDispatcher#post})
+     */
+    public StatusMessageTracker(Function<Notification, CompletableFuture<Long>> delivery) {
+        this.delivery = delivery;
+    }
+
+    /**
+     * Obtient le suivi partagé, adossé au dispatcher partagé.
+     *
+     * @return le suivi partagé
+     */
+    public static StatusMessageTracker get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Poste le message de statut d'un build.
+     *
+     * @param buildId      l'identifiant du build (ex: {@code Run#getExternalizableId()})
+     * @param notification le message de démarrage
+     * @return un future complété avec true si le message a été posté
+     */
+    public CompletableFuture<Boolean> open(String buildId, Notification notification) {
+        StatusMessage message = new StatusMessage(delivery.apply(notification));
+        messages.put(key(buildId, notification), message);
+        return message.messageId.thenApply(id -> id >= 0);
+    }
+
+    /**
+     * Remplace le texte du message de statut d'un build, ou le poste s'il n'a pas été ouvert.
+     *
+     * @param buildId      l'identifiant du build
+     * @param notification le nouveau contenu du message
+     * @param last         true pour la dernière mise à jour du build : le message n'est alors plus suivi
+     * @return un future complété avec true si le message a été modifié (ou posté)
+     */
+    public CompletableFuture<Boolean> update(String buildId, Notification notification, boolean last) {
+        String key = key(buildId, notification);
+        StatusMessage message = last ? messages.remove(key)
+                : messages.computeIfAbsent(key, k -> new StatusMessage(CompletableFuture.completedFuture(-1L)));
+        if (message == null) {
+            return delivery.apply(notification).thenApply(id -> id >= 0);
+        }
+        return message.submit(notification);
+    }
+
+    /**
+     * Cesse de suivre les messages de statut d'un build sans les modifier (ex: résultat non sélectionné par
+     * les déclencheurs de notification).
+     *
+     * @param buildId l'identifiant du build
+     */
+    public void close(String buildId) {
+        // Les noms de jobs Jenkins ne contiennent pas de '#' : le préfixe ne désigne que ce build
+        String prefix = buildId + "#";
+        messages.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Obtient le nombre de messages de statut suivis.
+     *
+     * @return le nombre de builds (et chats) dont le message peut encore être modifié
+     */
+    public int getTrackedCount() {
+        return messages.size();
+    }
+
+    private static String key(String buildId, Notification notification) {
+        return buildId + "#" + TelegramRateLimiter.chatKey(
+                TelegramRateLimiter.botKey(notification.getBotToken()), notification.getChatId());
+    }
+
+    /**
+     * Message de statut d'un build : son identifiant à venir et la mise à jour en attente.
+     */
+    private final class StatusMessage {
+
+        /**
+         * Identifiant du message, -1 s'il n'existe pas; suit chaque modification (un message reposté change d'identifiant).
+         */
+        private CompletableFuture<Long> messageId;
+        private Notification pending;
+        private CompletableFuture<Boolean> pendingResult;
+        private boolean editing;
+
+        StatusMessage(CompletableFuture<Long> messageId) {
+            this.messageId = messageId.exceptionally(e -> -1L);
+        }
+
+        synchronized CompletableFuture<Boolean> submit(Notification notification) {
+            // La mise à jour en attente, pas encore envoyée, est remplacée par la plus récente
+            pending = notification;
+            if (pendingResult == null) {
+                pendingResult = new CompletableFuture<>();
+            }
+            CompletableFuture<Boolean> result = pendingResult;
+            if (!editing) {
+                editing = true;
+                edit();
+            }
+            return result;
+        }
+
+        private synchronized void edit() {
+            Notification notification = pending;
+            CompletableFuture<Boolean> result = pendingResult;
+            pending = null;
+            pendingResult = null;
+
+            messageId.thenCompose(id -> id >= 0
+                            ? delivery.apply(notification.withEditMessageId(id))
+                                    .thenCompose(edited -> edited >= 0 ? CompletableFuture.completedFuture(edited)
+                                            : repost(notification, id))
+                            : delivery.apply(notification))
+                    .exceptionally(e -> {
+                        LOGGER.log(Level.WARNING, "Mise à jour du message de statut interrompue", e);
+                        return -1L;
+                    })
+                    .thenAccept(id -> completed(id, result));
+        }
+
+        private CompletableFuture<Long> repost(Notification notification, long id) {
+            LOGGER.log(Level.FINE, "Modification du message {0} impossible, mise à jour postée en nouveau message", id);
+            return delivery.apply(notification);
+        }
+
+        private synchronized void completed(long id, CompletableFuture<Boolean> result) {
+            if (id >= 0) {
+                messageId = CompletableFuture.completedFuture(id);
+            }
+            result.complete(id >= 0);
+            if (pending != null) {
+                edit();
+            } else {
+                editing = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+import io.github.mbehenri.jenkins.telegramnotifier.SendResult;
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramConfig;
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramGlobalConfiguration;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Circuit breaker par bot et par URL d'API.
+ * <p>
+ * Chaque circuit observe les {@link TelegramConfig#CIRCUIT_WINDOW_SIZE} derniers envois. Quand la part d'échecs
+ * transitoires (5xx, erreur réseau, timeout) ou d'envois lents dépasse
+ * {@link TelegramConfig#CIRCUIT_FAILURE_RATE_THRESHOLD} %, le circuit s'ouvre : aucun envoi n'est tenté pendant
+ * {@link TelegramConfig#CIRCUIT_OPEN_MILLIS} ms. Le circuit passe ensuite en semi-ouvert et laisse passer une
+ * seule sonde, qui le referme en cas de succès ou le rouvre en cas d'échec. La fermeture est signalée aux
+ * {@link #addRecoveryListener écouteurs} (ex: livraison des notifications mises de côté pendant la panne).
+ * <p>
+ * Les réponses 429 ne comptent pas comme des échecs : elles relèvent de la limite de débit, pas d'une panne.
+ */
+public class TelegramCircuitBreaker {
+
+    private static final Logger LOGGER = Logger.getLogger(TelegramCircuitBreaker.class.getName());
+
+    /**
+     * Délai proposé aux envois qui attendent la fin de la sonde d'un circuit semi-ouvert.
+     */
+    private static final long PROBE_WAIT_MILLIS = 1000;
+
+    /**
+     * États d'un circuit.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> recoveryListeners = new CopyOnWriteArrayList<>();
+    private final LongSupplier clock;
+
+    /**
+     * Crée un circuit breaker basé sur l'horloge système.
+     */
+    public TelegramCircuitBreaker() {
+        this(() -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+    }
+
+    /**
+     * Crée un circuit breaker avec une horloge spécifique (ex: tests).
+     *
+     * @param clock horloge monotone en millisecondes
+     */
+    public TelegramCircuitBreaker(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Demande l'autorisation d'envoyer. En semi-ouvert, le premier appelant obtient la sonde.
+     *
+     * @param botToken le token du bot
+     * @return 0 si l'envoi peut partir, sinon le délai en millisecondes avant de redemander
+     */
+    public long blockedMillis(String botToken) {
+        return circuit(botToken).blockedMillis(clock.getAsLong());
+    }
+
+    /**
+     * Enregistre le résultat d'un envoi autorisé.
+     *
+     * @param botToken      le token du bot
+     * @param result        le résultat de l'envoi
+     * @param latencyMillis la durée de l'envoi
+     */
+    public void record(String botToken, SendResult result, long latencyMillis) {
+        boolean failure = result.isRetryable() && result.getStatusCode() != SendResult.TOO_MANY_REQUESTS;
+        boolean slow = latencyMillis >= TelegramConfig.CIRCUIT_SLOW_CALL_MILLIS;
+        if (circuit(botToken).record(key(botToken), failure, slow, clock.getAsLong())) {
+            // Hors du verrou du circuit : un écouteur peut relancer des envois
+            for (Consumer<String> listener : recoveryListeners) {
+                listener.accept(botToken);
+            }
+        }
+    }
+
+    /**
+     * Ajoute un écouteur appelé à chaque fermeture d'un circuit semi-ouvert (l'API est de nouveau disponible).
+     *
+     * @param listener reçoit le token du bot dont le circuit s'est refermé
+     */
+    public void addRecoveryListener(Consumer<String> listener) {
+        recoveryListeners.add(listener);
+    }
+
+    /**
+     * Obtient l'état du circuit d'un bot.
+     *
+     * @param botToken le token du bot
+     * @return l'état courant, {@link State#CLOSED} pour un bot jamais observé
+     */
+    public State getState(String botToken) {
+        Circuit circuit = circuits.get(key(botToken));
+        return circuit != null ? circuit.state(clock.getAsLong()) : State.CLOSED;
+    }
+
+    /**
+     * Photographie de l'état de chaque circuit, pour la supervision.
+     * Les clés ne contiennent que l'identifiant public du bot, jamais le token complet.
+     *
+     * @return l'état par circuit, trié par clé
+     */
+    public Map<String, State> snapshot() {
+        long now = clock.getAsLong();
+        Map<String, State> states = new TreeMap<>();
+        circuits.forEach((key, circuit) -> states.put(key, circuit.state(now)));
+        return states;
+    }
+
+    private Circuit circuit(String botToken) {
+        return circuits.computeIfAbsent(key(botToken), k -> new Circuit());
+    }
+
+    private static String key(String botToken) {
+        return TelegramRateLimiter.botKey(botToken) + "@" + TelegramGlobalConfiguration.get().getApiBaseUrl();
+    }
+
+    /**
+     * Circuit d'un bot : fenêtre glissante des derniers envois et machine à états.
+     */
+    private static final class Circuit {
+
+        private final boolean[] failures = new boolean[TelegramConfig.CIRCUIT_WINDOW_SIZE];
+        private int recorded;
+        private int next;
+        private int failureCount;
+
+        private State state = State.CLOSED;
+        private long openedAt;
+        private long probeStartedAt = -1;
+
+        synchronized long blockedMillis(long now) {
+            if (state(now) == State.CLOSED) {
+                return 0;
+            }
+            if (state == State.OPEN) {
+                return openedAt + TelegramConfig.CIRCUIT_OPEN_MILLIS - now;
+            }
+
+            // Semi-ouvert : une seule sonde à la fois; une sonde sans réponse est remplacée après un délai d'ouverture
+            if (probeStartedAt >= 0 && now - probeStartedAt < TelegramConfig.CIRCUIT_OPEN_MILLIS) {
+                return PROBE_WAIT_MILLIS;
+            }
+            probeStartedAt = now;
+            return 0;
+        }
+
+        /**
+         * @return true si le résultat a refermé le circuit
+         */
+        synchronized boolean record(String key, boolean failure, boolean slow, long now) {
+            State current = state(now);
+            if (current == State.HALF_OPEN) {
+                probeStartedAt = -1;
+                if (failure || slow) {
+                    open(key, now);
+                    return false;
+                }
+                close(key);
+                return true;
+            }
+            if (current == State.OPEN) {
+                // Résultat tardif d'un envoi parti avant l'ouverture
+                return false;
+            }
+
+            if (recorded == failures.length && failures[next]) {
+                failureCount--;
+            }
+            failures[next] = failure || slow;
+            if (failures[next]) {
+                failureCount++;
+            }
+            next = (next + 1) % failures.length;
+            recorded = Math.min(recorded + 1, failures.length);
+
+            if (recorded >= TelegramConfig.CIRCUIT_MINIMUM_CALLS
+                    && failureCount * 100 >= recorded * TelegramConfig.CIRCUIT_FAILURE_RATE_THRESHOLD) {
+                open(key, now);
+            }
+            return false;
+        }
+
+        synchronized State state(long now) {
+            if (state == State.OPEN && now - openedAt >= TelegramConfig.CIRCUIT_OPEN_MILLIS) {
+                state = State.HALF_OPEN;
+                probeStartedAt = -1;
+            }
+            return state;
+        }
+
+        private void open(String key, long now) {
+            if (state != State.OPEN) {
+                LOGGER.log(Level.WARNING, "API Telegram indisponible pour {0}, circuit ouvert pendant {1} ms",
+                        new Object[]{key, TelegramConfig.CIRCUIT_OPEN_MILLIS});
+            }
+            state = State.OPEN;
+            openedAt = now;
+        }
+
+        private void close(String key) {
+            LOGGER.log(Level.INFO, "API Telegram de nouveau disponible pour {0}, circuit fermé", key);
+            state = State.CLOSED;
+            recorded = 0;
+            next = 0;
+            failureCount = 0;
+        }
+    }
+}
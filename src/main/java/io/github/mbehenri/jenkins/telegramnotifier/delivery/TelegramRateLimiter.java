@@ -0,0 +1,156 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramConfig;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Limiteur de débit calqué sur les limites de l'API Telegram Bot.
+ * <p>
+ * Chaque envoi réserve un jeton dans le seau du chat cible, puis un créneau du bot (tous chats confondus)
+ * à l'instant où le chat le laisse partir. Un envoi différé par son chat ne consomme ainsi pas
+ * le créneau du bot de la seconde courante, et les envois différés ne se retrouvent pas groupés au-delà
+ * du débit du bot. Les chats privés et les groupes/canaux ont des profils distincts. Le limiteur ne rejette
+ * jamais un envoi : il retourne le délai à respecter, que le dispatcher applique sans bloquer de thread.
+ * <p>
+ * Le bot n'a pas de seau mais un calendrier de créneaux espacés de 1/30 s ({@link SlotCalendar}) : un créneau
+ * réservé pour plus tard ne retarde pas les envois immédiats vers d'autres chats, et aucune seconde glissante
+ * ne compte plus de {@link TelegramConfig#BOT_MESSAGES_PER_SECOND} envois.
+ */
+public class TelegramRateLimiter {
+
+    /**
+     * Au-delà de ce nombre de seaux suivis, les seaux pleins et inactifs sont évincés.
+     */
+    private static final int MAX_TRACKED_BUCKETS = 1000;
+
+    private static final long IDLE_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final Map<String, SlotCalendar> botSlots = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> chatBuckets = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+
+    /**
+     * Crée un limiteur basé sur l'horloge système.
+     */
+    public TelegramRateLimiter() {
+        this(System::nanoTime);
+    }
+
+    /**
+     * Crée un limiteur avec une horloge spécifique (ex: tests).
+     *
+     * @param clock horloge monotone en nanosecondes
+     */
+    public TelegramRateLimiter(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Réserve un créneau d'envoi pour le bot et le chat donnés.
+     *
+     * @param botToken le token du bot
+     * @param chatId   l'ID du chat cible
+     * @return le délai en nanosecondes à attendre avant l'envoi (0 si l'envoi peut partir immédiatement)
+     */
+    public long reserve(String botToken, String chatId) {
+        long now = clock.getAsLong();
+        evictIdleBuckets(now);
+
+        String botKey = botKey(botToken);
+        long chatDelay = chatBuckets
+                .computeIfAbsent(chatKey(botKey, chatId), k -> newChatBucket(chatId, now))
+                .reserve(now);
+        long botDelay = botSlots
+                .computeIfAbsent(botKey, k -> new SlotCalendar(TelegramConfig.BOT_MESSAGES_PER_SECOND, now))
+                .reserve(now, now + chatDelay);
+
+        return chatDelay + botDelay;
+    }
+
+    /**
+     * Obtient les créneaux disponibles pour un bot : 1 si aucun envoi n'occupe l'intervalle courant,
+     * une valeur négative si des envois sont déjà planifiés.
+     *
+     * @param botToken le token du bot
+     * @return le nombre de créneaux disponibles
+     */
+    public double getAvailablePermits(String botToken) {
+        SlotCalendar slots = botSlots.get(botKey(botToken));
+        return slots != null ? slots.availablePermits(clock.getAsLong()) : 1;
+    }
+
+    /**
+     * Obtient les jetons disponibles pour un chat d'un bot.
+     *
+     * @param botToken le token du bot
+     * @param chatId   l'ID du chat
+     * @return le nombre de jetons disponibles
+     */
+    public double getAvailablePermits(String botToken, String chatId) {
+        TokenBucket bucket = chatBuckets.get(chatKey(botKey(botToken), chatId));
+        return bucket != null ? bucket.availablePermits(clock.getAsLong()) : 1;
+    }
+
+    /**
+     * Photographie des jetons disponibles de chaque seau, pour la supervision.
+     * <p>
+     * Les clés ne contiennent que l'identifiant public du bot, jamais le token complet :
+     * {@code bot:<id>} et {@code chat:<id>/<chatId>}.
+     *
+     * @return les jetons disponibles par seau, triés par clé
+     */
+    public Map<String, Double> snapshot() {
+        long now = clock.getAsLong();
+        Map<String, Double> permits = new TreeMap<>();
+        botSlots.forEach((key, slots) -> permits.put("bot:" + key, slots.availablePermits(now)));
+        chatBuckets.forEach((key, bucket) -> permits.put("chat:" + key, bucket.availablePermits(now)));
+        return permits;
+    }
+
+    /**
+     * Indique si le chat est un groupe, un supergroupe ou un canal.
+     * <p>
+     * Telegram attribue des IDs négatifs aux groupes et canaux; un canal peut aussi être
+     * désigné par son nom public (@channel).
+     *
+     * @param chatId l'ID du chat
+     * @return true pour un groupe ou un canal, false pour un chat privé
+     */
+    static boolean isGroupChat(String chatId) {
+        String id = chatId.trim();
+        return id.startsWith("-") || id.startsWith("@");
+    }
+
+    private static TokenBucket newChatBucket(String chatId, long now) {
+        if (isGroupChat(chatId)) {
+            return new TokenBucket(1, TelegramConfig.GROUP_CHAT_MESSAGES_PER_MINUTE / 60d, now);
+        }
+        return new TokenBucket(1, TelegramConfig.PRIVATE_CHAT_MESSAGES_PER_SECOND, now);
+    }
+
+    /**
+     * Extrait l'identifiant public du bot (partie avant ':') pour ne jamais conserver le secret en clé.
+     */
+    static String botKey(String botToken) {
+        int separator = botToken.indexOf(':');
+        return separator > 0 ? botToken.substring(0, separator) : Integer.toHexString(botToken.hashCode());
+    }
+
+    static String chatKey(String botKey, String chatId) {
+        return botKey + "/" + chatId.trim();
+    }
+
+    private void evictIdleBuckets(long now) {
+        if (chatBuckets.size() > MAX_TRACKED_BUCKETS) {
+            chatBuckets.values().removeIf(bucket -> bucket.isIdle(now, IDLE_NANOS));
+        }
+        if (botSlots.size() > MAX_TRACKED_BUCKETS) {
+            botSlots.values().removeIf(slots -> slots.isIdle(now, IDLE_NANOS));
+        }
+    }
+}
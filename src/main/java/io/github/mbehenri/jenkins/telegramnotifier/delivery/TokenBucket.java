@@ -0,0 +1,79 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+/**
+ * Seau à jetons qui réserve des créneaux d'envoi au lieu de refuser les envois.
+ * <p>
+ * Une réservation consomme un jeton même si aucun n'est disponible : le solde devient négatif
+ * et la réservation retourne le délai à attendre avant que ce jeton soit réellement acquis.
+ * Les appels concurrents obtiennent ainsi des créneaux successifs, sans jamais être rejetés.
+ */
+final class TokenBucket {
+
+    private final double capacity;
+    private final double nanosPerPermit;
+
+    private double permits;
+    private long lastRefillNanos;
+    private long lastUsedNanos;
+
+    /**
+     * Crée un seau plein.
+     *
+     * @param capacity          nombre maximal de jetons accumulables (rafale autorisée)
+     * @param permitsPerSecond  débit de remplissage en jetons par seconde
+     * @param nowNanos          instant courant
+     */
+    TokenBucket(double capacity, double permitsPerSecond, long nowNanos) {
+        this.capacity = capacity;
+        this.nanosPerPermit = 1_000_000_000d / permitsPerSecond;
+        this.permits = capacity;
+        this.lastRefillNanos = nowNanos;
+        this.lastUsedNanos = nowNanos;
+    }
+
+    /**
+     * Réserve un jeton.
+     *
+     * @param nowNanos instant courant
+     * @return le délai en nanosecondes avant que le jeton réservé soit disponible (0 si immédiat)
+     */
+    synchronized long reserve(long nowNanos) {
+        refill(nowNanos);
+        lastUsedNanos = nowNanos;
+        permits -= 1;
+        if (permits >= 0) {
+            return 0;
+        }
+        return (long) Math.ceil(-permits * nanosPerPermit);
+    }
+
+    /**
+     * Obtient le nombre de jetons disponibles, négatif si des envois sont déjà en attente.
+     *
+     * @param nowNanos instant courant
+     * @return le nombre de jetons disponibles
+     */
+    synchronized double availablePermits(long nowNanos) {
+        refill(nowNanos);
+        return permits;
+    }
+
+    /**
+     * Indique si le seau est plein et inutilisé depuis la durée donnée (il peut alors être oublié).
+     *
+     * @param nowNanos  instant courant
+     * @param idleNanos durée d'inactivité
+     * @return true si le seau peut être évincé
+     */
+    synchronized boolean isIdle(long nowNanos, long idleNanos) {
+        refill(nowNanos);
+        return permits >= capacity && nowNanos - lastUsedNanos >= idleNanos;
+    }
+
+    private void refill(long nowNanos) {
+        if (nowNanos > lastRefillNanos) {
+            permits = Math.min(capacity, permits + (nowNanos - lastRefillNanos) / nanosPerPermit);
+            lastRefillNanos = nowNanos;
+        }
+    }
+}
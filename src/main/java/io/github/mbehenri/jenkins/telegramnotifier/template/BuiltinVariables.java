@@ -0,0 +1,265 @@
+package io.github.mbehenri.jenkins.telegramnotifier.template;
+
+import hudson.Extension;
+import hudson.model.AbstractBuild;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersAction;
+import hudson.model.Result;
+import hudson.model.TaskListener;
+import hudson.model.User;
+import hudson.scm.ChangeLogSet;
+import hudson.tasks.test.AbstractTestResultAction;
+import io.github.mbehenri.jenkins.telegramnotifier.MessageFormatter;
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramConfig;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Variables fournies par le plugin, enregistrées comme extensions de {@link TelegramVariable}.
+ */
+public final class BuiltinVariables {
+
+    private static final List<TelegramVariable> ALL = Collections.unmodifiableList(Arrays.asList(
+            new BuildStatus(), new JobName(), new BuildNumber(), new BuildDuration(), new BuildUrl(), new Cause(),
+            new GitCommit(), new Parameter(), new Environment(), new TestFailedCount(), new Changes()));
+
+    private BuiltinVariables() {
+        // Empêche l'instanciation
+    }
+
+    /**
+     * Obtient les variables du plugin, utilisées hors d'une instance Jenkins (ex: tests unitaires).
+     *
+     * @return les variables, dans l'ordre de la documentation
+     */
+    public static List<TelegramVariable> all() {
+        return ALL;
+    }
+
+    /**
+     * {@code ${BUILD_STATUS}} : résultat du build (SUCCESS, FAILURE, ...).
+     */
+    @Extension
+    public static final class BuildStatus extends TelegramVariable {
+        public BuildStatus() {
+            super("BUILD_STATUS", Cost.CHEAP);
+        }
+
+        @Override
+        public String resolve(AbstractBuild<?, ?> build, String argument) {
+            Result result = build.getResult();
+            return result != null ? result.toString() : "UNKNOWN";
+        }
+    }
+
+    /**
+     * {@code ${JOB_NAME}} : nom complet du job.
+     */
+    @Extension
+    public static final class JobName extends TelegramVariable {
+        public JobName() {
+            super("JOB_NAME", Cost.CHEAP);
+        }
+
+        @Override
+        public String resolve(AbstractBuild<?, ?> build, String argument) {
+            return build.getProject().getFullDisplayName();
+        }
+    }
+
+    /**
+     * {@code ${BUILD_NUMBER}} : numéro du build.
+     */
+    @Extension
+    public static final class BuildNumber extends TelegramVariable {
+        public BuildNumber() {
+            super("BUILD_NUMBER", Cost.CHEAP);
+        }
+
+        @Override
+        public String resolve(AbstractBuild<?, ?> build, String argument) {
+            return String.valueOf(build.getNumber());
+        }
+    }
+
+    /**
+     * {@code ${BUILD_DURATION}} : durée du build (ex: "1m 5s").
+     */
+    @Extension
+    public static final class BuildDuration extends TelegramVariable {
+        public BuildDuration() {
+            super("BUILD_DURATION", Cost.CHEAP);
+        }
+
+        @Override
+        public String resolve(AbstractBuild<?, ?> build, String argument) {
+            return MessageFormatter.formatDuration(build.getDuration());
+        }
+    }
+
+    /**
+     * {@code ${BUILD_URL}} : URL absolue du build.
+     */
+    @Extension
+    public static final class BuildUrl extends TelegramVariable {
+        public BuildUrl() {
+            super("BUILD_URL", Cost.CHEAP);
+        }
+
+        @Override
+        public boolean isUrl() {
+            return true;
+        }
+
+        @Override
+        public String resolve(AbstractBuild<?, ?> build, String argument) {
+            return build.getAbsoluteUrl();
+        }
+    }
+
+    /**
+     * {@code ${CAUSE}} : cause du déclenchement du build.
+     */
+    @Extension
+    public static final class Cause extends TelegramVariable {
+        public Cause() {
+            super("CAUSE", Cost.CHEAP);
+        }
+
+        @Override
+        public String resolve(AbstractBuild<?, ?> build, String argument) {
+            String cause = MessageFormatter.formatCause(build);
+            return cause != null ? cause : "Unknown";
+        }
+    }
+
+    /**
+     * {@code ${GIT_COMMIT}} : commit construit, exporté dans l'environnement du build par le plugin Git.
+     */
+    @Extension
+    public static final class GitCommit extends TelegramVariable {
+        public GitCommit() {
+            super("GIT_COMMIT", Cost.IO);
+        }
+
+        @Override
+        public String resolve(AbstractBuild<?, ?> build, String argument) throws Exception {
+            return build.getEnvironment(TaskListener.NULL).get("GIT_COMMIT");
+        }
+    }
+
+    /**
+     * {@code ${PARAM:nom}} : valeur d'un paramètre du build. Les paramètres sensibles (mots de passe)
+     * ne sont jamais envoyés.
+     */
+    @Extension
+    public static final class Parameter extends TelegramVariable {
+        public Parameter() {
+            super("PARAM", Cost.CHEAP);
+        }
+
+        @Override
+        public boolean isParameterized() {
+            return true;
+        }
+
+        @Override
+        public String resolve(AbstractBuild<?, ?> build, String argument) {
+            ParametersAction parameters = build.getAction(ParametersAction.class);
+            ParameterValue parameter = parameters != null ? parameters.getParameter(argument) : null;
+            if (parameter == null || parameter.isSensitive() || parameter.getValue() == null) {
+                return null;
+            }
+            return String.valueOf(parameter.getValue());
+        }
+    }
+
+    /**
+     * {@code ${ENV:nom}} : variable d'environnement du build. Les variables sensibles (ex: paramètre mot de passe,
+     * présent en clair dans l'environnement) ne sont jamais envoyées.
+     */
+    @Extension
+    public static final class Environment extends TelegramVariable {
+        public Environment() {
+            super("ENV", Cost.IO);
+        }
+
+        @Override
+        public boolean isParameterized() {
+            return true;
+        }
+
+        @Override
+        public String resolve(AbstractBuild<?, ?> build, String argument) throws Exception {
+            if (build.getSensitiveBuildVariables().contains(argument)) {
+                return null;
+            }
+            return build.getEnvironment(TaskListener.NULL).get(argument);
+        }
+    }
+
+    /**
+     * {@code ${TEST_FAILED_COUNT}} : nombre de tests en échec, lu dans les résultats publiés par le build.
+     */
+    @Extension
+    public static final class TestFailedCount extends TelegramVariable {
+        public TestFailedCount() {
+            // Les résultats de tests sont chargés depuis le disque à la première lecture
+            super("TEST_FAILED_COUNT", Cost.IO);
+        }
+
+        @Override
+        public String resolve(AbstractBuild<?, ?> build, String argument) {
+            AbstractTestResultAction<?> tests = build.getAction(AbstractTestResultAction.class);
+            return tests != null ? String.valueOf(tests.getFailCount()) : null;
+        }
+    }
+
+    /**
+     * {@code ${CHANGES}} : changements du build, un par ligne ("- message (auteur)"), limités à
+     * {@link TelegramConfig#MAX_CHANGES_LISTED}.
+     */
+    @Extension
+    public static final class Changes extends TelegramVariable {
+        public Changes() {
+            super("CHANGES", Cost.EXPENSIVE);
+        }
+
+        @Override
+        public String resolve(AbstractBuild<?, ?> build, String argument) {
+            ChangeLogSet<? extends ChangeLogSet.Entry> changes = build.getChangeSet();
+            if (changes == null || changes.isEmptySet()) {
+                return "No changes";
+            }
+
+            StringBuilder out = new StringBuilder();
+            int count = 0;
+            for (ChangeLogSet.Entry change : changes) {
+                if (count++ < TelegramConfig.MAX_CHANGES_LISTED) {
+                    if (out.length() > 0) {
+                        out.append('\n');
+                    }
+                    User author = change.getAuthor();
+                    out.append("- ").append(firstLine(change.getMsg()));
+                    if (author != null) {
+                        out.append(" (").append(author.getFullName()).append(')');
+                    }
+                }
+            }
+            if (count > TelegramConfig.MAX_CHANGES_LISTED) {
+                out.append("\n... and ").append(count - TelegramConfig.MAX_CHANGES_LISTED).append(" more");
+            }
+            return out.toString();
+        }
+
+        private static String firstLine(String message) {
+            if (message == null) {
+                return "";
+            }
+            int end = message.indexOf('\n');
+            return (end >= 0 ? message.substring(0, end) : message).trim();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package io.github.mbehenri.jenkins.telegramnotifier.template;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Template de message compilé : une suite de segments littéraux et de variables {@code ${NOM}}.
+ * <p>
+ * Le template est analysé une seule fois (à l'enregistrement de la configuration) au lieu d'un
+ * {@code String.replace} par variable à chaque build. Le rendu parcourt les segments en une seule passe,
+ * dans un builder dimensionné d'après la longueur des littéraux.
+ * <p>
+ * Une variable que le résolveur ne connaît pas est rendue telle quelle ({@code ${NOM}}), comme un
+ * <code>${</code> sans accolade fermante. Un template compilé est immuable et partageable entre threads.
+ */
+public final class MessageTemplate {
+
+    /**
+     * Estimation de la longueur d'une valeur de variable, pour dimensionner le builder du rendu.
+     */
+    private static final int ESTIMATED_VALUE_LENGTH = 24;
+
+    private static final MessageTemplate EMPTY = new MessageTemplate(new String[]{""}, new String[0]);
+
+    /**
+     * Littéraux entourant les variables : {@code literals[i]} précède {@code variables[i]},
+     * le dernier littéral suit la dernière variable.
+     */
+    private final String[] literals;
+    private final String[] variables;
+    private final Set<String> variableNames;
+    private final int literalLength;
+
+    private MessageTemplate(String[] literals, String[] variables) {
+        this.literals = literals;
+        this.variables = variables;
+        Set<String> names = new LinkedHashSet<>();
+        Collections.addAll(names, variables);
+        this.variableNames = Collections.unmodifiableSet(names);
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Compile un template.
+     *
+     * @param template le texte du template, ou null
+     * @return le template compilé
+     */
+    public static MessageTemplate compile(String template) {
+        if (template == null || template.isEmpty()) {
+            return EMPTY;
+        }
+
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        int start = 0;
+        int open = template.indexOf("${");
+        while (open >= 0) {
+            int close = template.indexOf('}', open + 2);
+            if (close < 0) {
+                break;
+            }
+            // "${A${B}" : seule la variable la plus proche de l'accolade est une variable
+            open = template.lastIndexOf("${", close);
+            if (close > open + 2) {
+                literals.add(template.substring(start, open));
+                variables.add(template.substring(open + 2, close));
+                start = close + 1;
+            }
+            open = template.indexOf("${", close + 1);
+        }
+        literals.add(template.substring(start));
+
+        return new MessageTemplate(literals.toArray(new String[0]), variables.toArray(new String[0]));
+    }
+
+    /**
+     * Indique si le template est vide ou ne contient que des blancs.
+     *
+     * @return true s'il n'y a rien à rendre
+     */
+    public boolean isBlank() {
+        return variables.length == 0 && literals[0].trim().isEmpty();
+    }
+
+    /**
+     * Obtient les noms des variables utilisées, dans leur ordre de première apparition.
+     *
+     * @return les noms des variables, sans doublon
+     */
+    public Set<String> getVariables() {
+        return variableNames;
+    }
+
+    /**
+     * Obtient les variables utilisées qui ne font pas partie d'un ensemble de variables connues.
+     *
+     * @param known les noms des variables connues
+     * @return les noms des variables inconnues, dans leur ordre de première apparition
+     */
+    public Set<String> getUnknownVariables(Collection<String> known) {
+        return getUnknownVariables(known::contains);
+    }
+
+    /**
+     * Obtient les variables utilisées que la règle donnée ne reconnaît pas.
+     *
+     * @param known indique si une référence de variable est connue (ex: {@link VariableRegistry#isKnown})
+     * @return les noms des variables inconnues, dans leur ordre de première apparition
+     */
+    public Set<String> getUnknownVariables(Predicate<String> known) {
+        Set<String> unknown = new LinkedHashSet<>(variableNames);
+        unknown.removeIf(known);
+        return unknown;
+    }
+
+    /**
+     * Rend le template en une seule passe.
+     *
+     * @param resolver la valeur de chaque variable, ou null pour une variable inconnue
+     * @return le message rendu
+     */
+    public String render(Function<String, String> resolver) {
+        if (variables.length == 0) {
+            return literals[0];
+        }
+
+        StringBuilder out = new StringBuilder(literalLength + variables.length * ESTIMATED_VALUE_LENGTH);
+        for (int i = 0; i < variables.length; i++) {
+            out.append(literals[i]);
+            String value = resolver.apply(variables[i]);
+            if (value != null) {
+                out.append(value);
+            } else {
+                out.append("${").append(variables[i]).append('}');
+            }
+        }
+        return out.append(literals[variables.length]).toString();
+    }
+}
@@ -0,0 +1,115 @@
+package io.github.mbehenri.jenkins.telegramnotifier.template;
+
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import hudson.model.AbstractBuild;
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramConfig;
+
+/**
+ * Variable utilisable dans les messages Telegram ({@code ${NOM}} ou {@code ${NOM:argument}}).
+ * <p>
+ * Point d'extension : un autre plugin ajoute une variable en déclarant une sous-classe annotée
+ * {@link hudson.Extension}. Une variable n'est calculée que si le template l'utilise, au plus une fois
+ * par message ({@link VariableResolver}).
+ * <p>
+ * Le coût déclaré décide du calcul : une variable {@link Cost#CHEAP} est calculée sur le thread du rendu,
+ * les autres sur un pool dédié, dans la limite de leur budget de temps ({@link #getTimeoutMillis()}); les
+ * variables coûteuses d'un même message sont calculées en parallèle.
+ */
+public abstract class TelegramVariable implements ExtensionPoint {
+
+    /**
+     * Coût du calcul d'une variable.
+     */
+    public enum Cost {
+        /**
+         * Lecture en mémoire (ex: numéro du build).
+         */
+        CHEAP,
+        /**
+         * Entrées/sorties (ex: environnement du build, fichiers du build).
+         */
+        IO,
+        /**
+         * Calcul long (ex: parcours de la liste des changements).
+         */
+        EXPENSIVE
+    }
+
+    private final String name;
+    private final Cost cost;
+
+    /**
+     * Crée une variable.
+     *
+     * @param name le nom de la variable, sans {@code ${}} (ex: GIT_COMMIT, ou PARAM pour {@code ${PARAM:x}})
+     * @param cost le coût de son calcul
+     */
+    protected TelegramVariable(String name, Cost cost) {
+        this.name = name;
+        this.cost = cost;
+    }
+
+    /**
+     * Obtient toutes les variables enregistrées.
+     *
+     * @return les variables, dans l'ordre des extensions
+     */
+    public static ExtensionList<TelegramVariable> all() {
+        return ExtensionList.lookup(TelegramVariable.class);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Cost getCost() {
+        return cost;
+    }
+
+    /**
+     * Indique si la variable prend un argument ({@code ${NOM:argument}}).
+     *
+     * @return true pour une variable paramétrée
+     */
+    public boolean isParameterized() {
+        return false;
+    }
+
+    /**
+     * Indique si la valeur de la variable est une URL. En Markdown historique, une URL est insérée telle quelle
+     * dans un message personnalisé : elle y est souvent la cible d'un lien ({@code [build](${BUILD_URL})}),
+     * où un échappement la casserait.
+     *
+     * @return true pour une variable dont la valeur est une URL
+     */
+    public boolean isUrl() {
+        return false;
+    }
+
+    /**
+     * Obtient le temps accordé au calcul de la variable, au-delà duquel elle est rendue indisponible.
+     *
+     * @return le budget en millisecondes, 0 pour un calcul sans limite sur le thread du rendu
+     */
+    public long getTimeoutMillis() {
+        switch (cost) {
+            case IO:
+                return TelegramConfig.VARIABLE_IO_TIMEOUT_MILLIS;
+            case EXPENSIVE:
+                return TelegramConfig.VARIABLE_EXPENSIVE_TIMEOUT_MILLIS;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Calcule la valeur de la variable pour un build.
+     *
+     * @param build    le build Jenkins
+     * @param argument l'argument de {@code ${NOM:argument}}, ou null pour une variable non paramétrée
+     * @return la valeur, ou null si elle n'est pas disponible pour ce build
+     * @throws Exception si le calcul échoue; la variable est alors rendue indisponible
+     */
+    public abstract String resolve(AbstractBuild<?, ?> build, String argument) throws Exception;
+}
@@ -0,0 +1,94 @@
+package io.github.mbehenri.jenkins.telegramnotifier.template;
+
+import jenkins.model.Jenkins;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Variables de message connues, par nom.
+ * <p>
+ * Une référence de template est soit le nom d'une variable ({@code GIT_COMMIT}), soit le nom d'une
+ * variable paramétrée suivi de son argument ({@code PARAM:version}). Pour un même nom, la première
+ * extension enregistrée l'emporte.
+ */
+public final class VariableRegistry {
+
+    private static final VariableRegistry BUILTIN = new VariableRegistry(BuiltinVariables.all());
+
+    private final Map<String, TelegramVariable> variables = new LinkedHashMap<>();
+
+    /**
+     * Crée un registre (ex: tests).
+     *
+     * @param variables les variables, par ordre de priorité
+     */
+    public VariableRegistry(Iterable<? extends TelegramVariable> variables) {
+        for (TelegramVariable variable : variables) {
+            this.variables.putIfAbsent(variable.getName(), variable);
+        }
+    }
+
+    /**
+     * Obtient le registre des variables enregistrées dans Jenkins (plugin et autres plugins),
+     * ou celui des seules variables du plugin hors d'une instance Jenkins.
+     *
+     * @return le registre des variables
+     */
+    public static VariableRegistry get() {
+        // La liste des extensions peut changer (plugin chargé dynamiquement) : le registre suit
+        return Jenkins.getInstanceOrNull() != null ? new VariableRegistry(TelegramVariable.all()) : BUILTIN;
+    }
+
+    /**
+     * Trouve la variable d'une référence de template.
+     *
+     * @param reference la référence, sans {@code ${}} (ex: JOB_NAME, PARAM:version)
+     * @return la variable, ou null si la référence est inconnue
+     */
+    public TelegramVariable find(String reference) {
+        TelegramVariable variable = variables.get(reference);
+        if (variable != null) {
+            return variable.isParameterized() ? null : variable;
+        }
+
+        int colon = reference.indexOf(':');
+        if (colon <= 0) {
+            return null;
+        }
+        variable = variables.get(reference.substring(0, colon));
+        return variable != null && variable.isParameterized() ? variable : null;
+    }
+
+    /**
+     * Obtient l'argument d'une référence à une variable paramétrée.
+     *
+     * @param reference la référence (ex: PARAM:version)
+     * @return l'argument (ex: version), ou null sans argument
+     */
+    public static String argument(String reference) {
+        int colon = reference.indexOf(':');
+        return colon > 0 ? reference.substring(colon + 1) : null;
+    }
+
+    /**
+     * Indique si une référence de template correspond à une variable connue.
+     *
+     * @param reference la référence
+     * @return true si la référence est connue
+     */
+    public boolean isKnown(String reference) {
+        return find(reference) != null;
+    }
+
+    /**
+     * Obtient les noms des variables connues.
+     *
+     * @return les noms, dans l'ordre d'enregistrement
+     */
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(variables.keySet());
+    }
+}
@@ -0,0 +1,172 @@
+package io.github.mbehenri.jenkins.telegramnotifier.template;
+
+import hudson.model.AbstractBuild;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramConfig;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Résout les variables d'un rendu à la demande, en mémorisant chaque valeur calculée.
+ * <p>
+ * Une variable n'est calculée que lorsqu'elle est demandée pour la première fois, qu'elle soit utilisée
+ * par l'en-tête du message ou par le message personnalisé; les demandes suivantes du même rendu
+ * réutilisent la valeur. Les variables {@link TelegramVariable.Cost#CHEAP} sont calculées sur le thread
+ * du rendu; les autres sur un pool dédié, dans la limite de leur budget de temps. {@link #prefetch} lance
+ * dès le début du rendu le calcul des variables non CHEAP d'un template, en parallèle.
+ * <p>
+ * Une variable connue mais indisponible (valeur absente, erreur, budget dépassé) est rendue
+ * {@value #UNAVAILABLE}; une variable inconnue est laissée telle quelle. Un résolveur est créé pour
+ * un seul rendu, utilisé depuis un seul thread.
+ */
+public final class VariableResolver implements Function<String, String> {
+
+    private static final Logger LOGGER = Logger.getLogger(VariableResolver.class.getName());
+
+    /**
+     * Valeur rendue pour une variable connue mais indisponible.
+     */
+    public static final String UNAVAILABLE = "N/A";
+
+    /**
+     * Pool des calculs de variables non CHEAP. Quand il est saturé, le calcul se fait sur le thread du rendu.
+     */
+    private static final ExecutorService EXECUTOR = new ThreadPoolExecutor(
+            0, TelegramConfig.VARIABLE_RESOLUTION_THREADS,
+            60L, TimeUnit.SECONDS,
+            new SynchronousQueue<>(),
+            new NamingThreadFactory(new DaemonThreadFactory(), "Telegram Notifier Variables"),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+
+    private final VariableRegistry registry;
+    private final AbstractBuild<?, ?> build;
+    private final ExecutorService executor;
+    private final Map<String, String> values = new HashMap<>();
+    private final Map<String, Pending> pending = new HashMap<>();
+
+    /**
+     * Crée le résolveur d'un rendu, sur le pool partagé.
+     *
+     * @param registry les variables connues
+     * @param build    le build Jenkins
+     */
+    public VariableResolver(VariableRegistry registry, AbstractBuild<?, ?> build) {
+        this(registry, build, EXECUTOR);
+    }
+
+    /**
+     * Crée le résolveur d'un rendu sur un pool spécifique (ex: tests).
+     *
+     * @param registry les variables connues
+     * @param build    le build Jenkins
+     * @param executor le pool des calculs de variables non CHEAP
+     */
+    public VariableResolver(VariableRegistry registry, AbstractBuild<?, ?> build, ExecutorService executor) {
+        this.registry = registry;
+        this.build = build;
+        this.executor = executor;
+    }
+
+    /**
+     * Lance le calcul des variables non CHEAP parmi des références, sans attendre leurs valeurs.
+     *
+     * @param references les références utilisées par un template ({@link MessageTemplate#getVariables()})
+     * @return ce résolveur
+     */
+    public VariableResolver prefetch(Collection<String> references) {
+        for (String reference : references) {
+            TelegramVariable variable = registry.find(reference);
+            if (variable != null && isDeferred(variable) && !values.containsKey(reference)) {
+                pending.computeIfAbsent(reference, r -> start(variable, r));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Obtient la valeur d'une variable, calculée au premier appel.
+     *
+     * @param reference la référence de la variable (ex: JOB_NAME, PARAM:version)
+     * @return la valeur, {@value #UNAVAILABLE} si elle est indisponible, ou null si la variable est inconnue
+     */
+    @Override
+    public String apply(String reference) {
+        String value = values.get(reference);
+        if (value != null || values.containsKey(reference)) {
+            return value;
+        }
+
+        TelegramVariable variable = registry.find(reference);
+        if (variable != null) {
+            value = isDeferred(variable)
+                    ? await(pending.computeIfAbsent(reference, r -> start(variable, r)), reference)
+                    : compute(variable, reference);
+            if (value == null) {
+                value = UNAVAILABLE;
+            }
+        }
+        values.put(reference, value);
+        return value;
+    }
+
+    private static boolean isDeferred(TelegramVariable variable) {
+        return variable.getCost() != TelegramVariable.Cost.CHEAP && variable.getTimeoutMillis() > 0;
+    }
+
+    private Pending start(TelegramVariable variable, String reference) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(variable.getTimeoutMillis());
+        return new Pending(executor.submit(() -> compute(variable, reference)), deadline);
+    }
+
+    private String await(Pending calculation, String reference) {
+        try {
+            return calculation.future.get(Math.max(0, calculation.deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            calculation.future.cancel(true);
+            LOGGER.log(Level.WARNING, "Variable {0} non calculée dans le temps imparti", reference);
+        } catch (InterruptedException e) {
+            calculation.future.cancel(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.WARNING, "Erreur lors du calcul de la variable " + reference, e.getCause());
+        }
+        return null;
+    }
+
+    private String compute(TelegramVariable variable, String reference) {
+        try {
+            return variable.resolve(build, VariableRegistry.argument(reference));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Erreur lors du calcul de la variable " + reference, e);
+        }
+        return null;
+    }
+
+    /**
+     * Calcul en cours d'une variable et son échéance ({@link System#nanoTime()}).
+     */
+    private static final class Pending {
+        private final Future<String> future;
+        private final long deadline;
+
+        Pending(Future<String> future, long deadline) {
+            this.future = future;
+            this.deadline = deadline;
+        }
+    }
+}
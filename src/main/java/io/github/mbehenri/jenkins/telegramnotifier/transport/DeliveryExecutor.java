@@ -0,0 +1,155 @@
+package io.github.mbehenri.jenkins.telegramnotifier.transport;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executor de livraison des notifications : threads virtuels quand le runtime les supporte (Java 21+),
+ * sinon pool borné de threads plateforme (Java 17, niveau de compilation du plugin).
+ * <p>
+ * Avec des threads virtuels, chaque tâche a son propre thread : des milliers d'échanges en cours ne
+ * coûtent presque aucun thread plateforme. Un sémaphore borne le nombre de tâches exécutées simultanément
+ * pour ne pas submerger le limiteur de débit ni le processeur lors d'un afflux de notifications.
+ * <p>
+ * Les threads virtuels sont obtenus par réflexion pour rester compilable en Java 17. Ils peuvent être
+ * désactivés avec {@code -Dio.github.mbehenri.jenkins.telegramnotifier.transport.DeliveryExecutor.disableVirtualThreads=true}.
+ */
+public final class DeliveryExecutor extends AbstractExecutorService {
+
+    private static final Logger LOGGER = Logger.getLogger(DeliveryExecutor.class.getName());
+
+    private static final String THREAD_NAME = "Telegram Notifier Delivery";
+
+    static final String DISABLE_VIRTUAL_THREADS = DeliveryExecutor.class.getName() + ".disableVirtualThreads";
+
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final boolean virtual;
+
+    private DeliveryExecutor(ExecutorService delegate, int maxConcurrency, boolean virtual) {
+        this.delegate = delegate;
+        this.permits = new Semaphore(maxConcurrency);
+        this.virtual = virtual;
+    }
+
+    /**
+     * Crée l'executor de livraison.
+     *
+     * @param platformThreads le nombre de threads du pool plateforme utilisé sans threads virtuels
+     * @param maxConcurrency  le nombre maximal de tâches exécutées simultanément
+     * @return l'executor de livraison
+     */
+    public static DeliveryExecutor create(int platformThreads, int maxConcurrency) {
+        ThreadFactory virtualThreads = Boolean.getBoolean(DISABLE_VIRTUAL_THREADS) ? null : virtualThreadFactory();
+        if (virtualThreads != null) {
+            LOGGER.log(Level.FINE, "Livraison des notifications sur threads virtuels");
+            return new DeliveryExecutor(newThreadPerTaskExecutor(virtualThreads), maxConcurrency, true);
+        }
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                platformThreads, platformThreads,
+                60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), THREAD_NAME));
+        // Les threads inactifs sont libérés : un contrôleur sans notification ne garde aucun thread
+        pool.allowCoreThreadTimeOut(true);
+        return new DeliveryExecutor(pool, Math.min(platformThreads, maxConcurrency), false);
+    }
+
+    /**
+     * Indique si les tâches s'exécutent sur des threads virtuels.
+     *
+     * @return true pour des threads virtuels, false pour le pool de threads plateforme
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Obtient le nombre de tâches pouvant encore démarrer sans attendre.
+     *
+     * @return le nombre de places libres
+     */
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        // Le permis est pris dans la tâche : l'appelant (sélecteur du client HTTP) n'est jamais bloqué,
+        // et un thread virtuel en attente du sémaphore ne retient aucun thread plateforme
+        delegate.execute(() -> {
+            permits.acquireUninterruptibly();
+            try {
+                task.run();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Obtient une fabrique de threads virtuels nommés ({@code Thread.ofVirtual().name(...).factory()}).
+     *
+     * @return la fabrique, ou null si le runtime ne supporte pas les threads virtuels
+     */
+    static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, THREAD_NAME + "-", 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Java < 21 (ou preview désactivée) : repli sur le pool de threads plateforme
+            LOGGER.log(Level.FINEST, "Threads virtuels indisponibles", e);
+            return null;
+        }
+    }
+
+    private static ExecutorService newThreadPerTaskExecutor(ThreadFactory factory) {
+        try {
+            Method method = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) method.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Threads virtuels disponibles sans Executors.newThreadPerTaskExecutor", e);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package io.github.mbehenri.jenkins.telegramnotifier.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Flux qui compresse au format gzip le contenu d'un autre flux, au fil de la lecture.
+ * <p>
+ * Contrairement à {@link java.util.zip.GZIPOutputStream}, la compression est tirée par le lecteur
+ * (ex: le client HTTP qui envoie le corps d'une requête) : aucun thread ni tampon intermédiaire de la
+ * taille du contenu n'est nécessaire, la mémoire utilisée est bornée par la taille du tampon de lecture.
+ */
+public class GzipCompressingInputStream extends InputStream {
+
+    private static final byte[] HEADER = {
+            0x1f, (byte) 0x8b, // Magic number
+            Deflater.DEFLATED, // Méthode de compression
+            0, 0, 0, 0, 0,     // Flags et date de modification (non renseignée)
+            0, (byte) 0xff     // Flags supplémentaires et système d'exploitation (inconnu)
+    };
+
+    private static final int TRAILER_SIZE = 8;
+
+    private final InputStream source;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 crc = new CRC32();
+    private final byte[] input;
+    private final byte[] single = new byte[1];
+
+    private byte[] pending = HEADER;
+    private int pendingOffset;
+    private boolean trailerWritten;
+    private boolean sourceExhausted;
+
+    /**
+     * Crée un flux compressé avec un tampon de lecture de 8 Ko.
+     *
+     * @param source le flux à compresser, fermé avec ce flux
+     */
+    public GzipCompressingInputStream(InputStream source) {
+        this(source, 8192);
+    }
+
+    /**
+     * Crée un flux compressé.
+     *
+     * @param source     le flux à compresser, fermé avec ce flux
+     * @param bufferSize la taille du tampon de lecture du flux source
+     */
+    public GzipCompressingInputStream(InputStream source, int bufferSize) {
+        this.source = source;
+        this.input = new byte[bufferSize];
+    }
+
+    @Override
+    public int read() throws IOException {
+        int n = read(single, 0, 1);
+        return n < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        while (true) {
+            // En-tête ou pied de page en cours d'écriture
+            if (pending != null) {
+                int n = Math.min(length, pending.length - pendingOffset);
+                System.arraycopy(pending, pendingOffset, buffer, offset, n);
+                pendingOffset += n;
+                if (pendingOffset == pending.length) {
+                    pending = null;
+                }
+                return n;
+            }
+
+            if (trailerWritten) {
+                return -1;
+            }
+
+            if (deflater.finished()) {
+                pending = trailer();
+                pendingOffset = 0;
+                trailerWritten = true;
+                continue;
+            }
+
+            if (deflater.needsInput() && !sourceExhausted) {
+                int n = source.read(input, 0, input.length);
+                if (n < 0) {
+                    sourceExhausted = true;
+                    deflater.finish();
+                } else if (n > 0) {
+                    crc.update(input, 0, n);
+                    deflater.setInput(input, 0, n);
+                }
+            }
+
+            int n = deflater.deflate(buffer, offset, length);
+            if (n > 0) {
+                return n;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        source.close();
+    }
+
+    private byte[] trailer() {
+        byte[] trailer = new byte[TRAILER_SIZE];
+        writeIntLE(trailer, 0, (int) crc.getValue());
+        writeIntLE(trailer, 4, (int) deflater.getBytesRead());
+        return trailer;
+    }
+
+    private static void writeIntLE(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >> 8);
+        buffer[offset + 2] = (byte) (value >> 16);
+        buffer[offset + 3] = (byte) (value >> 24);
+    }
+}
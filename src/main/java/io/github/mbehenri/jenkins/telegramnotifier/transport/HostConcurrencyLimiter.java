@@ -0,0 +1,187 @@
+package io.github.mbehenri.jenkins.telegramnotifier.transport;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Borne le nombre de requêtes simultanées vers chaque hôte de l'API, selon le protocole négocié.
+ * <p>
+ * En HTTP/2, toutes les requêtes vers un hôte sont multiplexées sur une seule connexion : la limite est le
+ * nombre de flux simultanés. En HTTP/1.1 (ex: serveur Bot API local sans TLS), chaque requête en cours
+ * occupe une connexion : la limite fixe la taille du pool de connexions keep-alive réutilisées.
+ * <p>
+ * Tant que le protocole d'un hôte n'est pas connu, une seule requête est émise : les suivantes attendent
+ * la première connexion au lieu d'ouvrir chacune la leur lors d'un afflux de notifications.
+ * Les requêtes en attente ne bloquent aucun thread.
+ */
+public final class HostConcurrencyLimiter {
+
+    private static final Logger LOGGER = Logger.getLogger(HostConcurrencyLimiter.class.getName());
+
+    private final IntSupplier http2Streams;
+    private final IntSupplier http1Connections;
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * Crée un limiteur.
+     *
+     * @param http2Streams     le nombre maximal de flux HTTP/2 simultanés par hôte (relu à chaque requête)
+     * @param http1Connections le nombre maximal de connexions HTTP/1.1 par hôte (relu à chaque requête)
+     */
+    public HostConcurrencyLimiter(IntSupplier http2Streams, IntSupplier http1Connections) {
+        this.http2Streams = http2Streams;
+        this.http1Connections = http1Connections;
+    }
+
+    /**
+     * Exécute un échange dès qu'un flux (ou une connexion) est disponible vers l'hôte ciblé.
+     *
+     * @param target   l'URI de la requête
+     * @param exchange l'échange HTTP à lancer
+     * @param <T>      le type du corps de la réponse
+     * @return un future complété avec la réponse de l'échange
+     */
+    public <T> CompletableFuture<HttpResponse<T>> submit(URI target,
+                                                         Supplier<CompletableFuture<HttpResponse<T>>> exchange) {
+        Host host = hosts.computeIfAbsent(key(target), Host::new);
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        host.enqueue(() -> start(host, exchange, result));
+        return result;
+    }
+
+    /**
+     * Obtient le protocole négocié avec un hôte.
+     *
+     * @param target une URI de l'hôte
+     * @return le protocole, ou null si aucune réponse n'a encore été reçue
+     */
+    public HttpClient.Version getVersion(URI target) {
+        Host host = hosts.get(key(target));
+        return host != null ? host.version : null;
+    }
+
+    /**
+     * Obtient le nombre de requêtes en cours vers un hôte.
+     *
+     * @param target une URI de l'hôte
+     * @return le nombre de requêtes en cours
+     */
+    public int getInFlight(URI target) {
+        Host host = hosts.get(key(target));
+        return host != null ? host.inFlight() : 0;
+    }
+
+    private <T> void start(Host host, Supplier<CompletableFuture<HttpResponse<T>>> exchange,
+                           CompletableFuture<HttpResponse<T>> result) {
+        CompletableFuture<HttpResponse<T>> response;
+        try {
+            response = exchange.get();
+        } catch (RuntimeException e) {
+            host.release(null);
+            result.completeExceptionally(e);
+            return;
+        }
+
+        response.whenComplete((value, error) -> {
+            host.release(value != null ? value.version() : null);
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        });
+    }
+
+    private static String key(URI target) {
+        return target.getScheme() + "://" + target.getHost() + ":" + target.getPort();
+    }
+
+    /**
+     * Requêtes en cours et en attente vers un hôte.
+     */
+    private final class Host {
+
+        private final String key;
+        private final Deque<Runnable> waiting = new ArrayDeque<>();
+        private int inFlight;
+        private boolean draining;
+        private volatile HttpClient.Version version;
+
+        Host(String key) {
+            this.key = key;
+        }
+
+        void enqueue(Runnable request) {
+            synchronized (this) {
+                waiting.addLast(request);
+            }
+            drain();
+        }
+
+        void release(HttpClient.Version negotiated) {
+            if (negotiated != null && negotiated != version) {
+                LOGGER.log(Level.FINE, "Protocole {0} négocié avec {1}", new Object[]{negotiated, key});
+                version = negotiated;
+            }
+            synchronized (this) {
+                inFlight--;
+            }
+            drain();
+        }
+
+        synchronized int inFlight() {
+            return inFlight;
+        }
+
+        /**
+         * Lance les requêtes en attente tant que la limite le permet, hors du verrou.
+         * Un seul thread draine à la fois : une réponse reçue pendant le drainage (ou complétée
+         * immédiatement) est prise en compte par la boucle en cours au lieu de l'imbriquer.
+         */
+        private void drain() {
+            synchronized (this) {
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            }
+            while (true) {
+                Runnable next;
+                synchronized (this) {
+                    if (waiting.isEmpty() || inFlight >= limit()) {
+                        draining = false;
+                        return;
+                    }
+                    next = waiting.pollFirst();
+                    inFlight++;
+                }
+                try {
+                    next.run();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Erreur inattendue au lancement d'une requête vers " + key, e);
+                }
+            }
+        }
+
+        private int limit() {
+            HttpClient.Version negotiated = version;
+            if (negotiated == null) {
+                return 1;
+            }
+            int limit = negotiated == HttpClient.Version.HTTP_2
+                    ? http2Streams.getAsInt()
+                    : http1Connections.getAsInt();
+            return Math.max(1, limit);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package io.github.mbehenri.jenkins.telegramnotifier.transport;
+
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Encode un objet JSON (corps des méthodes de l'API Bot) directement en octets UTF-8. Les champs sont plats,
+ * à l'exception des tableaux d'objets ({@link #beginArray(byte[])}, ex: les entités d'un message).
+ * <p>
+ * Chaque thread réutilise son propre tampon : le texte du message est échappé et transcodé en un seul
+ * passage, puis copié une fois dans le tableau remis à {@link HttpRequest.BodyPublishers#ofByteArray}.
+ * Les fragments constants (clés, {@code "parse_mode":"Markdown"}) sont encodés une fois pour toutes via
+ * {@link #key(String)} et {@link #constant(String, String)}.
+ * <p>
+ * Ex: {@code JsonRequestEncoder.get().field(CHAT_ID, chatId).field(TEXT, text).raw(PARSE_MODE).toByteArray()}
+ */
+public final class JsonRequestEncoder {
+
+    /**
+     * Valeur de l'en-tête Content-Type des corps produits.
+     */
+    public static final String CONTENT_TYPE = "application/json";
+
+    /**
+     * Au-delà de cette taille, le tampon d'un thread est libéré après usage pour ne pas retenir
+     * la mémoire d'un message exceptionnellement long.
+     */
+    private static final int MAX_RETAINED_BYTES = 64 * 1024;
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ThreadLocal<JsonRequestEncoder> ENCODERS = ThreadLocal.withInitial(JsonRequestEncoder::new);
+
+    private byte[] buffer = new byte[1024];
+    private int size;
+
+    private JsonRequestEncoder() {
+    }
+
+    /**
+     * Obtient l'encodeur du thread courant, vidé et prêt à recevoir les champs d'un nouvel objet.
+     * L'encodeur ne doit pas être conservé au-delà de l'appel à {@link #toByteArray()}.
+     *
+     * @return l'encodeur du thread courant
+     */
+    public static JsonRequestEncoder get() {
+        JsonRequestEncoder encoder = ENCODERS.get();
+        encoder.size = 0;
+        encoder.append((byte) '{');
+        return encoder;
+    }
+
+    /**
+     * Pré-encode une clé (ex: {@code "chat_id":}).
+     *
+     * @param name le nom du champ, sans caractère à échapper
+     * @return la clé encodée
+     */
+    public static byte[] key(String name) {
+        return ("\"" + name + "\":").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Pré-encode un champ constant (ex: {@code "parse_mode":"Markdown"}), ajouté ensuite par {@link #raw(byte[])}.
+     *
+     * @param name  le nom du champ
+     * @param value la valeur du champ
+     * @return le champ encodé
+     */
+    public static byte[] constant(String name, String value) {
+        JsonRequestEncoder encoder = new JsonRequestEncoder();
+        encoder.appendString(value);
+        byte[] encodedKey = key(name);
+        byte[] field = Arrays.copyOf(encodedKey, encodedKey.length + encoder.size);
+        System.arraycopy(encoder.buffer, 0, field, encodedKey.length, encoder.size);
+        return field;
+    }
+
+    /**
+     * Ajoute un champ texte.
+     *
+     * @param key   la clé pré-encodée
+     * @param value la valeur, ignorée si null
+     * @return cet encodeur
+     */
+    public JsonRequestEncoder field(byte[] key, String value) {
+        if (value != null) {
+            separator();
+            append(key);
+            appendString(value);
+        }
+        return this;
+    }
+
+    /**
+     * Ajoute un champ numérique.
+     *
+     * @param key   la clé pré-encodée
+     * @param value la valeur
+     * @return cet encodeur
+     */
+    public JsonRequestEncoder field(byte[] key, long value) {
+        separator();
+        append(key);
+        append(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+        return this;
+    }
+
+    /**
+     * Ajoute un champ pré-encodé par {@link #constant(String, String)}, ou tout fragment JSON valide
+     * de la forme {@code "clé":valeur}.
+     *
+     * @param field le champ encodé
+     * @return cet encodeur
+     */
+    public JsonRequestEncoder raw(byte[] field) {
+        separator();
+        append(field);
+        return this;
+    }
+
+    /**
+     * Ouvre un champ tableau, dont les éléments sont des objets ({@link #beginObject()}).
+     *
+     * @param key la clé pré-encodée
+     * @return cet encodeur
+     */
+    public JsonRequestEncoder beginArray(byte[] key) {
+        separator();
+        append(key);
+        append((byte) '[');
+        return this;
+    }
+
+    /**
+     * Ouvre un objet, élément du tableau ouvert.
+     *
+     * @return cet encodeur
+     */
+    public JsonRequestEncoder beginObject() {
+        separator();
+        append((byte) '{');
+        return this;
+    }
+
+    /**
+     * Ferme l'objet ouvert par {@link #beginObject()}.
+     *
+     * @return cet encodeur
+     */
+    public JsonRequestEncoder endObject() {
+        append((byte) '}');
+        return this;
+    }
+
+    /**
+     * Ferme le tableau ouvert par {@link #beginArray(byte[])}.
+     *
+     * @return cet encodeur
+     */
+    public JsonRequestEncoder endArray() {
+        append((byte) ']');
+        return this;
+    }
+
+    /**
+     * Termine l'objet et retourne une copie du tampon, que le client HTTP peut lire après le retour
+     * (envoi asynchrone) pendant que le thread réutilise son tampon.
+     *
+     * @return le corps JSON encodé en UTF-8
+     */
+    public byte[] toByteArray() {
+        append((byte) '}');
+        byte[] body = Arrays.copyOf(buffer, size);
+        if (buffer.length > MAX_RETAINED_BYTES) {
+            buffer = new byte[1024];
+        }
+        size = 0;
+        return body;
+    }
+
+    private void separator() {
+        byte last = buffer[size - 1];
+        if (last != '{' && last != '[') {
+            append((byte) ',');
+        }
+    }
+
+    /**
+     * Écrit une chaîne JSON échappée, encodée en UTF-8 en un seul passage.
+     * Une paire de substitution incomplète est remplacée par '?', comme {@link String#getBytes}.
+     */
+    private void appendString(String value) {
+        int length = value.length();
+        // Pire cas : 6 octets par caractère (\\u00XX) et les guillemets
+        ensureCapacity(length * 6 + 2);
+        byte[] out = buffer;
+        int pos = size;
+
+        out[pos++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    out[pos++] = (byte) c;
+                } else {
+                    pos = escape(out, pos, c);
+                }
+            } else if (c < 0x800) {
+                out[pos++] = (byte) (0xC0 | (c >> 6));
+                out[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    out[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                    out[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    out[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    out[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else {
+                    out[pos++] = '?';
+                }
+            } else {
+                out[pos++] = (byte) (0xE0 | (c >> 12));
+                out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        out[pos++] = '"';
+        size = pos;
+    }
+
+    private static int escape(byte[] out, int pos, char c) {
+        out[pos++] = '\\';
+        switch (c) {
+            case '"':
+                out[pos++] = '"';
+                break;
+            case '\\':
+                out[pos++] = '\\';
+                break;
+            case '\n':
+                out[pos++] = 'n';
+                break;
+            case '\r':
+                out[pos++] = 'r';
+                break;
+            case '\t':
+                out[pos++] = 't';
+                break;
+            default:
+                out[pos++] = 'u';
+                out[pos++] = '0';
+                out[pos++] = '0';
+                out[pos++] = HEX[c >> 4];
+                out[pos++] = HEX[c & 0xF];
+        }
+        return pos;
+    }
+
+    private void append(byte b) {
+        ensureCapacity(1);
+        buffer[size++] = b;
+    }
+
+    private void append(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (size + additional > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + additional));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package io.github.mbehenri.jenkins.telegramnotifier.transport;
+
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramConfig;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latences récentes des échanges avec chaque hôte de l'API, pour dériver le timeout d'un envoi.
+ * <p>
+ * Les {@link TelegramConfig#LATENCY_WINDOW_SAMPLES} dernières latences d'un hôte sont conservées dans un
+ * tampon circulaire. Le timeout d'un envoi vaut {@link TelegramConfig#ADAPTIVE_TIMEOUT_P99_FACTOR} fois leur p99,
+ * borné par {@link TelegramConfig#ADAPTIVE_TIMEOUT_MIN_MILLIS} et par le timeout configuré : quand l'API est
+ * saine, un envoi bloqué est coupé en quelques secondes et retenté au lieu d'attendre 30 s.
+ * <p>
+ * Un envoi coupé par son timeout est compté avec la durée du timeout : si l'API ralentit, le p99 remonte
+ * jusqu'au timeout configuré au lieu de couper tous les envois.
+ */
+public final class LatencyTracker {
+
+    private final int windowSamples;
+    private final int minSamples;
+    private final Map<String, Window> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * Crée un suivi avec la fenêtre par défaut.
+     */
+    public LatencyTracker() {
+        this(TelegramConfig.LATENCY_WINDOW_SAMPLES, TelegramConfig.LATENCY_MIN_SAMPLES);
+    }
+
+    /**
+     * Crée un suivi avec une fenêtre spécifique (ex: tests).
+     *
+     * @param windowSamples le nombre de latences conservées par hôte
+     * @param minSamples    le nombre de latences nécessaires avant d'adapter le timeout
+     */
+    public LatencyTracker(int windowSamples, int minSamples) {
+        this.windowSamples = windowSamples;
+        this.minSamples = minSamples;
+    }
+
+    /**
+     * Enregistre la durée d'un échange avec un hôte.
+     *
+     * @param target        l'URI de la requête
+     * @param latencyMillis la durée de l'échange en millisecondes
+     */
+    public void record(URI target, long latencyMillis) {
+        hosts.computeIfAbsent(key(target), k -> new Window(windowSamples)).add(latencyMillis);
+    }
+
+    /**
+     * Obtient le p99 des latences récentes vers un hôte.
+     *
+     * @param target une URI de l'hôte
+     * @return le p99 en millisecondes, ou -1 s'il n'y a pas assez de mesures
+     */
+    public long getP99Millis(URI target) {
+        Window window = hosts.get(key(target));
+        return window != null ? window.percentile(99, minSamples) : -1;
+    }
+
+    /**
+     * Calcule le timeout d'un envoi vers un hôte.
+     *
+     * @param target    l'URI de la requête
+     * @param maxMillis le timeout configuré, jamais dépassé
+     * @return le timeout en millisecondes
+     */
+    public long timeoutMillis(URI target, long maxMillis) {
+        long p99 = getP99Millis(target);
+        if (p99 < 0) {
+            return maxMillis;
+        }
+        long adaptive = Math.max(TelegramConfig.ADAPTIVE_TIMEOUT_MIN_MILLIS, p99 * TelegramConfig.ADAPTIVE_TIMEOUT_P99_FACTOR);
+        return Math.min(maxMillis, adaptive);
+    }
+
+    private static String key(URI target) {
+        return target.getScheme() + "://" + target.getHost() + ":" + target.getPort();
+    }
+
+    /**
+     * Tampon circulaire des dernières latences d'un hôte.
+     */
+    private static final class Window {
+
+        private final long[] samples;
+        private int next;
+        private int count;
+
+        Window(int size) {
+            this.samples = new long[size];
+        }
+
+        synchronized void add(long latencyMillis) {
+            samples[next] = latencyMillis;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        /**
+         * Trie une copie de la fenêtre (au plus quelques centaines de valeurs) : coût négligeable
+         * devant l'échange HTTP qu'elle précède.
+         */
+        long percentile(int percent, int minSamples) {
+            long[] sorted;
+            synchronized (this) {
+                if (count < minSamples) {
+                    return -1;
+                }
+                sorted = Arrays.copyOf(samples, count);
+            }
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, rank)];
+        }
+    }
+}
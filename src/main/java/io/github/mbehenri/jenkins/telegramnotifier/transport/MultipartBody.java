@@ -0,0 +1,119 @@
+package io.github.mbehenri.jenkins.telegramnotifier.transport;
+
+import io.github.mbehenri.jenkins.telegramnotifier.Attachment;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Corps de requête {@code multipart/form-data} dont la partie fichier est compressée en gzip à la volée.
+ * <p>
+ * Le corps est produit en flux : les champs texte et les délimiteurs sont assemblés autour du flux
+ * compressé du fichier, sans jamais matérialiser le contenu en mémoire. Le client HTTP l'envoie en
+ * transfert par blocs (taille inconnue à l'avance).
+ */
+public final class MultipartBody {
+
+    private static final String CRLF = "\r\n";
+
+    private final String boundary = "----TelegramNotifier" + UUID.randomUUID().toString().replace("-", "");
+    private final Map<String, String> fields = new LinkedHashMap<>();
+    private String fileField;
+    private Attachment attachment;
+
+    /**
+     * Ajoute un champ texte.
+     *
+     * @param name  le nom du champ
+     * @param value la valeur du champ
+     * @return ce corps
+     */
+    public MultipartBody field(String name, String value) {
+        fields.put(name, value);
+        return this;
+    }
+
+    /**
+     * Définit le fichier joint, envoyé compressé sous le nom {@code <nom>.gz}.
+     *
+     * @param name       le nom du champ (ex: document)
+     * @param attachment le fichier joint
+     * @return ce corps
+     */
+    public MultipartBody gzipFile(String name, Attachment attachment) {
+        this.fileField = name;
+        this.attachment = attachment;
+        return this;
+    }
+
+    /**
+     * Obtient la valeur de l'en-tête Content-Type, délimiteur compris.
+     *
+     * @return le type de contenu
+     */
+    public String contentType() {
+        return "multipart/form-data; boundary=" + boundary;
+    }
+
+    /**
+     * Crée le publisher du corps. La source du fichier est rouverte à chaque souscription,
+     * ce qui permet de renvoyer la même requête lors d'une nouvelle tentative.
+     *
+     * @return le publisher du corps
+     */
+    public HttpRequest.BodyPublisher publisher() {
+        return HttpRequest.BodyPublishers.ofInputStream(() -> {
+            try {
+                return open();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Ouvre un flux sur le corps complet.
+     *
+     * @return le flux du corps
+     * @throws IOException si la source du fichier ne peut pas être ouverte
+     */
+    InputStream open() throws IOException {
+        StringBuilder head = new StringBuilder();
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            head.append("--").append(boundary).append(CRLF)
+                    .append("Content-Disposition: form-data; name=\"").append(field.getKey()).append('"').append(CRLF)
+                    .append(CRLF)
+                    .append(field.getValue()).append(CRLF);
+        }
+
+        if (attachment == null) {
+            head.append("--").append(boundary).append("--").append(CRLF);
+            return bytes(head.toString());
+        }
+
+        head.append("--").append(boundary).append(CRLF)
+                .append("Content-Disposition: form-data; name=\"").append(fileField)
+                .append("\"; filename=\"").append(attachment.getFileName().replace("\"", "")).append(".gz\"").append(CRLF)
+                .append("Content-Type: application/gzip").append(CRLF)
+                .append(CRLF);
+        String tail = CRLF + "--" + boundary + "--" + CRLF;
+
+        InputStream file = new GzipCompressingInputStream(attachment.getSource().open());
+        return new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                bytes(head.toString()), file, bytes(tail))));
+    }
+
+    private static InputStream bytes(String value) {
+        return new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
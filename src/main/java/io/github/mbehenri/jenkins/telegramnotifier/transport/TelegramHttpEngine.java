@@ -0,0 +1,236 @@
+package io.github.mbehenri.jenkins.telegramnotifier.transport;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramConfig;
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramGlobalConfiguration;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Moteur de transport HTTP partagé par toutes les instances de
+ * {@link io.github.mbehenri.jenkins.telegramnotifier.TelegramNotifier}.
+ * <p>
+ * Possède un unique {@link HttpClient} de longue durée afin que les connexions vers l'API Telegram
+ * (DNS, TCP, TLS) soient réutilisées d'une notification à l'autre, en HTTP/2 quand le serveur le permet.
+ * Le moteur est démarré et arrêté avec Jenkins via {@link Initializer} et {@link Terminator}.
+ * <p>
+ * Les échanges asynchrones du client s'exécutent sur un {@link DeliveryExecutor} : threads virtuels
+ * sur Java 21+, sinon pool borné de {@link TelegramConfig#DELIVERY_THREADS} threads plateforme.
+ * Le nombre de requêtes simultanées vers chaque hôte est borné par un {@link HostConcurrencyLimiter}
+ * configuré dans {@link TelegramGlobalConfiguration}, et le timeout d'un envoi suit les latences observées
+ * vers l'hôte ({@link LatencyTracker}).
+ * <p>
+ * Une fois les jobs chargés, puis à chaque enregistrement de la configuration globale, la connexion vers le
+ * serveur Bot API est préchauffée ({@link #warmUp(String)}) : la première notification ne paie plus DNS, TCP
+ * et TLS, et le protocole négocié est déjà connu du limiteur de concurrence.
+ */
+public final class TelegramHttpEngine {
+
+    private static final Logger LOGGER = Logger.getLogger(TelegramHttpEngine.class.getName());
+
+    private static final TelegramHttpEngine INSTANCE = new TelegramHttpEngine();
+
+    private final HostConcurrencyLimiter concurrencyLimiter = new HostConcurrencyLimiter(
+            () -> TelegramGlobalConfiguration.get().getMaxConcurrentStreams(),
+            () -> TelegramGlobalConfiguration.get().getMaxHttp1Connections());
+
+    private final LatencyTracker latencyTracker = new LatencyTracker();
+
+    /**
+     * URL de base -> durée du dernier préchauffage réussi (ms).
+     */
+    private final Map<String, Long> warmUpLatencies = new ConcurrentHashMap<>();
+
+    private volatile HttpClient client;
+    private volatile DeliveryExecutor executor;
+
+    private TelegramHttpEngine() {
+        // Singleton, utiliser get()
+    }
+
+    /**
+     * Obtient l'instance partagée du moteur de transport.
+     *
+     * @return le moteur de transport
+     */
+    public static TelegramHttpEngine get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Obtient le client HTTP partagé, en démarrant le moteur si nécessaire
+     * (ex: tests unitaires exécutés hors d'une instance Jenkins).
+     *
+     * @return le client HTTP partagé
+     */
+    public HttpClient getClient() {
+        HttpClient current = client;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (client == null) {
+                start();
+            }
+            return client;
+        }
+    }
+
+    /**
+     * Obtient l'executor de livraison, en démarrant le moteur si nécessaire.
+     *
+     * @return l'executor de livraison
+     */
+    public DeliveryExecutor getExecutor() {
+        getClient();
+        return executor;
+    }
+
+    /**
+     * Obtient le limiteur de requêtes simultanées par hôte, partagé par tous les envois.
+     *
+     * @return le limiteur de concurrence
+     */
+    public HostConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * Préchauffe la connexion vers un serveur Bot API, sans envoyer de message.
+     * <p>
+     * Une requête {@code HEAD} sur la racine du serveur (sans token) établit DNS, TCP et TLS ; la connexion
+     * reste ensuite ouverte dans le pool du client partagé pour les envois suivants. La durée mesurée inclut
+     * l'établissement de la connexion et un aller-retour.
+     *
+     * @param apiBaseUrl l'URL de base de l'API (ex: https://api.telegram.org)
+     * @return un future complété avec la durée en millisecondes, ou -1 si le serveur est injoignable
+     */
+    public CompletableFuture<Long> warmUp(String apiBaseUrl) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(apiBaseUrl + "/"))
+                    .timeout(Duration.ofSeconds(TelegramGlobalConfiguration.get().getProbeTimeoutSeconds()))
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                    .build();
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "URL de l''API invalide, connexion non préchauffée : {0}", apiBaseUrl);
+            return CompletableFuture.completedFuture(-1L);
+        }
+
+        HttpClient httpClient = getClient();
+        long start = System.nanoTime();
+        return concurrencyLimiter.submit(request.uri(),
+                        () -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()))
+                .handle((response, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        LOGGER.log(Level.WARNING, "Impossible de préchauffer la connexion à {0} : {1}",
+                                new Object[]{apiBaseUrl, cause.toString()});
+                        return -1L;
+                    }
+                    long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    warmUpLatencies.put(apiBaseUrl, latency);
+                    LOGGER.log(Level.INFO, "Connexion à {0} préchauffée en {1} ms ({2})",
+                            new Object[]{apiBaseUrl, latency, response.version()});
+                    return latency;
+                });
+    }
+
+    /**
+     * Obtient la durée du dernier préchauffage réussi vers un serveur Bot API.
+     *
+     * @param apiBaseUrl l'URL de base de l'API
+     * @return la durée en millisecondes, ou -1 si la connexion n'a pas été préchauffée
+     */
+    public long getWarmUpLatencyMillis(String apiBaseUrl) {
+        return warmUpLatencies.getOrDefault(apiBaseUrl, -1L);
+    }
+
+    /**
+     * Obtient le suivi des latences par hôte, dont dérive le timeout de chaque envoi de message.
+     *
+     * @return le suivi des latences
+     */
+    public LatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+
+    /**
+     * Indique si le moteur possède actuellement un client actif.
+     *
+     * @return true si le moteur est démarré
+     */
+    public boolean isRunning() {
+        return client != null;
+    }
+
+    /**
+     * Démarre le moteur en créant le client HTTP partagé. Sans effet s'il est déjà démarré.
+     */
+    public synchronized void start() {
+        if (client != null) {
+            return;
+        }
+
+        executor = DeliveryExecutor.create(TelegramConfig.DELIVERY_THREADS, TelegramConfig.DELIVERY_MAX_CONCURRENCY);
+
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofSeconds(TelegramConfig.CONNECT_TIMEOUT_SECONDS))
+                .executor(executor)
+                .build();
+
+        LOGGER.log(Level.FINE, "Moteur de transport Telegram démarré (threads virtuels : {0})", executor.isVirtual());
+    }
+
+    /**
+     * Arrête le moteur : le client est abandonné et ses threads sont libérés.
+     * Un appel ultérieur à {@link #getClient()} redémarre le moteur.
+     */
+    public synchronized void stop() {
+        if (client == null) {
+            return;
+        }
+
+        // HttpClient (Java 17) n'a pas de close() : son sélecteur s'arrête une fois le client
+        // libéré, et l'arrêt de l'executor interrompt les échanges encore en cours
+        client = null;
+        executor.shutdownNow();
+        executor = null;
+        warmUpLatencies.clear();
+
+        LOGGER.log(Level.FINE, "Moteur de transport Telegram arrêté");
+    }
+
+    @Initializer(after = InitMilestone.PLUGINS_STARTED)
+    public static void startEngine() {
+        get().start();
+    }
+
+    /**
+     * Préchauffe la connexion vers le serveur Bot API configuré, en arrière-plan, une fois les jobs chargés.
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void warmUpConnections() {
+        get().warmUp(TelegramGlobalConfiguration.get().getApiBaseUrl());
+    }
+
+    @Terminator
+    public static void stopEngine() {
+        get().stop();
+    }
+}
@@ -0,0 +1,506 @@
+package io.github.mbehenri.jenkins.telegramnotifier.transport;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Analyse en flux une réponse de l'API Bot et n'en retient que les champs utiles à la livraison.
+ * <p>
+ * Les octets sont consommés au fil de leur arrivée, sans construire de chaîne ni d'arbre JSON :
+ * seuls {@code ok}, {@code error_code}, {@code description}, {@code parameters.retry_after},
+ * {@code parameters.migrate_to_chat_id} et {@code result.message_id} sont extraits. Une réponse de succès
+ * ne produit aucun objet; seule la description d'une erreur est décodée en chaîne.
+ * <p>
+ * Un corps qui n'est pas du JSON (ex: page HTML d'un proxy) est ignoré sans erreur : les champs restent
+ * à leur valeur par défaut.
+ */
+public final class TelegramResponseParser {
+
+    // Champs reconnus
+    private static final int OTHER = 0;
+    private static final int OK = 1;
+    private static final int ERROR_CODE = 2;
+    private static final int DESCRIPTION = 3;
+    private static final int PARAMETERS = 4;
+    private static final int RESULT = 5;
+    private static final int RETRY_AFTER = 6;
+    private static final int MIGRATE_TO_CHAT_ID = 7;
+    private static final int MESSAGE_ID = 8;
+
+    private static final byte[][] KEYS = {
+            null,
+            ascii("ok"),
+            ascii("error_code"),
+            ascii("description"),
+            ascii("parameters"),
+            ascii("result"),
+            ascii("retry_after"),
+            ascii("migrate_to_chat_id"),
+            ascii("message_id"),
+    };
+
+    private static final int MAX_KEY_LENGTH = 18;
+    private static final int MAX_DESCRIPTION_BYTES = 1024;
+
+    // États de l'automate
+    private static final byte VALUE = 0;
+    private static final byte KEY_OR_END = 1;
+    private static final byte COLON = 2;
+    private static final byte AFTER_VALUE = 3;
+    private static final byte STRING = 4;
+    private static final byte STRING_ESCAPE = 5;
+    private static final byte NUMBER = 6;
+    private static final byte LITERAL = 7;
+    private static final byte DONE = 8;
+
+    private byte state = VALUE;
+    private int depth;
+    private boolean[] objects = new boolean[8];
+
+    private boolean readingKey;
+    private final byte[] keyBuffer = new byte[MAX_KEY_LENGTH];
+    private int keyLength;
+    private int key;
+    private int topLevelKey;
+
+    private int target;
+    private long number;
+    private boolean negative;
+    private boolean integral;
+    private byte[] description;
+    private int descriptionLength;
+
+    private Boolean ok;
+    private int errorCode;
+    private long retryAfter = -1;
+    private long migrateToChatId;
+    private long messageId = -1;
+    private String decodedDescription;
+
+    /**
+     * Obtient le gestionnaire de corps qui analyse la réponse au fil de sa réception.
+     *
+     * @return le gestionnaire de corps, à passer à {@code HttpClient.send}/{@code sendAsync}
+     */
+    public static HttpResponse.BodyHandler<TelegramResponseParser> bodyHandler() {
+        return responseInfo -> new Subscriber();
+    }
+
+    /**
+     * Analyse une réponse déjà disponible en mémoire.
+     *
+     * @param body le corps de la réponse, ou null
+     * @return l'analyseur, avec les champs extraits
+     */
+    public static TelegramResponseParser parse(String body) {
+        TelegramResponseParser parser = new TelegramResponseParser();
+        if (body != null) {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            parser.feed(bytes, 0, bytes.length);
+        }
+        return parser;
+    }
+
+    /**
+     * Consomme un fragment du corps.
+     *
+     * @param buffer les octets reçus
+     */
+    public void feed(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            feed(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+        } else {
+            while (buffer.hasRemaining() && state != DONE) {
+                accept(buffer.get());
+            }
+        }
+    }
+
+    /**
+     * Consomme un fragment du corps.
+     *
+     * @param bytes  les octets reçus
+     * @param offset la position du premier octet
+     * @param length le nombre d'octets
+     */
+    public void feed(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end && state != DONE; i++) {
+            accept(bytes[i]);
+        }
+    }
+
+    private void accept(byte b) {
+        switch (state) {
+            case STRING:
+                string(b);
+                return;
+            case STRING_ESCAPE:
+                capture(b);
+                state = STRING;
+                return;
+            case NUMBER:
+                if (numberByte(b)) {
+                    return;
+                }
+                endNumber();
+                break;
+            case LITERAL:
+                if (b >= 'a' && b <= 'z') {
+                    return;
+                }
+                state = AFTER_VALUE;
+                break;
+            default:
+                break;
+        }
+
+        if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+            return;
+        }
+
+        switch (state) {
+            case VALUE:
+                value(b);
+                break;
+            case KEY_OR_END:
+                if (b == '"') {
+                    readingKey = true;
+                    keyLength = 0;
+                    state = STRING;
+                } else if (b == '}') {
+                    close();
+                } else {
+                    state = DONE;
+                }
+                break;
+            case COLON:
+                state = b == ':' ? VALUE : DONE;
+                break;
+            case AFTER_VALUE:
+                if (depth == 0) {
+                    state = DONE;
+                } else if (b == ',') {
+                    state = objects[depth - 1] ? KEY_OR_END : VALUE;
+                } else if (b == '}' || b == ']') {
+                    close();
+                } else {
+                    state = DONE;
+                }
+                break;
+            default:
+                state = DONE;
+        }
+    }
+
+    private void value(byte b) {
+        target = depth == 0 ? OTHER : targetOf(key);
+        if (b == '{' || b == '[') {
+            open(b == '{');
+        } else if (b == ']' && depth > 0 && !objects[depth - 1]) {
+            close();
+        } else if (b == '"') {
+            readingKey = false;
+            if (target == DESCRIPTION) {
+                descriptionLength = 0;
+            }
+            state = STRING;
+        } else if (b == '-' || (b >= '0' && b <= '9')) {
+            number = 0;
+            negative = false;
+            integral = true;
+            state = NUMBER;
+            numberByte(b);
+        } else if (b == 't' || b == 'f' || b == 'n') {
+            if (target == OK && b != 'n') {
+                ok = b == 't';
+            }
+            state = LITERAL;
+        } else {
+            state = DONE;
+        }
+    }
+
+    private int targetOf(int field) {
+        if (depth == 1) {
+            return field == OK || field == ERROR_CODE || field == DESCRIPTION ? field : OTHER;
+        }
+        if (depth == 2 && topLevelKey == PARAMETERS) {
+            return field == RETRY_AFTER || field == MIGRATE_TO_CHAT_ID ? field : OTHER;
+        }
+        if (depth == 2 && topLevelKey == RESULT) {
+            return field == MESSAGE_ID ? field : OTHER;
+        }
+        return OTHER;
+    }
+
+    private void string(byte b) {
+        if (b == '"') {
+            if (readingKey) {
+                key = match();
+                if (depth == 1) {
+                    topLevelKey = key;
+                }
+                state = COLON;
+            } else {
+                state = AFTER_VALUE;
+            }
+            return;
+        }
+        capture(b);
+        if (b == '\\') {
+            state = STRING_ESCAPE;
+        }
+    }
+
+    /**
+     * Conserve un octet de la clé en cours de lecture ou de la description (encore échappée).
+     */
+    private void capture(byte b) {
+        if (readingKey) {
+            // Une clé trop longue ne peut correspondre à aucun champ recherché
+            if (keyLength < MAX_KEY_LENGTH) {
+                keyBuffer[keyLength] = b;
+            }
+            keyLength++;
+        } else if (target == DESCRIPTION && descriptionLength < MAX_DESCRIPTION_BYTES) {
+            if (description == null) {
+                description = new byte[64];
+            } else if (descriptionLength == description.length) {
+                description = Arrays.copyOf(description, description.length * 2);
+            }
+            description[descriptionLength++] = b;
+        }
+    }
+
+    private int match() {
+        if (keyLength > MAX_KEY_LENGTH) {
+            return OTHER;
+        }
+        for (int field = 1; field < KEYS.length; field++) {
+            if (Arrays.equals(KEYS[field], 0, KEYS[field].length, keyBuffer, 0, keyLength)) {
+                return field;
+            }
+        }
+        return OTHER;
+    }
+
+    private boolean numberByte(byte b) {
+        if (b >= '0' && b <= '9') {
+            number = number * 10 + (b - '0');
+            return true;
+        }
+        if (b == '-') {
+            negative = true;
+            return true;
+        }
+        if (b == '.' || b == 'e' || b == 'E' || b == '+') {
+            integral = false;
+            return true;
+        }
+        return false;
+    }
+
+    private void endNumber() {
+        state = AFTER_VALUE;
+        if (!integral) {
+            return;
+        }
+        long value = negative ? -number : number;
+        switch (target) {
+            case ERROR_CODE:
+                errorCode = (int) value;
+                break;
+            case RETRY_AFTER:
+                retryAfter = value;
+                break;
+            case MIGRATE_TO_CHAT_ID:
+                migrateToChatId = value;
+                break;
+            case MESSAGE_ID:
+                messageId = value;
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void open(boolean object) {
+        if (depth == objects.length) {
+            objects = Arrays.copyOf(objects, depth * 2);
+        }
+        objects[depth++] = object;
+        state = object ? KEY_OR_END : VALUE;
+    }
+
+    private void close() {
+        depth--;
+        state = depth > 0 ? AFTER_VALUE : DONE;
+    }
+
+    /**
+     * Termine l'analyse : un nombre en fin de corps (ex: corps {@code 42}) est pris en compte.
+     */
+    private void finish() {
+        if (state == NUMBER) {
+            endNumber();
+        }
+    }
+
+    /**
+     * Obtient le champ {@code ok}.
+     *
+     * @return la valeur de {@code ok}, ou null s'il est absent
+     */
+    public Boolean getOk() {
+        finish();
+        return ok;
+    }
+
+    /**
+     * Obtient le champ {@code error_code}.
+     *
+     * @return le code d'erreur, ou 0 s'il est absent
+     */
+    public int getErrorCode() {
+        finish();
+        return errorCode;
+    }
+
+    /**
+     * Obtient le champ {@code description}, décodé à la demande.
+     *
+     * @return la description, ou null si elle est absente
+     */
+    public String getDescription() {
+        if (decodedDescription == null && description != null) {
+            decodedDescription = unescape(new String(description, 0, descriptionLength, StandardCharsets.UTF_8));
+        }
+        return decodedDescription;
+    }
+
+    /**
+     * Obtient le champ {@code parameters.retry_after}.
+     *
+     * @return le délai en secondes, ou -1 s'il est absent
+     */
+    public long getRetryAfter() {
+        finish();
+        return retryAfter;
+    }
+
+    /**
+     * Obtient le champ {@code parameters.migrate_to_chat_id} (groupe devenu supergroupe).
+     *
+     * @return le nouvel ID du chat, ou 0 s'il est absent
+     */
+    public long getMigrateToChatId() {
+        finish();
+        return migrateToChatId;
+    }
+
+    /**
+     * Obtient le champ {@code result.message_id}.
+     *
+     * @return l'ID du message envoyé, ou -1 s'il est absent
+     */
+    public long getMessageId() {
+        finish();
+        return messageId;
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+
+        StringBuilder text = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\' || i + 1 >= value.length()) {
+                text.append(c);
+                continue;
+            }
+            char escaped = value.charAt(++i);
+            switch (escaped) {
+                case 'n':
+                    text.append('\n');
+                    break;
+                case 'r':
+                    text.append('\r');
+                    break;
+                case 't':
+                    text.append('\t');
+                    break;
+                case 'b':
+                    text.append('\b');
+                    break;
+                case 'f':
+                    text.append('\f');
+                    break;
+                case 'u':
+                    if (i + 4 < value.length()) {
+                        try {
+                            text.append((char) Integer.parseInt(value.substring(i + 1, i + 5), 16));
+                            i += 4;
+                            break;
+                        } catch (NumberFormatException e) {
+                            // Séquence invalide : conservée telle quelle
+                        }
+                    }
+                    text.append("\\u");
+                    break;
+                default:
+                    text.append(escaped);
+            }
+        }
+        return text.toString();
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Abonné au corps de la réponse : chaque fragment est analysé dès sa réception puis libéré.
+     */
+    private static final class Subscriber implements HttpResponse.BodySubscriber<TelegramResponseParser> {
+
+        private final TelegramResponseParser parser = new TelegramResponseParser();
+        private final CompletableFuture<TelegramResponseParser> result = new CompletableFuture<>();
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            for (ByteBuffer item : items) {
+                parser.feed(item);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(parser);
+        }
+
+        @Override
+        public CompletionStage<TelegramResponseParser> getBody() {
+            return result;
+        }
+    }
+}
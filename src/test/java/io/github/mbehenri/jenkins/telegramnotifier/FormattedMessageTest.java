@@ -0,0 +1,156 @@
+package io.github.mbehenri.jenkins.telegramnotifier;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour FormattedMessage et MessageEntities.
+ *
+ * Ces tests vérifient:
+ * - Les positions des entités en unités UTF-16 (emoji et caractères accentués compris)
+ * - Qu'aucun texte n'est échappé en mode texte brut, et qu'aucune entité n'est produite dans les autres modes
+ * - L'ajout d'un message déjà mis en forme (lignes d'un récapitulatif)
+ * - L'extraction d'une plage et la troncature, entités comprises
+ * - Les URLs des liens au-delà de la capacité initiale du constructeur d'entités
+ */
+public class FormattedMessageTest {
+
+    /**
+     * Test des positions: un emoji hors BMP compte pour deux unités, comme dans une String Java.
+     */
+    @Test
+    public void testEntityOffsetsAreUtf16() {
+        FormattedMessage message = new FormattedMessage.Builder(ParseMode.ENTITIES)
+                .append("🚀 Build ").appendBold("déployé").append(' ')
+                .appendLink("#42", "http://jenkins/job/42/").append(' ')
+                .appendCode("a_b*c")
+                .build();
+
+        assertEquals("🚀 Build déployé #42 a_b*c", message.getText());
+        MessageEntities entities = message.getEntities();
+        assertEquals(3, entities.size());
+        assertEquals(MessageEntities.Type.BOLD, entities.getType(0));
+        assertEquals(9, entities.getOffset(0));
+        assertEquals(7, entities.getLength(0));
+        assertEquals(MessageEntities.Type.TEXT_LINK, entities.getType(1));
+        assertEquals(17, entities.getOffset(1));
+        assertEquals(3, entities.getLength(1));
+        assertEquals("http://jenkins/job/42/", entities.getUrl(1));
+        assertEquals(MessageEntities.Type.CODE, entities.getType(2));
+        assertEquals(21, entities.getOffset(2));
+        assertNull(entities.getUrl(2));
+    }
+
+    /**
+     * Test des autres modes: la mise en forme est écrite dans le texte, sans entité.
+     */
+    @Test
+    public void testMarkupModesHaveNoEntities() {
+        FormattedMessage message = new FormattedMessage.Builder(ParseMode.MARKDOWN_V2)
+                .appendBold("Job:").append(' ').appendText("my-job").append(' ').appendCode("a`b")
+                .build();
+
+        assertEquals("*Job:* my\\-job `a\\`b`", message.getText());
+        assertTrue(message.getEntities().isEmpty());
+    }
+
+    /**
+     * Test de l'ajout d'un message mis en forme: ses entités sont décalées à leur nouvelle position.
+     */
+    @Test
+    public void testAppendShiftsEntities() {
+        FormattedMessage line = new FormattedMessage.Builder(ParseMode.ENTITIES)
+                .append("job ").appendLink("#1", "http://j/1/")
+                .build();
+
+        FormattedMessage digest = new FormattedMessage.Builder(ParseMode.ENTITIES)
+                .appendBold("2 jobs").append("\n\n").append(line).append('\n').append(line)
+                .build();
+
+        MessageEntities entities = digest.getEntities();
+        assertEquals(3, entities.size());
+        assertEquals(12, entities.getOffset(1));
+        assertEquals(19, entities.getOffset(2));
+        assertEquals("#1", digest.getText().substring(19, 21));
+    }
+
+    /**
+     * Test de l'extraction d'une plage: les entités sont tronquées à la plage et repositionnées,
+     * celles hors de la plage sont retirées.
+     */
+    @Test
+    public void testSubstring() {
+        FormattedMessage message = new FormattedMessage.Builder(ParseMode.ENTITIES)
+                .appendBold("abcdef").append(' ').appendCode("xyz")
+                .build();
+
+        FormattedMessage slice = message.substring(3, 8);
+
+        assertEquals("def x", slice.getText());
+        assertEquals(2, slice.getEntities().size());
+        assertEquals(0, slice.getEntities().getOffset(0));
+        assertEquals(3, slice.getEntities().getLength(0));
+        assertEquals(4, slice.getEntities().getOffset(1));
+        assertEquals(1, slice.getEntities().getLength(1));
+        assertSame(message, message.substring(0, message.length()));
+        assertTrue(message.substring(6, 7).getEntities().isEmpty());
+    }
+
+    /**
+     * Test d'un lien suivi de plus de 8 entités (capacité initiale): le tableau des URLs grandit avec
+     * celui des entités, y compris dans une plage extraite.
+     */
+    @Test
+    public void testManyEntitiesAfterLink() {
+        FormattedMessage message = manyEntitiesAfterLink();
+
+        MessageEntities entities = message.getEntities();
+        assertEquals(13, entities.size());
+        assertEquals("http://j/1/", entities.getUrl(0));
+        for (int i = 1; i < entities.size(); i++) {
+            assertNull(entities.getUrl(i));
+        }
+
+        MessageEntities slice = message.substring(0, message.length() - 1).getEntities();
+        assertEquals(13, slice.size());
+        assertEquals("http://j/1/", slice.getUrl(0));
+        assertNull(slice.getUrl(12));
+    }
+
+    /**
+     * @return un lien suivi de 12 champs en gras
+     */
+    static FormattedMessage manyEntitiesAfterLink() {
+        FormattedMessage.Builder builder = new FormattedMessage.Builder(ParseMode.ENTITIES)
+                .appendLink("View build", "http://j/1/");
+        for (int i = 0; i < 12; i++) {
+            builder.append('\n').appendBold("Field" + i + ":").append(" value");
+        }
+        return builder.build();
+    }
+
+    /**
+     * Test de la troncature: les entités s'arrêtent avant l'indicateur de troncature.
+     */
+    @Test
+    public void testTruncate() {
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            log.append('x');
+        }
+        FormattedMessage message = new FormattedMessage.Builder(ParseMode.ENTITIES)
+                .append("Log: ").appendCode(log.toString())
+                .build();
+
+        FormattedMessage truncated = message.truncate(ParseMode.ENTITIES, 60);
+
+        assertEquals(60, truncated.length());
+        assertTrue(truncated.getText().endsWith("\n\n... (message truncated)"));
+        MessageEntities entities = truncated.getEntities();
+        assertEquals(1, entities.size());
+        assertEquals(5, entities.getOffset(0));
+        assertEquals(60 - 5 - "\n\n... (message truncated)".length(), entities.getLength(0));
+        assertSame(message, message.truncate(ParseMode.ENTITIES, 200));
+    }
+}
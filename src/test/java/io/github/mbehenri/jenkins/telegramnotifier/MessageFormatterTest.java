@@ -4,12 +4,14 @@ import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.Cause;
 import hudson.model.Result;
+import io.github.mbehenri.jenkins.telegramnotifier.template.MessageTemplate;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -22,8 +24,9 @@ import static org.mockito.Mockito.*;
  * - Le formatage des messages de notification
  * - La substitution des variables (${BUILD_STATUS}, ${JOB_NAME}, etc.)
  * - La présence des emojis selon le statut
- * - La troncature des messages longs
+ * - La troncature des messages dépassant le nombre maximal de parties
  * - L'échappement des caractères Markdown spéciaux
+ * - La ligne de résumé et le récapitulatif des notifications regroupées
  *
  * Utilise Mockito pour mocker les objets Jenkins (AbstractBuild, AbstractProject)
  * car on ne veut pas dépendre d'une instance Jenkins réelle pour ces tests unitaires.
@@ -104,6 +107,23 @@ public class MessageFormatterTest {
         assertTrue(message.contains("TestJob"));
     }
 
+    /**
+     * Test du message de statut posté au démarrage d'un build (mise à jour sur place).
+     *
+     * Le build n'a pas encore de résultat ni de durée: seuls le job, le numéro, la cause et le lien sont affichés.
+     */
+    @Test
+    public void testFormatStartMessage() {
+        String message = MessageFormatter.formatStartMessage(build);
+
+        assertTrue(message.contains("Build *STARTED*"));
+        assertTrue(message.contains("*Job:* TestJob"));
+        assertTrue(message.contains("*Build:* #42"));
+        assertTrue(message.contains("*Started by:* Started by user admin"));
+        assertFalse(message.contains("*Duration:*"));
+        assertTrue(message.contains("[View build](http://jenkins.example.com/job/TestJob/42/)"));
+    }
+
     /**
      * Test de la substitution des variables dans un message personnalisé.
      *
@@ -231,19 +251,110 @@ public class MessageFormatterTest {
     }
 
     /**
-     * Test de la troncature des messages trop longs.
+     * Test de l'échappement des autres caractères réservés du Markdown dans les noms de jobs.
      *
-     * Telegram limite les messages à 4096 caractères.
-     * Si le message dépasse cette limite, il doit être tronqué avec
-     * un indicateur "(message truncated)" à la fin.
+     * Un job "api*[beta]" ouvrait un gras et un lien jamais refermés: Telegram refusait le message (400).
+     */
+    @Test
+    public void testReservedCharactersInJobNameAreEscaped() {
+        when(project.getFullDisplayName()).thenReturn("api*[beta]`x`");
+        when(build.getResult()).thenReturn(Result.SUCCESS);
+
+        String message = MessageFormatter.formatMessage(build, null);
+
+        assertTrue(message.contains("*Job:* api\\*\\[beta]\\`x\\`"));
+    }
+
+    /**
+     * Test du message en MarkdownV2: l'en-tête et les valeurs des variables sont échappés,
+     * le texte du message personnalisé est envoyé tel quel.
+     */
+    @Test
+    public void testFormatMessageInMarkdownV2() {
+        when(project.getFullDisplayName()).thenReturn("my-job.v2");
+        when(build.getResult()).thenReturn(Result.SUCCESS);
+
+        String message = MessageFormatter.formatMessage(build,
+                MessageTemplate.compile("_Job_ ${JOB_NAME} ${UNKNOWN}"), ParseMode.MARKDOWN_V2).getText();
+
+        assertTrue(message.contains("Build *SUCCESS*"));
+        assertTrue(message.contains("*Job:* my\\-job\\.v2"));
+        assertTrue(message.contains("*Build:* \\#42"));
+        assertTrue(message.contains("_Job_ my\\-job\\.v2 $\\{UNKNOWN\\}"));
+        assertTrue(message.endsWith("[View build](http://jenkins.example.com/job/TestJob/42/)"));
+    }
+
+    /**
+     * Test du message en Markdown historique: les valeurs des variables sont échappées,
+     * sauf les URL, laissées telles quelles pour servir de cible à un lien.
+     */
+    @Test
+    public void testVariablesEscapedInLegacyMarkdownExceptUrls() {
+        when(project.getFullDisplayName()).thenReturn("deploy_api*");
+        when(build.getResult()).thenReturn(Result.SUCCESS);
+
+        String message = MessageFormatter.formatMessage(build,
+                MessageTemplate.compile("_${JOB_NAME}_ [build](${BUILD_URL})"), ParseMode.MARKDOWN).getText();
+
+        assertTrue(message.contains("_deploy\\_api\\*_ [build](http://jenkins.example.com/job/TestJob/42/)"));
+    }
+
+    /**
+     * Test du message en HTML: balises b et a, caractères réservés remplacés par leurs entités.
+     */
+    @Test
+    public void testFormatMessageInHtml() {
+        when(project.getFullDisplayName()).thenReturn("R&D <core>");
+        when(build.getResult()).thenReturn(Result.FAILURE);
+
+        String message = MessageFormatter.formatMessage(build,
+                MessageTemplate.compile("<i>${JOB_NAME}</i>"), ParseMode.HTML).getText();
+
+        assertTrue(message.contains("Build <b>FAILURE</b>"));
+        assertTrue(message.contains("<b>Job:</b> R&amp;D &lt;core&gt;"));
+        assertTrue(message.contains("<i>R&amp;D &lt;core&gt;</i>"));
+        assertTrue(message.endsWith("<a href=\"http://jenkins.example.com/job/TestJob/42/\">View build</a>"));
+    }
+
+    /**
+     * Test du message en texte brut et entités: rien n'est échappé, le gras et le lien sont des entités
+     * aux positions UTF-16 du texte (l'emoji de l'en-tête compte pour une unité).
+     */
+    @Test
+    public void testFormatMessageWithEntities() {
+        when(project.getFullDisplayName()).thenReturn("api*[beta]_v2");
+        when(build.getResult()).thenReturn(Result.SUCCESS);
+
+        FormattedMessage message = MessageFormatter.formatMessage(build,
+                MessageTemplate.compile("*${JOB_NAME}*"), ParseMode.ENTITIES);
+        String text = message.getText();
+        MessageEntities entities = message.getEntities();
+
+        assertTrue(text.startsWith("\u2705 Build SUCCESS\n\nJob: api*[beta]_v2\n"));
+        assertTrue(text.contains("\n*api*[beta]_v2*\n"));
+        assertTrue(text.endsWith("\nView build"));
+
+        assertEquals(MessageEntities.Type.BOLD, entities.getType(0));
+        assertEquals("SUCCESS", text.substring(entities.getOffset(0), entities.getOffset(0) + entities.getLength(0)));
+        assertEquals("Job:", text.substring(entities.getOffset(1), entities.getOffset(1) + entities.getLength(1)));
+
+        int link = entities.size() - 1;
+        assertEquals(MessageEntities.Type.TEXT_LINK, entities.getType(link));
+        assertEquals(text.length() - "View build".length(), entities.getOffset(link));
+        assertEquals("http://jenkins.example.com/job/TestJob/42/", entities.getUrl(link));
+    }
+
+    /**
+     * Test qu'un message long n'est plus tronqué à 4096 caractères.
      *
-     * C'est important pour éviter les erreurs 400 Bad Request de l'API Telegram.
+     * Telegram limite les messages à 4096 caractères: les messages plus longs sont
+     * découpés en plusieurs parties à la livraison (voir MessageSplitterTest),
+     * le contenu utile de la fin du message n'est donc pas perdu.
      */
     @Test
-    public void testMessageTruncation() {
+    public void testLongMessageIsNotTruncated() {
         when(build.getResult()).thenReturn(Result.SUCCESS);
 
-        // Crée un message personnalisé très long pour tester la troncature
         // Environ 30000 caractères, bien au-delà de la limite Telegram de 4096
         StringBuilder longMessage = new StringBuilder();
         for (int i = 0; i < 1000; i++) {
@@ -252,12 +363,31 @@ public class MessageFormatterTest {
 
         String message = MessageFormatter.formatMessage(build, longMessage.toString());
 
-        // Le message doit être tronqué à la longueur maximale Telegram (4096 caractères)
-        assertTrue(message.length() <= 4096);
-        if (message.length() == 4096) {
-            // Doit contenir l'indicateur de troncature à la fin
-            assertTrue(message.contains("(message truncated)"));
+        assertTrue(message.length() > 4096);
+        assertFalse(message.contains("(message truncated)"));
+        assertTrue(message.endsWith("[View build](http://jenkins.example.com/job/TestJob/42/)"));
+    }
+
+    /**
+     * Test de la troncature des messages dépassant le nombre maximal de parties.
+     *
+     * Au-delà de 10 parties de 4096 caractères, le message est tronqué avec
+     * un indicateur "(message truncated)" à la fin.
+     */
+    @Test
+    public void testMessageTruncation() {
+        when(build.getResult()).thenReturn(Result.SUCCESS);
+
+        // Environ 150000 caractères, au-delà de 10 parties
+        StringBuilder longMessage = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            longMessage.append("This is a very long message. ");
         }
+
+        String message = MessageFormatter.formatMessage(build, longMessage.toString());
+
+        assertEquals(4096 * 10, message.length());
+        assertTrue(message.endsWith("(message truncated)"));
     }
 
     /**
@@ -299,4 +429,50 @@ public class MessageFormatterTest {
         String notBuiltMessage = MessageFormatter.formatMessage(build, null);
         assertTrue(notBuiltMessage.contains("\u23F8")); // ⏸️
     }
+
+    /**
+     * Test de la ligne de résumé d'un build dans un récapitulatif.
+     */
+    @Test
+    public void testFormatSummaryLine() {
+        when(build.getResult()).thenReturn(Result.FAILURE);
+        when(project.getFullDisplayName()).thenReturn("My_Job");
+
+        String line = MessageFormatter.formatSummaryLine(build);
+
+        assertEquals("\u274C My\\_Job [#42](http://jenkins.example.com/job/TestJob/42/) (1m 5s)", line);
+    }
+
+    /**
+     * Test du récapitulatif: en-tête avec le décompte par résultat, puis une ligne par build.
+     */
+    @Test
+    public void testFormatDigest() {
+        String sameStatus = MessageFormatter.formatDigest(
+                Arrays.asList("FAILURE", "FAILURE"), Arrays.asList("job-a", "job-b"));
+        assertEquals("*2 jobs FAILURE*\n\njob-a\njob-b", sameStatus);
+
+        String mixed = MessageFormatter.formatDigest(
+                Arrays.asList("FAILURE", "UNSTABLE", "FAILURE"), Arrays.asList("a", "b", "c"));
+        assertTrue(mixed.startsWith("*3 jobs*: 2 FAILURE, 1 UNSTABLE\n\n"));
+    }
+
+    /**
+     * Test que le récapitulatif d'une rafale de builds reste sous la limite de Telegram.
+     */
+    @Test
+    public void testFormatDigestIsCapped() {
+        List<String> statuses = new ArrayList<>();
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            statuses.add("FAILURE");
+            lines.add("\u274C some-long-job-name-" + i + " [#" + i + "](http://jenkins.example.com/job/x/" + i + "/)");
+        }
+
+        String digest = MessageFormatter.formatDigest(statuses, lines);
+
+        assertTrue(digest.length() <= 4096);
+        assertTrue(digest.startsWith("*500 jobs FAILURE*"));
+        assertTrue(digest.matches("(?s).*\\.\\.\\. and \\d+ more$"));
+    }
 }
@@ -15,6 +15,7 @@ import static org.junit.Assert.*;
  * - Chaque trigger correspond à un Result spécifique
  * - La méthode matches() identifie correctement les correspondances
  * - La méthode shouldNotify() évalue correctement un ensemble de triggers
+ * - Le rang de priorité de livraison de chaque résultat
  *
  * Les 5 triggers disponibles sont:
  * - SUCCESS: build réussi
@@ -221,4 +222,21 @@ public class NotificationTriggerTest {
         assertEquals("Aborted", NotificationTrigger.ABORTED.getDisplayName());
         assertEquals("Not Built", NotificationTrigger.NOT_BUILT.getDisplayName());
     }
+
+    /**
+     * Test des priorités de livraison.
+     *
+     * FAILURE passe avant UNSTABLE, ABORTED puis SUCCESS; un résultat inconnu
+     * (ex: notification rejouée depuis l'outbox) a la priorité la plus basse.
+     */
+    @Test
+    public void testPriorities() {
+        assertTrue(NotificationTrigger.FAILURE.getPriority() < NotificationTrigger.UNSTABLE.getPriority());
+        assertTrue(NotificationTrigger.UNSTABLE.getPriority() < NotificationTrigger.ABORTED.getPriority());
+        assertTrue(NotificationTrigger.ABORTED.getPriority() < NotificationTrigger.SUCCESS.getPriority());
+
+        assertEquals(NotificationTrigger.FAILURE.getPriority(), NotificationTrigger.priorityOf("FAILURE"));
+        assertEquals(NotificationTrigger.LOWEST_PRIORITY, NotificationTrigger.priorityOf(null));
+        assertEquals(NotificationTrigger.LOWEST_PRIORITY, NotificationTrigger.priorityOf("UNKNOWN"));
+    }
 }
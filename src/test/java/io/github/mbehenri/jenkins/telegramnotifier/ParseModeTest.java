@@ -0,0 +1,162 @@
+package io.github.mbehenri.jenkins.telegramnotifier;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour ParseMode.
+ *
+ * Ces tests vérifient:
+ * - L'échappement des caractères réservés de chaque mode (Markdown, MarkdownV2, HTML)
+ * - Qu'un texte sans caractère à échapper est renvoyé tel quel, sans copie
+ * - Les modes qui échappent les valeurs des variables, et les URL
+ * - La mise en forme du gras et des liens, URL comprise
+ * - La troncature sans couper une séquence d'échappement, une balise ou une entité
+ * - La fermeture de l'entité ou de l'élément ouvert à la coupure, dans chaque mode
+ */
+public class ParseModeTest {
+
+    /**
+     * Test du Markdown historique: seuls _ * ` [ sont échappés.
+     *
+     * Ex: un job "api*[beta]_v2" ne doit plus ouvrir de gras ni de lien.
+     */
+    @Test
+    public void testMarkdownEscape() {
+        assertEquals("api\\*\\[beta]\\_v2 \\`x\\` 1.0-rc!", ParseMode.MARKDOWN.escape("api*[beta]_v2 `x` 1.0-rc!"));
+    }
+
+    /**
+     * Test de MarkdownV2: tous les caractères réservés sont échappés, barre oblique inverse comprise.
+     */
+    @Test
+    public void testMarkdownV2Escape() {
+        assertEquals("v1\\.2\\.0\\-rc \\(\\#42\\) a\\\\b \\{x\\}\\!",
+                ParseMode.MARKDOWN_V2.escape("v1.2.0-rc (#42) a\\b {x}!"));
+        assertEquals("\\_\\*\\[\\]\\(\\)\\~\\`\\>\\#\\+\\-\\=\\|\\{\\}\\.\\!",
+                ParseMode.MARKDOWN_V2.escape("_*[]()~`>#+-=|{}.!"));
+    }
+
+    /**
+     * Test du HTML: & < > " sont remplacés par leurs entités, les autres caractères sont laissés tels quels.
+     */
+    @Test
+    public void testHtmlEscape() {
+        assertEquals("&lt;b&gt;R&amp;D&lt;/b&gt; &quot;main&quot; *_[x]_*",
+                ParseMode.HTML.escape("<b>R&D</b> \"main\" *_[x]_*"));
+    }
+
+    /**
+     * Test des valeurs de variables échappées: toutes sauf en texte brut, les URL sauf en Markdown historique.
+     */
+    @Test
+    public void testVariableEscaping() {
+        assertTrue(ParseMode.MARKDOWN.escapesVariables());
+        assertFalse(ParseMode.MARKDOWN.escapesUrls());
+        assertTrue(ParseMode.MARKDOWN_V2.escapesUrls());
+        assertTrue(ParseMode.HTML.escapesUrls());
+        assertFalse(ParseMode.ENTITIES.escapesVariables());
+    }
+
+    /**
+     * Test qu'un texte sans caractère à échapper est renvoyé tel quel (même instance),
+     * y compris avec des caractères hors ASCII, et que null donne une chaîne vide.
+     */
+    @Test
+    public void testNothingToEscapeReturnsSameInstance() {
+        String text = "Platform Backend Nightly ✅ été";
+
+        for (ParseMode mode : ParseMode.values()) {
+            assertSame(text, mode.escape(text));
+            assertEquals("", mode.escape(null));
+        }
+    }
+
+    /**
+     * Test du gras et des liens: le texte est échappé, l'URL selon les règles propres aux URLs du mode.
+     */
+    @Test
+    public void testBoldAndLink() {
+        String url = "http://jenkins/job/my_job/42/?a=1&b=(2)";
+
+        assertEquals("*a\\_b* [#42](http://jenkins/job/my_job/42/?a=1&b=(2))",
+                format(ParseMode.MARKDOWN, "a_b", "#42", url));
+        assertEquals("*a\\_b* [\\#42](http://jenkins/job/my_job/42/?a=1&b=(2\\))",
+                format(ParseMode.MARKDOWN_V2, "a_b", "#42", url));
+        assertEquals("<b>a_b</b> <a href=\"http://jenkins/job/my_job/42/?a=1&amp;b=(2)\">#42</a>",
+                format(ParseMode.HTML, "a_b", "#42", url));
+    }
+
+    /**
+     * Test de la troncature: l'indicateur est échappé pour le mode, une séquence d'échappement
+     * ou une entité HTML n'est jamais coupée en deux.
+     */
+    @Test
+    public void testTruncate() {
+        String v2 = ParseMode.MARKDOWN_V2.truncate("abc\\.def" + repeat('x', 100), 40);
+        assertTrue(v2.length() <= 40);
+        assertTrue(v2.endsWith("\\.\\.\\. \\(message truncated\\)"));
+
+        // La coupe tombe entre \ et . : la barre oblique inverse est retirée
+        String cut = ParseMode.MARKDOWN_V2.truncate(repeat('x', 9) + "\\." + repeat('x', 100), 40);
+        assertEquals(repeat('x', 9) + "\n\n\\.\\.\\. \\(message truncated\\)", cut);
+
+        String html = ParseMode.HTML.truncate(repeat('x', 14) + "&amp;" + repeat('x', 100), 40);
+        assertEquals(repeat('x', 14) + "\n\n... (message truncated)", html);
+
+        assertEquals("short", ParseMode.HTML.truncate("short", 40));
+    }
+
+    /**
+     * Test de la troncature dans une entité ouverte, pour chaque mode: l'entité est refermée avant
+     * l'indicateur, dans la longueur maximale.
+     *
+     * Ex: un long extrait de log dans un bloc ``` tronqué par le message d'un build en cours.
+     */
+    @Test
+    public void testTruncateClosesOpenEntity() {
+        String suffix = "\n\n... (message truncated)";
+
+        String pre = ParseMode.MARKDOWN.truncate("Log:\n```\n" + repeat('x', 100) + "\n```", 60);
+        assertEquals("Log:\n```\n" + repeat('x', 23) + "```" + suffix, pre);
+        assertEquals(60, pre.length());
+        assertEquals("*" + repeat('x', 13) + "*" + suffix,
+                ParseMode.MARKDOWN.truncate("*" + repeat('x', 100) + "*", 40));
+        // La coupe tomberait juste après l'accent grave ouvrant: le code vide est retiré
+        assertEquals(repeat('x', 13) + suffix,
+                ParseMode.MARKDOWN.truncate(repeat('x', 13) + "`" + repeat('x', 100) + "`", 40));
+
+        String v2Suffix = ParseMode.MARKDOWN_V2.getTruncationSuffix();
+        assertEquals("_" + repeat('x', 8) + "_" + v2Suffix,
+                ParseMode.MARKDOWN_V2.truncate("_" + repeat('x', 100) + "_", 40));
+        // Une séquence d'échappement dans le code n'est pas coupée
+        assertEquals("`" + repeat('x', 7) + "`" + v2Suffix,
+                ParseMode.MARKDOWN_V2.truncate("`" + repeat('x', 7) + "\\`" + repeat('x', 100) + "`", 40));
+        // Un lien ne peut pas être refermé: il est retiré en entier
+        assertEquals("see " + v2Suffix,
+                ParseMode.MARKDOWN_V2.truncate("see [" + repeat('x', 50) + "](http://j/1/)", 40));
+
+        assertEquals("<b>" + repeat('x', 8) + "</b>" + suffix,
+                ParseMode.HTML.truncate("<b>" + repeat('x', 100) + "</b>", 40));
+        String nested = ParseMode.HTML.truncate("<pre><code>" + repeat('x', 100) + "</code></pre>", 60);
+        assertEquals("<pre><code>" + repeat('x', 11) + "</code></pre>" + suffix, nested);
+        assertEquals(60, nested.length());
+        assertEquals("<a href=\"http://j/1/\">" + repeat('x', 3) + "</a>" + suffix,
+                ParseMode.HTML.truncate("<a href=\"http://j/1/\">" + repeat('x', 100) + "</a>", 54));
+    }
+
+    private static String format(ParseMode mode, String bold, String label, String url) {
+        StringBuilder out = new StringBuilder();
+        mode.appendBold(out, bold).append(' ');
+        return mode.appendLink(out, label, url).toString();
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder text = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            text.append(c);
+        }
+        return text.toString();
+    }
+}
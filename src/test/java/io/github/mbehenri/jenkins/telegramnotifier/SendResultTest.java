@@ -0,0 +1,122 @@
+package io.github.mbehenri.jenkins.telegramnotifier;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour SendResult.
+ *
+ * Ces tests vérifient la classification des réponses de l'API Telegram:
+ * - Succès (2xx)
+ * - Échecs transitoires à retenter (429, 5xx, erreurs réseau)
+ * - Échecs définitifs (400, 401, 403...)
+ * - L'extraction du délai retry_after imposé par Telegram
+ */
+public class SendResultTest {
+
+    /**
+     * Test d'une réponse 200 OK.
+     */
+    @Test
+    public void testSuccessResponse() {
+        SendResult result = SendResult.fromResponse(200, "{\"ok\":true,\"result\":{\"message_id\":1}}");
+
+        assertTrue(result.isSuccess());
+        assertFalse(result.isRetryable());
+        assertEquals(-1, result.getRetryAfterSeconds());
+    }
+
+    /**
+     * Test d'une réponse 429 Too Many Requests.
+     *
+     * Telegram indique le délai à respecter dans parameters.retry_after.
+     */
+    @Test
+    public void testTooManyRequestsResponse() {
+        SendResult result = SendResult.fromResponse(429,
+                "{\"ok\":false,\"error_code\":429,\"description\":\"Too Many Requests: retry after 35\","
+                        + "\"parameters\":{\"retry_after\":35}}");
+
+        assertFalse(result.isSuccess());
+        assertTrue(result.isRetryable());
+        assertEquals(35, result.getRetryAfterSeconds());
+    }
+
+    /**
+     * Test que les erreurs serveur (5xx) sont retentées.
+     */
+    @Test
+    public void testServerErrorIsRetryable() {
+        assertTrue(SendResult.fromResponse(502, "Bad Gateway").isRetryable());
+        assertTrue(SendResult.fromResponse(500, null).isRetryable());
+    }
+
+    /**
+     * Test que les erreurs client (token invalide, chat introuvable) ne sont pas retentées.
+     *
+     * Retenter ne changerait rien: le problème vient de la configuration.
+     */
+    @Test
+    public void testClientErrorIsNotRetryable() {
+        assertFalse(SendResult.fromResponse(400, "{\"ok\":false,\"error_code\":400}").isRetryable());
+        assertFalse(SendResult.fromResponse(401, "{\"ok\":false,\"error_code\":401}").isRetryable());
+        assertFalse(SendResult.fromResponse(403, "{\"ok\":false,\"error_code\":403}").isRetryable());
+    }
+
+    /**
+     * Test que les erreurs réseau (IOException, timeout) sont transitoires.
+     */
+    @Test
+    public void testIOExceptionIsRetryable() {
+        assertTrue(SendResult.fromException(new IOException("Connection reset")).isRetryable());
+        assertTrue(SendResult.fromException(new HttpTimeoutException("request timed out")).isRetryable());
+        assertFalse(SendResult.fromException(new IllegalArgumentException("bad uri")).isRetryable());
+    }
+
+    /**
+     * Test qu'un envoi refusé avant requête n'est jamais retenté.
+     */
+    @Test
+    public void testRejectedIsNotRetryable() {
+        assertFalse(SendResult.rejected().isSuccess());
+        assertFalse(SendResult.rejected().isRetryable());
+    }
+
+    /**
+     * Test de l'extraction de retry_after sur des corps de réponse variés.
+     */
+    @Test
+    public void testParseRetryAfter() {
+        assertEquals(5, SendResult.parseRetryAfter("{\"parameters\": {\"retry_after\": 5}}"));
+        assertEquals(-1, SendResult.parseRetryAfter("{\"ok\":false}"));
+        assertEquals(-1, SendResult.parseRetryAfter("{\"retry_after\":\"x\"}"));
+        assertEquals(-1, SendResult.parseRetryAfter(null));
+    }
+
+    /**
+     * Test des champs extraits pour le suivi des messages et les migrations de chat.
+     *
+     * Un succès expose result.message_id; un échec expose la description et
+     * parameters.migrate_to_chat_id.
+     */
+    @Test
+    public void testMessageIdDescriptionAndMigration() {
+        SendResult sent = SendResult.fromResponse(200,
+                "{\"ok\":true,\"result\":{\"message_id\":321,\"from\":{\"id\":7},\"chat\":{\"id\":-5}}}");
+        assertEquals(321, sent.getMessageId());
+        assertNull(sent.getDescription());
+        assertEquals(0, sent.getMigrateToChatId());
+
+        SendResult migrated = SendResult.fromResponse(400, "{\"ok\":false,\"error_code\":400,"
+                + "\"description\":\"Bad Request: group chat was upgraded to a supergroup chat\","
+                + "\"parameters\":{\"migrate_to_chat_id\":-1001234567890}}");
+        assertEquals("Bad Request: group chat was upgraded to a supergroup chat", migrated.getDescription());
+        assertEquals(-1001234567890L, migrated.getMigrateToChatId());
+        assertEquals(-1, migrated.getMessageId());
+        assertFalse(migrated.isRetryable());
+    }
+}
@@ -6,6 +6,7 @@ import com.cloudbees.plugins.credentials.domains.Domain;
 import hudson.model.FreeStyleBuild;
 import hudson.model.FreeStyleProject;
 import hudson.model.Result;
+import hudson.util.FormValidation;
 import org.jenkinsci.plugins.plaincredentials.impl.StringCredentialsImpl;
 import org.junit.Rule;
 import org.junit.Test;
@@ -233,6 +234,24 @@ public class TelegramNotifierTest {
         assertTrue(log.contains("Telegram Notifier"));
     }
 
+    /**
+     * Test de la validation du message personnalisé.
+     *
+     * Les variables inconnues (ex: faute de frappe) sont signalées par un avertissement
+     * au lieu d'apparaître telles quelles dans les notifications.
+     */
+    @Test
+    public void testCustomMessageValidation() throws Exception {
+        FreeStyleProject project = jenkins.createFreeStyleProject();
+        TelegramNotifier.DescriptorImpl descriptor = new TelegramNotifier.DescriptorImpl();
+
+        assertEquals(FormValidation.Kind.OK,
+                descriptor.doCheckCustomMessage(project, "Build ${BUILD_NUMBER} of ${JOB_NAME}").kind);
+        FormValidation unknown = descriptor.doCheckCustomMessage(project, "Build ${BUILD_NUMBR}");
+        assertEquals(FormValidation.Kind.WARNING, unknown.kind);
+        assertTrue(unknown.getMessage().contains("BUILD_NUMBR"));
+    }
+
     /**
      * Test du nom d'affichage du plugin dans l'UI Jenkins.
      *
@@ -370,6 +389,92 @@ public class TelegramNotifierTest {
         assertEquals(Result.SUCCESS, build.getResult());
     }
 
+    /**
+     * Test de persistance de l'option de livraison asynchrone.
+     *
+     * Désactivée par défaut pour conserver le comportement historique (envoi synchrone).
+     */
+    @Test
+    public void testAsyncDeliveryConfigRoundTrip() throws Exception {
+        FreeStyleProject project = jenkins.createFreeStyleProject();
+
+        TelegramNotifier notifier = new TelegramNotifier("test-token-id", "test-chat-id");
+        assertFalse(notifier.isAsyncDelivery());
+        notifier.setAsyncDelivery(true);
+
+        project.getPublishersList().add(notifier);
+        project = jenkins.configRoundtrip(project);
+
+        TelegramNotifier savedNotifier = project.getPublishersList().get(TelegramNotifier.class);
+        assertTrue(savedNotifier.isAsyncDelivery());
+    }
+
+    /**
+     * Test de persistance de la fenêtre de regroupement, désactivée par défaut et bornée à 300 secondes.
+     */
+    @Test
+    public void testCoalesceWindowConfigRoundTrip() throws Exception {
+        FreeStyleProject project = jenkins.createFreeStyleProject();
+
+        TelegramNotifier notifier = new TelegramNotifier("test-token-id", "test-chat-id");
+        assertEquals(0, notifier.getCoalesceWindowSeconds());
+        notifier.setCoalesceWindowSeconds(10_000);
+        assertEquals(300, notifier.getCoalesceWindowSeconds());
+        notifier.setCoalesceWindowSeconds(60);
+
+        project.getPublishersList().add(notifier);
+        project = jenkins.configRoundtrip(project);
+
+        TelegramNotifier savedNotifier = project.getPublishersList().get(TelegramNotifier.class);
+        assertEquals(60, savedNotifier.getCoalesceWindowSeconds());
+    }
+
+    /**
+     * Test de persistance de l'option de log console joint en cas d'échec, désactivée par défaut.
+     */
+    @Test
+    public void testAttachLogOnFailureConfigRoundTrip() throws Exception {
+        FreeStyleProject project = jenkins.createFreeStyleProject();
+
+        TelegramNotifier notifier = new TelegramNotifier("test-token-id", "test-chat-id");
+        assertFalse(notifier.isAttachLogOnFailure());
+        notifier.setAttachLogOnFailure(true);
+
+        project.getPublishersList().add(notifier);
+        project = jenkins.configRoundtrip(project);
+
+        TelegramNotifier savedNotifier = project.getPublishersList().get(TelegramNotifier.class);
+        assertTrue(savedNotifier.isAttachLogOnFailure());
+    }
+
+    /**
+     * Test de la livraison asynchrone.
+     *
+     * Vérifie que:
+     * - perform() rend la main sans attendre l'API Telegram
+     * - Le log indique que la notification a été mise en file
+     * - Une TelegramDeliveryAction est attachée au build pour recevoir le résultat
+     */
+    @Test
+    public void testAsyncDeliveryQueuesNotification() throws Exception {
+        FreeStyleProject project = jenkins.createFreeStyleProject();
+
+        createTestCredentials();
+
+        TelegramNotifier notifier = new TelegramNotifier("test-token-id", "test-chat-id");
+        notifier.setNotifyOnSuccess(true);
+        notifier.setAsyncDelivery(true);
+
+        project.getPublishersList().add(notifier);
+
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+        assertEquals(Result.SUCCESS, build.getResult());
+
+        String log = build.getLog();
+        assertTrue(log.contains("Telegram Notifier: Notification queued for asynchronous delivery"));
+        assertNotNull(build.getAction(TelegramDeliveryAction.class));
+    }
+
     /**
      * Méthode utilitaire pour créer des credentials de test.
      *
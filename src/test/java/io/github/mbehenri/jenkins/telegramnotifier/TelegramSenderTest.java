@@ -1,8 +1,24 @@
 package io.github.mbehenri.jenkins.telegramnotifier;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import static org.junit.Assert.*;
 
 /**
@@ -22,12 +38,21 @@ import static org.junit.Assert.*;
 public class TelegramSenderTest {
 
     private TelegramSender sender;
+    private HttpServer server;
+    private final List<String> requests = new CopyOnWriteArrayList<>();
 
     @Before
     public void setUp() {
         sender = new TelegramSender();
     }
 
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
     /**
      * Test avec un token null.
      *
@@ -237,6 +262,34 @@ public class TelegramSenderTest {
         assertFalse(result);
     }
 
+    /**
+     * Test de l'envoi asynchrone avec des paramètres invalides.
+     *
+     * La validation est faite immédiatement: le future retourné est déjà complété
+     * avec false, sans qu'aucune requête ne soit émise.
+     */
+    @Test
+    public void testSendMessageAsyncWithInvalidParameters() throws Exception {
+        CompletableFuture<Boolean> future = sender.sendMessageAsync(null, "12345", "Test message");
+        assertTrue(future.isDone());
+        assertFalse(future.get());
+
+        assertFalse(sender.sendMessageAsync("test-token", "", "Test message").get());
+        assertFalse(sender.sendMessageAsync("test-token", "12345", "   ").get());
+    }
+
+    /**
+     * Test de l'envoi asynchrone avec un token invalide.
+     *
+     * Le future ne doit jamais échouer avec une exception: une erreur HTTP ou réseau
+     * se traduit par false, comme pour l'envoi synchrone.
+     */
+    @Test
+    public void testSendMessageAsyncWithInvalidToken() throws Exception {
+        boolean result = sender.sendMessageAsync("invalid-token-12345", "12345", "Test message").get();
+        assertFalse(result);
+    }
+
     /**
      * Test de thread-safety pour les builds parallèles.
      *
@@ -275,4 +328,246 @@ public class TelegramSenderTest {
         assertFalse(results[1]);
         assertFalse(results[2]);
     }
+
+    /**
+     * Test d'envoi vers un serveur Bot API local.
+     *
+     * Un serveur HTTP local tient lieu de telegram-bot-api auto-hébergé: la requête doit
+     * viser {@code <base>/bot<token>/sendMessage}, sans passer par api.telegram.org.
+     */
+    @Test
+    public void testSendMessageToLocalBotApiServer() throws Exception {
+        String baseUrl = startServer(200, "{\"ok\":true,\"result\":{}}");
+        TelegramSender local = new TelegramSender(HttpClient.newHttpClient(), baseUrl + "/");
+
+        assertTrue(local.sendMessage("123:ABC", "42", "Hello _local_"));
+
+        assertEquals(1, requests.size());
+        String request = requests.get(0);
+        assertTrue(request.startsWith("POST /bot123:ABC/sendMessage\n"));
+        assertTrue(request.contains("\"chat_id\":\"42\""));
+        assertTrue(request.contains("\"text\":\"Hello _local_\""));
+    }
+
+    /**
+     * Test du corps JSON envoyé à sendMessage.
+     *
+     * Le message est échappé (guillemets, sauts de ligne) et encodé en UTF-8
+     * (emojis compris), et parse_mode est toujours présent.
+     */
+    @Test
+    public void testSendMessageBodyIsJson() throws Exception {
+        String baseUrl = startServer(200, "{\"ok\":true,\"result\":{}}");
+        TelegramSender local = new TelegramSender(HttpClient.newHttpClient(), baseUrl);
+
+        assertTrue(local.sendMessage("123:ABC", "-100", "\u2705 \"Build\"\nd\u00e9ploy\u00e9 \uD83D\uDE80"));
+
+        assertEquals("POST /bot123:ABC/sendMessage\n"
+                        + "{\"chat_id\":\"-100\",\"text\":\"\u2705 \\\"Build\\\"\\nd\u00e9ploy\u00e9 \uD83D\uDE80\","
+                        + "\"parse_mode\":\"Markdown\"}",
+                requests.get(0));
+    }
+
+    /**
+     * Test de la modification d'un message (editMessageText).
+     *
+     * L'identifiant du message est un nombre JSON; l'identifiant retourné par Telegram est transmis.
+     */
+    @Test
+    public void testEditMessageTextBody() throws Exception {
+        String baseUrl = startServer(200, "{\"ok\":true,\"result\":{\"message_id\":42}}");
+        TelegramSender local = new TelegramSender(HttpClient.newHttpClient(), baseUrl);
+
+        SendResult result = local.editMessageTextAsync("123:ABC", "-100", 42, "Build *SUCCESS*", null).get();
+
+        assertTrue(result.isSuccess());
+        assertEquals(42, result.getMessageId());
+        assertEquals("POST /bot123:ABC/editMessageText\n"
+                        + "{\"chat_id\":\"-100\",\"message_id\":42,\"text\":\"Build *SUCCESS*\","
+                        + "\"parse_mode\":\"Markdown\"}",
+                requests.get(0));
+    }
+
+    /**
+     * Test du corps envoyé en texte brut avec entités: pas de parse_mode, le texte n'est pas échappé
+     * et les positions sont en unités UTF-16 (l'emoji en compte deux).
+     */
+    @Test
+    public void testEntitiesBody() throws Exception {
+        String baseUrl = startServer(200, "{\"ok\":true,\"result\":{\"message_id\":7}}");
+        TelegramSender local = new TelegramSender(HttpClient.newHttpClient(), baseUrl);
+        FormattedMessage message = new FormattedMessage.Builder(ParseMode.ENTITIES)
+                .append("\uD83D\uDE80 ").appendBold("my_job*").append(' ').appendLink("#1", "http://j/1/")
+                .build();
+
+        assertTrue(local.sendAsync("123:ABC", "-100", message, ParseMode.ENTITIES, null).get().isSuccess());
+
+        assertEquals("POST /bot123:ABC/sendMessage\n"
+                        + "{\"chat_id\":\"-100\",\"text\":\"\uD83D\uDE80 my_job* #1\",\"entities\":["
+                        + "{\"type\":\"bold\",\"offset\":3,\"length\":7},"
+                        + "{\"type\":\"text_link\",\"offset\":11,\"length\":2,\"url\":\"http://j/1/\"}]}",
+                requests.get(0));
+    }
+
+    /**
+     * Test d'un message dont le lien est suivi de plus de 8 entités: chaque entité est encodée,
+     * l'URL seulement pour le lien.
+     */
+    @Test
+    public void testManyEntitiesBody() throws Exception {
+        String baseUrl = startServer(200, "{\"ok\":true,\"result\":{\"message_id\":7}}");
+        TelegramSender local = new TelegramSender(HttpClient.newHttpClient(), baseUrl);
+
+        FormattedMessage message = FormattedMessageTest.manyEntitiesAfterLink();
+        assertTrue(local.sendAsync("123:ABC", "-100", message, ParseMode.ENTITIES, null).get().isSuccess());
+
+        String body = requests.get(0);
+        assertEquals(13, body.split("\"type\":").length - 1);
+        assertEquals(1, body.split("\"url\":").length - 1);
+        assertTrue(body.endsWith("{\"type\":\"bold\",\"offset\":" + message.getEntities().getOffset(12)
+                + ",\"length\":" + message.getEntities().getLength(12) + "}]}"));
+    }
+
+    /**
+     * Test d'une modification sans changement: Telegram la refuse ("message is not modified"),
+     * mais le message affiche déjà le texte voulu, la modification est donc réussie.
+     */
+    @Test
+    public void testEditWithSameTextIsSuccess() throws Exception {
+        String baseUrl = startServer(400, "{\"ok\":false,\"error_code\":400,"
+                + "\"description\":\"Bad Request: message is not modified\"}");
+        TelegramSender local = new TelegramSender(HttpClient.newHttpClient(), baseUrl);
+
+        SendResult result = local.editMessageTextAsync("123:ABC", "-100", 42, "Build", null).get();
+
+        assertTrue(result.isSuccess());
+        assertEquals(42, result.getMessageId());
+    }
+
+    /**
+     * Test du suffixe {@code /bot} collé par erreur à l'URL de base.
+     *
+     * L'ancienne constante se terminait par {@code /bot}: une URL saisie ainsi ne doit pas
+     * produire {@code /bot/bot<token>}.
+     */
+    @Test
+    public void testBotSuffixInBaseUrlIsIgnored() throws Exception {
+        String baseUrl = startServer(200, "{\"ok\":true,\"result\":{}}");
+        TelegramSender local = new TelegramSender(HttpClient.newHttpClient(), baseUrl + "/bot");
+
+        assertTrue(local.sendAsync("123:ABC", "42", "Hello").get().isSuccess());
+        assertTrue(requests.get(0).startsWith("POST /bot123:ABC/sendMessage\n"));
+    }
+
+    /**
+     * Test d'une réponse 429 du serveur local.
+     *
+     * Le délai retry_after doit être transmis tel quel au dispatcher.
+     */
+    @Test
+    public void testRetryAfterFromLocalServer() throws Exception {
+        String baseUrl = startServer(429,
+                "{\"ok\":false,\"error_code\":429,\"parameters\":{\"retry_after\":7}}");
+        TelegramSender local = new TelegramSender(HttpClient.newHttpClient(), baseUrl);
+
+        SendResult result = local.sendAsync("123:ABC", "42", "Hello").get();
+
+        assertFalse(result.isSuccess());
+        assertTrue(result.isRetryable());
+        assertEquals(7, result.getRetryAfterSeconds());
+    }
+
+    /**
+     * Test du budget de temps: un serveur qui ne répond pas est abandonné à l'échéance de la notification,
+     * sans attendre le timeout configuré, et l'échec reste transitoire.
+     */
+    @Test
+    public void testSendIsCutAtBudget() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            try {
+                Thread.sleep(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.start();
+        TelegramSender local = new TelegramSender(HttpClient.newHttpClient(),
+                "http://127.0.0.1:" + server.getAddress().getPort());
+
+        long start = System.nanoTime();
+        SendResult result = local.sendAsync("123:ABC", "42", "Hello", Duration.ofMillis(300)).get();
+
+        assertFalse(result.isSuccess());
+        assertTrue(result.isRetryable());
+        assertTrue(System.nanoTime() - start < 3_000_000_000L);
+    }
+
+    /**
+     * Test d'envoi d'un fichier joint vers le serveur local.
+     *
+     * Le fichier part en multipart sur {@code sendDocument}, compressé en gzip.
+     */
+    @Test
+    public void testSendDocumentToLocalBotApiServer() throws Exception {
+        String baseUrl = startServer(200, "{\"ok\":true,\"result\":{}}");
+        TelegramSender local = new TelegramSender(HttpClient.newHttpClient(), baseUrl);
+        Attachment attachment = new Attachment("console-7.log",
+                () -> new ByteArrayInputStream("log line".getBytes(StandardCharsets.UTF_8)));
+
+        SendResult result = local.sendDocumentAsync("123:ABC", "42", attachment, "Build #7").get();
+
+        assertTrue(result.isSuccess());
+        String request = requests.get(0);
+        assertTrue(request.startsWith("POST /bot123:ABC/sendDocument\n"));
+        assertTrue(request.contains("filename=\"console-7.log.gz\""));
+    }
+
+    /**
+     * Test de la sonde getMe utilisée par le test de connexion.
+     */
+    @Test
+    public void testGetMeOnLocalBotApiServer() throws Exception {
+        String baseUrl = startServer(200,
+                "{\"ok\":true,\"result\":{\"id\":1,\"is_bot\":true,\"username\":\"jenkins_bot\"}}");
+        TelegramSender local = new TelegramSender(HttpClient.newHttpClient(), baseUrl);
+
+        HttpResponse<String> response = local.getMe("123:ABC");
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("jenkins_bot"));
+        assertTrue(requests.get(0).startsWith("GET /bot123:ABC/getMe\n"));
+    }
+
+    /**
+     * Démarre un serveur local qui enregistre chaque requête ("METHODE chemin\ncorps")
+     * et répond toujours avec le code et le corps donnés.
+     *
+     * @return l'URL de base du serveur
+     */
+    private String startServer(int status, String body) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> respond(exchange, status, body));
+        server.start();
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private void respond(HttpExchange exchange, int status, String body) throws IOException {
+        // Les corps JSON sont en UTF-8; les corps multipart (gzip) sont lus octet par octet
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        boolean json = "application/json".equals(contentType);
+        String requestBody;
+        try (InputStream in = exchange.getRequestBody()) {
+            requestBody = new String(in.readAllBytes(), json ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+        }
+        requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath() + "\n" + requestBody);
+
+        byte[] response = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
 }
@@ -0,0 +1,72 @@
+package io.github.mbehenri.jenkins.telegramnotifier.benchmark;
+
+import io.github.mbehenri.jenkins.telegramnotifier.ParseMode;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compare l'échappement d'un texte libre (nom de job, cause, valeur de variable) :
+ * <ul>
+ *     <li>{@code replaceChain} : un {@link String#replace} par caractère réservé du mode, soit une passe
+ *     (et une copie dès qu'il y a une occurrence) par caractère</li>
+ *     <li>{@code lookupTable} : {@link ParseMode#escape}, une seule passe guidée par la table de 128 entrées,
+ *     sans allocation quand il n'y a rien à échapper</li>
+ * </ul>
+ * Le texte {@code clean} est un nom de job sans caractère réservé (cas le plus fréquent), le texte
+ * {@code dirty} une cause contenant des caractères réservés dans tous les modes.
+ */
+@JmhBenchmark
+public class EscapeBenchmark {
+
+    private static final String[][] RESERVED = {
+            {"_", "*", "`", "["},
+            {"\\", "_", "*", "[", "]", "(", ")", "~", "`", ">", "#", "+", "-", "=", "|", "{", "}", ".", "!"},
+            {"&", "<", ">", "\""}
+    };
+
+    private static final String[][] REPLACEMENTS = {
+            {"\\_", "\\*", "\\`", "\\["},
+            {"\\\\", "\\_", "\\*", "\\[", "\\]", "\\(", "\\)", "\\~", "\\`", "\\>", "\\#", "\\+", "\\-", "\\=",
+                    "\\|", "\\{", "\\}", "\\.", "\\!"},
+            {"&amp;", "&lt;", "&gt;", "&quot;"}
+    };
+
+    @State(Scope.Thread)
+    public static class TextState {
+
+        @Param({"MARKDOWN", "MARKDOWN_V2", "HTML"})
+        public ParseMode mode;
+
+        @Param({"clean", "dirty"})
+        public String input;
+
+        public String text;
+
+        @Setup
+        public void setUp() {
+            text = "clean".equals(input)
+                    ? "Platform Backend Nightly Integration Build"
+                    : "Started by GitHub push by user_42 <ci@example.com> [api*beta] v1.2.0-rc.1 (#128)";
+        }
+    }
+
+    @Benchmark
+    public String replaceChain(TextState state) {
+        String[] reserved = RESERVED[state.mode.ordinal()];
+        String[] replacements = REPLACEMENTS[state.mode.ordinal()];
+        String escaped = state.text;
+        for (int i = 0; i < reserved.length; i++) {
+            escaped = escaped.replace(reserved[i], replacements[i]);
+        }
+        return escaped;
+    }
+
+    @Benchmark
+    public String lookupTable(TextState state) {
+        return state.mode.escape(state.text);
+    }
+}
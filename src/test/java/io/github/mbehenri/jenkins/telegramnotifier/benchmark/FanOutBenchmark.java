@@ -0,0 +1,107 @@
+package io.github.mbehenri.jenkins.telegramnotifier.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import io.github.mbehenri.jenkins.telegramnotifier.SendResult;
+import io.github.mbehenri.jenkins.telegramnotifier.TelegramSender;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Mesure le temps d'envoi d'une rafale de 50, 200 et 1000 notifications simultanées vers une API locale.
+ * <p>
+ * Le JDK ne fournit pas de serveur HTTP/2 : l'API simulée parle HTTP/1.1, ce qui mesure le repli sur le pool
+ * de connexions keep-alive. {@code unbounded} lance tous les envois d'un coup (une connexion par envoi en
+ * cours), {@code limited} passe par {@link TelegramSender} et son limiteur de concurrence par hôte.
+ * Le débit en envois par seconde est la taille de la rafale divisée par le temps mesuré.
+ */
+@JmhBenchmark
+public class FanOutBenchmark {
+
+    private static final byte[] RESPONSE =
+            "{\"ok\":true,\"result\":{\"message_id\":1}}".getBytes(StandardCharsets.UTF_8);
+
+    @State(Scope.Benchmark)
+    public static class MockApi {
+
+        @Param({"50", "200", "1000"})
+        public int concurrency;
+
+        HttpServer server;
+        ExecutorService serverThreads;
+        HttpClient client;
+        TelegramSender sender;
+        URI sendMessage;
+
+        @Setup
+        public void setUp() throws IOException {
+            serverThreads = Executors.newFixedThreadPool(16);
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+            server.createContext("/", exchange -> {
+                try (InputStream in = exchange.getRequestBody()) {
+                    in.readAllBytes();
+                }
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, RESPONSE.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(RESPONSE);
+                }
+            });
+            server.setExecutor(serverThreads);
+            server.start();
+
+            String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+            client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            sender = new TelegramSender(client, baseUrl);
+            sendMessage = URI.create(baseUrl + "/bot1:A/sendMessage");
+        }
+
+        @TearDown
+        public void tearDown() {
+            server.stop(0);
+            serverThreads.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public int unbounded(MockApi api) {
+        CompletableFuture<?>[] sends = new CompletableFuture<?>[api.concurrency];
+        for (int i = 0; i < sends.length; i++) {
+            HttpRequest request = HttpRequest.newBuilder(api.sendMessage)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"chat_id\":\"" + i + "\",\"text\":\"Build SUCCESS\"}"))
+                    .build();
+            sends[i] = api.client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+        }
+        CompletableFuture.allOf(sends).join();
+        return sends.length;
+    }
+
+    @Benchmark
+    public int limited(MockApi api) {
+        @SuppressWarnings("unchecked")
+        CompletableFuture<SendResult>[] sends = new CompletableFuture[api.concurrency];
+        for (int i = 0; i < sends.length; i++) {
+            sends[i] = api.sender.sendAsync("1:A", Integer.toString(i), "Build SUCCESS");
+        }
+        CompletableFuture.allOf(sends).join();
+        return sends.length;
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.mbehenri.jenkins.telegramnotifier.benchmark;
+
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramConfig;
+import io.github.mbehenri.jenkins.telegramnotifier.transport.JsonRequestEncoder;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compare la construction du corps d'une requête {@code sendMessage} :
+ * <ul>
+ *     <li>{@code formUrlEncoded} : ancien chemin, trois {@link URLEncoder#encode} concaténés puis
+ *     réencodés en UTF-8 par {@code BodyPublishers.ofString}</li>
+ *     <li>{@code jsonByteArray} : {@link JsonRequestEncoder} écrivant directement en UTF-8 dans le tampon
+ *     du thread, remis à {@code BodyPublishers.ofByteArray}</li>
+ * </ul>
+ * Le message type contient du Markdown, des underscores échappés et des emojis, comme un message formaté.
+ */
+@JmhBenchmark
+public class RequestBodyBenchmark {
+
+    private static final byte[] CHAT_ID = JsonRequestEncoder.key("chat_id");
+    private static final byte[] TEXT = JsonRequestEncoder.key("text");
+    private static final byte[] PARSE_MODE = JsonRequestEncoder.constant("parse_mode", TelegramConfig.PARSE_MODE);
+
+    @State(Scope.Thread)
+    public static class MessageState {
+
+        @Param({"256", "4096"})
+        public int length;
+
+        public String chatId = "-1001234567890";
+        public String text;
+
+        @Setup
+        public void setUp() {
+            String line = "❌ Build *FAILURE* - my\\_project\\_name [#42](https://ci.example.com/job/42/) 🚀\n";
+            StringBuilder message = new StringBuilder(length);
+            while (message.length() < length) {
+                message.append(line);
+            }
+            text = message.substring(0, length);
+        }
+    }
+
+    @Benchmark
+    public HttpRequest.BodyPublisher formUrlEncoded(MessageState state) throws UnsupportedEncodingException {
+        StringBuilder body = new StringBuilder();
+        body.append("chat_id=").append(URLEncoder.encode(state.chatId, StandardCharsets.UTF_8.toString()));
+        body.append("&text=").append(URLEncoder.encode(state.text, StandardCharsets.UTF_8.toString()));
+        body.append("&parse_mode=").append(URLEncoder.encode(TelegramConfig.PARSE_MODE, StandardCharsets.UTF_8.toString()));
+        return HttpRequest.BodyPublishers.ofString(body.toString());
+    }
+
+    @Benchmark
+    public HttpRequest.BodyPublisher jsonByteArray(MessageState state) {
+        return HttpRequest.BodyPublishers.ofByteArray(JsonRequestEncoder.get()
+                .field(CHAT_ID, state.chatId)
+                .field(TEXT, state.text)
+                .raw(PARSE_MODE)
+                .toByteArray());
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.mbehenri.jenkins.telegramnotifier.config;
+
+import io.github.mbehenri.jenkins.telegramnotifier.delivery.DispatchQueue;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour TelegramGlobalConfiguration.
+ *
+ * Ces tests vérifient, hors d'une instance Jenkins:
+ * - Les valeurs par défaut retournées par get()
+ * - La normalisation de l'URL de base saisie par l'administrateur
+ * - L'extraction du nom du bot de la réponse getMe
+ */
+public class TelegramGlobalConfigurationTest {
+
+    /**
+     * Test des valeurs par défaut hors de Jenkins.
+     *
+     * Sans instance Jenkins, le sender doit continuer à viser l'API publique
+     * avec les timeouts historiques.
+     */
+    @Test
+    public void testDefaultsWithoutJenkins() {
+        TelegramGlobalConfiguration configuration = TelegramGlobalConfiguration.get();
+
+        assertNotNull(configuration);
+        assertEquals("https://api.telegram.org", configuration.getApiBaseUrl());
+        assertEquals(TelegramConfig.REQUEST_TIMEOUT_SECONDS, configuration.getMessageTimeoutSeconds());
+        assertEquals(TelegramConfig.DOCUMENT_TIMEOUT_SECONDS, configuration.getDocumentTimeoutSeconds());
+        assertEquals(TelegramConfig.PROBE_TIMEOUT_SECONDS, configuration.getProbeTimeoutSeconds());
+        assertEquals(TelegramConfig.HTTP2_MAX_CONCURRENT_STREAMS, configuration.getMaxConcurrentStreams());
+        assertEquals(TelegramConfig.HTTP1_MAX_CONNECTIONS, configuration.getMaxHttp1Connections());
+        assertEquals(TelegramConfig.DISPATCH_QUEUE_CAPACITY, configuration.getQueueCapacity());
+        assertEquals(DispatchQueue.OverflowPolicy.SPILL_TO_DISK, configuration.getOverflowPolicy());
+    }
+
+    /**
+     * Test de la normalisation de l'URL de base.
+     *
+     * Le slash final et le suffixe /bot (ancienne forme de l'URL) sont retirés;
+     * une valeur vide revient à l'API publique.
+     */
+    @Test
+    public void testNormalizeApiBaseUrl() {
+        assertEquals("http://bot-api:8081", TelegramGlobalConfiguration.normalizeApiBaseUrl("http://bot-api:8081"));
+        assertEquals("http://bot-api:8081", TelegramGlobalConfiguration.normalizeApiBaseUrl(" http://bot-api:8081/ "));
+        assertEquals("https://api.telegram.org",
+                TelegramGlobalConfiguration.normalizeApiBaseUrl("https://api.telegram.org/bot"));
+        assertEquals("http://proxy/telegram", TelegramGlobalConfiguration.normalizeApiBaseUrl("http://proxy/telegram/bot/"));
+
+        assertEquals(TelegramConfig.DEFAULT_API_BASE_URL, TelegramGlobalConfiguration.normalizeApiBaseUrl(null));
+        assertEquals(TelegramConfig.DEFAULT_API_BASE_URL, TelegramGlobalConfiguration.normalizeApiBaseUrl("   "));
+    }
+
+    /**
+     * Test de l'extraction du nom du bot de la réponse getMe.
+     */
+    @Test
+    public void testParseUsername() {
+        assertEquals("jenkins_bot", TelegramGlobalConfiguration.parseUsername(
+                "{\"ok\":true,\"result\":{\"id\":42,\"is_bot\":true,\"username\": \"jenkins_bot\"}}"));
+
+        assertNull(TelegramGlobalConfiguration.parseUsername("{\"ok\":false,\"error_code\":401}"));
+        assertNull(TelegramGlobalConfiguration.parseUsername(null));
+    }
+}
@@ -0,0 +1,292 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour DispatchQueue.
+ *
+ * Ces tests vérifient la borne de la file et chaque politique de débordement:
+ * - BLOCK: attente d'une place, puis abandon à l'expiration du délai; jamais d'attente hors du thread d'un build
+ * - DROP_OLDEST_SUCCESS: éviction des plus anciens SUCCESS en attente d'abord, jamais d'une notification
+ *   aussi ou plus prioritaire que la nouvelle
+ * - SPILL_TO_DISK: déchargement, puis réadmission dans l'ordre à la libération d'une place
+ * - Les compteurs de supervision (profondeur, abandons, latence d'admission)
+ * - L'ordonnancement par priorité (FAILURE d'abord), avec vieillissement et ordre d'arrivée conservé
+ * - Une seule livraison par chat et un nombre borné par bot
+ */
+public class DispatchQueueTest {
+
+    private static final String TOKEN = "123456:ABC-DEF1234ghIkl-zyx57W2v1u123ew11";
+
+    /**
+     * Test qu'une file non pleine admet sans délai.
+     */
+    @Test
+    public void testAdmitsUntilFull() {
+        DispatchQueue queue = new DispatchQueue(2, DispatchQueue.OverflowPolicy.DROP_OLDEST_SUCCESS, 1);
+
+        assertEquals(DispatchQueue.State.QUEUED, queue.offer(notification("FAILURE"), -1).getState());
+        assertEquals(DispatchQueue.State.QUEUED, queue.offer(notification("FAILURE"), -1).getState());
+        assertEquals(2, queue.getDepth());
+        assertEquals(0, queue.getDroppedCount());
+    }
+
+    /**
+     * Test de la politique BLOCK.
+     *
+     * L'appelant attend le délai configuré puis la notification est abandonnée;
+     * si une place se libère pendant l'attente, elle est admise.
+     */
+    @Test
+    public void testBlockWaitsForSlotThenDrops() throws Exception {
+        DispatchQueue queue = new DispatchQueue(1, DispatchQueue.OverflowPolicy.BLOCK, 1);
+        DispatchQueue.Ticket first = queue.offer(notification("FAILURE"), -1);
+        assertSame(first, queue.poll());
+
+        long start = System.nanoTime();
+        DispatchQueue.Ticket timedOut = queue.offer(notification("FAILURE"), -1);
+        assertEquals(DispatchQueue.State.DROPPED, timedOut.getState());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(900));
+        assertEquals(1, queue.getDroppedCount());
+        assertTrue(queue.getMaxAdmissionMicros() >= 900_000);
+
+        CompletableFuture<DispatchQueue.Ticket> waiting =
+                CompletableFuture.supplyAsync(() -> queue.offer(notification("FAILURE"), -1));
+        Thread.sleep(100);
+        assertFalse(waiting.isDone());
+
+        queue.release(first);
+        assertEquals(DispatchQueue.State.QUEUED, waiting.get(5, TimeUnit.SECONDS).getState());
+    }
+
+    /**
+     * Test de la politique BLOCK hors du thread d'un build (planificateur, fin d'une livraison):
+     * l'admission ne bloque jamais et se replie sur le déchargement, ou sur l'éviction sans outbox.
+     */
+    @Test
+    public void testBlockDoesNotBlockOutsideBuildThread() {
+        DispatchQueue queue = new DispatchQueue(1, DispatchQueue.OverflowPolicy.BLOCK, 5);
+        DispatchQueue.Ticket success = queue.offer(notification("SUCCESS"), -1);
+
+        long start = System.nanoTime();
+        DispatchQueue.Ticket evicting = queue.offerWithoutBlocking(notification("FAILURE"), -1);
+        assertEquals(DispatchQueue.State.QUEUED, evicting.getState());
+        assertSame(success, evicting.getDisplaced());
+        assertEquals(DispatchQueue.State.SPILLED, queue.offerWithoutBlocking(notification("FAILURE"), 7).getState());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Test de la politique DROP_OLDEST_SUCCESS.
+     *
+     * Le plus ancien SUCCESS en attente est évincé, même derrière des échecs plus anciens;
+     * une notification n'évince jamais une notification aussi ou plus prioritaire qu'elle.
+     */
+    @Test
+    public void testDropOldestSuccessFirst() {
+        DispatchQueue queue = new DispatchQueue(3, DispatchQueue.OverflowPolicy.DROP_OLDEST_SUCCESS, 1);
+        DispatchQueue.Ticket failure = queue.offer(notification("FAILURE"), -1);
+        DispatchQueue.Ticket success = queue.offer(notification("SUCCESS"), -1);
+        DispatchQueue.Ticket unstable = queue.offer(notification("UNSTABLE"), -1);
+
+        DispatchQueue.Ticket incoming = queue.offer(notification("FAILURE"), -1);
+        assertEquals(DispatchQueue.State.QUEUED, incoming.getState());
+        assertSame(success, incoming.getDisplaced());
+        assertEquals(DispatchQueue.State.DROPPED, success.getState());
+
+        // Plus aucun SUCCESS en attente: un nouveau SUCCESS est refusé
+        DispatchQueue.Ticket rejected = queue.offer(notification("SUCCESS"), -1);
+        assertEquals(DispatchQueue.State.DROPPED, rejected.getState());
+        assertNull(rejected.getDisplaced());
+
+        // Un ABORTED n'évince ni un échec ni un UNSTABLE, plus prioritaires
+        DispatchQueue.Ticket aborted = queue.offer(notification("ABORTED"), -1);
+        assertEquals(DispatchQueue.State.DROPPED, aborted.getState());
+        assertNull(aborted.getDisplaced());
+
+        // Un échec évince alors le moins prioritaire en attente, jamais un autre échec
+        DispatchQueue.Ticket last = queue.offer(notification("FAILURE"), -1);
+        assertSame(unstable, last.getDisplaced());
+        assertEquals(DispatchQueue.State.QUEUED, failure.getState());
+        assertEquals(3, queue.getDepth());
+        assertEquals(4, queue.getDroppedCount());
+    }
+
+    /**
+     * Test qu'une file pleine d'échecs n'évince aucun d'eux pour une notification moins prioritaire,
+     * ni pour une notification sans résultat (ex: message de démarrage d'un build).
+     */
+    @Test
+    public void testLowerPriorityNeverEvictsFailure() {
+        DispatchQueue queue = new DispatchQueue(2, DispatchQueue.OverflowPolicy.DROP_OLDEST_SUCCESS, 1);
+        DispatchQueue.Ticket first = queue.offer(notification("FAILURE"), -1);
+        DispatchQueue.Ticket second = queue.offer(notification("FAILURE"), -1);
+
+        DispatchQueue.Ticket start = queue.offerWithoutBlocking(notification(null), -1);
+        assertEquals(DispatchQueue.State.DROPPED, start.getState());
+        assertNull(start.getDisplaced());
+        assertEquals(DispatchQueue.State.DROPPED, queue.offer(notification("UNSTABLE"), -1).getState());
+        assertEquals(DispatchQueue.State.DROPPED, queue.offer(notification("FAILURE"), -1).getState());
+
+        assertEquals(DispatchQueue.State.QUEUED, first.getState());
+        assertEquals(DispatchQueue.State.QUEUED, second.getState());
+        assertEquals(2, queue.getDepth());
+    }
+
+    /**
+     * Test que les notifications en cours de livraison ne sont jamais évincées.
+     */
+    @Test
+    public void testRunningNotificationsAreNotEvicted() {
+        DispatchQueue queue = new DispatchQueue(1, DispatchQueue.OverflowPolicy.DROP_OLDEST_SUCCESS, 1);
+        DispatchQueue.Ticket running = queue.offer(notification("SUCCESS"), -1);
+        assertSame(running, queue.poll());
+
+        assertEquals(DispatchQueue.State.DROPPED, queue.offer(notification("FAILURE"), -1).getState());
+        assertEquals(DispatchQueue.State.RUNNING, running.getState());
+    }
+
+    /**
+     * Test de la politique SPILL_TO_DISK.
+     *
+     * Les notifications déchargées ne gardent pas leur contenu en mémoire et sont
+     * réadmises dans leur ordre d'arrivée à chaque place libérée.
+     */
+    @Test
+    public void testSpillIsReadmittedInOrder() {
+        DispatchQueue queue = new DispatchQueue(1, DispatchQueue.OverflowPolicy.SPILL_TO_DISK, 1);
+        DispatchQueue.Ticket first = queue.offer(notification("FAILURE"), 1);
+        DispatchQueue.Ticket second = queue.offer(notification("FAILURE"), 2);
+        DispatchQueue.Ticket third = queue.offer(notification("FAILURE"), 3);
+
+        assertEquals(DispatchQueue.State.SPILLED, second.getState());
+        assertNull(second.getNotification());
+        assertEquals(2, queue.getSpilledCount());
+
+        assertSame(first, queue.poll());
+        queue.release(first);
+        assertEquals(DispatchQueue.State.QUEUED, second.getState());
+        assertEquals(DispatchQueue.State.SPILLED, third.getState());
+
+        assertSame(second, queue.poll());
+        queue.release(second);
+        assertSame(third, queue.poll());
+        queue.release(third);
+
+        assertEquals(0, queue.getDepth());
+        assertEquals(2, queue.getTotalSpilledCount());
+        assertEquals(0, queue.getDroppedCount());
+    }
+
+    /**
+     * Test que SPILL_TO_DISK sans outbox se replie sur l'abandon des plus anciens SUCCESS.
+     */
+    @Test
+    public void testSpillWithoutOutboxDropsInstead() {
+        DispatchQueue queue = new DispatchQueue(1, DispatchQueue.OverflowPolicy.SPILL_TO_DISK, 1);
+        DispatchQueue.Ticket success = queue.offer(notification("SUCCESS"), -1);
+
+        DispatchQueue.Ticket incoming = queue.offer(notification("FAILURE"), -1);
+        assertEquals(DispatchQueue.State.QUEUED, incoming.getState());
+        assertSame(success, incoming.getDisplaced());
+        assertEquals(0, queue.getSpilledCount());
+    }
+
+    /**
+     * Test qu'un FAILURE passe devant les SUCCESS déjà en attente.
+     */
+    @Test
+    public void testFailureJumpsQueuedSuccess() {
+        DispatchQueue queue = scheduler(1, 60_000);
+        DispatchQueue.Ticket first = queue.offer(notification("SUCCESS", "1"), -1);
+        DispatchQueue.Ticket second = queue.offer(notification("SUCCESS", "2"), -1);
+        DispatchQueue.Ticket unstable = queue.offer(notification("UNSTABLE", "3"), -1);
+        DispatchQueue.Ticket failure = queue.offer(notification("FAILURE", "4"), -1);
+
+        assertSame(failure, queue.poll());
+        assertNull(queue.poll());
+        queue.release(failure);
+
+        assertSame(unstable, queue.poll());
+        queue.release(unstable);
+        assertSame(first, queue.poll());
+        queue.release(first);
+        assertSame(second, queue.poll());
+    }
+
+    /**
+     * Test du vieillissement: une notification peu prioritaire qui attend depuis longtemps
+     * passe devant un FAILURE qui vient d'arriver.
+     */
+    @Test
+    public void testAgingPreventsStarvation() throws Exception {
+        DispatchQueue queue = scheduler(1, 20);
+        DispatchQueue.Ticket success = queue.offer(notification("SUCCESS", "1"), -1);
+        Thread.sleep(200);
+        queue.offer(notification("FAILURE", "2"), -1);
+
+        assertSame(success, queue.poll());
+    }
+
+    /**
+     * Test de l'ordre dans un chat.
+     *
+     * Une seule livraison à la fois par chat; à priorité égale, l'ordre d'arrivée est conservé,
+     * un FAILURE du même chat passe devant les SUCCESS encore en attente.
+     */
+    @Test
+    public void testOneDeliveryPerChatInArrivalOrder() {
+        DispatchQueue queue = scheduler(10, 60_000);
+        DispatchQueue.Ticket first = queue.offer(notification("SUCCESS", "1"), -1);
+        DispatchQueue.Ticket second = queue.offer(notification("SUCCESS", "1"), -1);
+        DispatchQueue.Ticket third = queue.offer(notification("SUCCESS", "1"), -1);
+        DispatchQueue.Ticket failure = queue.offer(notification("FAILURE", "1"), -1);
+
+        assertSame(failure, queue.poll());
+        assertNull(queue.poll());
+        queue.release(failure);
+
+        assertSame(first, queue.poll());
+        queue.release(first);
+        assertSame(second, queue.poll());
+        queue.release(second);
+        assertSame(third, queue.poll());
+    }
+
+    /**
+     * Test de la limite de livraisons simultanées par bot: les autres bots ne sont pas bloqués.
+     */
+    @Test
+    public void testRunningIsCappedPerBot() {
+        DispatchQueue queue = scheduler(2, 60_000);
+        for (int i = 0; i < 3; i++) {
+            queue.offer(notification("FAILURE", String.valueOf(i)), -1);
+        }
+        DispatchQueue.Ticket otherBot = queue.offer(new Notification("654321:XYZ", "1", "msg", "SUCCESS", null), -1);
+
+        assertNotNull(queue.poll());
+        assertNotNull(queue.poll());
+        assertSame(otherBot, queue.poll());
+        assertNull(queue.poll());
+        assertEquals(3, queue.getRunningCount());
+        assertEquals(4, queue.getDepth());
+    }
+
+    private static DispatchQueue scheduler(int maxRunningPerBot, long agingMillis) {
+        return new DispatchQueue(() -> 100, () -> DispatchQueue.OverflowPolicy.BLOCK, () -> 1,
+                maxRunningPerBot, agingMillis);
+    }
+
+    private static Notification notification(String status) {
+        return notification(status, "1");
+    }
+
+    private static Notification notification(String status, String chatId) {
+        return new Notification(TOKEN, chatId, "Build " + status, status, null);
+    }
+}
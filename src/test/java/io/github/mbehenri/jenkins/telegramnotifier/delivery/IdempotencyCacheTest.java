@@ -0,0 +1,89 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour IdempotencyCache.
+ *
+ * L'horloge est simulée pour vérifier l'expiration sans attendre. Ces tests vérifient:
+ * - La reconnaissance d'une clé déjà livrée
+ * - L'expiration des clés après leur durée de conservation
+ * - La borne du nombre de clés, en oubliant les plus anciennes
+ * - L'ordre chronologique de la copie recopiée dans l'outbox
+ */
+public class IdempotencyCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    /**
+     * Test qu'une clé livrée est reconnue, et qu'une clé nulle ne l'est jamais.
+     */
+    @Test
+    public void testDeliveredKeyIsRecognized() {
+        IdempotencyCache cache = new IdempotencyCache(10, 60_000, now::get);
+
+        assertTrue(cache.add("job#1#FAILURE#42"));
+        assertFalse(cache.add("job#1#FAILURE#42"));
+        assertTrue(cache.contains("job#1#FAILURE#42"));
+        assertFalse(cache.contains("job#2#FAILURE#42"));
+        assertFalse(cache.add(null));
+        assertFalse(cache.contains(null));
+    }
+
+    /**
+     * Test de l'expiration: une clé est oubliée après sa durée de conservation,
+     * et une livraison relue déjà expirée n'est pas ajoutée.
+     */
+    @Test
+    public void testKeysExpire() {
+        IdempotencyCache cache = new IdempotencyCache(10, 60_000, now::get);
+        cache.add("a");
+        now.addAndGet(30_000);
+        cache.add("b");
+
+        now.addAndGet(30_000);
+        assertFalse(cache.contains("a"));
+        assertTrue(cache.contains("b"));
+        assertEquals(1, cache.size());
+
+        assertFalse(cache.add("c", now.get() - 60_000));
+        assertFalse(cache.contains("c"));
+    }
+
+    /**
+     * Test de la borne: au-delà du nombre maximal de clés, les plus anciennes sont oubliées.
+     */
+    @Test
+    public void testOldestKeysAreEvictedBeyondBound() {
+        IdempotencyCache cache = new IdempotencyCache(3, 60_000, now::get);
+        for (String key : Arrays.asList("a", "b", "c", "d")) {
+            cache.add(key);
+            now.incrementAndGet();
+        }
+
+        assertEquals(3, cache.size());
+        assertFalse(cache.contains("a"));
+        assertTrue(cache.contains("d"));
+    }
+
+    /**
+     * Test de l'ordre de la copie: une clé livrée à nouveau passe en queue.
+     */
+    @Test
+    public void testSnapshotIsChronological() {
+        IdempotencyCache cache = new IdempotencyCache(10, 60_000, now::get);
+        cache.add("a");
+        now.incrementAndGet();
+        cache.add("b");
+        now.incrementAndGet();
+        cache.add("a");
+
+        assertEquals(Arrays.asList("b", "a"), new ArrayList<>(cache.snapshot().keySet()));
+    }
+}
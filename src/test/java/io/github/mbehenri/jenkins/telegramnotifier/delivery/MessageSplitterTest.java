@@ -0,0 +1,187 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+import io.github.mbehenri.jenkins.telegramnotifier.FormattedMessage;
+import io.github.mbehenri.jenkins.telegramnotifier.MessageEntities;
+import io.github.mbehenri.jenkins.telegramnotifier.ParseMode;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour MessageSplitter.
+ *
+ * Ces tests vérifient:
+ * - Qu'un message court n'est pas découpé
+ * - Le découpage en fin de ligne de préférence, sans perte de contenu
+ * - Qu'aucune coupure ne tombe à l'intérieur d'une entité Markdown
+ * - La fermeture et la réouverture d'un bloc de code plus long qu'une partie
+ * - Les échappements MarkdownV2 dans les entités, et les éléments HTML
+ * - La répartition des entités d'un message en texte brut entre les parties
+ */
+public class MessageSplitterTest {
+
+    /**
+     * Test qu'un message dans la limite est retourné tel quel.
+     */
+    @Test
+    public void testShortMessageIsNotSplit() {
+        List<String> parts = MessageSplitter.split("Build *SUCCESS*");
+
+        assertEquals(1, parts.size());
+        assertEquals("Build *SUCCESS*", parts.get(0));
+    }
+
+    /**
+     * Test du découpage en fin de ligne: chaque partie respecte la limite et
+     * la concaténation des parties redonne le message d'origine.
+     */
+    @Test
+    public void testSplitsOnLineBoundaries() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            text.append("line ").append(i).append(" of the failure excerpt\n");
+        }
+
+        List<String> parts = MessageSplitter.split(text.toString().trim(), 100);
+
+        assertTrue(parts.size() > 1);
+        for (String part : parts) {
+            assertTrue(part.length() <= 100);
+            assertTrue(part.startsWith("line "));
+        }
+        assertEquals(text.toString().trim(), String.join("\n", parts));
+    }
+
+    /**
+     * Test qu'une entité Markdown n'est jamais coupée: la coupure se fait avant le lien.
+     */
+    @Test
+    public void testDoesNotSplitInsideEntities() {
+        String text = "Status: *very long bold text* then [View build](http://jenkins.example.com/job/a/1/) end";
+
+        List<String> parts = MessageSplitter.split(text, 60);
+
+        for (String part : parts) {
+            assertEquals(0, countOf(part, '*') % 2);
+            assertEquals(countOf(part, '['), countOf(part, ']'));
+        }
+        assertTrue(parts.stream().anyMatch(part -> part.contains("[View build](http://jenkins.example.com/job/a/1/)")));
+    }
+
+    /**
+     * Test qu'un caractère échappé (ex: \_ dans un nom de job) n'ouvre pas d'entité.
+     */
+    @Test
+    public void testEscapedMarkersAreIgnored() {
+        String text = "My\\_Job failed on the main branch again today";
+
+        List<String> parts = MessageSplitter.split(text, 20);
+
+        assertTrue(parts.size() > 1);
+        assertEquals("My\\_Job failed on", parts.get(0));
+    }
+
+    /**
+     * Test qu'un bloc de code trop long est refermé en fin de partie et rouvert au début de la suivante.
+     */
+    @Test
+    public void testLongCodeBlockIsReopened() {
+        String text = "```" + repeat('x', 250) + "```";
+
+        List<String> parts = MessageSplitter.split(text, 100);
+
+        assertTrue(parts.size() > 2);
+        for (String part : parts) {
+            assertTrue(part.length() <= 100);
+            assertTrue(part.startsWith("```"));
+            assertTrue(part.endsWith("```"));
+        }
+    }
+
+    /**
+     * Test qu'une paire de substitution (emoji) n'est jamais coupée en deux.
+     */
+    @Test
+    public void testDoesNotSplitSurrogatePairs() {
+        String text = new String(new char[60]).replace("\0", "\uD83D\uDED1"); // 🛑
+
+        for (String part : MessageSplitter.split(text, 51)) {
+            assertFalse(Character.isHighSurrogate(part.charAt(part.length() - 1)));
+            assertFalse(Character.isLowSurrogate(part.charAt(0)));
+        }
+    }
+
+    /**
+     * Test qu'en MarkdownV2 un astérisque échappé dans une entité ne la ferme pas.
+     */
+    @Test
+    public void testMarkdownV2EscapesInsideEntities() {
+        String text = "*Job: api\\*beta* failed on the main branch again today";
+
+        List<String> parts = MessageSplitter.split(text, 30, ParseMode.MARKDOWN_V2);
+
+        assertEquals("*Job: api\\*beta* failed on the", parts.get(0));
+    }
+
+    /**
+     * Test qu'un message HTML n'est coupé ni dans une balise, ni dans une entité, ni dans un élément;
+     * un élément trop long est refermé puis rouvert avec sa balise d'origine.
+     */
+    @Test
+    public void testHtmlElementsAreNotSplit() {
+        String text = "<b>Job:</b> a &amp; b <a href=\"http://jenkins/job/42/\">View build</a> done";
+
+        List<String> parts = MessageSplitter.split(text, 50, ParseMode.HTML);
+
+        assertEquals("<b>Job:</b> a &amp; b", parts.get(0));
+        assertEquals("<a href=\"http://jenkins/job/42/\">View build</a>", parts.get(1));
+
+        String code = "<pre>" + repeat('x', 250) + "</pre>";
+        for (String part : MessageSplitter.split(code, 100, ParseMode.HTML)) {
+            assertTrue(part.length() <= 100);
+            assertTrue(part.startsWith("<pre>"));
+            assertTrue(part.endsWith("</pre>"));
+        }
+    }
+
+    /**
+     * Test du texte brut: les caractères Markdown n'empêchent aucune coupure, et une entité coupée en dur
+     * est répartie entre les parties, repositionnée au début de chacune.
+     */
+    @Test
+    public void testEntitiesAreSlicedAcrossParts() {
+        FormattedMessage message = new FormattedMessage.Builder(ParseMode.ENTITIES)
+                .append("*a_b* ")
+                .appendCode(repeat('x', 30))
+                .append(" [end]")
+                .build();
+
+        List<FormattedMessage> parts = MessageSplitter.split(message, 20, ParseMode.ENTITIES);
+
+        assertEquals(3, parts.size());
+        assertEquals("*a_b*", parts.get(0).getText());
+        assertTrue(parts.get(0).getEntities().isEmpty());
+        assertEquals(repeat('x', 20), parts.get(1).getText());
+        assertEquals(repeat('x', 10) + " [end]", parts.get(2).getText());
+
+        MessageEntities second = parts.get(1).getEntities();
+        assertEquals(MessageEntities.Type.CODE, second.getType(0));
+        assertEquals(0, second.getOffset(0));
+        assertEquals(20, second.getLength(0));
+        MessageEntities third = parts.get(2).getEntities();
+        assertEquals(0, third.getOffset(0));
+        assertEquals(10, third.getLength(0));
+
+        assertSame(message, MessageSplitter.split(message, 100, ParseMode.ENTITIES).get(0));
+    }
+
+    private static int countOf(String text, char c) {
+        return (int) text.chars().filter(ch -> ch == c).count();
+    }
+
+    private static String repeat(char c, int count) {
+        return new String(new char[count]).replace('\0', c);
+    }
+}
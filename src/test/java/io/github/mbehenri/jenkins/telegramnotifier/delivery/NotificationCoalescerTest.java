@@ -0,0 +1,199 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+import io.github.mbehenri.jenkins.telegramnotifier.Attachment;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour NotificationCoalescer.
+ *
+ * La livraison est remplacée par une liste qui enregistre les notifications livrées.
+ * Ces tests vérifient:
+ * - La fusion des notifications d'un même chat en un seul récapitulatif
+ * - La livraison telle quelle d'une notification seule dans sa fenêtre
+ * - L'indépendance des fenêtres de chats différents
+ * - La livraison immédiate quand le regroupement est désactivé
+ * - L'ajout unique des doublons de même clé d'idempotence dans une fenêtre
+ * - La livraison sans regroupement des notifications accompagnées d'une pièce jointe
+ * - L'enregistrement des clés fusionnées une fois le récapitulatif livré, et l'exclusion des clés déjà livrées
+ */
+public class NotificationCoalescerTest {
+
+    private static final String TOKEN = "123456:ABC-DEF1234ghIkl-zyx57W2v1u123ew11";
+
+    private ScheduledExecutorService scheduler;
+    private List<Notification> delivered;
+    private NotificationCoalescer coalescer;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        delivered = new CopyOnWriteArrayList<>();
+        coalescer = new NotificationCoalescer(notification -> {
+            delivered.add(notification);
+            return CompletableFuture.completedFuture(true);
+        }, scheduler);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Test d'une rafale d'échecs: un seul message est envoyé, avec une ligne par build.
+     */
+    @Test
+    public void testBurstIsMergedIntoOneMessage() throws Exception {
+        CompletableFuture<Boolean> first = null;
+        for (int i = 1; i <= 12; i++) {
+            CompletableFuture<Boolean> result = coalescer.submit(failure("job-" + i), 1);
+            if (first == null) {
+                first = result;
+            }
+        }
+
+        assertFalse(first.isDone());
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+
+        assertEquals(1, delivered.size());
+        String text = delivered.get(0).getText();
+        assertTrue(text.startsWith("*12 jobs FAILURE*"));
+        assertTrue(text.contains("job-1\n"));
+        assertTrue(text.endsWith("job-12"));
+        assertEquals(0, coalescer.getOpenWindows());
+    }
+
+    /**
+     * Test qu'une notification seule dans sa fenêtre est livrée avec son message complet.
+     */
+    @Test
+    public void testSingleNotificationIsUnchanged() throws Exception {
+        Notification notification = failure("job");
+
+        assertTrue(coalescer.submit(notification, 1).get(5, TimeUnit.SECONDS));
+        assertEquals(1, delivered.size());
+        assertSame(notification, delivered.get(0));
+    }
+
+    /**
+     * Test que chaque chat a sa propre fenêtre.
+     */
+    @Test
+    public void testWindowsArePerChat() throws Exception {
+        CompletableFuture<Boolean> a = coalescer.submit(new Notification(TOKEN, "1", "a", "FAILURE", "a"), 1);
+        CompletableFuture<Boolean> b = coalescer.submit(new Notification(TOKEN, "2", "b", "FAILURE", "b"), 1);
+
+        assertEquals(2, coalescer.getOpenWindows());
+        assertTrue(a.get(5, TimeUnit.SECONDS));
+        assertTrue(b.get(5, TimeUnit.SECONDS));
+        assertEquals(2, delivered.size());
+    }
+
+    /**
+     * Test qu'une fenêtre nulle désactive le regroupement.
+     */
+    @Test
+    public void testZeroWindowDeliversImmediately() {
+        assertTrue(coalescer.submit(failure("job"), 0).isDone());
+        assertEquals(1, delivered.size());
+    }
+
+    /**
+     * Test qu'un doublon de même clé d'idempotence ne rejoint pas la fenêtre une seconde fois.
+     */
+    @Test
+    public void testDuplicateIsNotMergedTwice() throws Exception {
+        Notification notification = failure("job").withIdempotencyKey("job#1#FAILURE#-100123");
+        CompletableFuture<Boolean> first = coalescer.submit(notification, 1);
+        CompletableFuture<Boolean> duplicate = coalescer.submit(notification, 1);
+
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(duplicate.get(5, TimeUnit.SECONDS));
+        assertEquals(1, delivered.size());
+        assertSame(notification, delivered.get(0));
+    }
+
+    /**
+     * Test qu'une notification accompagnée d'une pièce jointe (log d'un échec) est livrée seule, sans attendre
+     * la fenêtre ni la rejoindre: le récapitulatif ne transporterait pas le fichier.
+     */
+    @Test
+    public void testAttachmentIsNotMerged() throws Exception {
+        CompletableFuture<Boolean> other = coalescer.submit(failure("job-1"), 1);
+        Notification withLog = failure("job-2")
+                .withAttachment(new Attachment("console-2.log", () -> new ByteArrayInputStream(new byte[0])));
+
+        assertTrue(coalescer.submit(withLog, 1).isDone());
+        assertEquals(1, delivered.size());
+        assertSame(withLog, delivered.get(0));
+        assertNotNull(delivered.get(0).getAttachment());
+
+        assertTrue(other.get(5, TimeUnit.SECONDS));
+        assertEquals(2, delivered.size());
+        assertEquals("Build FAILURE\n\njob-1", delivered.get(1).getText());
+    }
+
+    /**
+     * Test que les clés des notifications fusionnées sont enregistrées comme livrées après le récapitulatif,
+     * et qu'une notification déjà livrée ne rejoint plus de fenêtre.
+     */
+    @Test
+    public void testMergedKeysAreMarkedDelivered() throws Exception {
+        IdempotencyCache keys = new IdempotencyCache();
+        coalescer = new NotificationCoalescer(notification -> {
+            delivered.add(notification);
+            return CompletableFuture.completedFuture(true);
+        }, scheduler, keys::contains, keys::add);
+
+        Notification first = failure("job-1").withIdempotencyKey("job-1#1#FAILURE#-100123");
+        Notification second = failure("job-2").withIdempotencyKey("job-2#1#FAILURE#-100123");
+        coalescer.submit(first, 1);
+        CompletableFuture<Boolean> digest = coalescer.submit(second, 1);
+
+        assertFalse(keys.contains(first.getIdempotencyKey()));
+        assertTrue(digest.get(5, TimeUnit.SECONDS));
+        assertEquals(1, delivered.size());
+        assertTrue(keys.contains(first.getIdempotencyKey()));
+        assertTrue(keys.contains(second.getIdempotencyKey()));
+
+        // Rejeu du même build (ex: redémarrage) : rien n'est renvoyé
+        CompletableFuture<Boolean> replayed = coalescer.submit(first, 1);
+        assertTrue(replayed.isDone());
+        assertTrue(replayed.get());
+        assertEquals(0, coalescer.getOpenWindows());
+        assertEquals(1, delivered.size());
+    }
+
+    /**
+     * Test qu'un récapitulatif non livré n'enregistre pas les clés fusionnées, qui peuvent être renvoyées.
+     */
+    @Test
+    public void testFailedDigestDoesNotMarkKeys() throws Exception {
+        IdempotencyCache keys = new IdempotencyCache();
+        coalescer = new NotificationCoalescer(notification -> CompletableFuture.completedFuture(false),
+                scheduler, keys::contains, keys::add);
+
+        Notification first = failure("job-1").withIdempotencyKey("job-1#1#FAILURE#-100123");
+        coalescer.submit(first, 1);
+        assertFalse(coalescer.submit(failure("job-2").withIdempotencyKey("job-2#1#FAILURE#-100123"), 1)
+                .get(5, TimeUnit.SECONDS));
+
+        assertFalse(keys.contains(first.getIdempotencyKey()));
+    }
+
+    private static Notification failure(String job) {
+        return new Notification(TOKEN, "-100123", "Build FAILURE\n\n" + job, "FAILURE", job);
+    }
+}
@@ -0,0 +1,555 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+import io.github.mbehenri.jenkins.telegramnotifier.Attachment;
+import io.github.mbehenri.jenkins.telegramnotifier.FormattedMessage;
+import io.github.mbehenri.jenkins.telegramnotifier.MessageEntities;
+import io.github.mbehenri.jenkins.telegramnotifier.ParseMode;
+import io.github.mbehenri.jenkins.telegramnotifier.SendResult;
+import io.github.mbehenri.jenkins.telegramnotifier.TelegramSender;
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour NotificationDispatcher.
+ *
+ * Le sender est remplacé par une version scriptée qui retourne une suite de résultats,
+ * sans aucun appel réseau. Ces tests vérifient:
+ * - La livraison immédiate en cas de succès
+ * - Les nouvelles tentatives planifiées après un échec transitoire
+ * - L'abandon après un échec définitif ou trop de tentatives
+ * - L'acquittement dans l'outbox des seules notifications livrées ou définitivement refusées
+ * - Le report des envois tant que le circuit breaker du bot est ouvert
+ * - La nouvelle livraison, sans redémarrage, des notifications abandonnées pendant une panne,
+ *   dès la fermeture du circuit
+ * - L'envoi ordonné des parties d'un message long, sans entremêlement dans le chat
+ * - L'envoi du fichier joint après le message
+ * - La borne de la file de livraison et le déchargement dans l'outbox
+ * - Le passage des FAILURE devant les SUCCESS en attente quand la livraison est saturée
+ * - La suppression des doublons de même clé d'idempotence, en cours ou déjà livrés
+ * - Le budget de temps restant transmis à chaque envoi
+ * - L'identifiant du message posté, et la modification d'un message existant en un seul message
+ */
+public class NotificationDispatcherTest {
+
+    private static final String TOKEN = "123456:ABC-DEF1234ghIkl-zyx57W2v1u123ew11";
+
+    private ScheduledExecutorService scheduler;
+    private ScriptedSender sender;
+    private NotificationDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        sender = new ScriptedSender();
+        dispatcher = new NotificationDispatcher(sender, new TelegramRateLimiter(),
+                new RetryPolicy(3, 10, 50, 60_000), scheduler);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Test d'une livraison réussie du premier coup.
+     */
+    @Test
+    public void testDispatchSuccess() throws Exception {
+        sender.script(SendResult.fromResponse(200, "{\"ok\":true}"));
+
+        assertTrue(dispatcher.dispatch(new Notification(TOKEN, "1", "msg")).get(5, TimeUnit.SECONDS));
+        assertEquals(1, sender.calls.get());
+    }
+
+    /**
+     * Test des nouvelles tentatives après des échecs transitoires.
+     *
+     * Deux erreurs (503 puis erreur réseau) sont suivies d'un succès: la notification
+     * doit être livrée à la troisième tentative.
+     */
+    @Test
+    public void testTransientFailuresAreRetried() throws Exception {
+        sender.script(
+                SendResult.fromResponse(503, "Service Unavailable"),
+                SendResult.fromException(new IOException("Connection reset")),
+                SendResult.fromResponse(200, "{\"ok\":true}"));
+
+        // Chats différents à chaque test pour ne pas attendre le limiteur de débit
+        assertTrue(dispatcher.dispatch(new Notification(TOKEN, "2", "msg")).get(10, TimeUnit.SECONDS));
+        assertEquals(3, sender.calls.get());
+    }
+
+    /**
+     * Test qu'un échec définitif (400) n'est pas retenté.
+     */
+    @Test
+    public void testPermanentFailureIsNotRetried() throws Exception {
+        sender.script(SendResult.fromResponse(400, "{\"ok\":false,\"error_code\":400}"));
+
+        assertFalse(dispatcher.dispatch(new Notification(TOKEN, "3", "msg")).get(5, TimeUnit.SECONDS));
+        assertEquals(1, sender.calls.get());
+    }
+
+    /**
+     * Test d'un groupe devenu supergroupe.
+     *
+     * Telegram refuse l'envoi (400) en indiquant migrate_to_chat_id: la notification
+     * doit être renvoyée immédiatement au nouvel ID, sans attendre de délai de retry.
+     */
+    @Test
+    public void testMigratedChatIsRetriedWithNewId() throws Exception {
+        sender.script(SendResult.fromResponse(400, "{\"ok\":false,\"error_code\":400,"
+                + "\"description\":\"Bad Request: group chat was upgraded to a supergroup chat\","
+                + "\"parameters\":{\"migrate_to_chat_id\":-1001234567890}}"));
+
+        assertTrue(dispatcher.dispatch(new Notification(TOKEN, "-12345", "msg")).get(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("-12345", "-1001234567890"), sender.chats);
+    }
+
+    /**
+     * Test de l'abandon après le nombre maximal de tentatives (3 ici).
+     */
+    @Test
+    public void testGivesUpAfterMaxAttempts() throws Exception {
+        sender.script(
+                SendResult.fromResponse(500, ""),
+                SendResult.fromResponse(500, ""),
+                SendResult.fromResponse(500, ""),
+                SendResult.fromResponse(200, ""));
+
+        assertFalse(dispatcher.dispatch(new Notification(TOKEN, "4", "msg")).get(10, TimeUnit.SECONDS));
+        assertEquals(3, sender.calls.get());
+    }
+
+    /**
+     * Test que dispatch() ne bloque pas l'appelant pendant les tentatives.
+     */
+    @Test
+    public void testDispatchDoesNotBlockCaller() {
+        sender.script(SendResult.fromResponse(500, ""), SendResult.fromResponse(200, ""));
+        sender.delayFirstCall = true;
+
+        CompletableFuture<Boolean> future = dispatcher.dispatch(new Notification(TOKEN, "5", "msg"));
+
+        assertFalse(future.isDone());
+        sender.release.complete(null);
+        assertTrue(future.join());
+    }
+
+    /**
+     * Test de l'outbox: une notification livrée est acquittée, une notification abandonnée
+     * sur un échec transitoire reste en attente, et est rejouée au redémarrage.
+     */
+    @Test
+    public void testOutboxKeepsOnlyUndeliveredNotifications() throws Exception {
+        File directory = Files.createTempDirectory("outbox").toFile();
+        NotificationOutbox outbox = new NotificationOutbox(directory, scheduler, token -> token, token -> token);
+        NotificationDispatcher durable = new NotificationDispatcher(sender, new TelegramRateLimiter(),
+                new RetryPolicy(1, 10, 50, 60_000), scheduler, outbox);
+
+        sender.script(SendResult.fromResponse(200, ""), SendResult.fromResponse(503, ""));
+        assertTrue(durable.dispatch(new Notification(TOKEN, "6", "livrée")).get(5, TimeUnit.SECONDS));
+        assertFalse(durable.dispatch(new Notification(TOKEN, "7", "abandonnée")).get(5, TimeUnit.SECONDS));
+
+        assertEquals(1, outbox.getPendingCount());
+        outbox.close();
+
+        // Au redémarrage, la notification abandonnée est rejouée et livrée
+        NotificationOutbox reopened = new NotificationOutbox(directory, scheduler, token -> token, token -> token);
+        NotificationDispatcher restarted = new NotificationDispatcher(sender, new TelegramRateLimiter(),
+                new RetryPolicy(1, 10, 50, 60_000), scheduler, reopened);
+        assertEquals(1, restarted.replayOutbox());
+        reopened.close();
+
+        for (File file : directory.listFiles()) {
+            Files.deleteIfExists(file.toPath());
+        }
+        Files.deleteIfExists(directory.toPath());
+    }
+
+    /**
+     * Test du circuit breaker: tant que le circuit est ouvert, aucun envoi n'est tenté et la
+     * notification est signalée comme indisponible; elle part dès la fermeture du circuit.
+     */
+    @Test
+    public void testOpenCircuitDefersDelivery() throws Exception {
+        long[] now = {0};
+        TelegramCircuitBreaker breaker = new TelegramCircuitBreaker(() -> now[0]);
+        NotificationDispatcher guarded = new NotificationDispatcher(sender, new TelegramRateLimiter(),
+                new RetryPolicy(3, 10, 50, 60_000), scheduler, null, breaker);
+        for (int i = 0; i < 5; i++) {
+            breaker.record(TOKEN, SendResult.fromException(new IOException("Connection refused")), 10);
+        }
+
+        Notification notification = new Notification(TOKEN, "8", "msg");
+        assertTrue(guarded.isUnavailable(notification));
+
+        CompletableFuture<Boolean> future = guarded.dispatch(notification);
+        assertFalse(future.isDone());
+        assertEquals(0, sender.calls.get());
+
+        // La période d'ouverture écoulée, la prochaine vérification laisse passer la sonde
+        now[0] += 30_000;
+        assertFalse(guarded.isUnavailable(notification));
+    }
+
+    /**
+     * Test d'une panne plus longue que l'âge maximal des nouvelles tentatives: la notification abandonnée est
+     * mise de côté dans l'outbox, puis livrée après le rétablissement de l'API, sans redémarrage.
+     */
+    @Test
+    public void testNotificationAbandonedDuringOutageIsDeliveredAfterRecovery() throws Exception {
+        File directory = Files.createTempDirectory("outbox").toFile();
+        NotificationOutbox outbox = new NotificationOutbox(directory, scheduler, token -> token, token -> token);
+        long[] now = {0};
+        TelegramCircuitBreaker breaker = new TelegramCircuitBreaker(() -> now[0]);
+        NotificationDispatcher durable = new NotificationDispatcher(sender, new TelegramRateLimiter(),
+                new RetryPolicy(1, 10, 50, 1_000), scheduler, outbox, breaker);
+        for (int i = 0; i < 5; i++) {
+            breaker.record(TOKEN, SendResult.fromException(new IOException("Connection refused")), 10);
+        }
+
+        assertFalse(durable.dispatch(new Notification(TOKEN, "9", "pendant la panne")).get(5, TimeUnit.SECONDS));
+        assertEquals(0, sender.calls.get());
+        assertEquals(1, outbox.getPendingCount());
+        assertEquals(1, outbox.getParkedCount());
+
+        // API rétablie : la sonde du circuit semi-ouvert est la notification mise de côté
+        now[0] += 30_000;
+        assertEquals(1, durable.replayParked());
+        for (int i = 0; i < 50 && outbox.getPendingCount() > 0; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(Collections.singletonList("pendant la panne"), sender.sent);
+        assertEquals(0, outbox.getPendingCount());
+        assertEquals(0, durable.replayParked());
+        outbox.close();
+
+        for (File file : directory.listFiles()) {
+            Files.deleteIfExists(file.toPath());
+        }
+        Files.deleteIfExists(directory.toPath());
+    }
+
+    /**
+     * Test que la fermeture du circuit livre aussitôt les notifications mises de côté pendant la panne:
+     * le premier envoi réussi après la panne suffit, sans attendre la nouvelle livraison périodique.
+     */
+    @Test
+    public void testCircuitRecoveryDrainsParkedNotifications() throws Exception {
+        File directory = Files.createTempDirectory("outbox").toFile();
+        NotificationOutbox outbox = new NotificationOutbox(directory, scheduler, token -> token, token -> token);
+        long[] now = {0};
+        TelegramCircuitBreaker breaker = new TelegramCircuitBreaker(() -> now[0]);
+        NotificationDispatcher durable = new NotificationDispatcher(sender, new TelegramRateLimiter(),
+                new RetryPolicy(1, 10, 50, 1_000), scheduler, outbox, breaker);
+        for (int i = 0; i < 5; i++) {
+            breaker.record(TOKEN, SendResult.fromException(new IOException("Connection refused")), 10);
+        }
+        assertFalse(durable.dispatch(new Notification(TOKEN, "10", "pendant la panne")).get(5, TimeUnit.SECONDS));
+        assertEquals(1, outbox.getParkedCount());
+
+        now[0] += 30_000;
+        assertTrue(durable.dispatch(new Notification(TOKEN, "11", "sonde")).get(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 50 && outbox.getPendingCount() > 0; i++) {
+            Thread.sleep(100);
+        }
+
+        assertEquals(TelegramCircuitBreaker.State.CLOSED, breaker.getState(TOKEN));
+        assertEquals(Arrays.asList("sonde", "pendant la panne"), sender.sent);
+        assertEquals(0, outbox.getPendingCount());
+        outbox.close();
+
+        for (File file : directory.listFiles()) {
+            Files.deleteIfExists(file.toPath());
+        }
+        Files.deleteIfExists(directory.toPath());
+    }
+
+    /**
+     * Test d'un message long: il est découpé en parties envoyées dans l'ordre, et la notification
+     * suivante du même chat ne part qu'après la dernière partie.
+     */
+    @Test
+    public void testLongMessageIsSentInOrderedParts() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("line ").append(i).append(" of a long failure excerpt\n");
+        }
+
+        CompletableFuture<Boolean> first = dispatcher.dispatch(new Notification(TOKEN, "-1009", text.toString()));
+        CompletableFuture<Boolean> second = dispatcher.dispatch(new Notification(TOKEN, "-1009", "next"));
+
+        assertTrue(first.get(10, TimeUnit.SECONDS));
+        assertTrue(second.get(10, TimeUnit.SECONDS));
+        assertEquals(3, sender.sent.size());
+        assertTrue(sender.sent.get(0).startsWith("line 0 "));
+        assertTrue(sender.sent.get(1).startsWith("line 1"));
+        assertEquals("next", sender.sent.get(2));
+    }
+
+    /**
+     * Test du fichier joint: il part après le message, dans la même file du chat.
+     */
+    @Test
+    public void testAttachmentIsSentAfterMessage() throws Exception {
+        Notification notification = new Notification(TOKEN, "10", "Build FAILURE")
+                .withAttachment(new Attachment("console-42.log", () -> new ByteArrayInputStream(new byte[0])));
+
+        assertTrue(dispatcher.dispatch(notification).get(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("Build FAILURE", "document:console-42.log"), sender.sent);
+    }
+
+    /**
+     * Test de la file bornée avec déchargement.
+     *
+     * Pendant qu'un envoi est bloqué, la file (capacité 1) est pleine: les notifications suivantes
+     * restent dans l'outbox sans être gardées en mémoire, puis partent dans l'ordre une fois la place libérée.
+     */
+    @Test
+    public void testFullQueueSpillsToOutbox() throws Exception {
+        File directory = Files.createTempDirectory("outbox").toFile();
+        NotificationOutbox outbox = new NotificationOutbox(directory, scheduler, token -> token, token -> token);
+        DispatchQueue queue = new DispatchQueue(1, DispatchQueue.OverflowPolicy.SPILL_TO_DISK, 1);
+        NotificationDispatcher bounded = new NotificationDispatcher(sender, new TelegramRateLimiter(),
+                new RetryPolicy(1, 10, 50, 60_000), scheduler, outbox, new TelegramCircuitBreaker(), queue);
+        sender.delayFirstCall = true;
+
+        CompletableFuture<Boolean> first = bounded.dispatch(new Notification(TOKEN, "11", "premier"));
+        CompletableFuture<Boolean> second = bounded.dispatch(new Notification(TOKEN, "12", "deuxième"));
+        CompletableFuture<Boolean> third = bounded.dispatch(new Notification(TOKEN, "13", "troisième"));
+
+        assertEquals(1, queue.getDepth());
+        assertEquals(2, queue.getSpilledCount());
+        assertEquals(3, outbox.getPendingCount());
+
+        sender.release.complete(null);
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+        assertTrue(third.get(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("premier", "deuxième", "troisième"), sender.sent);
+        assertEquals(0, outbox.getPendingCount());
+        assertEquals(0, queue.getDepth());
+
+        outbox.close();
+        for (File file : directory.listFiles()) {
+            Files.deleteIfExists(file.toPath());
+        }
+        Files.deleteIfExists(directory.toPath());
+    }
+
+    /**
+     * Test de la priorité quand la livraison est saturée.
+     *
+     * Une seule livraison à la fois pour le bot: pendant qu'elle est bloquée, un FAILURE
+     * arrivé après deux SUCCESS part avant eux.
+     */
+    @Test
+    public void testFailureJumpsQueuedSuccess() throws Exception {
+        DispatchQueue queue = new DispatchQueue(() -> 100, () -> DispatchQueue.OverflowPolicy.BLOCK, () -> 1, 1, 60_000);
+        NotificationDispatcher saturated = new NotificationDispatcher(sender, new TelegramRateLimiter(),
+                new RetryPolicy(1, 10, 50, 60_000), scheduler, null, new TelegramCircuitBreaker(), queue);
+        sender.delayFirstCall = true;
+
+        saturated.dispatch(new Notification(TOKEN, "20", "en cours", "SUCCESS", null));
+        saturated.dispatch(new Notification(TOKEN, "21", "succès 1", "SUCCESS", null));
+        saturated.dispatch(new Notification(TOKEN, "22", "succès 2", "SUCCESS", null));
+        CompletableFuture<Boolean> failure =
+                saturated.dispatch(new Notification(TOKEN, "23", "échec", "FAILURE", null));
+        assertEquals(1, queue.getRunningCount());
+
+        sender.release.complete(null);
+        assertTrue(failure.get(5, TimeUnit.SECONDS));
+        // Le limiteur de débit du bot peut différer les envois suivants, sans changer leur ordre
+        for (int i = 0; i < 50 && sender.sent.size() < 4; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(Arrays.asList("en cours", "échec", "succès 1", "succès 2"), sender.sent);
+    }
+
+    /**
+     * Test de l'idempotence: un doublon arrivant pendant la livraison partage son résultat,
+     * un doublon arrivant après la livraison n'est pas renvoyé; un échec n'empêche pas de réessayer.
+     */
+    @Test
+    public void testDuplicateIsDeliveredOnce() throws Exception {
+        sender.delayFirstCall = true;
+        Notification notification = new Notification(TOKEN, "1", "msg", "FAILURE", null)
+                .withIdempotencyKey(Notification.idempotencyKey("folder/job", 42, "FAILURE", "1"));
+
+        CompletableFuture<Boolean> first = dispatcher.dispatch(notification);
+        CompletableFuture<Boolean> concurrent = dispatcher.dispatch(notification);
+        sender.release.complete(null);
+
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(concurrent.get(5, TimeUnit.SECONDS));
+        assertTrue(dispatcher.dispatch(notification).get(5, TimeUnit.SECONDS));
+        assertEquals(1, sender.calls.get());
+
+        Notification failing = notification.withIdempotencyKey(Notification.idempotencyKey("folder/job", 43, "FAILURE", "1"));
+        sender.script(SendResult.fromResponse(400, ""));
+        assertFalse(dispatcher.dispatch(failing).get(5, TimeUnit.SECONDS));
+        assertTrue(dispatcher.dispatch(failing).get(5, TimeUnit.SECONDS));
+        assertEquals(3, sender.calls.get());
+    }
+
+    /**
+     * Test du budget: chaque envoi reçoit le temps restant avant l'âge maximal de la notification,
+     * qui diminue d'une tentative à l'autre.
+     */
+    @Test
+    public void testEachAttemptGetsRemainingBudget() throws Exception {
+        sender.script(SendResult.fromResponse(503, ""), SendResult.fromResponse(200, ""));
+
+        assertTrue(dispatcher.dispatch(new Notification(TOKEN, "1", "msg")).get(5, TimeUnit.SECONDS));
+        assertEquals(2, sender.budgets.size());
+        assertTrue(sender.budgets.get(0).toMillis() <= 60_000);
+        assertTrue(sender.budgets.get(0).toMillis() > 59_000);
+        assertTrue(sender.budgets.get(1).compareTo(sender.budgets.get(0)) < 0);
+    }
+
+    /**
+     * Test de post(): l'identifiant du message livré est retourné, et une notification portant
+     * un identifiant de message modifie ce message (editMessageText) au lieu d'en envoyer un nouveau.
+     * Un texte trop long pour un seul message est tronqué plutôt que découpé.
+     */
+    @Test
+    public void testPostReturnsMessageIdAndEditsInPlace() throws Exception {
+        sender.script(SendResult.fromResponse(200, "{\"ok\":true,\"result\":{\"message_id\":77}}"));
+        Notification notification = new Notification(TOKEN, "1", "started");
+
+        assertEquals(77L, (long) dispatcher.post(notification).get(5, TimeUnit.SECONDS));
+
+        StringBuilder longText = new StringBuilder();
+        while (longText.length() <= 2 * TelegramConfig.MAX_MESSAGE_LENGTH) {
+            longText.append("line\n");
+        }
+        sender.script(SendResult.fromResponse(200, "{\"ok\":true,\"result\":{\"message_id\":77}}"));
+        Notification edit = new Notification(TOKEN, "1", longText.toString()).withEditMessageId(77);
+        assertEquals(77L, (long) dispatcher.post(edit).get(5, TimeUnit.SECONDS));
+
+        assertEquals(2, sender.calls.get());
+        assertEquals(Arrays.asList(77L), sender.edited);
+        assertTrue(sender.sent.get(1).length() <= TelegramConfig.MAX_MESSAGE_LENGTH);
+
+        sender.script(SendResult.fromResponse(400, "{\"ok\":false,\"description\":\"Bad Request: message to edit not found\"}"));
+        assertEquals(-1L, (long) dispatcher.post(edit).get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Test que chaque partie d'un message découpé est envoyée avec le mode de mise en forme de la notification.
+     */
+    @Test
+    public void testParseModeIsForwardedToEachPart() throws Exception {
+        StringBuilder text = new StringBuilder();
+        while (text.length() <= TelegramConfig.MAX_MESSAGE_LENGTH) {
+            text.append("<b>line</b>\n");
+        }
+        Notification notification = new Notification(TOKEN, "1", text.toString()).withParseMode(ParseMode.HTML);
+
+        assertTrue(dispatcher.dispatch(notification).get(5, TimeUnit.SECONDS));
+
+        assertEquals(2, sender.calls.get());
+        assertEquals(Arrays.asList(ParseMode.HTML, ParseMode.HTML), sender.parseModes);
+    }
+
+    /**
+     * Test qu'un message en texte brut découpé garde ses entités : chaque partie reçoit celles de sa plage,
+     * repositionnées au début de la partie.
+     */
+    @Test
+    public void testEntitiesFollowEachPart() throws Exception {
+        FormattedMessage.Builder builder = new FormattedMessage.Builder(ParseMode.ENTITIES);
+        while (builder.length() <= TelegramConfig.MAX_MESSAGE_LENGTH) {
+            builder.appendBold("line").append("\n");
+        }
+        Notification notification = new Notification(TOKEN, "1", null)
+                .withParseMode(ParseMode.ENTITIES)
+                .withMessage(builder.build());
+
+        assertTrue(dispatcher.dispatch(notification).get(5, TimeUnit.SECONDS));
+
+        assertEquals(2, sender.calls.get());
+        for (int i = 0; i < 2; i++) {
+            MessageEntities entities = sender.entities.get(i);
+            assertEquals(MessageEntities.Type.BOLD, entities.getType(0));
+            assertEquals(0, entities.getOffset(0));
+            assertEquals(4, entities.getLength(0));
+            assertEquals(sender.sent.get(i).split("\n").length, entities.size());
+        }
+    }
+
+    /**
+     * Sender scripté qui retourne une suite de résultats prédéfinis, sans appel réseau.
+     */
+    private static class ScriptedSender extends TelegramSender {
+
+        private final Deque<SendResult> results = new ArrayDeque<>();
+        private final AtomicInteger calls = new AtomicInteger();
+        private final List<String> sent = new CopyOnWriteArrayList<>();
+        private final List<String> chats = new CopyOnWriteArrayList<>();
+        private final List<Duration> budgets = new CopyOnWriteArrayList<>();
+        private final List<Long> edited = new CopyOnWriteArrayList<>();
+        private final List<ParseMode> parseModes = new CopyOnWriteArrayList<>();
+        private final List<MessageEntities> entities = new CopyOnWriteArrayList<>();
+        private final CompletableFuture<Void> release = new CompletableFuture<>();
+        private volatile boolean delayFirstCall;
+
+        void script(SendResult... scripted) {
+            results.addAll(Arrays.asList(scripted));
+        }
+
+        @Override
+        public synchronized CompletableFuture<SendResult> sendAsync(String botToken, String chatId,
+                                                                   FormattedMessage message, ParseMode parseMode,
+                                                                   Duration budget) {
+            budgets.add(budget);
+            parseModes.add(parseMode);
+            entities.add(message.getEntities());
+            SendResult result = results.isEmpty() ? SendResult.fromResponse(200, "") : results.poll();
+            sent.add(message.getText());
+            chats.add(chatId);
+            if (calls.getAndIncrement() == 0 && delayFirstCall) {
+                return release.thenApply(ignored -> result);
+            }
+            return CompletableFuture.completedFuture(result);
+        }
+
+        @Override
+        public CompletableFuture<SendResult> editMessageTextAsync(String botToken, String chatId, long messageId,
+                                                                  FormattedMessage message, ParseMode parseMode,
+                                                                  Duration budget) {
+            edited.add(messageId);
+            return sendAsync(botToken, chatId, message, parseMode, budget);
+        }
+
+        @Override
+        public CompletableFuture<SendResult> sendDocumentAsync(String botToken, String chatId,
+                                                               Attachment attachment, String caption) {
+            calls.incrementAndGet();
+            sent.add("document:" + attachment.getFileName());
+            return CompletableFuture.completedFuture(SendResult.fromResponse(200, ""));
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+import io.github.mbehenri.jenkins.telegramnotifier.FormattedMessage;
+import io.github.mbehenri.jenkins.telegramnotifier.MessageEntities;
+import io.github.mbehenri.jenkins.telegramnotifier.ParseMode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour NotificationOutbox.
+ *
+ * Les tokens sont encodés en Base64 à la place de Secret, qui nécessite une instance Jenkins.
+ * Ces tests vérifient:
+ * - La relecture des notifications non acquittées après un redémarrage, une seule fois même après un ajout
+ * - La mise de côté des notifications abandonnées pendant une panne, rendues une fois pour une nouvelle livraison
+ * - L'ignorance d'un enregistrement tronqué par un arrêt brutal
+ * - La compaction des segments dont les notifications ont été livrées
+ * - L'absence du token en clair sur disque
+ * - La conservation des clés d'idempotence livrées après réouverture et rotation
+ */
+public class NotificationOutboxTest {
+
+    private static final String TOKEN = "123456:ABC-DEF1234ghIkl-zyx57W2v1u123ew11";
+
+    private File directory;
+    private ScheduledExecutorService scheduler;
+    private NotificationOutbox outbox;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("outbox").toFile();
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        outbox = newOutbox();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        outbox.close();
+        scheduler.shutdownNow();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+        Files.deleteIfExists(directory.toPath());
+    }
+
+    /**
+     * Test que seules les notifications non acquittées sont rejouées après réouverture.
+     */
+    @Test
+    public void testPendingNotificationsAreReplayed() throws Exception {
+        assertTrue(outbox.open().isEmpty());
+
+        long first = outbox.append(new Notification(TOKEN, "1", "premier"));
+        outbox.append(new Notification(TOKEN, "2", "deuxième"));
+        outbox.append(new Notification(TOKEN, "3", "troisième"));
+        outbox.ack(first);
+        outbox.close();
+
+        outbox = newOutbox();
+        List<NotificationOutbox.Entry> replayed = outbox.open();
+
+        assertEquals(2, replayed.size());
+        assertEquals("2", replayed.get(0).getNotification().getChatId());
+        assertEquals("deuxième", replayed.get(0).getNotification().getText());
+        assertEquals(TOKEN, replayed.get(0).getNotification().getBotToken());
+        assertEquals("3", replayed.get(1).getNotification().getChatId());
+    }
+
+    /**
+     * Test que les notifications relues sont rejouées même si un ajout a ouvert l'outbox avant le rejeu,
+     * une seule fois, et sans les notifications ajoutées depuis l'ouverture.
+     */
+    @Test
+    public void testReplayAfterAppendReturnsRecoveredEntriesOnce() throws Exception {
+        outbox.append(new Notification(TOKEN, "1", "avant redémarrage"));
+        outbox.close();
+
+        outbox = newOutbox();
+        long added = outbox.append(new Notification(TOKEN, "2", "après redémarrage"));
+        List<NotificationOutbox.Entry> replayed = outbox.open();
+
+        assertEquals(1, replayed.size());
+        assertEquals("avant redémarrage", replayed.get(0).getNotification().getText());
+        assertNotEquals(added, replayed.get(0).getId());
+        assertTrue(outbox.open().isEmpty());
+        assertEquals(2, outbox.getPendingCount());
+    }
+
+    /**
+     * Test des notifications mises de côté: déchargées de la mémoire, rendues une seule fois pour une nouvelle
+     * livraison, et rejouées au redémarrage si elles n'ont pas été acquittées entre-temps.
+     */
+    @Test
+    public void testParkedNotificationsAreTakenOnce() throws Exception {
+        outbox.open();
+        outbox.append(new Notification(TOKEN, "1", "livrée"));
+        long parked = outbox.append(new Notification(TOKEN, "2", "en panne"));
+        outbox.park(parked);
+
+        assertEquals(1, outbox.getParkedCount());
+        List<NotificationOutbox.Entry> taken = outbox.takeParked();
+        assertEquals(1, taken.size());
+        assertNull(taken.get(0).getNotification());
+        assertEquals("en panne", outbox.load(parked).getText());
+        assertTrue(outbox.takeParked().isEmpty());
+
+        outbox.park(parked);
+        outbox.close();
+        outbox = newOutbox();
+        assertEquals(2, outbox.open().size());
+        assertEquals(0, outbox.getParkedCount());
+    }
+
+    /**
+     * Test que les identifiants continuent après ceux déjà présents sur disque.
+     */
+    @Test
+    public void testIdsAreNotReusedAfterReopen() throws Exception {
+        long first = outbox.append(new Notification(TOKEN, "1", "msg"));
+        outbox.close();
+
+        outbox = newOutbox();
+        outbox.open();
+        long second = outbox.append(new Notification(TOKEN, "1", "msg"));
+
+        assertTrue(second > first);
+    }
+
+    /**
+     * Test qu'un enregistrement tronqué (arrêt pendant l'écriture) est ignoré sans perdre les précédents.
+     */
+    @Test
+    public void testTornRecordIsIgnored() throws Exception {
+        outbox.append(new Notification(TOKEN, "1", "msg"));
+        outbox.close();
+
+        File[] segments = directory.listFiles();
+        assertNotNull(segments);
+        assertEquals(1, segments.length);
+        Files.write(segments[0].toPath(), new byte[]{0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        outbox = newOutbox();
+        assertEquals(1, outbox.open().size());
+    }
+
+    /**
+     * Test de la compaction: les notifications livrées disparaissent des segments à la rotation,
+     * seules les notifications en attente sont recopiées.
+     */
+    @Test
+    public void testDeliveredSegmentsAreCompacted() throws Exception {
+        String text = new String(new char[4000]).replace('\0', 'x');
+        long kept = -1;
+        for (int i = 0; i < 1500; i++) {
+            long id = outbox.append(new Notification(TOKEN, String.valueOf(i), text));
+            if (i == 0) {
+                kept = id;
+            } else {
+                outbox.ack(id);
+            }
+        }
+
+        File[] segments = directory.listFiles();
+        assertNotNull(segments);
+        assertEquals(1, segments.length);
+        assertTrue(segments[0].length() < 4L * 1024 * 1024);
+        assertEquals(1, outbox.getPendingCount());
+        outbox.close();
+
+        outbox = newOutbox();
+        List<NotificationOutbox.Entry> replayed = outbox.open();
+        assertEquals(1, replayed.size());
+        assertEquals(kept, replayed.get(0).getId());
+    }
+
+    /**
+     * Test du déchargement: une notification déchargée ne garde que son emplacement en mémoire,
+     * et est relue sur disque à la demande, y compris après une rotation de segment.
+     */
+    @Test
+    public void testSpilledNotificationIsReloadedFromDisk() throws Exception {
+        long spilled = outbox.append(new Notification(TOKEN, "1", "déchargée"));
+        outbox.spill(spilled);
+
+        // Rotation: l'entrée déchargée est recopiée depuis l'ancien segment
+        String text = new String(new char[4000]).replace('\0', 'x');
+        for (int i = 0; i < 1500; i++) {
+            outbox.ack(outbox.append(new Notification(TOKEN, "2", text)));
+        }
+
+        Notification reloaded = outbox.load(spilled);
+        assertNotNull(reloaded);
+        assertEquals("1", reloaded.getChatId());
+        assertEquals("déchargée", reloaded.getText());
+        assertEquals(TOKEN, reloaded.getBotToken());
+
+        outbox.ack(spilled);
+        assertNull(outbox.load(spilled));
+    }
+
+    /**
+     * Test des clés d'idempotence: les clés livrées survivent à une rotation et à une réouverture,
+     * et le statut et la clé d'une notification en attente sont relus avec elle.
+     */
+    @Test
+    public void testDeliveredKeysSurviveRotationAndReopen() throws Exception {
+        outbox.markDelivered("job#1#FAILURE#1");
+        long pendingId = outbox.append(new Notification(TOKEN, "1", "msg", "UNSTABLE", null)
+                .withIdempotencyKey("job#2#UNSTABLE#1"));
+
+        String text = new String(new char[4000]).replace('\0', 'x');
+        for (int i = 0; i < 1500; i++) {
+            outbox.ack(outbox.append(new Notification(TOKEN, "2", text)));
+        }
+        assertTrue(outbox.isDelivered("job#1#FAILURE#1"));
+        outbox.close();
+
+        outbox = newOutbox();
+        List<NotificationOutbox.Entry> replayed = outbox.open();
+        assertTrue(outbox.isDelivered("job#1#FAILURE#1"));
+        assertFalse(outbox.isDelivered("job#2#UNSTABLE#1"));
+
+        assertEquals(1, replayed.size());
+        assertEquals(pendingId, replayed.get(0).getId());
+        assertEquals("UNSTABLE", replayed.get(0).getNotification().getStatus());
+        assertEquals("job#2#UNSTABLE#1", replayed.get(0).getNotification().getIdempotencyKey());
+    }
+
+    /**
+     * Test qu'une modification de message en attente est rejouée comme modification du même message.
+     */
+    @Test
+    public void testEditMessageIdIsReplayed() throws Exception {
+        outbox.append(new Notification(TOKEN, "1", "Build *SUCCESS*").withEditMessageId(77));
+        outbox.append(new Notification(TOKEN, "1", "nouveau message"));
+        outbox.close();
+
+        outbox = newOutbox();
+        List<NotificationOutbox.Entry> replayed = outbox.open();
+
+        assertEquals(2, replayed.size());
+        assertEquals(77, replayed.get(0).getNotification().getEditMessageId());
+        assertEquals(0, replayed.get(1).getNotification().getEditMessageId());
+    }
+
+    /**
+     * Test qu'une notification rejouée garde son mode de mise en forme (MarkdownV2, HTML, ...).
+     */
+    @Test
+    public void testParseModeIsReplayed() throws Exception {
+        outbox.append(new Notification(TOKEN, "1", "<b>Build</b> SUCCESS").withParseMode(ParseMode.HTML));
+        outbox.append(new Notification(TOKEN, "1", "Build *SUCCESS*"));
+        outbox.close();
+
+        outbox = newOutbox();
+        List<NotificationOutbox.Entry> replayed = outbox.open();
+
+        assertEquals(2, replayed.size());
+        assertEquals(ParseMode.HTML, replayed.get(0).getNotification().getParseMode());
+        assertEquals(ParseMode.MARKDOWN, replayed.get(1).getNotification().getParseMode());
+    }
+
+    /**
+     * Test qu'une notification en texte brut est rejouée avec ses entités, URL des liens comprise.
+     */
+    @Test
+    public void testEntitiesAreReplayed() throws Exception {
+        FormattedMessage message = new FormattedMessage.Builder(ParseMode.ENTITIES)
+                .append("Build ").appendBold("SUCCESS").append(' ').appendLink("#42", "http://jenkins/job/42/")
+                .build();
+        outbox.append(new Notification(TOKEN, "1", null).withParseMode(ParseMode.ENTITIES).withMessage(message));
+        outbox.close();
+
+        outbox = newOutbox();
+        Notification replayed = outbox.open().get(0).getNotification();
+
+        assertEquals(ParseMode.ENTITIES, replayed.getParseMode());
+        assertEquals("Build SUCCESS #42", replayed.getText());
+        MessageEntities entities = replayed.getEntities();
+        assertEquals(2, entities.size());
+        assertEquals(MessageEntities.Type.BOLD, entities.getType(0));
+        assertEquals(6, entities.getOffset(0));
+        assertEquals(7, entities.getLength(0));
+        assertNull(entities.getUrl(0));
+        assertEquals(MessageEntities.Type.TEXT_LINK, entities.getType(1));
+        assertEquals(14, entities.getOffset(1));
+        assertEquals("http://jenkins/job/42/", entities.getUrl(1));
+    }
+
+    /**
+     * Test que le token n'est jamais écrit en clair sur disque.
+     */
+    @Test
+    public void testTokenIsNotStoredInClear() throws Exception {
+        outbox.append(new Notification(TOKEN, "1", "msg"));
+        outbox.flush();
+
+        File[] segments = directory.listFiles();
+        assertNotNull(segments);
+        String content = new String(Files.readAllBytes(segments[0].toPath()), StandardCharsets.ISO_8859_1);
+        assertFalse(content.contains(TOKEN));
+    }
+
+    private NotificationOutbox newOutbox() {
+        return new NotificationOutbox(directory, scheduler,
+                token -> Base64.getEncoder().encodeToString(token.getBytes(StandardCharsets.UTF_8)),
+                encoded -> new String(Base64.getDecoder().decode(encoded), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+import io.github.mbehenri.jenkins.telegramnotifier.SendResult;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour RetryPolicy.
+ *
+ * Ces tests vérifient le calcul des délais entre tentatives:
+ * - retry_after imposé par Telegram en priorité
+ * - Backoff exponentiel avec gigue sinon
+ * - Abandon après le nombre maximal de tentatives ou l'âge maximal
+ */
+public class RetryPolicyTest {
+
+    private final RetryPolicy policy = new RetryPolicy(5, 1000, 8000, 60_000);
+
+    /**
+     * Test que retry_after est respecté, avec une gigue de 10% au plus.
+     */
+    @Test
+    public void testRetryAfterIsHonored() {
+        SendResult tooManyRequests = SendResult.fromResponse(429, "{\"parameters\":{\"retry_after\":3}}");
+
+        long delay = policy.nextDelayMillis(1, tooManyRequests, 0);
+
+        assertTrue(delay >= 3000);
+        assertTrue(delay <= 3300);
+    }
+
+    /**
+     * Test du backoff exponentiel: le délai double à chaque tentative, avec gigue
+     * dans la moitié supérieure de l'intervalle, et plafonne au délai maximal.
+     */
+    @Test
+    public void testExponentialBackoffWithJitter() {
+        SendResult serverError = SendResult.fromResponse(503, "Service Unavailable");
+
+        long first = policy.nextDelayMillis(1, serverError, 0);
+        assertTrue(first >= 500 && first <= 1000);
+
+        long third = policy.nextDelayMillis(3, serverError, 0);
+        assertTrue(third >= 2000 && third <= 4000);
+
+        long capped = policy.nextDelayMillis(4, serverError, 0);
+        assertTrue(capped >= 4000 && capped <= 8000);
+    }
+
+    /**
+     * Test de l'abandon après le nombre maximal de tentatives.
+     */
+    @Test
+    public void testGivesUpAfterMaxAttempts() {
+        SendResult networkError = SendResult.fromException(new IOException("Connection refused"));
+
+        assertTrue(policy.nextDelayMillis(4, networkError, 0) > 0);
+        assertEquals(-1, policy.nextDelayMillis(5, networkError, 0));
+    }
+
+    /**
+     * Test de l'abandon quand la notification devient trop ancienne.
+     */
+    @Test
+    public void testGivesUpAfterMaxAge() {
+        SendResult serverError = SendResult.fromResponse(500, "");
+
+        assertEquals(-1, policy.nextDelayMillis(1, serverError, 59_999));
+    }
+
+    /**
+     * Test qu'un échec définitif n'est jamais retenté.
+     */
+    @Test
+    public void testNonRetryableFailure() {
+        assertEquals(-1, policy.nextDelayMillis(1, SendResult.fromResponse(400, ""), 0));
+        assertEquals(-1, policy.nextDelayMillis(1, SendResult.fromResponse(200, ""), 0));
+    }
+}
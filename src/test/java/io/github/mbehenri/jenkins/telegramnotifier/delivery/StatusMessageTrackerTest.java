@@ -0,0 +1,179 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour StatusMessageTracker.
+ *
+ * La livraison est remplacée par une liste qui enregistre les notifications livrées et
+ * des futures complétés à la main. Ces tests vérifient:
+ * - La modification du message posté au démarrage, sans nouveau message
+ * - Une seule modification en cours par message, la plus récente remplaçant celles en attente
+ * - Le repli sur un nouveau message si le message n'a pas pu être posté ou modifié
+ * - L'arrêt du suivi après la dernière mise à jour
+ * - La fermeture sans modification d'un build dont le résultat n'est pas annoncé
+ */
+public class StatusMessageTrackerTest {
+
+    private static final String TOKEN = "123456:ABC-DEF1234ghIkl-zyx57W2v1u123ew11";
+
+    private List<Notification> delivered;
+    private List<CompletableFuture<Long>> results;
+    private StatusMessageTracker tracker;
+
+    @Before
+    public void setUp() {
+        delivered = new CopyOnWriteArrayList<>();
+        results = new CopyOnWriteArrayList<>();
+        tracker = new StatusMessageTracker(notification -> {
+            delivered.add(notification);
+            CompletableFuture<Long> result = new CompletableFuture<>();
+            results.add(result);
+            return result;
+        });
+    }
+
+    /**
+     * Test du cycle d'un build: le message de démarrage est posté, puis le résultat
+     * modifie ce même message; le build n'est plus suivi ensuite.
+     */
+    @Test
+    public void testUpdateEditsStartMessage() throws Exception {
+        CompletableFuture<Boolean> opened = tracker.open("job#1", message("started"));
+        results.get(0).complete(42L);
+        assertTrue(opened.get(5, TimeUnit.SECONDS));
+        assertEquals(1, tracker.getTrackedCount());
+
+        CompletableFuture<Boolean> updated = tracker.update("job#1", message("SUCCESS"), true);
+        assertEquals(0, tracker.getTrackedCount());
+        assertEquals(2, delivered.size());
+        assertEquals(42L, delivered.get(1).getEditMessageId());
+        assertEquals("SUCCESS", delivered.get(1).getText());
+
+        results.get(1).complete(42L);
+        assertTrue(updated.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Test qu'une mise à jour arrivée avant la fin du message de démarrage attend son identifiant.
+     */
+    @Test
+    public void testUpdateWaitsForStartMessage() throws Exception {
+        tracker.open("job#1", message("started"));
+        CompletableFuture<Boolean> updated = tracker.update("job#1", message("SUCCESS"), true);
+        assertEquals(1, delivered.size());
+
+        results.get(0).complete(42L);
+        assertEquals(2, delivered.size());
+        assertEquals(42L, delivered.get(1).getEditMessageId());
+
+        results.get(1).complete(42L);
+        assertTrue(updated.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Test du regroupement des modifications.
+     *
+     * Pendant qu'une modification est en cours, les mises à jour suivantes attendent; seule la plus
+     * récente est envoyée ensuite, et les appelants remplacés reçoivent son résultat.
+     */
+    @Test
+    public void testOneEditInFlightLatestWins() throws Exception {
+        tracker.open("job#1", message("started"));
+        results.get(0).complete(42L);
+
+        CompletableFuture<Boolean> first = tracker.update("job#1", message("step 1"), false);
+        CompletableFuture<Boolean> second = tracker.update("job#1", message("step 2"), false);
+        CompletableFuture<Boolean> third = tracker.update("job#1", message("step 3"), false);
+        assertEquals(2, delivered.size());
+        assertEquals("step 1", delivered.get(1).getText());
+
+        results.get(1).complete(42L);
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertEquals(3, delivered.size());
+        assertEquals("step 3", delivered.get(2).getText());
+        assertEquals(42L, delivered.get(2).getEditMessageId());
+        assertFalse(second.isDone());
+
+        results.get(2).complete(42L);
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+        assertTrue(third.get(5, TimeUnit.SECONDS));
+        assertEquals(3, delivered.size());
+    }
+
+    /**
+     * Test du repli: un message de démarrage non posté, ou un message qui ne peut plus être modifié
+     * (ex: supprimé du chat), est remplacé par un nouveau message, modifié ensuite.
+     */
+    @Test
+    public void testFallsBackToNewMessage() throws Exception {
+        tracker.open("job#1", message("started"));
+        results.get(0).complete(-1L);
+
+        CompletableFuture<Boolean> step = tracker.update("job#1", message("step 1"), false);
+        assertEquals(0, delivered.get(1).getEditMessageId());
+        results.get(1).complete(43L);
+        assertTrue(step.get(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Boolean> last = tracker.update("job#1", message("SUCCESS"), true);
+        assertEquals(43L, delivered.get(2).getEditMessageId());
+        results.get(2).complete(-1L);
+        assertEquals(0, delivered.get(3).getEditMessageId());
+        results.get(3).complete(44L);
+        assertTrue(last.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Test qu'un build sans message de démarrage (ex: option activée en cours de build) poste son résultat.
+     */
+    @Test
+    public void testUpdateWithoutOpenPostsMessage() throws Exception {
+        CompletableFuture<Boolean> updated = tracker.update("job#2", message("FAILURE"), true);
+        assertEquals(1, delivered.size());
+        assertEquals(0, delivered.get(0).getEditMessageId());
+
+        results.get(0).complete(50L);
+        assertTrue(updated.get(5, TimeUnit.SECONDS));
+        assertEquals(0, tracker.getTrackedCount());
+    }
+
+    /**
+     * Test de la fermeture d'un build dont le résultat n'est pas annoncé: le message de démarrage
+     * n'est pas modifié, et les autres builds restent suivis.
+     */
+    @Test
+    public void testCloseLeavesStartMessage() {
+        tracker.open("job#1", message("started"));
+        tracker.open("job#1", new Notification(TOKEN, "2", "started"));
+        tracker.open("job#10", message("started"));
+
+        tracker.close("job#1");
+
+        assertEquals(1, tracker.getTrackedCount());
+        assertEquals(3, delivered.size());
+    }
+
+    /**
+     * Test de l'indépendance des builds et des chats.
+     */
+    @Test
+    public void testMessagesAreTrackedPerBuildAndChat() {
+        tracker.open("job#1", message("started"));
+        tracker.open("job#2", message("started"));
+        tracker.open("job#1", new Notification(TOKEN, "2", "started"));
+
+        assertEquals(3, tracker.getTrackedCount());
+    }
+
+    private static Notification message(String text) {
+        return new Notification(TOKEN, "1", text);
+    }
+}
@@ -0,0 +1,141 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+import io.github.mbehenri.jenkins.telegramnotifier.SendResult;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour TelegramCircuitBreaker.
+ *
+ * Une horloge simulée permet de tester les transitions d'état sans attendre.
+ * Ces tests vérifient:
+ * - L'ouverture du circuit quand les échecs dépassent le seuil
+ * - Le refus des envois tant que le circuit est ouvert
+ * - La sonde unique du circuit semi-ouvert, qui le referme (signalé aux écouteurs) ou le rouvre
+ * - L'indépendance des circuits de bots différents
+ */
+public class TelegramCircuitBreakerTest {
+
+    private static final String TOKEN = "123456:ABC-DEF1234ghIkl-zyx57W2v1u123ew11";
+    private static final String OTHER_TOKEN = "654321:XYZ-DEF1234ghIkl-zyx57W2v1u123ew11";
+
+    private long now = 0;
+    private final TelegramCircuitBreaker breaker = new TelegramCircuitBreaker(() -> now);
+
+    /**
+     * Test qu'un circuit sain reste fermé.
+     */
+    @Test
+    public void testClosedWhenHealthy() {
+        for (int i = 0; i < 20; i++) {
+            assertEquals(0, breaker.blockedMillis(TOKEN));
+            breaker.record(TOKEN, SendResult.fromResponse(200, ""), 100);
+        }
+        assertEquals(TelegramCircuitBreaker.State.CLOSED, breaker.getState(TOKEN));
+    }
+
+    /**
+     * Test de l'ouverture du circuit après une série d'erreurs réseau, et du refus des envois.
+     */
+    @Test
+    public void testOpensOnFailures() {
+        tripBreaker();
+
+        assertEquals(TelegramCircuitBreaker.State.OPEN, breaker.getState(TOKEN));
+        assertEquals(30_000, breaker.blockedMillis(TOKEN));
+
+        now += 10_000;
+        assertEquals(20_000, breaker.blockedMillis(TOKEN));
+    }
+
+    /**
+     * Test qu'une série d'envois lents ouvre aussi le circuit.
+     */
+    @Test
+    public void testOpensOnSlowCalls() {
+        for (int i = 0; i < 5; i++) {
+            breaker.record(TOKEN, SendResult.fromResponse(200, ""), 15_000);
+        }
+        assertEquals(TelegramCircuitBreaker.State.OPEN, breaker.getState(TOKEN));
+    }
+
+    /**
+     * Test que les réponses 429 et les erreurs client n'ouvrent pas le circuit.
+     */
+    @Test
+    public void testRateLimitAndClientErrorsDoNotOpen() {
+        for (int i = 0; i < 10; i++) {
+            breaker.record(TOKEN, SendResult.fromResponse(429, ""), 100);
+            breaker.record(TOKEN, SendResult.fromResponse(400, ""), 100);
+        }
+        assertEquals(TelegramCircuitBreaker.State.CLOSED, breaker.getState(TOKEN));
+    }
+
+    /**
+     * Test du circuit semi-ouvert: une seule sonde, qui referme le circuit en cas de succès
+     * et le signale une fois aux écouteurs.
+     */
+    @Test
+    public void testHalfOpenProbeCloses() {
+        List<String> recovered = new ArrayList<>();
+        breaker.addRecoveryListener(recovered::add);
+        tripBreaker();
+        now += 30_000;
+
+        assertEquals(TelegramCircuitBreaker.State.HALF_OPEN, breaker.getState(TOKEN));
+        assertEquals(0, breaker.blockedMillis(TOKEN));
+        assertTrue(breaker.blockedMillis(TOKEN) > 0);
+
+        assertTrue(recovered.isEmpty());
+        breaker.record(TOKEN, SendResult.fromResponse(200, ""), 100);
+        assertEquals(TelegramCircuitBreaker.State.CLOSED, breaker.getState(TOKEN));
+        assertEquals(0, breaker.blockedMillis(TOKEN));
+        assertEquals(Collections.singletonList(TOKEN), recovered);
+
+        breaker.record(TOKEN, SendResult.fromResponse(200, ""), 100);
+        assertEquals(1, recovered.size());
+    }
+
+    /**
+     * Test qu'une sonde en échec rouvre le circuit pour une nouvelle période.
+     */
+    @Test
+    public void testHalfOpenProbeReopens() {
+        List<String> recovered = new ArrayList<>();
+        breaker.addRecoveryListener(recovered::add);
+        tripBreaker();
+        now += 30_000;
+
+        assertEquals(0, breaker.blockedMillis(TOKEN));
+        breaker.record(TOKEN, SendResult.fromException(new IOException("Connection refused")), 100);
+
+        assertEquals(TelegramCircuitBreaker.State.OPEN, breaker.getState(TOKEN));
+        assertEquals(30_000, breaker.blockedMillis(TOKEN));
+        assertTrue(recovered.isEmpty());
+    }
+
+    /**
+     * Test que la panne d'un bot n'affecte pas les autres bots.
+     */
+    @Test
+    public void testCircuitsArePerBot() {
+        tripBreaker();
+
+        assertEquals(0, breaker.blockedMillis(OTHER_TOKEN));
+        assertEquals(TelegramCircuitBreaker.State.CLOSED, breaker.getState(OTHER_TOKEN));
+        assertFalse(breaker.snapshot().keySet().iterator().next().contains(TOKEN));
+    }
+
+    private void tripBreaker() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, breaker.blockedMillis(TOKEN));
+            breaker.record(TOKEN, SendResult.fromException(new IOException("Connection timed out")), 100);
+        }
+    }
+}
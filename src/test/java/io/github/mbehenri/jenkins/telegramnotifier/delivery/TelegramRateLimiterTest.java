@@ -0,0 +1,176 @@
+package io.github.mbehenri.jenkins.telegramnotifier.delivery;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour TelegramRateLimiter.
+ *
+ * Ces tests vérifient que les limites documentées par Telegram sont respectées:
+ * - 30 messages/s pour un bot, tous chats confondus, y compris pour les envois différés par leur chat
+ * - 1 message/s vers un même chat privé
+ * - 20 messages/min vers un même groupe ou canal
+ *
+ * Une horloge contrôlée remplace System.nanoTime() pour rendre les tests déterministes.
+ * Le limiteur ne rejette jamais un envoi: il retourne le délai à respecter.
+ */
+public class TelegramRateLimiterTest {
+
+    private static final String TOKEN = "123456:ABC-DEF1234ghIkl-zyx57W2v1u123ew11";
+
+    private long now;
+    private TelegramRateLimiter limiter;
+
+    @Before
+    public void setUp() {
+        now = 0;
+        limiter = new TelegramRateLimiter(() -> now);
+    }
+
+    /**
+     * Test qu'un premier envoi vers un chat privé part immédiatement,
+     * et que le suivant est différé d'une seconde.
+     */
+    @Test
+    public void testPrivateChatIsLimitedToOneMessagePerSecond() {
+        assertEquals(0, limiter.reserve(TOKEN, "987654321"));
+        assertEquals(TimeUnit.SECONDS.toNanos(1), limiter.reserve(TOKEN, "987654321"));
+
+        // Les réservations suivantes obtiennent des créneaux successifs
+        assertEquals(TimeUnit.SECONDS.toNanos(2), limiter.reserve(TOKEN, "987654321"));
+    }
+
+    /**
+     * Test que les jetons se reconstituent avec le temps.
+     */
+    @Test
+    public void testPermitsRefillOverTime() {
+        assertEquals(0, limiter.reserve(TOKEN, "987654321"));
+
+        now += TimeUnit.SECONDS.toNanos(1);
+
+        assertEquals(0, limiter.reserve(TOKEN, "987654321"));
+    }
+
+    /**
+     * Test du profil groupe: 20 messages par minute, soit un message toutes les 3 secondes.
+     *
+     * Les groupes et canaux ont un ID négatif (ex: -1001234567890) ou un nom public (@channel).
+     */
+    @Test
+    public void testGroupChatIsLimitedToTwentyMessagesPerMinute() {
+        assertEquals(0, limiter.reserve(TOKEN, "-1001234567890"));
+        assertEquals(TimeUnit.SECONDS.toNanos(3), limiter.reserve(TOKEN, "-1001234567890"));
+
+        now += TimeUnit.SECONDS.toNanos(1);
+        assertEquals(0, limiter.reserve(TOKEN, "@my_channel"));
+        assertEquals(TimeUnit.SECONDS.toNanos(3), limiter.reserve(TOKEN, "@my_channel"));
+    }
+
+    /**
+     * Test que des chats différents ne se pénalisent pas entre eux: un second chat n'attend que
+     * le créneau suivant du bot (1/30 s), pas la seconde imposée au premier chat.
+     */
+    @Test
+    public void testChatsAreIndependent() {
+        assertEquals(0, limiter.reserve(TOKEN, "111"));
+        assertTrue(limiter.reserve(TOKEN, "222") <= TimeUnit.SECONDS.toNanos(1) / 30 + 1);
+        assertEquals(0, limiter.reserve("654321:other-bot", "111"));
+    }
+
+    /**
+     * Test de la limite globale du bot: les envois vers des chats différents sont espacés de 1/30 s,
+     * le 31e part une seconde après le premier.
+     */
+    @Test
+    public void testBotIsLimitedToThirtyMessagesPerSecond() {
+        assertEquals(0, limiter.reserve(TOKEN, "1000"));
+        for (int i = 1; i < 30; i++) {
+            long delay = limiter.reserve(TOKEN, String.valueOf(1000 + i));
+            assertTrue(delay > 0);
+            assertTrue(delay < TimeUnit.SECONDS.toNanos(1));
+        }
+
+        assertTrue(limiter.reserve(TOKEN, "2000") >= TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Test des envois différés par leur chat (fan-out vers 100 groupes, deux messages chacun):
+     * le créneau du bot est pris à l'instant où le chat laisse partir l'envoi, si bien que les envois
+     * différés ne se retrouvent pas groupés. Aucune seconde glissante ne compte plus de 30 envois.
+     */
+    @Test
+    public void testDeferredSendsNeverExceedBotLimit() {
+        List<Long> sendTimes = new ArrayList<>();
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 100; i++) {
+                sendTimes.add(now + limiter.reserve(TOKEN, String.valueOf(-1000 - i)));
+            }
+        }
+        Collections.sort(sendTimes);
+
+        for (int i = 0; i + 30 < sendTimes.size(); i++) {
+            assertTrue("31 sends within 1 s from " + sendTimes.get(i),
+                    sendTimes.get(i + 30) - sendTimes.get(i) >= TimeUnit.SECONDS.toNanos(1));
+        }
+
+        // Un créneau réservé pour plus tard ne retarde pas un envoi immédiat vers un autre chat
+        now = TimeUnit.SECONDS.toNanos(20);
+        limiter.reserve(TOKEN, "-1");
+        assertTrue(limiter.reserve(TOKEN, "-1") >= TimeUnit.SECONDS.toNanos(3));
+        assertTrue(limiter.reserve(TOKEN, "111") < TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Test de la supervision des jetons disponibles.
+     *
+     * Un solde négatif signale des envois déjà en attente.
+     */
+    @Test
+    public void testAvailablePermits() {
+        assertEquals(1, limiter.getAvailablePermits(TOKEN), 0.001);
+        assertEquals(1, limiter.getAvailablePermits(TOKEN, "987654321"), 0.001);
+
+        limiter.reserve(TOKEN, "987654321");
+        limiter.reserve(TOKEN, "987654321");
+
+        assertEquals(-1, limiter.getAvailablePermits(TOKEN), 0.001);
+        assertEquals(-1, limiter.getAvailablePermits(TOKEN, "987654321"), 0.001);
+    }
+
+    /**
+     * Test que la photographie de supervision n'expose jamais le token complet du bot.
+     *
+     * Seul l'identifiant public du bot (avant ':') apparaît dans les clés.
+     */
+    @Test
+    public void testSnapshotDoesNotExposeToken() {
+        limiter.reserve(TOKEN, "987654321");
+
+        Map<String, Double> snapshot = limiter.snapshot();
+
+        assertTrue(snapshot.containsKey("bot:123456"));
+        assertTrue(snapshot.containsKey("chat:123456/987654321"));
+        for (String key : snapshot.keySet()) {
+            assertFalse(key.contains("ABC-DEF"));
+        }
+    }
+
+    /**
+     * Test de la détection du type de chat.
+     */
+    @Test
+    public void testIsGroupChat() {
+        assertTrue(TelegramRateLimiter.isGroupChat("-1001234567890"));
+        assertTrue(TelegramRateLimiter.isGroupChat("@my_channel"));
+        assertFalse(TelegramRateLimiter.isGroupChat("987654321"));
+    }
+}
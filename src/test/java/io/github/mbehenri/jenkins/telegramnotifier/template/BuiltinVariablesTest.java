@@ -0,0 +1,123 @@
+package io.github.mbehenri.jenkins.telegramnotifier.template;
+
+import hudson.EnvVars;
+import hudson.model.AbstractBuild;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersAction;
+import hudson.model.TaskListener;
+import hudson.model.User;
+import hudson.scm.ChangeLogSet;
+import hudson.tasks.test.AbstractTestResultAction;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitaires pour les variables fournies par le plugin.
+ *
+ * Utilise Mockito pour mocker le build Jenkins. Ces tests vérifient:
+ * - ${PARAM:x}: valeur d'un paramètre, jamais celle d'un paramètre sensible
+ * - ${ENV:x}: variable d'environnement, jamais celle d'un paramètre sensible
+ * - ${TEST_FAILED_COUNT}: indisponible sans résultats de tests
+ * - ${CHANGES}: une ligne par changement, limitée
+ */
+public class BuiltinVariablesTest {
+
+    private AbstractBuild<?, ?> build;
+
+    @Before
+    public void setUp() {
+        build = mock(AbstractBuild.class);
+    }
+
+    /**
+     * Test de ${PARAM:x}: un paramètre absent ou sensible (mot de passe) n'est pas rendu.
+     */
+    @Test
+    public void testParameter() {
+        ParametersAction parameters = mock(ParametersAction.class);
+        ParameterValue version = mock(ParameterValue.class);
+        when(version.getValue()).thenReturn("1.2.0");
+        ParameterValue password = mock(ParameterValue.class);
+        when(password.getValue()).thenReturn("secret");
+        when(password.isSensitive()).thenReturn(true);
+        when(parameters.getParameter("VERSION")).thenReturn(version);
+        when(parameters.getParameter("PASSWORD")).thenReturn(password);
+        when(build.getAction(ParametersAction.class)).thenReturn(parameters);
+
+        BuiltinVariables.Parameter variable = new BuiltinVariables.Parameter();
+        assertTrue(variable.isParameterized());
+        assertEquals("1.2.0", variable.resolve(build, "VERSION"));
+        assertNull(variable.resolve(build, "PASSWORD"));
+        assertNull(variable.resolve(build, "MISSING"));
+    }
+
+    /**
+     * Test de ${ENV:x}: un paramètre mot de passe, présent en clair dans l'environnement, n'est pas rendu.
+     */
+    @Test
+    public void testEnvironmentHidesSensitiveVariables() throws Exception {
+        EnvVars environment = new EnvVars("GIT_BRANCH", "main", "DEPLOY_PASSWORD", "secret");
+        when(build.getEnvironment(TaskListener.NULL)).thenReturn(environment);
+        when(build.getSensitiveBuildVariables()).thenReturn(Collections.singleton("DEPLOY_PASSWORD"));
+
+        BuiltinVariables.Environment variable = new BuiltinVariables.Environment();
+        assertTrue(variable.isParameterized());
+        assertEquals("main", variable.resolve(build, "GIT_BRANCH"));
+        assertNull(variable.resolve(build, "DEPLOY_PASSWORD"));
+        assertNull(variable.resolve(build, "MISSING"));
+    }
+
+    /**
+     * Test de ${TEST_FAILED_COUNT}.
+     */
+    @Test
+    public void testTestFailedCount() {
+        BuiltinVariables.TestFailedCount variable = new BuiltinVariables.TestFailedCount();
+        assertNull(variable.resolve(build, null));
+
+        AbstractTestResultAction<?> tests = mock(AbstractTestResultAction.class);
+        when(tests.getFailCount()).thenReturn(3);
+        doReturn(tests).when(build).getAction(AbstractTestResultAction.class);
+
+        assertEquals("3", variable.resolve(build, null));
+    }
+
+    /**
+     * Test de ${CHANGES}: première ligne de chaque message et auteur, puis "... and N more".
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testChanges() {
+        BuiltinVariables.Changes variable = new BuiltinVariables.Changes();
+        ChangeLogSet<ChangeLogSet.Entry> changes = mock(ChangeLogSet.class);
+        when(changes.isEmptySet()).thenReturn(true);
+        doReturn(changes).when(build).getChangeSet();
+        assertEquals("No changes", variable.resolve(build, null));
+
+        User author = mock(User.class);
+        when(author.getFullName()).thenReturn("Alice");
+        List<ChangeLogSet.Entry> entries = new ArrayList<>();
+        for (int i = 1; i <= 12; i++) {
+            ChangeLogSet.Entry entry = mock(ChangeLogSet.Entry.class);
+            when(entry.getMsg()).thenReturn("Fix #" + i + "\n\nDetails");
+            when(entry.getAuthor()).thenReturn(author);
+            entries.add(entry);
+        }
+        when(changes.isEmptySet()).thenReturn(false);
+        when(changes.iterator()).thenReturn(entries.iterator());
+
+        String rendered = variable.resolve(build, null);
+
+        assertTrue(rendered.startsWith("- Fix #1 (Alice)\n- Fix #2 (Alice)\n"));
+        assertTrue(rendered.contains("- Fix #10 (Alice)"));
+        assertFalse(rendered.contains("Fix #11"));
+        assertTrue(rendered.endsWith("\n... and 2 more"));
+    }
+}
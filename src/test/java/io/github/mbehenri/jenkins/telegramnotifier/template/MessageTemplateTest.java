@@ -0,0 +1,101 @@
+package io.github.mbehenri.jenkins.telegramnotifier.template;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour MessageTemplate.
+ *
+ * Ces tests vérifient:
+ * - Le découpage du template en littéraux et variables
+ * - Le rendu en une seule passe, qui ne résout que les variables présentes
+ * - Le rendu tel quel des variables inconnues et des accolades non fermées
+ * - La liste des variables inconnues, utilisée par la validation du formulaire
+ */
+public class MessageTemplateTest {
+
+    /**
+     * Test du rendu d'un template avec plusieurs variables, dont une répétée.
+     */
+    @Test
+    public void testRenderReplacesVariables() {
+        MessageTemplate template = MessageTemplate.compile("Job ${JOB_NAME} #${BUILD_NUMBER}: ${BUILD_STATUS} (${JOB_NAME})");
+
+        String rendered = template.render(name -> "JOB_NAME".equals(name) ? "my-job"
+                : "BUILD_NUMBER".equals(name) ? "42" : "FAILURE");
+
+        assertEquals("Job my-job #42: FAILURE (my-job)", rendered);
+        assertEquals(new LinkedHashSet<>(Arrays.asList("JOB_NAME", "BUILD_NUMBER", "BUILD_STATUS")),
+                template.getVariables());
+    }
+
+    /**
+     * Test que seules les variables du template sont résolues.
+     */
+    @Test
+    public void testOnlyReferencedVariablesAreResolved() {
+        List<String> resolved = new ArrayList<>();
+
+        MessageTemplate.compile("${JOB_NAME} failed").render(name -> {
+            resolved.add(name);
+            return "my-job";
+        });
+
+        assertEquals(Collections.singletonList("JOB_NAME"), resolved);
+    }
+
+    /**
+     * Test qu'un template sans variable est rendu sans appel au résolveur.
+     */
+    @Test
+    public void testLiteralTemplate() {
+        MessageTemplate template = MessageTemplate.compile("Nothing to replace: $ { } $}");
+
+        assertEquals("Nothing to replace: $ { } $}", template.render(name -> {
+            throw new AssertionError(name);
+        }));
+        assertTrue(template.getVariables().isEmpty());
+        assertFalse(template.isBlank());
+    }
+
+    /**
+     * Test des cas limites: variable inconnue, accolade non fermée, variable vide, variables imbriquées.
+     */
+    @Test
+    public void testMalformedAndUnknownVariablesAreKept() {
+        assertEquals("${UNKNOWN} x", MessageTemplate.compile("${UNKNOWN} ${X}").render(name -> "X".equals(name) ? "x" : null));
+        assertEquals("a ${JOB_NAME", MessageTemplate.compile("a ${JOB_NAME").render(name -> "v"));
+        assertEquals("${} v", MessageTemplate.compile("${} ${A}").render(name -> "v"));
+        assertEquals("${A v", MessageTemplate.compile("${A ${B}").render(name -> "B".equals(name) ? "v" : null));
+    }
+
+    /**
+     * Test des variables inconnues signalées à la validation.
+     */
+    @Test
+    public void testUnknownVariables() {
+        MessageTemplate template = MessageTemplate.compile("${JOB_NAME} ${BUILD_STAUTS} ${FOO} ${JOB_NAME}");
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList("BUILD_STAUTS", "FOO")),
+                template.getUnknownVariables(Arrays.asList("JOB_NAME", "BUILD_STATUS")));
+    }
+
+    /**
+     * Test des templates vides.
+     */
+    @Test
+    public void testBlankTemplate() {
+        assertTrue(MessageTemplate.compile(null).isBlank());
+        assertTrue(MessageTemplate.compile("").isBlank());
+        assertTrue(MessageTemplate.compile("  \n").isBlank());
+        assertFalse(MessageTemplate.compile("${JOB_NAME}").isBlank());
+        assertEquals("", MessageTemplate.compile(null).render(name -> "v"));
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.mbehenri.jenkins.telegramnotifier.template;
+
+import hudson.model.AbstractBuild;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour VariableRegistry.
+ *
+ * Ces tests vérifient:
+ * - La reconnaissance des variables simples et paramétrées (${PARAM:x})
+ * - La priorité de la première variable enregistrée sous un même nom
+ * - Le registre des variables du plugin, utilisé hors d'une instance Jenkins
+ */
+public class VariableRegistryTest {
+
+    /**
+     * Test des références simples et paramétrées.
+     */
+    @Test
+    public void testFindReferences() {
+        VariableRegistry registry = new VariableRegistry(BuiltinVariables.all());
+
+        assertEquals("JOB_NAME", registry.find("JOB_NAME").getName());
+        assertEquals("PARAM", registry.find("PARAM:version").getName());
+        assertEquals("ENV", registry.find("ENV:NODE_NAME").getName());
+        assertEquals("version", VariableRegistry.argument("PARAM:version"));
+        assertEquals("a:b", VariableRegistry.argument("ENV:a:b"));
+        assertNull(VariableRegistry.argument("JOB_NAME"));
+
+        // Une variable paramétrée sans argument, ou un argument donné à une variable simple, sont inconnus
+        assertNull(registry.find("PARAM"));
+        assertNull(registry.find("JOB_NAME:x"));
+        assertNull(registry.find("UNKNOWN"));
+        assertFalse(registry.isKnown(":x"));
+    }
+
+    /**
+     * Test de la priorité: pour un même nom, la première variable enregistrée l'emporte.
+     */
+    @Test
+    public void testFirstRegisteredWins() {
+        TelegramVariable custom = new TelegramVariable("JOB_NAME", TelegramVariable.Cost.CHEAP) {
+            @Override
+            public String resolve(AbstractBuild<?, ?> build, String argument) {
+                return "custom";
+            }
+        };
+
+        VariableRegistry registry = new VariableRegistry(Arrays.asList(custom, new BuiltinVariables.JobName()));
+
+        assertSame(custom, registry.find("JOB_NAME"));
+        assertEquals(1, registry.getNames().size());
+    }
+
+    /**
+     * Test du registre hors d'une instance Jenkins: les variables du plugin, avec leur coût.
+     */
+    @Test
+    public void testBuiltinRegistry() {
+        VariableRegistry registry = VariableRegistry.get();
+
+        assertEquals(Arrays.asList("BUILD_STATUS", "JOB_NAME", "BUILD_NUMBER", "BUILD_DURATION", "BUILD_URL",
+                "CAUSE", "GIT_COMMIT", "PARAM", "ENV", "TEST_FAILED_COUNT", "CHANGES"),
+                Arrays.asList(registry.getNames().toArray()));
+        assertEquals(TelegramVariable.Cost.CHEAP, registry.find("BUILD_URL").getCost());
+        assertEquals(TelegramVariable.Cost.IO, registry.find("GIT_COMMIT").getCost());
+        assertEquals(TelegramVariable.Cost.EXPENSIVE, registry.find("CHANGES").getCost());
+        assertEquals(0, registry.find("JOB_NAME").getTimeoutMillis());
+        assertTrue(registry.find("CHANGES").getTimeoutMillis() > registry.find("ENV:X").getTimeoutMillis());
+    }
+}
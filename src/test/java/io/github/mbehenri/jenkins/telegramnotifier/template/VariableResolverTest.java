@@ -0,0 +1,189 @@
+package io.github.mbehenri.jenkins.telegramnotifier.template;
+
+import hudson.model.AbstractBuild;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour VariableResolver.
+ *
+ * Les variables comptent leurs appels, sans build Jenkins. Ces tests vérifient:
+ * - Qu'un template ne calcule que les variables qu'il utilise
+ * - Qu'une variable n'est calculée qu'une fois par rendu, même répétée ou indisponible
+ * - Le rendu tel quel des variables inconnues, et N/A pour les variables indisponibles
+ * - Le calcul en parallèle des variables coûteuses et le respect de leur budget de temps
+ * - Les variables paramétrées (${PARAM:x})
+ */
+public class VariableResolverTest {
+
+    private Map<String, AtomicInteger> calls;
+    private List<TelegramVariable> variables;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        calls = new LinkedHashMap<>();
+        variables = new ArrayList<>();
+        executor = Executors.newCachedThreadPool();
+        variable("JOB_NAME", "my-job", TelegramVariable.Cost.CHEAP, 0, 0);
+        variable("BUILD_URL", "http://jenkins/job/my-job/1/", TelegramVariable.Cost.CHEAP, 0, 0);
+        variable("CAUSE", "Started by timer", TelegramVariable.Cost.CHEAP, 0, 0);
+        variable("MISSING", null, TelegramVariable.Cost.CHEAP, 0, 0);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Test qu'un template comme "${JOB_NAME} failed" ne touche que le nom du job.
+     */
+    @Test
+    public void testOnlyUsedVariablesAreComputed() {
+        String rendered = MessageTemplate.compile("${JOB_NAME} failed").render(resolver());
+
+        assertEquals("my-job failed", rendered);
+        assertEquals(1, calls.get("JOB_NAME").get());
+        assertEquals(0, calls.get("BUILD_URL").get());
+        assertEquals(0, calls.get("CAUSE").get());
+    }
+
+    /**
+     * Test de la mémorisation: une variable répétée, ou déjà demandée par l'en-tête du message,
+     * n'est calculée qu'une fois; une valeur indisponible aussi, rendue N/A.
+     */
+    @Test
+    public void testValuesAreMemoizedPerRender() {
+        VariableResolver resolver = resolver();
+        assertEquals("http://jenkins/job/my-job/1/", resolver.apply("BUILD_URL"));
+
+        String rendered = MessageTemplate.compile("${BUILD_URL} ${BUILD_URL} ${MISSING} ${MISSING}").render(resolver);
+
+        assertEquals("http://jenkins/job/my-job/1/ http://jenkins/job/my-job/1/ N/A N/A", rendered);
+        assertEquals(1, calls.get("BUILD_URL").get());
+        assertEquals(1, calls.get("MISSING").get());
+
+        // Un nouveau rendu recalcule les valeurs
+        resolver().apply("BUILD_URL");
+        assertEquals(2, calls.get("BUILD_URL").get());
+    }
+
+    /**
+     * Test qu'une variable inconnue est laissée telle quelle.
+     */
+    @Test
+    public void testUnknownVariable() {
+        VariableResolver resolver = resolver();
+
+        assertNull(resolver.apply("UNKNOWN"));
+        assertEquals("${UNKNOWN}", MessageTemplate.compile("${UNKNOWN}").render(resolver));
+    }
+
+    /**
+     * Test du calcul en parallèle: deux variables coûteuses de 300 ms chacune sont prêtes
+     * en moins de 600 ms, et ne sont calculées qu'une fois.
+     */
+    @Test
+    public void testExpensiveVariablesAreResolvedConcurrently() {
+        variable("CHANGES", "- fix", TelegramVariable.Cost.EXPENSIVE, 300, 5_000);
+        variable("TEST_FAILED_COUNT", "3", TelegramVariable.Cost.IO, 300, 5_000);
+        MessageTemplate template = MessageTemplate.compile("${CHANGES} / ${TEST_FAILED_COUNT} failed");
+
+        long start = System.nanoTime();
+        String rendered = template.render(resolver().prefetch(template.getVariables()));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals("- fix / 3 failed", rendered);
+        assertTrue("elapsed " + elapsed + " ms", elapsed < 550);
+        assertEquals(1, calls.get("CHANGES").get());
+        assertEquals(1, calls.get("TEST_FAILED_COUNT").get());
+    }
+
+    /**
+     * Test du budget de temps: une variable trop lente est rendue N/A à l'échéance,
+     * sans retarder le message jusqu'à la fin de son calcul.
+     */
+    @Test
+    public void testSlowVariableIsCutAtBudget() {
+        variable("CHANGES", "- fix", TelegramVariable.Cost.EXPENSIVE, 5_000, 100);
+
+        long start = System.nanoTime();
+        String rendered = MessageTemplate.compile("Changes: ${CHANGES}").render(resolver());
+
+        assertEquals("Changes: N/A", rendered);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2_000);
+    }
+
+    /**
+     * Test des variables paramétrées: l'argument est transmis, chaque argument est une référence distincte.
+     */
+    @Test
+    public void testParameterizedVariable() {
+        variables.add(new TelegramVariable("PARAM", TelegramVariable.Cost.CHEAP) {
+            @Override
+            public boolean isParameterized() {
+                return true;
+            }
+
+            @Override
+            public String resolve(AbstractBuild<?, ?> build, String argument) {
+                return argument.toUpperCase();
+            }
+        });
+
+        String rendered = MessageTemplate.compile("${PARAM:version} ${PARAM:env} ${PARAM}").render(resolver());
+
+        assertEquals("VERSION ENV ${PARAM}", rendered);
+    }
+
+    /**
+     * Test qu'une erreur de calcul rend la variable indisponible sans faire échouer le rendu.
+     */
+    @Test
+    public void testFailingVariableIsUnavailable() {
+        variables.add(new TelegramVariable("GIT_COMMIT", TelegramVariable.Cost.IO) {
+            @Override
+            public String resolve(AbstractBuild<?, ?> build, String argument) throws Exception {
+                throw new IOException("workspace offline");
+            }
+        });
+
+        assertEquals("Commit N/A", MessageTemplate.compile("Commit ${GIT_COMMIT}").render(resolver()));
+    }
+
+    private VariableResolver resolver() {
+        return new VariableResolver(new VariableRegistry(variables), null, executor);
+    }
+
+    private void variable(String name, String value, TelegramVariable.Cost cost, long delayMillis, long timeoutMillis) {
+        AtomicInteger counter = new AtomicInteger();
+        calls.put(name, counter);
+        variables.add(new TelegramVariable(name, cost) {
+            @Override
+            public long getTimeoutMillis() {
+                return timeoutMillis;
+            }
+
+            @Override
+            public String resolve(AbstractBuild<?, ?> build, String argument) throws Exception {
+                counter.incrementAndGet();
+                Thread.sleep(delayMillis);
+                return value;
+            }
+        });
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.mbehenri.jenkins.telegramnotifier.transport;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour DeliveryExecutor.
+ *
+ * Ces tests vérifient:
+ * - Le choix des threads virtuels selon le runtime (repli plateforme en Java 17)
+ * - Le plafond de tâches simultanées imposé par le sémaphore
+ * - L'arrêt de l'executor
+ */
+public class DeliveryExecutorTest {
+
+    private DeliveryExecutor executor;
+
+    @After
+    public void tearDown() {
+        System.clearProperty(DeliveryExecutor.DISABLE_VIRTUAL_THREADS);
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test du choix des threads virtuels.
+     *
+     * Ils ne sont utilisés que si le runtime fournit Thread.ofVirtual() (Java 21+);
+     * sur Java 17 l'executor se replie sur le pool de threads plateforme.
+     */
+    @Test
+    public void testVirtualThreadsFollowRuntime() throws Exception {
+        boolean supported = Runtime.version().feature() >= 21;
+        executor = DeliveryExecutor.create(2, 8);
+
+        assertEquals(supported, executor.isVirtual());
+        assertEquals(supported, DeliveryExecutor.virtualThreadFactory() != null);
+
+        String name = executor.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+        assertTrue(name, name.startsWith("Telegram Notifier Delivery"));
+    }
+
+    /**
+     * Test de la propriété système désactivant les threads virtuels.
+     */
+    @Test
+    public void testVirtualThreadsCanBeDisabled() {
+        System.setProperty(DeliveryExecutor.DISABLE_VIRTUAL_THREADS, "true");
+        executor = DeliveryExecutor.create(2, 8);
+
+        assertFalse(executor.isVirtual());
+        assertEquals(2, executor.getAvailablePermits());
+    }
+
+    /**
+     * Test du plafond de concurrence.
+     *
+     * Même avec beaucoup de tâches soumises, jamais plus de maxConcurrency
+     * ne s'exécutent en même temps.
+     */
+    @Test
+    public void testConcurrencyIsCapped() throws Exception {
+        executor = DeliveryExecutor.create(3, 3);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(20);
+
+        for (int i = 0; i < 20; i++) {
+            executor.execute(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    running.decrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+
+        Thread.sleep(100);
+        assertEquals(3, running.get());
+        assertEquals(0, executor.getAvailablePermits());
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(3, peak.get());
+    }
+
+    /**
+     * Test de l'arrêt.
+     */
+    @Test
+    public void testShutdown() throws Exception {
+        executor = DeliveryExecutor.create(2, 8);
+        executor.shutdown();
+
+        assertTrue(executor.isShutdown());
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(executor.isTerminated());
+    }
+}
@@ -0,0 +1,115 @@
+package io.github.mbehenri.jenkins.telegramnotifier.transport;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour GzipCompressingInputStream.
+ *
+ * Ces tests vérifient:
+ * - Que le flux produit est un gzip valide, décompressable par GZIPInputStream
+ * - La compression d'un contenu vide
+ * - La compression d'un gros contenu généré à la volée, sans le matérialiser en mémoire
+ */
+public class GzipCompressingInputStreamTest {
+
+    /**
+     * Test d'un aller-retour compression / décompression.
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        byte[] content = "Started by user admin\nBuilding in workspace\nFinished: FAILURE\n"
+                .getBytes(StandardCharsets.UTF_8);
+
+        byte[] compressed = readAll(new GzipCompressingInputStream(new ByteArrayInputStream(content)));
+
+        assertEquals(0x1f, compressed[0] & 0xff);
+        assertEquals(0x8b, compressed[1] & 0xff);
+        assertArrayEquals(content, readAll(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    /**
+     * Test d'un contenu vide: le flux reste un gzip valide.
+     */
+    @Test
+    public void testEmptyContent() throws IOException {
+        byte[] compressed = readAll(new GzipCompressingInputStream(new ByteArrayInputStream(new byte[0])));
+
+        assertEquals(0, readAll(new GZIPInputStream(new ByteArrayInputStream(compressed))).length);
+    }
+
+    /**
+     * Test d'un log de 64 Mo généré à la volée et lu octet par octet côté décompression:
+     * la taille et le CRC sont vérifiés par GZIPInputStream en fin de flux.
+     */
+    @Test
+    public void testLargeStreamedContent() throws IOException {
+        long size = 64L * 1024 * 1024;
+        InputStream log = new GeneratedLog(size);
+
+        long decompressed = 0;
+        byte[] buffer = new byte[8192];
+        try (InputStream in = new GZIPInputStream(new GzipCompressingInputStream(log, 4096))) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                decompressed += n;
+            }
+        }
+
+        assertEquals(size, decompressed);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int n;
+            while ((n = input.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Flux simulant un log console de taille donnée, sans le stocker en mémoire.
+     */
+    private static class GeneratedLog extends InputStream {
+
+        private final byte[] line = "[INFO] Compiling module with 42 source files\n".getBytes(StandardCharsets.UTF_8);
+        private final long size;
+        private long position;
+
+        GeneratedLog(long size) {
+            this.size = size;
+        }
+
+        @Override
+        public int read() {
+            if (position >= size) {
+                return -1;
+            }
+            return line[(int) (position++ % line.length)];
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (position >= size) {
+                return -1;
+            }
+            int n = (int) Math.min(length, size - position);
+            for (int i = 0; i < n; i++) {
+                buffer[offset + i] = line[(int) (position++ % line.length)];
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package io.github.mbehenri.jenkins.telegramnotifier.transport;
+
+import org.junit.Test;
+
+import javax.net.ssl.SSLSession;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour HostConcurrencyLimiter.
+ *
+ * Les échanges HTTP sont simulés par des futures complétés à la main, ce qui permet
+ * d'observer précisément combien de requêtes sont lancées à chaque instant:
+ * - Une seule requête tant que le protocole de l'hôte est inconnu
+ * - La limite HTTP/2 (flux) ou HTTP/1.1 (connexions) une fois le protocole négocié
+ * - L'indépendance des hôtes
+ */
+public class HostConcurrencyLimiterTest {
+
+    private static final URI API = URI.create("https://api.telegram.org/bot1:A/sendMessage");
+    private static final URI LOCAL = URI.create("http://localhost:8081/bot1:A/sendMessage");
+
+    private final List<CompletableFuture<HttpResponse<String>>> pending = new ArrayList<>();
+    private final AtomicInteger started = new AtomicInteger();
+
+    /**
+     * Test du premier contact avec un hôte.
+     *
+     * Les requêtes attendent la première réponse au lieu d'ouvrir chacune leur connexion;
+     * une fois HTTP/2 négocié, elles partent toutes (dans la limite des flux).
+     */
+    @Test
+    public void testSingleRequestUntilProtocolIsKnown() {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(() -> 100, () -> 4);
+
+        List<CompletableFuture<HttpResponse<String>>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(limiter.submit(API, this::exchange));
+        }
+        assertEquals(1, started.get());
+        assertNull(limiter.getVersion(API));
+
+        pending.get(0).complete(new StubResponse(HttpClient.Version.HTTP_2));
+
+        assertTrue(results.get(0).isDone());
+        assertEquals(HttpClient.Version.HTTP_2, limiter.getVersion(API));
+        assertEquals(10, started.get());
+        assertEquals(9, limiter.getInFlight(API));
+    }
+
+    /**
+     * Test de la limite de flux HTTP/2.
+     */
+    @Test
+    public void testHttp2StreamLimit() {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(() -> 3, () -> 1);
+        negotiate(limiter, API, HttpClient.Version.HTTP_2);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.submit(API, this::exchange);
+        }
+        assertEquals(1 + 3, started.get());
+
+        // Chaque réponse libère un flux pour une requête en attente
+        pending.get(1).complete(new StubResponse(HttpClient.Version.HTTP_2));
+        assertEquals(1 + 4, started.get());
+        assertEquals(3, limiter.getInFlight(API));
+    }
+
+    /**
+     * Test du repli HTTP/1.1.
+     *
+     * Un serveur local en http:// ne négocie pas HTTP/2: la limite devient la taille
+     * du pool de connexions keep-alive.
+     */
+    @Test
+    public void testHttp1ConnectionPoolLimit() {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(() -> 100, () -> 2);
+        negotiate(limiter, LOCAL, HttpClient.Version.HTTP_1_1);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.submit(LOCAL, this::exchange);
+        }
+
+        assertEquals(1 + 2, started.get());
+        assertEquals(HttpClient.Version.HTTP_1_1, limiter.getVersion(LOCAL));
+    }
+
+    /**
+     * Test qu'une erreur réseau libère la place et est transmise telle quelle.
+     */
+    @Test
+    public void testFailureReleasesSlot() {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(() -> 100, () -> 4);
+
+        CompletableFuture<HttpResponse<String>> first = limiter.submit(API, this::exchange);
+        CompletableFuture<HttpResponse<String>> second = limiter.submit(API, this::exchange);
+        pending.get(0).completeExceptionally(new java.io.IOException("Connection refused"));
+
+        assertTrue(first.isCompletedExceptionally());
+        assertFalse(second.isDone());
+        assertEquals(2, started.get());
+        assertNull(limiter.getVersion(API));
+    }
+
+    /**
+     * Test que les hôtes sont limités indépendamment.
+     */
+    @Test
+    public void testHostsAreIndependent() {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(() -> 100, () -> 4);
+
+        limiter.submit(API, this::exchange);
+        limiter.submit(LOCAL, this::exchange);
+
+        assertEquals(2, started.get());
+        assertEquals(1, limiter.getInFlight(API));
+        assertEquals(1, limiter.getInFlight(LOCAL));
+    }
+
+    private void negotiate(HostConcurrencyLimiter limiter, URI target, HttpClient.Version version) {
+        limiter.submit(target, () -> CompletableFuture.completedFuture(new StubResponse(version)));
+        started.incrementAndGet();
+        pending.add(null);
+    }
+
+    private CompletableFuture<HttpResponse<String>> exchange() {
+        started.incrementAndGet();
+        CompletableFuture<HttpResponse<String>> response = new CompletableFuture<>();
+        pending.add(response);
+        return response;
+    }
+
+    private static final class StubResponse implements HttpResponse<String> {
+
+        private final HttpClient.Version version;
+
+        StubResponse(HttpClient.Version version) {
+            this.version = version;
+        }
+
+        @Override
+        public int statusCode() {
+            return 200;
+        }
+
+        @Override
+        public HttpRequest request() {
+            return null;
+        }
+
+        @Override
+        public Optional<HttpResponse<String>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return HttpHeaders.of(Collections.emptyMap(), (name, value) -> true);
+        }
+
+        @Override
+        public String body() {
+            return "{\"ok\":true}";
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return API;
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return version;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package io.github.mbehenri.jenkins.telegramnotifier.transport;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour JsonRequestEncoder.
+ *
+ * Ces tests vérifient:
+ * - L'assemblage des champs (séparateurs, champs null ignorés, fragments pré-encodés)
+ * - Les tableaux d'objets (entités d'un message)
+ * - L'échappement JSON et l'encodage UTF-8 réalisés en un seul passage
+ * - L'indépendance des corps produits successivement avec le tampon réutilisé
+ */
+public class JsonRequestEncoderTest {
+
+    private static final byte[] CHAT_ID = JsonRequestEncoder.key("chat_id");
+    private static final byte[] TEXT = JsonRequestEncoder.key("text");
+    private static final byte[] MESSAGE_ID = JsonRequestEncoder.key("message_id");
+    private static final byte[] PARSE_MODE = JsonRequestEncoder.constant("parse_mode", "Markdown");
+
+    /**
+     * Test de l'assemblage d'un corps sendMessage.
+     */
+    @Test
+    public void testFields() {
+        String body = encode(JsonRequestEncoder.get()
+                .field(CHAT_ID, "123456789")
+                .field(TEXT, "Build *SUCCESS*")
+                .raw(PARSE_MODE));
+
+        assertEquals("{\"chat_id\":\"123456789\",\"text\":\"Build *SUCCESS*\",\"parse_mode\":\"Markdown\"}", body);
+    }
+
+    /**
+     * Test des champs null et numériques.
+     *
+     * Un champ null est omis (pas de virgule orpheline); un nombre est écrit sans guillemets.
+     */
+    @Test
+    public void testNullAndNumericFields() {
+        String body = encode(JsonRequestEncoder.get()
+                .field(CHAT_ID, (String) null)
+                .field(MESSAGE_ID, 42)
+                .field(TEXT, null));
+
+        assertEquals("{\"message_id\":42}", body);
+        assertEquals("{}", encode(JsonRequestEncoder.get()));
+    }
+
+    /**
+     * Test d'un tableau d'objets: pas de virgule après l'ouverture du tableau ou d'un objet,
+     * un tableau vide reste valide.
+     */
+    @Test
+    public void testArrayOfObjects() {
+        byte[] entities = JsonRequestEncoder.key("entities");
+        byte[] offset = JsonRequestEncoder.key("offset");
+        byte[] bold = JsonRequestEncoder.constant("type", "bold");
+
+        String body = encode(JsonRequestEncoder.get()
+                .field(TEXT, "a b")
+                .beginArray(entities)
+                .beginObject().raw(bold).field(offset, 0).endObject()
+                .beginObject().raw(bold).field(offset, 2).endObject()
+                .endArray());
+
+        assertEquals("{\"text\":\"a b\",\"entities\":[{\"type\":\"bold\",\"offset\":0},"
+                + "{\"type\":\"bold\",\"offset\":2}]}", body);
+        assertEquals("{\"entities\":[]}", encode(JsonRequestEncoder.get().beginArray(entities).endArray()));
+    }
+
+    /**
+     * Test de l'échappement JSON.
+     *
+     * Guillemets, antislash et caractères de contrôle doivent être échappés,
+     * sinon Telegram rejette la requête (400 Bad Request).
+     */
+    @Test
+    public void testEscaping() {
+        String body = encode(JsonRequestEncoder.get().field(TEXT, "a\"b\\c\nd\re\tf\u0001g"));
+
+        assertEquals("{\"text\":\"a\\\"b\\\\c\\nd\\re\\tf\\u0001g\"}", body);
+    }
+
+    /**
+     * Test de l'encodage UTF-8.
+     *
+     * Caractères sur 2, 3 et 4 octets (emoji = paire de substitution) doivent produire
+     * les mêmes octets que String.getBytes(UTF_8).
+     */
+    @Test
+    public void testUtf8Encoding() {
+        String text = "déployé ✅ ⚠️ 🚀 你好";
+        byte[] bytes = JsonRequestEncoder.get().field(TEXT, text).toByteArray();
+
+        assertArrayEquals(("{\"text\":\"" + text + "\"}").getBytes(StandardCharsets.UTF_8), bytes);
+    }
+
+    /**
+     * Test d'une paire de substitution incomplète.
+     *
+     * Comme String.getBytes, le caractère isolé est remplacé par '?' au lieu de produire de l'UTF-8 invalide.
+     */
+    @Test
+    public void testLoneSurrogate() {
+        assertEquals("{\"text\":\"a?b?\"}", encode(JsonRequestEncoder.get().field(TEXT, "a\uD83Db\uDE80")));
+    }
+
+    /**
+     * Test de la réutilisation du tampon.
+     *
+     * Le corps retourné est une copie: l'encodage suivant ne doit pas le modifier,
+     * même après un message plus long que le tampon retenu.
+     */
+    @Test
+    public void testBuffersAreIndependent() {
+        byte[] first = JsonRequestEncoder.get().field(TEXT, "first").toByteArray();
+
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            large.append("é\n");
+        }
+        byte[] second = JsonRequestEncoder.get().field(TEXT, large.toString()).toByteArray();
+        byte[] third = JsonRequestEncoder.get().field(TEXT, "third").toByteArray();
+
+        assertEquals("{\"text\":\"first\"}", new String(first, StandardCharsets.UTF_8));
+        assertEquals(9 + 20_000 * 4 + 2, second.length);
+        assertEquals("{\"text\":\"third\"}", new String(third, StandardCharsets.UTF_8));
+    }
+
+    private static String encode(JsonRequestEncoder encoder) {
+        return new String(encoder.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
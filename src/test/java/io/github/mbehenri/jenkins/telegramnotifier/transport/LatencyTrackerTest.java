@@ -0,0 +1,85 @@
+package io.github.mbehenri.jenkins.telegramnotifier.transport;
+
+import io.github.mbehenri.jenkins.telegramnotifier.config.TelegramConfig;
+import org.junit.Test;
+
+import java.net.URI;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour LatencyTracker.
+ *
+ * Ces tests vérifient le calcul du timeout adaptatif:
+ * - Le timeout configuré tant qu'il n'y a pas assez de mesures
+ * - Le p99 sur la fenêtre glissante des dernières latences
+ * - Les bornes du timeout (minimum, timeout configuré)
+ * - L'indépendance des hôtes
+ */
+public class LatencyTrackerTest {
+
+    private static final URI API = URI.create("https://api.telegram.org/bot1:A/sendMessage");
+    private static final URI LOCAL = URI.create("http://localhost:8081/bot1:A/sendMessage");
+
+    /**
+     * Test qu'avant assez de mesures, le timeout configuré s'applique tel quel.
+     */
+    @Test
+    public void testConfiguredTimeoutUntilEnoughSamples() {
+        LatencyTracker tracker = new LatencyTracker(100, 10);
+        for (int i = 0; i < 9; i++) {
+            tracker.record(API, 100);
+        }
+
+        assertEquals(-1, tracker.getP99Millis(API));
+        assertEquals(30_000, tracker.timeoutMillis(API, 30_000));
+    }
+
+    /**
+     * Test du p99: une latence isolée sur cent n'emporte pas le p99, deux oui.
+     */
+    @Test
+    public void testP99OfRecentSamples() {
+        LatencyTracker tracker = new LatencyTracker(100, 10);
+        for (int i = 0; i < 99; i++) {
+            tracker.record(API, 1_000);
+        }
+        tracker.record(API, 9_000);
+        assertEquals(1_000, tracker.getP99Millis(API));
+        assertEquals(TelegramConfig.ADAPTIVE_TIMEOUT_P99_FACTOR * 1_000L, tracker.timeoutMillis(API, 30_000));
+
+        tracker.record(API, 9_000);
+        assertEquals(9_000, tracker.getP99Millis(API));
+    }
+
+    /**
+     * Test de la fenêtre glissante: les mesures les plus anciennes sont remplacées.
+     */
+    @Test
+    public void testOldSamplesAreForgotten() {
+        LatencyTracker tracker = new LatencyTracker(20, 10);
+        for (int i = 0; i < 20; i++) {
+            tracker.record(API, 20_000);
+        }
+        for (int i = 0; i < 20; i++) {
+            tracker.record(API, 500);
+        }
+
+        assertEquals(500, tracker.getP99Millis(API));
+    }
+
+    /**
+     * Test des bornes: jamais moins que le minimum, jamais plus que le timeout configuré.
+     */
+    @Test
+    public void testTimeoutIsBounded() {
+        LatencyTracker tracker = new LatencyTracker(100, 10);
+        for (int i = 0; i < 10; i++) {
+            tracker.record(API, 50);
+            tracker.record(LOCAL, 20_000);
+        }
+
+        assertEquals(TelegramConfig.ADAPTIVE_TIMEOUT_MIN_MILLIS, tracker.timeoutMillis(API, 30_000));
+        assertEquals(30_000, tracker.timeoutMillis(LOCAL, 30_000));
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.mbehenri.jenkins.telegramnotifier.transport;
+
+import io.github.mbehenri.jenkins.telegramnotifier.Attachment;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour MultipartBody.
+ *
+ * Ces tests vérifient:
+ * - La structure multipart/form-data (champs, délimiteurs, en-têtes de la partie fichier)
+ * - La compression gzip du fichier joint
+ * - La réouverture de la source à chaque lecture du corps (nouvelle tentative)
+ */
+public class MultipartBodyTest {
+
+    private static final String LOG = "Started by user admin\nFinished: FAILURE\n";
+
+    /**
+     * Test de la structure du corps et du contenu compressé du fichier.
+     */
+    @Test
+    public void testBodyStructure() throws IOException {
+        MultipartBody body = new MultipartBody()
+                .field("chat_id", "123456789")
+                .gzipFile("document", new Attachment("console-42.log", () -> stream(LOG)));
+
+        String boundary = body.contentType().substring("multipart/form-data; boundary=".length());
+        byte[] bytes = readAll(body.open());
+        String text = new String(bytes, StandardCharsets.ISO_8859_1);
+
+        assertTrue(text.startsWith("--" + boundary + "\r\nContent-Disposition: form-data; name=\"chat_id\"\r\n\r\n123456789\r\n"));
+        assertTrue(text.contains("Content-Disposition: form-data; name=\"document\"; filename=\"console-42.log.gz\"\r\n"));
+        assertTrue(text.contains("Content-Type: application/gzip\r\n\r\n"));
+        assertTrue(text.endsWith("\r\n--" + boundary + "--\r\n"));
+
+        int start = text.indexOf("application/gzip\r\n\r\n") + "application/gzip\r\n\r\n".length();
+        int end = text.lastIndexOf("\r\n--" + boundary + "--");
+        byte[] gzip = Arrays.copyOfRange(bytes, start, end);
+        assertEquals(LOG, new String(readAll(new GZIPInputStream(new ByteArrayInputStream(gzip))), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Test que la source du fichier est rouverte à chaque lecture du corps.
+     */
+    @Test
+    public void testSourceIsReopenedForEachRead() throws IOException {
+        AtomicInteger opened = new AtomicInteger();
+        MultipartBody body = new MultipartBody()
+                .gzipFile("document", new Attachment("console-1.log", () -> {
+                    opened.incrementAndGet();
+                    return stream(LOG);
+                }));
+
+        readAll(body.open());
+        readAll(body.open());
+
+        assertEquals(2, opened.get());
+    }
+
+    private static InputStream stream(String value) {
+        return new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int n;
+            while ((n = input.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+}
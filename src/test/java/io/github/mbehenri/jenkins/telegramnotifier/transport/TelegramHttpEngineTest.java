@@ -0,0 +1,136 @@
+package io.github.mbehenri.jenkins.telegramnotifier.transport;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.http.HttpClient;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour TelegramHttpEngine.
+ *
+ * Ces tests vérifient le cycle de vie du moteur de transport partagé:
+ * - Un seul client HTTP est réutilisé par tous les envois
+ * - L'arrêt libère le client et un nouvel accès le recrée
+ * - Le préchauffage de la connexion, sans envoi de message
+ *
+ * Le moteur est un singleton, il est donc arrêté après chaque test
+ * pour ne pas laisser d'état entre les tests.
+ */
+public class TelegramHttpEngineTest {
+
+    private HttpServer server;
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+        TelegramHttpEngine.get().stop();
+    }
+
+    /**
+     * Test que le même client est retourné à chaque appel.
+     *
+     * C'est tout l'intérêt du moteur: réutiliser le pool de connexions
+     * au lieu de refaire DNS + TCP + TLS à chaque notification.
+     */
+    @Test
+    public void testClientIsShared() {
+        HttpClient first = TelegramHttpEngine.get().getClient();
+        HttpClient second = TelegramHttpEngine.get().getClient();
+
+        assertNotNull(first);
+        assertSame(first, second);
+    }
+
+    /**
+     * Test que le client préfère HTTP/2 (repli automatique en HTTP/1.1 si le serveur ne le supporte pas).
+     */
+    @Test
+    public void testClientPrefersHttp2() {
+        assertEquals(HttpClient.Version.HTTP_2, TelegramHttpEngine.get().getClient().version());
+    }
+
+    /**
+     * Test du cycle start/stop.
+     *
+     * Après un arrêt (Terminator), le moteur ne doit plus détenir de client.
+     * Un accès ultérieur redémarre le moteur avec un nouveau client.
+     */
+    @Test
+    public void testStopReleasesClient() {
+        TelegramHttpEngine engine = TelegramHttpEngine.get();
+        HttpClient first = engine.getClient();
+        assertTrue(engine.isRunning());
+
+        engine.stop();
+        assertFalse(engine.isRunning());
+
+        HttpClient second = engine.getClient();
+        assertNotSame(first, second);
+    }
+
+    /**
+     * Test que start() est idempotent et ne remplace pas un client existant.
+     */
+    @Test
+    public void testStartIsIdempotent() {
+        TelegramHttpEngine engine = TelegramHttpEngine.get();
+        engine.start();
+        HttpClient first = engine.getClient();
+
+        engine.start();
+
+        assertSame(first, engine.getClient());
+    }
+
+    /**
+     * Test du préchauffage.
+     *
+     * Une seule requête HEAD sur la racine du serveur, sans token ni méthode de l'API,
+     * et sa durée est conservée pour la supervision.
+     */
+    @Test
+    public void testWarmUpOpensConnectionWithoutSending() throws Exception {
+        List<String> requests = new CopyOnWriteArrayList<>();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI());
+            exchange.sendResponseHeaders(302, -1);
+            exchange.close();
+        });
+        server.start();
+        String apiBaseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        TelegramHttpEngine engine = TelegramHttpEngine.get();
+        assertEquals(-1, engine.getWarmUpLatencyMillis(apiBaseUrl));
+
+        long latency = engine.warmUp(apiBaseUrl).get(5, TimeUnit.SECONDS);
+        assertTrue(latency >= 0);
+        assertEquals(latency, engine.getWarmUpLatencyMillis(apiBaseUrl));
+        assertEquals(1, requests.size());
+        assertEquals("HEAD /", requests.get(0));
+    }
+
+    /**
+     * Test qu'un serveur injoignable n'est pas une erreur: le préchauffage retourne -1.
+     */
+    @Test
+    public void testWarmUpOfUnreachableServer() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        assertEquals(-1L, (long) TelegramHttpEngine.get().warmUp("http://127.0.0.1:" + port).get(15, TimeUnit.SECONDS));
+        assertEquals(-1L, (long) TelegramHttpEngine.get().warmUp("not a url").get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,149 @@
+package io.github.mbehenri.jenkins.telegramnotifier.transport;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests unitaires pour TelegramResponseParser.
+ *
+ * Ces tests vérifient:
+ * - L'extraction des seuls champs utiles, à leur place dans l'arborescence JSON
+ * - L'analyse d'un corps reçu en plusieurs fragments (coupé n'importe où)
+ * - La robustesse face à un corps qui n'est pas du JSON
+ */
+public class TelegramResponseParserTest {
+
+    private static final String SENT = "{\"ok\":true,\"result\":{\"message_id\":4711,"
+            + "\"from\":{\"id\":123456,\"is_bot\":true,\"first_name\":\"Jenkins\",\"username\":\"jenkins_bot\"},"
+            + "\"chat\":{\"id\":-1001234567890,\"title\":\"CI\",\"type\":\"supergroup\"},"
+            + "\"date\":1700000000,\"text\":\"✅ Build SUCCESS\","
+            + "\"entities\":[{\"offset\":2,\"length\":5,\"type\":\"bold\"}],"
+            + "\"reply_to_message\":{\"message_id\":1}}}";
+
+    private static final String RATE_LIMITED = "{\"ok\":false,\"error_code\":429,"
+            + "\"description\":\"Too Many Requests: retry after 35\",\"parameters\":{\"retry_after\":35}}";
+
+    /**
+     * Test d'une réponse sendMessage réussie.
+     *
+     * Seul result.message_id est retenu: les message_id imbriqués (reply_to_message)
+     * et les autres id (from, chat) sont ignorés.
+     */
+    @Test
+    public void testSuccessResponse() {
+        TelegramResponseParser response = TelegramResponseParser.parse(SENT);
+
+        assertEquals(Boolean.TRUE, response.getOk());
+        assertEquals(4711, response.getMessageId());
+        assertEquals(0, response.getErrorCode());
+        assertNull(response.getDescription());
+        assertEquals(-1, response.getRetryAfter());
+    }
+
+    /**
+     * Test d'une réponse 429.
+     */
+    @Test
+    public void testRateLimitedResponse() {
+        TelegramResponseParser response = TelegramResponseParser.parse(RATE_LIMITED);
+
+        assertEquals(Boolean.FALSE, response.getOk());
+        assertEquals(429, response.getErrorCode());
+        assertEquals("Too Many Requests: retry after 35", response.getDescription());
+        assertEquals(35, response.getRetryAfter());
+        assertEquals(-1, response.getMessageId());
+    }
+
+    /**
+     * Test d'une migration de groupe vers un supergroupe (ID négatif).
+     */
+    @Test
+    public void testMigrateToChatId() {
+        TelegramResponseParser response = TelegramResponseParser.parse(
+                "{\"ok\":false,\"error_code\":400,\"description\":\"Bad Request: group chat was upgraded\","
+                        + "\"parameters\":{\"migrate_to_chat_id\":-1009876543210}}");
+
+        assertEquals(-1009876543210L, response.getMigrateToChatId());
+        assertEquals(-1, response.getRetryAfter());
+    }
+
+    /**
+     * Test que les champs ne sont reconnus qu'à leur place.
+     *
+     * Un retry_after hors de parameters ou un message_id hors de result ne doit pas être pris en compte.
+     */
+    @Test
+    public void testFieldsOutsideTheirParentAreIgnored() {
+        TelegramResponseParser response = TelegramResponseParser.parse(
+                "{\"retry_after\":9,\"message_id\":8,\"result\":[{\"message_id\":7}],"
+                        + "\"parameters\":{\"nested\":{\"retry_after\":6}}}");
+
+        assertEquals(-1, response.getRetryAfter());
+        assertEquals(-1, response.getMessageId());
+        assertNull(response.getOk());
+    }
+
+    /**
+     * Test de l'échappement dans la description.
+     */
+    @Test
+    public void testEscapedDescription() {
+        TelegramResponseParser response = TelegramResponseParser.parse(
+                "{\"description\":\"Bad Request: can't parse \\\"entities\\\"\\nat byte \\u00e9 déjà\"}");
+
+        assertEquals("Bad Request: can't parse \"entities\"\nat byte é déjà", response.getDescription());
+    }
+
+    /**
+     * Test d'une description suivie d'un autre champ texte.
+     *
+     * La valeur d'un champ ignoré ne doit pas effacer la description déjà lue.
+     */
+    @Test
+    public void testDescriptionFollowedByStringField() {
+        TelegramResponseParser response = TelegramResponseParser.parse(
+                "{\"ok\":false,\"error_code\":400,\"description\":\"Bad Request: chat not found\",\"extra\":\"x\"}");
+
+        assertEquals(400, response.getErrorCode());
+        assertEquals("Bad Request: chat not found", response.getDescription());
+    }
+
+    /**
+     * Test d'un corps reçu octet par octet.
+     *
+     * Le client HTTP livre le corps en fragments arbitraires, y compris au milieu d'une clé,
+     * d'un nombre ou d'un caractère UTF-8 multi-octets.
+     */
+    @Test
+    public void testFragmentedBody() {
+        byte[] bytes = (RATE_LIMITED.replace("Too Many", "Très")).getBytes(StandardCharsets.UTF_8);
+        TelegramResponseParser response = new TelegramResponseParser();
+        for (int i = 0; i < bytes.length; i++) {
+            response.feed(ByteBuffer.wrap(bytes, i, 1).slice());
+        }
+
+        assertEquals(429, response.getErrorCode());
+        assertEquals(35, response.getRetryAfter());
+        assertEquals("Très Requests: retry after 35", response.getDescription());
+    }
+
+    /**
+     * Test d'un corps qui n'est pas du JSON (page d'erreur d'un proxy).
+     */
+    @Test
+    public void testNonJsonBody() {
+        TelegramResponseParser response = TelegramResponseParser.parse("<html><body>502 Bad Gateway</body></html>");
+
+        assertNull(response.getOk());
+        assertEquals(0, response.getErrorCode());
+        assertEquals(-1, response.getRetryAfter());
+
+        assertEquals(-1, TelegramResponseParser.parse("").getRetryAfter());
+        assertEquals(-1, TelegramResponseParser.parse(null).getRetryAfter());
+        assertEquals(-1, TelegramResponseParser.parse("42, 43").getRetryAfter());
+    }
+}